@@ -0,0 +1,138 @@
+/**
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the misuse monitor against the previous synchronized implementation, with many
+ * threads notifying events for a pool of agents.
+ *
+ * Run with:
+ *   mvn -P local,benchmarks test-compile exec:java -Dexec.mainClass=uk.ac.cam.cl.dtg.segue.api.monitors.MisuseMonitorBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(16)
+public class MisuseMonitorBenchmark {
+    private static final String EVENT = "BenchmarkEvent";
+
+    /** A single agent is the worst case for contention; many agents is closer to production. */
+    @Param({"1", "1000"})
+    public int agents;
+
+    @Param({"synchronized", "concurrent"})
+    public String implementation;
+
+    private IMisuseMonitor misuseMonitor;
+    private String[] agentIdentifiers;
+
+    /**
+     * Create the monitor under test, with thresholds high enough that the benchmark never hits them.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        misuseMonitor = "synchronized".equals(implementation)
+                ? new SynchronizedMisuseMonitor() : new InMemoryMisuseMonitor();
+        misuseMonitor.registerHandler(EVENT, new IMisuseHandler() {
+            @Override
+            public Integer getSoftThreshold() {
+                return Integer.MAX_VALUE - 1;
+            }
+
+            @Override
+            public Integer getHardThreshold() {
+                return Integer.MAX_VALUE;
+            }
+
+            @Override
+            public Integer getAccountingIntervalInSeconds() {
+                return 1;
+            }
+
+            @Override
+            public void executeSoftThresholdAction(final String message) {
+            }
+
+            @Override
+            public void executeHardThresholdAction(final String message) {
+            }
+        });
+
+        agentIdentifiers = new String[agents];
+        for (int i = 0; i < agents; i++) {
+            agentIdentifiers[i] = "agent-" + i;
+        }
+    }
+
+    /**
+     * Notify an event for a random agent, as happens on every login, question attempt and user search.
+     *
+     * @throws SegueResourceMisuseException - never, as the hard threshold cannot be reached.
+     */
+    @Benchmark
+    public void notifyEvent() throws SegueResourceMisuseException {
+        misuseMonitor.notifyEvent(randomAgent(), EVENT);
+    }
+
+    /**
+     * Check whether a random agent has misused the resource, as happens before rate-limited actions.
+     *
+     * @param blackhole - to stop the result being optimised away.
+     */
+    @Benchmark
+    public void hasMisused(final Blackhole blackhole) {
+        blackhole.consume(misuseMonitor.hasMisused(randomAgent(), EVENT));
+    }
+
+    private String randomAgent() {
+        return agentIdentifiers[ThreadLocalRandom.current().nextInt(agents)];
+    }
+
+    /**
+     * Run the benchmark from the command line.
+     *
+     * @param args - unused.
+     * @throws RunnerException - if the benchmark fails to run.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(MisuseMonitorBenchmark.class.getSimpleName()).build()).run();
+    }
+}
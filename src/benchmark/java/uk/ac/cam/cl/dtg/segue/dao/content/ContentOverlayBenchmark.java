@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.reflections.Reflections;
+import uk.ac.cam.cl.dtg.segue.dos.content.Choice;
+import uk.ac.cam.cl.dtg.segue.dos.content.ChoiceQuestion;
+import uk.ac.cam.cl.dtg.segue.dos.content.Content;
+import uk.ac.cam.cl.dtg.segue.dos.content.ContentBase;
+import uk.ac.cam.cl.dtg.segue.dos.content.SeguePage;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of preparing a large question page to be augmented for a user by mapping it from its DO afresh,
+ * as was done for every request, with that of making an overlay of a shared snapshot of it.
+ *
+ * Run with:
+ *   mvn -P local,benchmarks test-compile exec:java -Dexec.mainClass=uk.ac.cam.cl.dtg.segue.dao.content.ContentOverlayBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ContentOverlayBenchmark {
+    private static final int QUESTIONS = 50;
+    private static final int CHOICES_PER_QUESTION = 6;
+    private static final int HINTS_PER_QUESTION = 3;
+
+    private ContentMapper mapper;
+    private SeguePage page;
+    private ContentDTO snapshot;
+
+    /**
+     * Create the mapper, the page and a snapshot of the page, as cached once per content version.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        mapper = new ContentMapper(new Reflections("uk.ac.cam.cl.dtg.segue"));
+        page = createLargeQuestionPage();
+        snapshot = mapper.getDTOByDO(page);
+    }
+
+    /**
+     * Map the page from its DO, as was done for every request.
+     *
+     * @return the DTO, so it is not optimised away.
+     */
+    @Benchmark
+    public ContentDTO mapFromDO() {
+        return mapper.getDTOByDO(page);
+    }
+
+    /**
+     * Make an overlay of the shared snapshot, as is now done for every request.
+     *
+     * @return the overlay, so it is not optimised away.
+     */
+    @Benchmark
+    public ContentDTO copyForAugmentationOfSnapshot() {
+        return ContentOverlay.copyForAugmentation(snapshot);
+    }
+
+    /**
+     * Run the benchmark from the command line.
+     *
+     * @param args - unused.
+     * @throws RunnerException - if the benchmark fails to run.
+     */
+    public static void main(final String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ContentOverlayBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * @return a page of text and choice questions, each question having several hints.
+     */
+    private static SeguePage createLargeQuestionPage() {
+        List<ContentBase> children = Lists.newArrayList();
+        for (int q = 0; q < QUESTIONS; q++) {
+            children.add(createText("Some text before question " + q));
+
+            List<Choice> choices = Lists.newArrayList();
+            for (int c = 0; c < CHOICES_PER_QUESTION; c++) {
+                Choice choice = new Choice();
+                choice.setValue("Choice " + c);
+                choice.setCorrect(c == 0);
+                choice.setExplanation(createText("Explanation of choice " + c));
+                choices.add(choice);
+            }
+            List<ContentBase> hints = Lists.newArrayList();
+            for (int h = 0; h < HINTS_PER_QUESTION; h++) {
+                hints.add(createText("Hint " + h));
+            }
+
+            ChoiceQuestion question = new ChoiceQuestion();
+            question.setId("page|question" + q);
+            question.setType("choiceQuestion");
+            question.setValue("Which of these is correct?");
+            question.setChoices(choices);
+            question.setHints(hints);
+            children.add(question);
+        }
+
+        SeguePage page = new SeguePage();
+        page.setId("page");
+        page.setType("page");
+        page.setTitle("A large question page");
+        page.setChildren(children);
+        return page;
+    }
+
+    /**
+     * @param value - the text.
+     * @return a piece of text content.
+     */
+    private static Content createText(final String value) {
+        Content content = new Content();
+        content.setType("content");
+        content.setEncoding("markdown");
+        content.setValue(value);
+        return content;
+    }
+}
@@ -30,6 +30,7 @@ import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.api.managers.AssignmentManager;
 import uk.ac.cam.cl.dtg.isaac.api.managers.DuplicateAssignmentException;
 import uk.ac.cam.cl.dtg.isaac.api.managers.GameManager;
+import uk.ac.cam.cl.dtg.isaac.api.managers.GameProgressMatrix;
 import uk.ac.cam.cl.dtg.isaac.api.services.AssignmentService;
 import uk.ac.cam.cl.dtg.isaac.dto.AssignmentDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.GameboardDTO;
@@ -44,6 +45,7 @@ import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionAttemptSummary;
 import uk.ac.cam.cl.dtg.segue.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.segue.dos.UserGroup;
 import uk.ac.cam.cl.dtg.segue.dto.SegueErrorResponse;
@@ -85,7 +87,6 @@ import java.util.stream.Collectors;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
-import static uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager.extractPageIdFromQuestionId;
 import static uk.ac.cam.cl.dtg.util.NameFormatter.getFilteredGroupNameFromGroup;
 
 /**
@@ -172,8 +173,8 @@ public class AssignmentFacade extends AbstractIsaacFacade {
         try {
             RegisteredUserDTO currentlyLoggedInUser = userManager.getCurrentRegisteredUser(request);
             Collection<AssignmentDTO> assignments = this.assignmentManager.getAssignments(currentlyLoggedInUser);
-            Map<String, Map<String, List<QuestionValidationResponse>>> questionAttemptsByUser = this.questionManager
-                    .getQuestionAttemptsByUser(currentlyLoggedInUser);
+            Map<String, Map<String, QuestionAttemptSummary>> questionAttemptsByUser = this.questionManager
+                    .getQuestionAttemptSummariesByUser(currentlyLoggedInUser);
 
             // Gather all gameboards we need to augment for the assignments in a single query
             List<String> gameboardIds = assignments.stream().map(AssignmentDTO::getGameboardId).collect(Collectors.toList());
@@ -273,7 +274,7 @@ public class AssignmentFacade extends AbstractIsaacFacade {
                 // In order to get all the information about gameboard items, we need to use the method which augments
                 // gameboards with user attempt information. But we don't _want_ this information for real, so we won't
                 // do the costly loading of the real attempt information from the database:
-                Map<String, Map<String, List<QuestionValidationResponse>>> fakeQuestionAttemptMap = new HashMap<>();
+                Map<String, Map<String, QuestionAttemptSummary>> fakeQuestionAttemptMap = new HashMap<>();
 
                 // we want to populate gameboard details for the assignment DTO.
                 List<String> gameboardIDs = allAssignmentsSetToGroup.stream().map(AssignmentDTO::getGameboardId).collect(Collectors.toList());
@@ -641,73 +642,18 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             List<RegisteredUserDTO> groupMembers;
             groupMembers = this.groupManager.getUsersInGroup(group);
 
-            // String: question part id
-            // Integer: question part result
-            Map<RegisteredUserDTO, Map<GameboardDTO, Map<String, Integer>>> grandTable = new HashMap<>();
-            // Retrieve each user's progress data and cram everything into a Grand Table for later consumption
+            // Load every gameboard and the members' attempts at all of them at once:
             List<String> gameboardsIds = assignments.stream().map(AssignmentDTO::getGameboardId).collect(Collectors.toList());
-            List<GameboardDTO> gameboards;
-            if (gameboardsIds.isEmpty()) {
-                gameboards = new ArrayList<>();
-            } else {
-                gameboards = gameManager.getGameboards(gameboardsIds);
-            }
-            Map<String, GameboardDTO> gameboardsIdMap = gameboards.stream().collect(Collectors.toMap(GameboardDTO::getId, Function.identity()));
-
-            Map<AssignmentDTO, GameboardDTO> assignmentGameboards = new HashMap<>();
+            GameProgressMatrix progressMatrix = gameManager.gatherGameProgressMatrix(groupMembers, gameboardsIds);
+            Map<AssignmentDTO, GameboardDTO> assignmentGameboards = new LinkedHashMap<>();
             for (AssignmentDTO assignment : assignments) {
-                GameboardDTO gameboard = gameboardsIdMap.get(assignment.getGameboardId());
-                // Create an assignment -> gameboard mapping to avoid repeatedly querying the DB later on. All the efficiency!
-                assignmentGameboards.put(assignment, gameboard);
-            }
-            List<GameboardItem> gameboardItems = gameboards.stream().map(GameboardDTO::getQuestions).flatMap(Collection::stream).collect(Collectors.toList());
-            List<String> questionPageIds = gameboardItems.stream().map(GameboardItem::getId).collect(Collectors.toList());
-            Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> questionAttempts;
-            try {
-                questionAttempts = this.questionManager.getMatchingQuestionAttempts(groupMembers, questionPageIds);
-            } catch (IllegalArgumentException e) {
-                questionAttempts = new HashMap<>();
-            }
-            Map<RegisteredUserDTO, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> questionAttemptsForAllUsersOfInterest = new HashMap<>();
-            for (RegisteredUserDTO user : groupMembers) {
-                questionAttemptsForAllUsersOfInterest.put(user, questionAttempts.get(user.getId()));
-            }
-
-            for (GameboardDTO gameboard : gameboards) {
-                Map<RegisteredUserDTO, Map<String, Integer>> userQuestionDataMap = new HashMap<>();
-
-                // FIXME vvv This is duplicated code vvv
-                // This is properly horrible, can someone rewrite this whole thing?
-                questionAttemptsForAllUsersOfInterest.forEach((user, attempts) -> {
-                    Map<String, List<LightweightQuestionValidationResponse>> attemptsByQuestionId = new HashMap<>();
-                    for (String pageId : attempts.keySet()) {
-                        Map<String, List<LightweightQuestionValidationResponse>> a = attempts.get(pageId);
-                        for (String questionId : a.keySet()) {
-                            List l = a.get(questionId);
-                            attemptsByQuestionId.put(questionId, l);
-                        }
-                    }
-                    Map<String, Integer> userAttemptsSummary = attemptsByQuestionId.entrySet().stream().collect(
-                            Collectors.toMap(
-                                    Entry::getKey,
-                                    e -> e.getValue().stream().map(LightweightQuestionValidationResponse::isCorrect)
-                                            .reduce(false, (a, b) -> a || b)
-                            )
-                    ).entrySet().stream().collect(Collectors.toMap(
-                            Entry::getKey,
-                            e -> e.getValue() ? 1 : 0
-                    ));
-                    userQuestionDataMap.put(user, userAttemptsSummary);
-                });
-                // FIXME ^^^ This is duplicated code ^^^
-                for (RegisteredUserDTO student : userQuestionDataMap.keySet()) {
-                    Map<GameboardDTO, Map<String, Integer>> entry = grandTable.get(student);
-                    if (null == entry) {
-                        entry = Maps.newHashMap();
-                    }
-                    entry.put(gameboard, userQuestionDataMap.get(student));
-                    grandTable.put(student, entry);
+                GameboardDTO gameboard = progressMatrix.getGameboard(assignment.getGameboardId());
+                if (null == gameboard) {
+                    log.error(String.format("Unable to find gameboard (%s) for assignment (%s) for progress download.",
+                            assignment.getGameboardId(), assignment.getId()));
+                    continue;
                 }
+                assignmentGameboards.put(assignment, gameboard);
             }
 
             // Add a header row with due dates
@@ -721,40 +667,26 @@ public class AssignmentFacade extends AbstractIsaacFacade {
             } else {
                 Collections.addAll(headerRow, "Last Name,First Name,% Correct Overall".split(","));
             }
-            List<String> gameboardTitles = Lists.newArrayList();
-            for (AssignmentDTO assignment : assignments) {
+            for (Entry<AssignmentDTO, GameboardDTO> assignmentGameboard : assignmentGameboards.entrySet()) {
+                AssignmentDTO assignment = assignmentGameboard.getKey();
+                GameboardDTO gameboard = assignmentGameboard.getValue();
                 if (null != assignment.getDueDate()) {
                     dueDateRow.add(dateFormatter.format(assignment.getDueDate()));
                 } else {
                     dueDateRow.add(""); // No due date set
                 }
-                GameboardDTO gameboard = assignmentGameboards.get(assignment);
-                String gameboardTitle = gameboard.getTitle();
-                if (null != gameboardTitle) {
-                    gameboardTitles.add(gameboardTitle);
-                } else {
-                    gameboardTitles.add(gameboard.getId());
-                }
-            }
-            for (String gameboardTitle : gameboardTitles) {
+                String gameboardTitle = null != gameboard.getTitle() ? gameboard.getTitle() : gameboard.getId();
                 headerRow.add("% Correct for '" + gameboardTitle + "'");
             }
             dueDateRow.add("");
             headerRow.add("");
 
-            Map<GameboardDTO, List<String>> gameboardQuestionIds = Maps.newHashMap();
-            for (AssignmentDTO assignment : assignments) {
-                GameboardDTO gameboard = assignmentGameboards.get(assignment);
+            for (Entry<AssignmentDTO, GameboardDTO> assignmentGameboard : assignmentGameboards.entrySet()) {
+                AssignmentDTO assignment = assignmentGameboard.getKey();
+                GameboardDTO gameboard = assignmentGameboard.getValue();
                 for (GameboardItem questionPage : gameboard.getQuestions()) {
                     int b = 1;
-                    for (QuestionDTO question : gameManager.getAllMarkableQuestionPartsDFSOrder(questionPage.getId())) {
-                        List<String> questionIds = gameboardQuestionIds.get(gameboard);
-                        if (null == questionIds) {
-                            questionIds = Lists.newArrayList();
-                        }
-                        questionIds.add(question.getId());
-                        gameboardQuestionIds.put(gameboard, questionIds);
-
+                    for (QuestionDTO question : progressMatrix.getQuestionParts(questionPage.getId())) {
                         StringBuilder s = new StringBuilder();
                         if (question.getTitle() != null) {
                             s.append(question.getTitle());
@@ -785,40 +717,26 @@ public class AssignmentFacade extends AbstractIsaacFacade {
 
             for (RegisteredUserDTO groupMember : groupMembers) {
                 // FIXME Some room for improvement here, as we can retrieve all the users with a single query.
-                // FIXME Not urgent, as the dominating query is the one that retrieves question attempts above.
                 UserSummaryDTO userSummary = associationManager.enforceAuthorisationPrivacy(currentlyLoggedInUser,
                         userManager.convertToUserSummaryObject(groupMember));
 
                 ArrayList<String> row = Lists.newArrayList();
-                Map<GameboardDTO, Map<String, Integer>> userAssignments = grandTable.get(groupMember);
                 List<Float> assignmentPercentages = Lists.newArrayList();
                 List<Integer> marks = Lists.newArrayList();
                 int totalQPartsCorrect = 0;
                 int totalQPartsCount = 0;
-                for (AssignmentDTO assignment : assignments) {
-                    GameboardDTO gameboard = assignmentGameboards.get(assignment);
+                for (GameboardDTO gameboard : assignmentGameboards.values()) {
                     int assignmentQPartsCorrect = 0;
                     int assignmentQPartsCount = 0;
-                    List<String> questionIds = gameboardQuestionIds.get(gameboard);
-                    List<GameboardItem> questions = gameboard.getQuestions();
-                    Map<String, Integer> gameboardPartials = Maps.newHashMap();
-                    for (GameboardItem question : questions) {
-                        gameboardPartials.put(question.getId(), 0);
-                    }
-                    HashMap<String, Integer> questionParts = new HashMap<>(gameboardPartials);
-                    for (String s : questionIds) {
-                        Integer mark = userAssignments.get(gameboard).get(s);
-                        String questionPageId = extractPageIdFromQuestionId(s);
-                        questionParts.put(questionPageId, questionParts.get(questionPageId) + 1);
-                        marks.add(mark);
-                        if (null != mark) {
-                            gameboardPartials.put(questionPageId, gameboardPartials.get(questionPageId) + mark);
+                    for (GameboardItem questionPage : gameboard.getQuestions()) {
+                        for (Integer mark : progressMatrix.getQuestionPartResults(groupMember, questionPage.getId())) {
+                            marks.add(mark);
+                            assignmentQPartsCount++;
+                            if (null != mark) {
+                                assignmentQPartsCorrect += mark;
+                            }
                         }
                     }
-                    for (Entry<String, Integer> entry : gameboardPartials.entrySet()) {
-                        assignmentQPartsCorrect += entry.getValue();
-                        assignmentQPartsCount += questionParts.get(entry.getKey());
-                    }
                     totalQPartsCorrect += assignmentQPartsCorrect;
                     totalQPartsCount += assignmentQPartsCount;
                     assignmentPercentages.add((100f * assignmentQPartsCorrect) / assignmentQPartsCount);
@@ -93,6 +93,18 @@ public final class Constants {
         COMPLETED, IN_PROGRESS, NOT_ATTEMPTED
     }
 
+    public static final String TEMPORARY_GAMEBOARD_STORE = "TEMPORARY_GAMEBOARD_STORE";
+
+    /**
+     * Where gameboards are kept between being generated and being saved.
+     */
+    public enum TemporaryGameboardStore {
+        /** Boards are only available from the API node which generated them. */
+        IN_MEMORY,
+        /** Boards are shared between API nodes through the database. */
+        POSTGRES
+    }
+
     // field names
     public static final String CREATED_DATE_FIELDNAME = "created";
     public static final String VISITED_DATE_FIELDNAME = "lastVisited";
@@ -41,7 +41,7 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserLoggedInException;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
-import uk.ac.cam.cl.dtg.segue.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionAttemptSummary;
 import uk.ac.cam.cl.dtg.segue.dto.SegueErrorResponse;
 import uk.ac.cam.cl.dtg.segue.dto.users.AbstractSegueUserDTO;
 import uk.ac.cam.cl.dtg.segue.dto.users.RegisteredUserDTO;
@@ -239,8 +239,8 @@ public class GameboardsFacade extends AbstractIsaacFacade {
             GameboardDTO gameboard;
 
             AbstractSegueUserDTO randomUser = this.userManager.getCurrentUser(httpServletRequest);
-            Map<String, Map<String, List<QuestionValidationResponse>>> userQuestionAttempts = this.questionManager
-                    .getQuestionAttemptsByUser(randomUser);
+            Map<String, Map<String, QuestionAttemptSummary>> userQuestionAttempts = this.questionManager
+                    .getQuestionAttemptSummariesByUser(randomUser);
 
             GameboardDTO unAugmentedGameboard = gameManager.getGameboard(gameboardId);
             if (null == unAugmentedGameboard) {
@@ -307,8 +307,8 @@ public class GameboardsFacade extends AbstractIsaacFacade {
 
             AbstractSegueUserDTO currentUser = this.userManager.getCurrentUser(httpServletRequest);
 
-            Map<String, Map<String, List<QuestionValidationResponse>>> userQuestionAttempts =
-                    this.questionManager.getQuestionAttemptsByUser(currentUser);
+            Map<String, Map<String, QuestionAttemptSummary>> userQuestionAttempts =
+                    this.questionManager.getQuestionAttemptSummariesByUser(currentUser);
 
             List<GameboardItem> conceptQuestionsProgress = Lists.newArrayList();
             if (upperQuestionId.isEmpty()) {
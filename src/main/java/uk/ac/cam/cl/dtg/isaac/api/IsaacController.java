@@ -36,12 +36,13 @@ import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserLoggedInException;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentFile;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.content.IContentManager;
 import uk.ac.cam.cl.dtg.segue.dos.IUserStreaksManager;
 import uk.ac.cam.cl.dtg.segue.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.segue.dto.SegueErrorResponse;
-import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentSummaryDTO;
 import uk.ac.cam.cl.dtg.segue.dto.users.AbstractSegueUserDTO;
 import uk.ac.cam.cl.dtg.segue.dto.users.RegisteredUserDTO;
 import uk.ac.cam.cl.dtg.segue.dto.users.UserSummaryDTO;
@@ -54,19 +55,22 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.CacheControl;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
-import java.io.ByteArrayOutputStream;
+import javax.ws.rs.core.StreamingOutput;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
@@ -210,7 +214,7 @@ public class IsaacController extends AbstractIsaacFacade {
                 showHiddenContent = isUserStaff(userManager, (RegisteredUserDTO) currentUser);
             }
             List<String> documentTypes = !types.isEmpty() ? Arrays.asList(types.split(",")) : null;
-            ResultsWrapper<ContentDTO> searchResults = this.contentManager.siteWideSearch(
+            ResultsWrapper<ContentSummaryDTO> searchResults = this.contentManager.siteWideSearchForSummaries(
                     this.contentIndex, searchString, documentTypes, showHiddenContent, startIndex, limit);
 
             ImmutableMap<String, String> logMap = new ImmutableMap.Builder<String, String>()
@@ -221,7 +225,7 @@ public class IsaacController extends AbstractIsaacFacade {
             getLogManager().logEvent(userManager.getCurrentUser(httpServletRequest), httpServletRequest,
                     IsaacServerLogType.GLOBAL_SITE_SEARCH, logMap);
 
-            ResultsWrapper results = this.contentSummarizerService.extractContentSummaryFromResultsWrapper(searchResults);
+            ResultsWrapper<ContentSummaryDTO> results = this.contentSummarizerService.addUrlsToSummaries(searchResults);
             return Response.ok(results).tag(etag)
                     .cacheControl(getCacheControl(NUMBER_SECONDS_IN_ONE_HOUR, true))
                     .build();
@@ -242,9 +246,14 @@ public class IsaacController extends AbstractIsaacFacade {
 
     /**
      * Rest end point to allow images to be requested from the database.
+     *
+     * Images are streamed from the content repository, and support conditional requests using their git object id as
+     * an entity tag, and (except for SVGs, which are compressed instead) single byte range requests.
      * 
      * @param request
      *            - used for intelligent cache responses.
+     * @param httpServletRequest
+     *            - used for the range and encoding headers.
      * @param path
      *            of image in the database
      * @return a Response containing the image file contents or containing a SegueErrorResponse.
@@ -252,13 +261,10 @@ public class IsaacController extends AbstractIsaacFacade {
     @GET
     @Produces("*/*")
     @Path("images/{path:.*}")
-    @GZIP
     @ApiOperation(value = "Get a binary object from the current content version.",
                   notes = "This can only be used to get images from the content database.")
     public final Response getImageByPath(@Context final Request request, @Context final HttpServletRequest httpServletRequest,
                                          @PathParam("path") final String path) {
-        // entity tags etc are already added by segue
-
         // This comes from SegueContentFacade::getImageFileContent -- no other method was calling it, so moving it here.
         if (null == this.contentIndex || null == path || Files.getFileExtension(path).isEmpty()) {
             SegueErrorResponse error = new SegueErrorResponse(Status.BAD_REQUEST,
@@ -270,15 +276,8 @@ public class IsaacController extends AbstractIsaacFacade {
         // Go there and look up the git sha.
         String sha = this.contentManager.getCurrentContentSHA();
 
-        // determine if we can use the cache if so return cached response.
-        EntityTag etag = new EntityTag(sha.hashCode() + path.hashCode() + "");
-        Response cachedResponse = generateCachedResponse(request, etag, NUMBER_SECONDS_IN_ONE_DAY);
-
-        if (cachedResponse != null) {
-            return cachedResponse;
-        }
-
-        ByteArrayOutputStream fileContent = null;
+        // error responses are tagged with the version, as they may change when it does.
+        EntityTag versionEtag = new EntityTag(sha.hashCode() + path.hashCode() + "");
         String mimeType = MediaType.WILDCARD;
 
         switch (Files.getFileExtension(path).toLowerCase()) {
@@ -304,33 +303,112 @@ public class IsaacController extends AbstractIsaacFacade {
                 SegueErrorResponse error = new SegueErrorResponse(Status.BAD_REQUEST,
                         "Invalid file extension requested");
                 log.debug(error.getErrorMessage());
-                return error.toResponse(getCacheControl(NUMBER_SECONDS_IN_ONE_DAY, false), etag);
+                return error.toResponse(getCacheControl(NUMBER_SECONDS_IN_ONE_DAY, false), versionEtag);
         }
 
+        ContentFile file;
         try {
-            fileContent = this.contentManager.getFileBytes(sha, path);
+            file = this.contentManager.getContentFile(sha, path);
         } catch (IOException e) {
             SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR,
                     "Error reading from file repository", e);
             log.error(error.getErrorMessage(), e);
             return error.toResponse();
-        } catch (UnsupportedOperationException e) {
-            SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR,
-                    "Multiple files match the search path provided.", e);
-            log.error(error.getErrorMessage(), e);
-            return error.toResponse();
         }
 
-        if (null == fileContent) {
+        if (null == file) {
             String refererHeader = httpServletRequest.getHeader("Referer");
             SegueErrorResponse error = new SegueErrorResponse(Status.NOT_FOUND, "Unable to locate the file: " + path);
             log.warn(String.format("Unable to locate the file: (%s). Referer: (%s)", path, refererHeader));
-            return error.toResponse(getCacheControl(NUMBER_SECONDS_IN_TEN_MINUTES, false), etag);
+            return error.toResponse(getCacheControl(NUMBER_SECONDS_IN_TEN_MINUTES, false), versionEtag);
+        }
+
+        // the object id only changes when the file does, so clients can keep using the file across content versions.
+        EntityTag etag = new EntityTag(file.getObjectId());
+        Response cachedResponse = generateCachedResponse(request, etag, NUMBER_SECONDS_IN_ONE_DAY);
+        if (cachedResponse != null) {
+            return cachedResponse;
+        }
+
+        CacheControl cacheControl = getCacheControl(NUMBER_SECONDS_IN_ONE_DAY, true);
+
+        if ("image/svg+xml".equals(mimeType)) {
+            String acceptEncoding = httpServletRequest.getHeader(HttpHeaders.ACCEPT_ENCODING);
+            if (null == acceptEncoding || !acceptEncoding.toLowerCase().contains("gzip")) {
+                return Response.ok((StreamingOutput) file::writeTo).type(mimeType).cacheControl(cacheControl)
+                        .tag(etag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+            }
+            StreamingOutput compressedFile = out -> {
+                GZIPOutputStream gzipOut = new GZIPOutputStream(out);
+                file.writeTo(gzipOut);
+                gzipOut.finish();
+            };
+            return Response.ok(compressedFile).type(mimeType).cacheControl(cacheControl).tag(etag)
+                    .encoding("gzip").header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+
+        long[] range = null;
+        String ifRange = httpServletRequest.getHeader("If-Range");
+        if (null == ifRange || ifRange.equals(etag.toString())) {
+            range = parseByteRange(httpServletRequest.getHeader("Range"), file.getSize());
+        }
+
+        if (null == range) {
+            return Response.ok((StreamingOutput) file::writeTo).type(mimeType).cacheControl(cacheControl).tag(etag)
+                    .header(HttpHeaders.CONTENT_LENGTH, file.getSize()).header("Accept-Ranges", "bytes").build();
         }
 
-        return Response.ok(fileContent.toByteArray()).type(mimeType)
-                .cacheControl(getCacheControl(NUMBER_SECONDS_IN_ONE_DAY, true))
-                .tag(etag).build();
+        long first = range[0];
+        long last = range[1];
+        if (first > last) {
+            return Response.status(Status.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header("Content-Range", "bytes */" + file.getSize()).tag(etag).build();
+        }
+        return Response.status(Status.PARTIAL_CONTENT)
+                .entity((StreamingOutput) out -> file.writeTo(out, first, last - first + 1)).type(mimeType)
+                .cacheControl(cacheControl).tag(etag).header(HttpHeaders.CONTENT_LENGTH, last - first + 1)
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Range", String.format("bytes %d-%d/%d", first, last, file.getSize())).build();
+    }
+
+    /**
+     * Parse a Range header asking for a single range of bytes.
+     *
+     * Headers asking for more than one range, or which cannot be parsed, are ignored, so the whole file is sent.
+     *
+     * @param rangeHeader
+     *            - the header value, or null if there is none.
+     * @param size
+     *            - the size of the file in bytes.
+     * @return the positions of the first and last bytes asked for (where the first is after the last if no bytes of
+     *         the file were asked for), or null if the whole file should be sent.
+     */
+    private static long[] parseByteRange(final String rangeHeader, final long size) {
+        if (null == rangeHeader || !rangeHeader.startsWith("bytes=") || rangeHeader.contains(",")) {
+            return null;
+        }
+        String[] positions = rangeHeader.substring("bytes=".length()).trim().split("-", -1);
+        if (positions.length != 2) {
+            return null;
+        }
+        try {
+            if (positions[0].isEmpty()) {
+                // a suffix range, asking for the last n bytes:
+                long suffixLength = Long.parseLong(positions[1]);
+                return new long[] {Math.max(0, size - suffixLength), suffixLength > 0 ? size - 1 : -1};
+            }
+            long first = Long.parseLong(positions[0]);
+            if (positions[1].isEmpty()) {
+                return new long[] {first, size - 1};
+            }
+            long last = Long.parseLong(positions[1]);
+            if (last < first) {
+                return null;
+            }
+            return new long[] {first, Math.min(last, size - 1)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 
     /**
@@ -37,6 +37,7 @@ import uk.ac.cam.cl.dtg.segue.api.services.ContentService;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentOverlay;
 import uk.ac.cam.cl.dtg.segue.dao.content.IContentManager;
 import uk.ac.cam.cl.dtg.segue.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.segue.dos.content.Content;
@@ -409,16 +410,10 @@ public class PagesFacade extends AbstractIsaacFacade {
     public final Response getQuestion(@Context final Request request,
             @Context final HttpServletRequest httpServletRequest, 
             @PathParam("question_page_id") final String questionId) {
-        Map<String, List<String>> fieldsToMatch = Maps.newHashMap();
-        fieldsToMatch.put("type", Arrays.asList(QUESTION_TYPE, FAST_TRACK_QUESTION_TYPE));
-
         if (null == questionId || questionId.isEmpty()) {
             return new SegueErrorResponse(Status.BAD_REQUEST, "You must provide a valid question id.").toResponse();
         }
 
-        // options
-        fieldsToMatch.put(ID_FIELDNAME + "." + UNPROCESSED_SEARCH_FIELD_SUFFIX, Arrays.asList(questionId));
-
         try {
             AbstractSegueUserDTO user = userManager.getCurrentUser(httpServletRequest);
             Map<String, Map<String, List<QuestionValidationResponse>>> userQuestionAttempts;
@@ -432,13 +427,18 @@ public class PagesFacade extends AbstractIsaacFacade {
                 return cachedResponse;
             }
 
-            Response response = this.findSingleResult(fieldsToMatch, userQuestionAttempts);
+            // Augment a copy of the cached question page, rather than searching for and mapping it afresh:
+            // Snapshots are cached per version, so look this up by SHA rather than by the moving "latest" alias:
+            String contentSHA = this.contentManager.getCurrentContentSHA();
+            ContentDTO snapshot = this.contentManager.getContentSnapshotById(contentSHA, questionId);
 
-            if (response.getEntity() != null && response.getEntity() instanceof IsaacQuestionPageDTO) {
-                SeguePageDTO content = (SeguePageDTO) response.getEntity();
+            if (snapshot instanceof IsaacQuestionPageDTO && (QUESTION_TYPE.equals(snapshot.getType())
+                    || FAST_TRACK_QUESTION_TYPE.equals(snapshot.getType()))) {
+                SeguePageDTO content = ContentOverlay.copyForAugmentation((SeguePageDTO) snapshot);
+                this.augmentRelatedQuestionsWithAttemptInformation(content, userQuestionAttempts);
 
                 Map<String, String> logEntry = ImmutableMap.of(QUESTION_ID_LOG_FIELDNAME, content.getId(),
-                        CONTENT_VERSION_FIELDNAME, this.contentManager.getCurrentContentSHA());
+                        CONTENT_VERSION_FIELDNAME, contentSHA);
 
                 String userIdForRandomisation;
                 if (user instanceof AnonymousUserDTO) {
@@ -467,6 +467,11 @@ public class PagesFacade extends AbstractIsaacFacade {
             String message = "SegueDatabaseException whilst trying to retrieve user data";
             log.error(message, e);
             return new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR, message).toResponse();
+        } catch (ContentManagerException e) {
+            SegueErrorResponse error = new SegueErrorResponse(Status.INTERNAL_SERVER_ERROR,
+                    "Error locating the content requested", e);
+            log.error(error.getErrorMessage(), e);
+            return error.toResponse();
         }
     }
 
@@ -896,14 +901,12 @@ public class PagesFacade extends AbstractIsaacFacade {
      */
     private Response.ResponseBuilder listContentObjects(final Map<String, List<String>> fieldsToMatch,
             final Integer startIndex, final Integer limit) throws ContentManagerException{
-        ResultsWrapper<ContentDTO> c;
-
-        c = api.findMatchingContent(this.contentIndex,
+        ResultsWrapper<ContentSummaryDTO> summarizedContent = api.findMatchingContentSummaries(this.contentIndex,
                 ContentService.generateDefaultFieldToMatch(fieldsToMatch), startIndex, limit);
 
-        ResultsWrapper<ContentSummaryDTO> summarizedContent = new ResultsWrapper<ContentSummaryDTO>(
-                this.extractContentSummaryFromList(c.getResults()),
-                c.getTotalResults());
+        for (ContentSummaryDTO summary : summarizedContent.getResults()) {
+            summary.setUrl(uriManager.generateApiUrl(summary));
+        }
 
         return Response.ok(summarizedContent);
     }
@@ -11,7 +11,7 @@ import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.api.services.ContentService;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.content.IContentManager;
-import uk.ac.cam.cl.dtg.segue.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionAttemptSummary;
 import uk.ac.cam.cl.dtg.segue.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
 import uk.ac.cam.cl.dtg.util.PropertiesLoader;
@@ -106,7 +106,7 @@ public class FastTrackManger {
      */
     public final List<GameboardItem> getConceptProgress(
             final String gameboardId, final List<FASTTRACK_LEVEL> levelFilters, final String conceptTitle,
-            final Map<String, Map<String, List<QuestionValidationResponse>>> userQuestionAttempts
+            final Map<String, Map<String, QuestionAttemptSummary>> userQuestionAttempts
     ) throws ContentManagerException {
         List<ContentDTO> fastTrackAssociatedQuestions =
                 this.getFastTrackConceptQuestions(gameboardId, levelFilters, conceptTitle);
@@ -43,7 +43,7 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.content.IContentManager;
 import uk.ac.cam.cl.dtg.segue.dos.LightweightQuestionValidationResponse;
-import uk.ac.cam.cl.dtg.segue.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionAttemptSummary;
 import uk.ac.cam.cl.dtg.segue.dos.content.Content;
 import uk.ac.cam.cl.dtg.segue.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.segue.dto.content.ContentBaseDTO;
@@ -152,8 +152,8 @@ public class GameManager {
             boardOwnerId = null;
         }
 
-        Map<String, Map<String, List<QuestionValidationResponse>>> usersQuestionAttempts = questionManager
-                .getQuestionAttemptsByUser(boardOwner);
+        Map<String, Map<String, QuestionAttemptSummary>> usersQuestionAttempts = questionManager
+                .getQuestionAttemptSummariesByUser(boardOwner);
 
         GameFilter gameFilter = new GameFilter(
                 subjects, fields, topics, levels, concepts, questionCategories, stages, difficulties, examBoards);
@@ -280,7 +280,7 @@ public class GameManager {
      */
     public final List<GameboardDTO> getGameboards(final List<String> gameboardIds,
                                                   final AbstractSegueUserDTO user,
-                                                  final Map<String, Map<String, List<QuestionValidationResponse>>> userQuestionAttempts)
+                                                  final Map<String, Map<String, QuestionAttemptSummary>> userQuestionAttempts)
             throws SegueDatabaseException, ContentManagerException {
         if (null == gameboardIds || gameboardIds.isEmpty()) {
             return new ArrayList<>();
@@ -324,7 +324,7 @@ public class GameManager {
      *             - if there is an error retrieving the content requested.
      */
     public final GameboardDTO getGameboard(final String gameboardId, final AbstractSegueUserDTO user,
-            final Map<String, Map<String, List<QuestionValidationResponse>>> userQuestionAttempts)
+            final Map<String, Map<String, QuestionAttemptSummary>> userQuestionAttempts)
             throws SegueDatabaseException, ContentManagerException {
 
 
@@ -359,8 +359,8 @@ public class GameManager {
         Validate.notNull(user);
 
         List<GameboardDTO> usersGameboards = this.gameboardPersistenceManager.getGameboardsByUserId(user);
-        Map<String, Map<String, List<QuestionValidationResponse>>> questionAttemptsFromUser = questionManager
-                .getQuestionAttemptsByUser(user);
+        Map<String, Map<String, QuestionAttemptSummary>> questionAttemptsFromUser = questionManager
+                .getQuestionAttemptSummariesByUser(user);
 
         if (null == usersGameboards || usersGameboards.isEmpty()) {
             return new GameboardListDTO();
@@ -591,29 +591,94 @@ public class GameManager {
         Validate.notNull(gameboard);
 
         List<ImmutablePair<RegisteredUserDTO, List<GameboardItem>>> result = Lists.newArrayList();
+        GameProgressMatrix progressMatrix = this.buildGameProgressMatrix(users, Collections.singletonList(gameboard));
+        for (RegisteredUserDTO user : users) {
+            result.add(new ImmutablePair<>(user, progressMatrix.getGameboardItemProgress(user, gameboard)));
+        }
 
-        List<String> questionPageIds =
-                gameboard.getQuestions().stream().map(GameboardItem::getId).collect(Collectors.toList());
+        return result;
+    }
 
-        Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>>
-                questionAttemptsForAllUsersOfInterest =
-                questionManager.getMatchingQuestionAttempts(users, questionPageIds);
+    /**
+     * Returns the progress of a number of users on a number of gameboards.
+     *
+     * The gameboards are loaded together, and the users' attempts at every question part on them are read in a
+     * single pass, so this should be preferred over calling gatherGameProgressData once per gameboard.
+     *
+     * @param users
+     *            - of interest
+     * @param gameboardIds
+     *            - the ids of the gameboards of interest.
+     * @return the progress of the users on those of the gameboards which could be found.
+     * @throws SegueDatabaseException
+     *             - if there is a problem with the database
+     * @throws ContentManagerException
+     *             - if we can't look up the question page details.
+     */
+    public GameProgressMatrix gatherGameProgressMatrix(final List<RegisteredUserDTO> users,
+                                                       final Collection<String> gameboardIds)
+            throws SegueDatabaseException, ContentManagerException {
+        Validate.notNull(users);
+        Validate.notNull(gameboardIds);
 
-        for (RegisteredUserDTO user : users) {
-            List<GameboardItem> userGameItems = Lists.newArrayList();
+        List<GameboardDTO> gameboards = null;
+        if (!gameboardIds.isEmpty()) {
+            gameboards = this.gameboardPersistenceManager.getGameboardsByIds(Lists.newArrayList(
+                    Sets.newLinkedHashSet(gameboardIds)));
+        }
+        if (null == gameboards) {
+            gameboards = Collections.emptyList();
+        }
+
+        return this.buildGameProgressMatrix(users, gameboards);
+    }
 
-            for (GameboardItem observerGameItem : gameboard.getQuestions()) {
-                GameboardItem userGameItem = new GameboardItem(observerGameItem);
-                this.augmentGameItemWithAttemptInformation(userGameItem,
-                        questionAttemptsForAllUsersOfInterest.get(user.getId()));
-                userGameItems.add(userGameItem);
+    /**
+     * Build the progress matrix for a number of users on some gameboards which have already been loaded.
+     *
+     * @param users
+     *            - of interest
+     * @param gameboards
+     *            - the gameboards of interest.
+     * @return the progress matrix.
+     * @throws SegueDatabaseException
+     *             - if there is a problem with the database
+     * @throws ContentManagerException
+     *             - if we can't look up the question page details.
+     */
+    private GameProgressMatrix buildGameProgressMatrix(final List<RegisteredUserDTO> users,
+                                                       final List<GameboardDTO> gameboards)
+            throws SegueDatabaseException, ContentManagerException {
+        // Look up each question page once, however many boards it appears on:
+        Map<String, List<QuestionDTO>> questionPartsByPage = Maps.newHashMap();
+        Map<String, Float> passMarksByPage = Maps.newHashMap();
+        List<String> questionPartIds = Lists.newArrayList();
+        for (GameboardDTO gameboard : gameboards) {
+            for (GameboardItem gameItem : gameboard.getQuestions()) {
+                String questionPageId = gameItem.getId();
+                if (questionPartsByPage.containsKey(questionPageId)) {
+                    continue;
+                }
+                List<QuestionDTO> questionParts =
+                        Lists.newArrayList(this.getAllMarkableQuestionPartsDFSOrder(questionPageId));
+                questionPartsByPage.put(questionPageId, questionParts);
+                for (QuestionDTO questionPart : questionParts) {
+                    questionPartIds.add(questionPart.getId());
+                }
+                try {
+                    passMarksByPage.put(questionPageId, this.getQuestionPagePassMark(questionPageId));
+                } catch (ResourceNotFoundException e) {
+                    // Only an error if progress on this page is asked for, as it cannot then be marked.
+                    log.debug(String.format("Unable to find question page (%s) for progress.", questionPageId));
+                }
             }
-            result.add(new ImmutablePair<>(user, userGameItems));
         }
 
-        return result;
-    }
+        Map<Long, Map<String, QuestionAttemptSummary>> attemptSummaries =
+                questionManager.getMatchingQuestionAttemptSummaries(users, questionPartIds);
 
+        return new GameProgressMatrix(users, gameboards, questionPartsByPage, passMarksByPage, attemptSummaries);
+    }
     
     /**
      * Find all wildcards.
@@ -700,7 +765,7 @@ public class GameManager {
      *             - if there is an error retrieving the content requested.
      */
     private GameboardDTO augmentGameboardWithQuestionAttemptInformationAndUserInformation(final GameboardDTO gameboardDTO,
-                                                                                          final Map<String, Map<String, List<QuestionValidationResponse>>> questionAttemptsFromUser,
+                                                                                          final Map<String, Map<String, QuestionAttemptSummary>> questionAttemptsFromUser,
                                                                                           final AbstractSegueUserDTO user)
             throws SegueDatabaseException, ContentManagerException {
         if (user instanceof RegisteredUserDTO) {
@@ -726,7 +791,7 @@ public class GameManager {
      *             - if there is an error retrieving the content requested.
      */
     private GameboardDTO augmentGameboardWithQuestionAttemptInformation(final GameboardDTO gameboardDTO,
-                                                                        final Map<String, Map<String, List<QuestionValidationResponse>>> questionAttemptsFromUser)
+                                                                        final Map<String, Map<String, QuestionAttemptSummary>> questionAttemptsFromUser)
             throws ContentManagerException {
         if (null == gameboardDTO) {
             return null;
@@ -768,11 +833,11 @@ public class GameManager {
      * Convert a list of questions to gameboard items and augment with user question attempt information.
      *
      * @param questions list of questions.
-     * @param userQuestionAttempts the user's question attempt history.
+     * @param userQuestionAttempts summaries of the user's question attempts.
      * @return list of augmented gameboard items.
      */
     public List<GameboardItem> getGameboardItemProgress(List<ContentDTO> questions,
-                                                         final Map<String, Map<String, List<QuestionValidationResponse>>> userQuestionAttempts) {
+                                                         final Map<String, Map<String, QuestionAttemptSummary>> userQuestionAttempts) {
 
         return questions.stream()
                 .map(this.gameboardPersistenceManager::convertToGameboardItem)
@@ -870,7 +935,7 @@ public class GameManager {
      *             - if there is an error retrieving the content requested.
      */
     private List<GameboardItem> getSelectedGameboardQuestions(final GameFilter gameFilter,
-            final Map<String, Map<String, List<QuestionValidationResponse>>> usersQuestionAttempts)
+            final Map<String, Map<String, QuestionAttemptSummary>> usersQuestionAttempts)
             throws ContentManagerException {
 
         Long seed = new Random().nextLong();
@@ -995,8 +1060,8 @@ public class GameManager {
      * 
      * @param gameItem
      *             - the gameboard item.
-     * @param questionAttemptsFromUser
-     *             - the user that may or may not have attempted questions in the gameboard.
+     * @param questionAttemptSummariesFromUser
+     *             - summaries of the attempts the user has made at questions, by page and question part.
      * @return gameItem
      *             - the gameItem passed in having been modified (augmented)), returned for possiblity of chaining.
      * @throws ContentManagerException
@@ -1006,11 +1071,11 @@ public class GameManager {
      */
     private GameboardItem augmentGameItemWithAttemptInformation(
             final GameboardItem gameItem,
-            final Map<String, ? extends Map<String, ? extends List<? extends LightweightQuestionValidationResponse>>>
-                    questionAttemptsFromUser)
+            final Map<String, ? extends Map<String, ? extends LightweightQuestionValidationResponse>>
+                    questionAttemptSummariesFromUser)
             throws ContentManagerException, ResourceNotFoundException {
         Validate.notNull(gameItem, "gameItem cannot be null");
-        Validate.notNull(questionAttemptsFromUser, "questionAttemptsFromUser cannot be null");
+        Validate.notNull(questionAttemptSummariesFromUser, "questionAttemptSummariesFromUser cannot be null");
 
         List<QuestionPartState> questionPartStates = Lists.newArrayList();
         int questionPartsCorrect = 0;
@@ -1021,24 +1086,15 @@ public class GameManager {
         // get all question parts in the question page: depends on each question
         // having an id that starts with the question page id.
         Collection<QuestionDTO> listOfQuestionParts = getAllMarkableQuestionPartsDFSOrder(questionPageId);
-        Map<String, ? extends List<? extends LightweightQuestionValidationResponse>> questionAttempts =
-                questionAttemptsFromUser.get(questionPageId);
-        if (questionAttempts != null) {
+        Map<String, ? extends LightweightQuestionValidationResponse> questionAttemptSummaries =
+                questionAttemptSummariesFromUser.get(questionPageId);
+        if (questionAttemptSummaries != null) {
             for (ContentDTO questionPart : listOfQuestionParts) {
-                List<? extends LightweightQuestionValidationResponse> questionPartAttempts =
-                        questionAttempts.get(questionPart.getId());
-                if (questionPartAttempts != null) {
-                    // Go through the attempts in reverse chronological order for this question part to determine if
-                    // there is a correct answer somewhere.
-                    boolean foundCorrectForThisQuestion = false;
-                    for (int i = questionPartAttempts.size() - 1; i >= 0; i--) {
-                        if (questionPartAttempts.get(i).isCorrect() != null
-                                && questionPartAttempts.get(i).isCorrect()) {
-                            foundCorrectForThisQuestion = true;
-                            break;
-                        }
-                    }
-                    if (foundCorrectForThisQuestion) {
+                LightweightQuestionValidationResponse questionPartSummary =
+                        questionAttemptSummaries.get(questionPart.getId());
+                if (questionPartSummary != null) {
+                    // The summary is correct if there is a correct answer somewhere in the attempts at this part.
+                    if (Boolean.TRUE.equals(questionPartSummary.isCorrect())) {
                         questionPartStates.add(QuestionPartState.CORRECT);
                         questionPartsCorrect++;
                     } else {
@@ -1056,14 +1112,53 @@ public class GameManager {
                     .map(_q -> QuestionPartState.NOT_ATTEMPTED).collect(Collectors.toList());
         }
 
-        // Get the pass mark for the question page
+        setGameItemProgress(gameItem, questionPartStates, questionPartsCorrect, questionPartsIncorrect,
+                questionPartsNotAttempted, this.getQuestionPagePassMark(questionPageId));
+
+        return gameItem;
+    }
+
+    /**
+     * Look up the pass mark of a question page.
+     *
+     * @param questionPageId
+     *             - the id of the question page.
+     * @return the pass mark of the page, or the default pass mark if it does not set one.
+     * @throws ContentManagerException
+     *             - if there is an error retrieving the content requested.
+     * @throws ResourceNotFoundException
+     *             - if we cannot find the question specified.
+     */
+    private float getQuestionPagePassMark(final String questionPageId)
+            throws ContentManagerException, ResourceNotFoundException {
         IsaacQuestionPage questionPage = (IsaacQuestionPage) this.contentManager.getContentDOById(
                 this.contentManager.getCurrentContentSHA(), questionPageId);
         if (questionPage == null) {
             throw new ResourceNotFoundException(String.format("Unable to locate the question: %s for augmenting",
                     questionPageId));
         }
-        float passMark = questionPage.getPassMark() != null ? questionPage.getPassMark() : DEFAULT_QUESTION_PASS_MARK;
+        return questionPage.getPassMark() != null ? questionPage.getPassMark() : DEFAULT_QUESTION_PASS_MARK;
+    }
+
+    /**
+     * Record the progress made on a gameboard item and calculate its state from it.
+     *
+     * @param gameItem
+     *             - the gameboard item to update.
+     * @param questionPartStates
+     *             - the state of each question part, in DFS order.
+     * @param questionPartsCorrect
+     *             - the number of question parts answered correctly.
+     * @param questionPartsIncorrect
+     *             - the number of question parts attempted but not answered correctly.
+     * @param questionPartsNotAttempted
+     *             - the number of question parts not attempted.
+     * @param passMark
+     *             - the pass mark of the question page.
+     */
+    static void setGameItemProgress(final GameboardItem gameItem, final List<QuestionPartState> questionPartStates,
+                                    final int questionPartsCorrect, final int questionPartsIncorrect,
+                                    final int questionPartsNotAttempted, final float passMark) {
         gameItem.setPassMark(passMark);
         gameItem.setQuestionPartsCorrect(questionPartsCorrect);
         gameItem.setQuestionPartsIncorrect(questionPartsIncorrect);
@@ -1087,8 +1182,6 @@ public class GameManager {
             state = GameboardItemState.IN_PROGRESS;
         }
         gameItem.setState(state);
-
-        return gameItem;
     }
     
     /**
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.api.managers;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import uk.ac.cam.cl.dtg.isaac.dto.GameboardDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.GameboardItem;
+import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionAttemptSummary;
+import uk.ac.cam.cl.dtg.segue.dto.content.QuestionDTO;
+import uk.ac.cam.cl.dtg.segue.dto.users.RegisteredUserDTO;
+
+import javax.annotation.Nullable;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static uk.ac.cam.cl.dtg.isaac.api.Constants.QuestionPartState;
+
+/**
+ * The progress of a set of users on a set of gameboards, held as a user by question part matrix.
+ *
+ * Each question part on any of the boards has a column, and each user a row holding which parts they have attempted
+ * and which they have answered correctly. The question parts and pass mark of each question page are looked up once,
+ * however many users and boards it is shared between. Instances are built by the GameManager.
+ */
+public class GameProgressMatrix {
+    private final List<RegisteredUserDTO> users;
+    private final Map<Long, Integer> userRows;
+    private final Map<String, GameboardDTO> gameboards;
+    private final Map<String, QuestionPageColumns> questionPages;
+    private final BitSet[] attempted;
+    private final BitSet[] correct;
+
+    /**
+     * Build the matrix from summaries of the users' attempts.
+     *
+     * @param users
+     *            - the users of interest, one row each.
+     * @param gameboards
+     *            - the gameboards of interest.
+     * @param questionPartsByPage
+     *            - the markable question parts, in DFS order, of every question page on the gameboards.
+     * @param passMarksByPage
+     *            - the pass mark of every question page on the gameboards which could be found.
+     * @param attemptSummaries
+     *            - map of user id to question part id to summary, for the parts each user has attempted.
+     */
+    GameProgressMatrix(final List<RegisteredUserDTO> users, final List<GameboardDTO> gameboards,
+                       final Map<String, List<QuestionDTO>> questionPartsByPage,
+                       final Map<String, Float> passMarksByPage,
+                       final Map<Long, Map<String, QuestionAttemptSummary>> attemptSummaries) {
+        this.users = Collections.unmodifiableList(Lists.newArrayList(users));
+
+        this.gameboards = Maps.newHashMap();
+        for (GameboardDTO gameboard : gameboards) {
+            this.gameboards.put(gameboard.getId(), gameboard);
+        }
+
+        Map<String, Integer> questionPartColumns = Maps.newHashMap();
+        this.questionPages = Maps.newHashMap();
+        for (Map.Entry<String, List<QuestionDTO>> questionPage : questionPartsByPage.entrySet()) {
+            List<QuestionDTO> questionParts = questionPage.getValue();
+            int[] columns = new int[questionParts.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = questionPartColumns.computeIfAbsent(questionParts.get(i).getId(),
+                        k -> questionPartColumns.size());
+            }
+            this.questionPages.put(questionPage.getKey(), new QuestionPageColumns(questionParts, columns,
+                    passMarksByPage.get(questionPage.getKey())));
+        }
+
+        this.userRows = Maps.newHashMap();
+        this.attempted = new BitSet[users.size()];
+        this.correct = new BitSet[users.size()];
+        for (int row = 0; row < users.size(); row++) {
+            Long userId = users.get(row).getId();
+            this.userRows.put(userId, row);
+            this.attempted[row] = new BitSet(questionPartColumns.size());
+            this.correct[row] = new BitSet(questionPartColumns.size());
+
+            Map<String, QuestionAttemptSummary> summariesForUser = attemptSummaries.get(userId);
+            if (null == summariesForUser) {
+                continue;
+            }
+            for (QuestionAttemptSummary summary : summariesForUser.values()) {
+                Integer column = questionPartColumns.get(summary.getQuestionId());
+                if (null == column) {
+                    continue;
+                }
+                this.attempted[row].set(column);
+                if (Boolean.TRUE.equals(summary.isCorrect())) {
+                    this.correct[row].set(column);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the users in the matrix, in the order they were provided.
+     */
+    public List<RegisteredUserDTO> getUsers() {
+        return users;
+    }
+
+    /**
+     * @param gameboardId
+     *            - the id of the gameboard.
+     * @return the gameboard, or null if it was not found.
+     */
+    @Nullable
+    public GameboardDTO getGameboard(final String gameboardId) {
+        return gameboards.get(gameboardId);
+    }
+
+    /**
+     * @param questionPageId
+     *            - the id of a question page on one of the gameboards.
+     * @return the markable question parts of the page in DFS order, or an empty list if the page is not known.
+     */
+    public List<QuestionDTO> getQuestionParts(final String questionPageId) {
+        QuestionPageColumns questionPage = questionPages.get(questionPageId);
+        if (null == questionPage) {
+            return Collections.emptyList();
+        }
+        return questionPage.questionParts;
+    }
+
+    /**
+     * Get a user's result for every question part of a question page, in the style of the CSV downloads.
+     *
+     * @param user
+     *            - a user in the matrix.
+     * @param questionPageId
+     *            - the id of a question page on one of the gameboards.
+     * @return for each question part in DFS order, 1 if answered correctly, 0 if attempted but not answered correctly
+     *          and null if not attempted.
+     */
+    public List<Integer> getQuestionPartResults(final RegisteredUserDTO user, final String questionPageId) {
+        QuestionPageColumns questionPage = questionPages.get(questionPageId);
+        if (null == questionPage) {
+            return Collections.emptyList();
+        }
+        int row = this.getRow(user);
+
+        List<Integer> results = Lists.newArrayListWithCapacity(questionPage.columns.length);
+        for (int column : questionPage.columns) {
+            if (correct[row].get(column)) {
+                results.add(1);
+            } else if (attempted[row].get(column)) {
+                results.add(0);
+            } else {
+                results.add(null);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get a user's progress on each question page of a gameboard.
+     *
+     * @param user
+     *            - a user in the matrix.
+     * @param gameboard
+     *            - one of the gameboards in the matrix.
+     * @return copies of the items on the gameboard, augmented with the user's progress.
+     * @throws ResourceNotFoundException
+     *             - if a question page on the gameboard cannot be found.
+     */
+    public List<GameboardItem> getGameboardItemProgress(final RegisteredUserDTO user, final GameboardDTO gameboard)
+            throws ResourceNotFoundException {
+        int row = this.getRow(user);
+
+        List<GameboardItem> userGameItems = Lists.newArrayListWithCapacity(gameboard.getQuestions().size());
+        for (GameboardItem observerGameItem : gameboard.getQuestions()) {
+            QuestionPageColumns questionPage = questionPages.get(observerGameItem.getId());
+            if (null == questionPage || null == questionPage.passMark) {
+                throw new ResourceNotFoundException(String.format("Unable to locate the question: %s for augmenting",
+                        observerGameItem.getId()));
+            }
+
+            List<QuestionPartState> questionPartStates = Lists.newArrayListWithCapacity(questionPage.columns.length);
+            int questionPartsCorrect = 0;
+            int questionPartsIncorrect = 0;
+            int questionPartsNotAttempted = 0;
+            for (int column : questionPage.columns) {
+                if (correct[row].get(column)) {
+                    questionPartStates.add(QuestionPartState.CORRECT);
+                    questionPartsCorrect++;
+                } else if (attempted[row].get(column)) {
+                    questionPartStates.add(QuestionPartState.INCORRECT);
+                    questionPartsIncorrect++;
+                } else {
+                    questionPartStates.add(QuestionPartState.NOT_ATTEMPTED);
+                    questionPartsNotAttempted++;
+                }
+            }
+
+            GameboardItem userGameItem = new GameboardItem(observerGameItem);
+            GameManager.setGameItemProgress(userGameItem, questionPartStates, questionPartsCorrect,
+                    questionPartsIncorrect, questionPartsNotAttempted, questionPage.passMark);
+            userGameItems.add(userGameItem);
+        }
+        return userGameItems;
+    }
+
+    /**
+     * @param user
+     *            - a user in the matrix.
+     * @return the row holding the user's progress.
+     */
+    private int getRow(final RegisteredUserDTO user) {
+        Integer row = userRows.get(user.getId());
+        if (null == row) {
+            throw new IllegalArgumentException(String.format("User (%s) is not in this progress matrix.",
+                    user.getId()));
+        }
+        return row;
+    }
+
+    /**
+     * The question parts of a question page and the matrix columns holding their results.
+     */
+    private static final class QuestionPageColumns {
+        private final List<QuestionDTO> questionParts;
+        private final int[] columns;
+        private final Float passMark;
+
+        private QuestionPageColumns(final List<QuestionDTO> questionParts, final int[] columns,
+                                    @Nullable final Float passMark) {
+            this.questionParts = Collections.unmodifiableList(questionParts);
+            this.columns = columns;
+            this.passMark = passMark;
+        }
+    }
+}
@@ -21,7 +21,6 @@ import com.google.inject.name.Named;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.api.services.ContentSummarizerService;
-import uk.ac.cam.cl.dtg.isaac.dos.IsaacQuiz;
 import uk.ac.cam.cl.dtg.isaac.dto.IHasQuizSummary;
 import uk.ac.cam.cl.dtg.isaac.dto.IsaacQuizDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.IsaacQuizSectionDTO;
@@ -29,10 +28,10 @@ import uk.ac.cam.cl.dtg.isaac.dto.QuizAssignmentDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.QuizAttemptDTO;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.api.services.ContentService;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentBatchLoader;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
-import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentOverlay;
 import uk.ac.cam.cl.dtg.segue.dao.content.IContentManager;
-import uk.ac.cam.cl.dtg.segue.dos.content.Content;
 import uk.ac.cam.cl.dtg.segue.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.segue.dto.content.ContentBaseDTO;
 import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
@@ -63,7 +62,6 @@ public class QuizManager {
     private final ContentService contentService;
     private final IContentManager contentManager;
     private final ContentSummarizerService contentSummarizerService;
-    private final ContentMapper mapper;
 
     /**
      * Creates a quiz manager.
@@ -76,8 +74,6 @@ public class QuizManager {
      *            - so we can fetch specific content.
      * @param contentSummarizerService
      *            - so we can summarize content with links
-     * @param mapper
-     *            - so we can convert cached content DOs to DTOs.
      * @param contentIndex
      *            - the current version of content to use.
      */
@@ -85,13 +81,11 @@ public class QuizManager {
     public QuizManager(final PropertiesLoader properties, final ContentService contentService,
                        final IContentManager contentManager,
                        final ContentSummarizerService contentSummarizerService,
-                       final ContentMapper mapper,
                        @Named(CONTENT_INDEX) final String contentIndex) {
         this.properties = properties;
         this.contentService = contentService;
         this.contentManager = contentManager;
         this.contentSummarizerService = contentSummarizerService;
-        this.mapper = mapper;
     }
 
     public ResultsWrapper<ContentSummaryDTO> getAvailableQuizzes(boolean onlyVisibleToStudents, @Nullable Integer startIndex, @Nullable Integer limit) throws ContentManagerException {
@@ -105,33 +99,30 @@ public class QuizManager {
                     VISIBLE_TO_STUDENTS_FIELDNAME, Constants.BooleanOperator.AND, Collections.singletonList(Boolean.toString(true))));
         }
 
-        ResultsWrapper<ContentDTO> content = this.contentService.findMatchingContent(null, fieldsToMatch, startIndex, limit);
+        ResultsWrapper<ContentSummaryDTO> summaries =
+                this.contentService.findMatchingContentSummaries(null, fieldsToMatch, startIndex, limit);
 
-        return this.contentSummarizerService.extractContentSummaryFromResultsWrapper(content);
+        return this.contentSummarizerService.addUrlsToSummaries(summaries);
     }
 
     /**
-     * For use when we expect to only find a single result. Returns a fresh DTO (suitable for mutation) every time.
+     * For use when we expect to only find a single result. Returns a fresh copy of the cached quiz (suitable for
+     * augmenting, see {@link ContentOverlay}) every time.
      *
      * @param quizId the id of the quiz.
      *
      * @return The quiz.
      */
     public IsaacQuizDTO findQuiz(final String quizId) throws ContentManagerException {
-        Content cachedContent = contentManager.getContentDOById(this.contentManager.getCurrentContentSHA(), quizId);
+        ContentDTO cachedContent = contentManager.getContentSnapshotById(this.contentManager.getCurrentContentSHA(),
+                quizId);
 
         if (cachedContent == null) {
             throw new ContentManagerException("Couldn't find quiz with id " + quizId);
         }
 
-        if (cachedContent instanceof IsaacQuiz) {
-            ContentDTO contentDTO = this.mapper.getDTOByDO(cachedContent);
-
-            if (contentDTO instanceof IsaacQuizDTO) {
-                return (IsaacQuizDTO) contentDTO;
-            } else {
-                throw new ContentManagerException("Expected an IsaacQuizDTO, got a " + contentDTO.getType());
-            }
+        if (cachedContent instanceof IsaacQuizDTO) {
+            return ContentOverlay.copyForAugmentation((IsaacQuizDTO) cachedContent);
         } else {
             throw new ContentManagerException("Expected an IsaacQuiz (id=" + quizId + "), got a " + cachedContent.getType());
         }
@@ -143,13 +134,27 @@ public class QuizManager {
      * @param items The items to augment.
      */
     public <T extends IHasQuizSummary> void augmentWithQuizSummary(List<T> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        // Look up every quiz together rather than one at a time:
+        ContentBatchLoader quizLoader = new ContentBatchLoader(this.contentManager,
+                this.contentManager.getCurrentContentSHA());
+        for (IHasQuizSummary item: items) {
+            quizLoader.want(item.getQuizId());
+        }
+
         Map<String, ContentSummaryDTO> quizCache = new HashMap<>();
         for (IHasQuizSummary item: items) {
             String quizId = item.getQuizId();
             ContentSummaryDTO quiz = quizCache.get(quizId);
             if (quiz == null) {
                 try {
-                    quiz = this.contentManager.extractContentSummary(this.findQuiz(quizId));
+                    ContentDTO content = quizLoader.load(quizId);
+                    if (!(content instanceof IsaacQuizDTO)) {
+                        throw new ContentManagerException("Couldn't find quiz with id " + quizId);
+                    }
+                    quiz = this.contentManager.extractContentSummary(content);
                 } catch (ContentManagerException e) {
                     if (item instanceof QuizAttemptDTO) {
                         log.warn("Attempt (" + ((QuizAttemptDTO) item).getId() +  ") exists with quiz ID ("
@@ -16,6 +16,7 @@
 package uk.ac.cam.cl.dtg.isaac.api.managers;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.PROXY_PATH;
+import static uk.ac.cam.cl.dtg.isaac.api.Constants.QUIZ_TYPE;
 
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
@@ -24,6 +25,7 @@ import org.slf4j.LoggerFactory;
 
 import uk.ac.cam.cl.dtg.isaac.dto.IsaacQuizDTO;
 import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentSummaryDTO;
 import uk.ac.cam.cl.dtg.segue.dto.content.ImageDTO;
 import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
@@ -58,25 +60,65 @@ public class URIManager {
      *         information required.
      */
     public String generateApiUrl(final ContentDTO content) {
+        String base;
+        if (content instanceof IsaacQuizDTO) {
+            base = "quiz";
+        } else if (content instanceof ImageDTO) {
+            base = "images";
+        } else {
+            base = getPageBase(content.getType());
+        }
+        return generateApiUrl(base, content.getId());
+    }
+
+    /**
+     * Generate a URI that will enable us to find an object again, from a summary of it.
+     *
+     * @param summary
+     *            a summary of the content object of interest
+     * @return null if we are unable to generate the URL or a string that represents the url combined with any proxypath
+     *         information required.
+     */
+    public String generateApiUrl(final ContentSummaryDTO summary) {
+        String base;
+        if (QUIZ_TYPE.equals(summary.getType())) {
+            base = "quiz";
+        } else {
+            base = getPageBase(summary.getType());
+        }
+        return generateApiUrl(base, summary.getId());
+    }
+
+    /**
+     * @param type
+     *            the type of a page.
+     * @return the part of the API path used to get pages of that type.
+     */
+    private static String getPageBase(final String type) {
+        if (type.toLowerCase().contains("question")) {
+            return "pages/questions";
+        } else if (type.toLowerCase().contains("concept")) {
+            return "pages/concepts";
+        } else {
+            return "pages";
+        }
+    }
+
+    /**
+     * @param base
+     *            the part of the API path used to get objects of this type.
+     * @param id
+     *            the id of the object.
+     * @return null if we are unable to generate the URL or a string that represents the url combined with any proxypath
+     *         information required.
+     */
+    private String generateApiUrl(final String base, final String id) {
         String resourceUrl = null;
         try {
-            String base;
-            if (content instanceof IsaacQuizDTO) {
-                base = "quiz";
-            } else if (content instanceof ImageDTO) {
-                base = "images";
-            } else if (content.getType().toLowerCase().contains("question")) {
-                base = "pages/questions";
-            } else if (content.getType().toLowerCase().contains("concept")) {
-                base = "pages/concepts";
-            } else {
-                base = "pages";
-            }
-            resourceUrl = proxyPath + "/api/" + base + "/" + URLEncoder.encode(content.getId(), "UTF-8");
+            resourceUrl = proxyPath + "/api/" + base + "/" + URLEncoder.encode(id, "UTF-8");
         } catch (UnsupportedEncodingException e) {
-            log.error("Url generation for resource id " + content.getId() + " failed. ", e);
+            log.error("Url generation for resource id " + id + " failed. ", e);
         }
-
         return resourceUrl;
     }
 }
\ No newline at end of file
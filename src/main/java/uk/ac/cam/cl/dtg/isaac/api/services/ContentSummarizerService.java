@@ -78,4 +78,22 @@ public class ContentSummarizerService {
         }
         return contentSummaryResults;
     }
+
+    /**
+     * Utility method to add urls to summaries which were fetched without them.
+     *
+     * @param summaries
+     *            - the summaries to add urls to.
+     * @return the same summaries, with their urls set.
+     */
+    public ResultsWrapper<ContentSummaryDTO> addUrlsToSummaries(final ResultsWrapper<ContentSummaryDTO> summaries) {
+        if (null == summaries) {
+            return null;
+        }
+
+        for (ContentSummaryDTO summary : summaries.getResults()) {
+            summary.setUrl(uriManager.generateApiUrl(summary));
+        }
+        return summaries;
+    }
 }
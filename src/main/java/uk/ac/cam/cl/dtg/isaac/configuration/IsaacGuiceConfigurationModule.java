@@ -31,10 +31,13 @@ import uk.ac.cam.cl.dtg.isaac.dao.IAssignmentPersistenceManager;
 import uk.ac.cam.cl.dtg.isaac.dao.IQuizAssignmentPersistenceManager;
 import uk.ac.cam.cl.dtg.isaac.dao.IQuizAttemptPersistenceManager;
 import uk.ac.cam.cl.dtg.isaac.dao.IQuizQuestionAttemptPersistenceManager;
+import uk.ac.cam.cl.dtg.isaac.dao.ITemporaryGameboardStore;
+import uk.ac.cam.cl.dtg.isaac.dao.InMemoryTemporaryGameboardStore;
 import uk.ac.cam.cl.dtg.isaac.dao.PgAssignmentPersistenceManager;
 import uk.ac.cam.cl.dtg.isaac.dao.PgQuizAssignmentPersistenceManager;
 import uk.ac.cam.cl.dtg.isaac.dao.PgQuizAttemptPersistenceManager;
 import uk.ac.cam.cl.dtg.isaac.dao.PgQuizQuestionAttemptPersistenceManager;
+import uk.ac.cam.cl.dtg.isaac.dao.PgTemporaryGameboardStore;
 import uk.ac.cam.cl.dtg.isaac.quiz.IsaacSymbolicChemistryValidator;
 import uk.ac.cam.cl.dtg.isaac.quiz.IsaacSymbolicLogicValidator;
 import uk.ac.cam.cl.dtg.isaac.quiz.IsaacSymbolicValidator;
@@ -44,6 +47,7 @@ import uk.ac.cam.cl.dtg.segue.configuration.ISegueDTOConfigurationModule;
 import uk.ac.cam.cl.dtg.segue.dao.content.IContentManager;
 import uk.ac.cam.cl.dtg.segue.dao.schools.SchoolListReader;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+import uk.ac.cam.cl.dtg.segue.quiz.ExternalValidatorClient;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
@@ -54,6 +58,8 @@ import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
 import java.io.IOException;
 
+import static uk.ac.cam.cl.dtg.isaac.api.Constants.TEMPORARY_GAMEBOARD_STORE;
+import static uk.ac.cam.cl.dtg.isaac.api.Constants.TemporaryGameboardStore;
 import static uk.ac.cam.cl.dtg.segue.api.Constants.CONTENT_INDEX;
 
 
@@ -106,6 +112,10 @@ public class IsaacGuiceConfigurationModule extends AbstractModule {
      *            - a mapper to allow content to be resolved.
      * @param uriManager
      *            - so that the we can create content that is aware of its own location
+     * @param contentIndex
+     *            - the content index to look up gameboard questions in.
+     * @param properties
+     *            - to choose where temporary gameboards are kept.
      * @return Game persistence manager object.
      */
     @Inject
@@ -113,10 +123,21 @@ public class IsaacGuiceConfigurationModule extends AbstractModule {
     @Singleton
     private static GameboardPersistenceManager getGameboardPersistenceManager(final PostgresSqlDb database,
                   final IContentManager contentManager, final MapperFacade mapper, final ObjectMapper objectMapper,
-                  final URIManager uriManager, @Named(CONTENT_INDEX) final String contentIndex) {
+                  final URIManager uriManager, @Named(CONTENT_INDEX) final String contentIndex,
+                  final PropertiesLoader properties) {
         if (null == gameboardPersistenceManager) {
+            ITemporaryGameboardStore temporaryGameboardStore;
+            String temporaryGameboardStoreType = properties.getProperty(TEMPORARY_GAMEBOARD_STORE);
+            if (null != temporaryGameboardStoreType
+                    && TemporaryGameboardStore.valueOf(temporaryGameboardStoreType) == TemporaryGameboardStore.POSTGRES) {
+                temporaryGameboardStore = new PgTemporaryGameboardStore(database, objectMapper);
+            } else {
+                temporaryGameboardStore = new InMemoryTemporaryGameboardStore();
+            }
+            log.info("Using temporary gameboard store: " + temporaryGameboardStore.getClass().getSimpleName());
+
             gameboardPersistenceManager = new GameboardPersistenceManager(database, contentManager, mapper,
-                    objectMapper, uriManager, contentIndex);
+                    objectMapper, uriManager, contentIndex, temporaryGameboardStore);
             log.info("Creating Singleton of GameboardPersistenceManager");
         }
 
@@ -164,8 +185,9 @@ public class IsaacGuiceConfigurationModule extends AbstractModule {
     @Inject
     private static IsaacSymbolicValidator getSymbolicValidator(PropertiesLoader properties) {
 
-        return new IsaacSymbolicValidator(properties.getProperty(Constants.EQUALITY_CHECKER_HOST),
-                properties.getProperty(Constants.EQUALITY_CHECKER_PORT));
+        return new IsaacSymbolicValidator(getExternalValidatorClient(properties, "symbolic",
+                properties.getProperty(Constants.EQUALITY_CHECKER_HOST),
+                properties.getProperty(Constants.EQUALITY_CHECKER_PORT), "/check"));
     }
 
     /**
@@ -178,8 +200,9 @@ public class IsaacGuiceConfigurationModule extends AbstractModule {
     @Inject
     private static IsaacSymbolicChemistryValidator getSymbolicChemistryValidator(PropertiesLoader properties) {
 
-        return new IsaacSymbolicChemistryValidator(properties.getProperty(Constants.CHEMISTRY_CHECKER_HOST),
-                properties.getProperty(Constants.CHEMISTRY_CHECKER_PORT));
+        return new IsaacSymbolicChemistryValidator(getExternalValidatorClient(properties, "chemistry",
+                properties.getProperty(Constants.CHEMISTRY_CHECKER_HOST),
+                properties.getProperty(Constants.CHEMISTRY_CHECKER_PORT), "/check"));
     }
 
     /**
@@ -192,8 +215,32 @@ public class IsaacGuiceConfigurationModule extends AbstractModule {
     @Inject
     private static IsaacSymbolicLogicValidator getSymbolicLogicValidator(PropertiesLoader properties) {
 
-        return new IsaacSymbolicLogicValidator(properties.getProperty(Constants.EQUALITY_CHECKER_HOST),
-                properties.getProperty(Constants.EQUALITY_CHECKER_PORT));
+        return new IsaacSymbolicLogicValidator(getExternalValidatorClient(properties, "logic",
+                properties.getProperty(Constants.EQUALITY_CHECKER_HOST),
+                properties.getProperty(Constants.EQUALITY_CHECKER_PORT), "/check/logic"));
+    }
+
+    /**
+     * Create a client for one of the external checkers, with its concurrency limit and timeout taken from properties.
+     *
+     * @param properties - to read the optional limits from.
+     * @param checkerName - a short name for the checker, used to label metrics.
+     * @param hostname - of the checker.
+     * @param port - of the checker.
+     * @param path - of the checker endpoint to POST to.
+     * @return an ExternalValidatorClient for the checker.
+     */
+    private static ExternalValidatorClient getExternalValidatorClient(final PropertiesLoader properties,
+                                                                      final String checkerName, final String hostname,
+                                                                      final String port, final String path) {
+        String maxConcurrentRequests = properties.getProperty(Constants.EXTERNAL_VALIDATOR_MAX_CONCURRENT_REQUESTS);
+        String timeoutMilliseconds = properties.getProperty(Constants.EXTERNAL_VALIDATOR_TIMEOUT_MILLISECONDS);
+
+        return new ExternalValidatorClient(checkerName, "http://" + hostname + ":" + port + path,
+                null != maxConcurrentRequests ? Integer.parseInt(maxConcurrentRequests)
+                        : ExternalValidatorClient.DEFAULT_MAX_CONCURRENT_REQUESTS,
+                null != timeoutMilliseconds ? Integer.parseInt(timeoutMilliseconds)
+                        : ExternalValidatorClient.DEFAULT_TIMEOUT_MILLISECONDS);
     }
 
     /**
@@ -21,6 +21,7 @@ import uk.ac.cam.cl.dtg.segue.api.managers.UserAccountManager;
 import uk.ac.cam.cl.dtg.segue.auth.exceptions.NoUserException;
 import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentBatchLoader;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.content.IContentManager;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
@@ -360,9 +361,23 @@ public class EventBookingPersistenceManager {
      *             - if an error occurs.
      */
     private DetailedEventBookingDTO convertToDTO(final EventBooking eb) throws SegueDatabaseException {
+        return this.convertToDTO(eb, new ContentBatchLoader(this.contentManager,
+                this.contentManager.getCurrentContentSHA()));
+    }
+
+    /**
+     * @param eb
+     *            - raw booking do
+     * @param eventLoader
+     *            - to look up the event with, along with the events of any other bookings being converted.
+     * @return event booking or null if it no longer exists.
+     * @throws SegueDatabaseException
+     *             - if an error occurs.
+     */
+    private DetailedEventBookingDTO convertToDTO(final EventBooking eb, final ContentBatchLoader eventLoader)
+            throws SegueDatabaseException {
         try {
-            ContentDTO c = this.contentManager.getContentById(this.contentManager.getCurrentContentSHA(),
-                    eb.getEventId(), true);
+            ContentDTO c = eventLoader.load(eb.getEventId());
 
             if (null == c) {
                 // The event this booking relates to has disappeared so treat it as though it never existed.
@@ -392,8 +407,15 @@ public class EventBookingPersistenceManager {
     private List<DetailedEventBookingDTO> convertToDTO(final List<EventBooking> toConvert) throws SegueDatabaseException {
         List<DetailedEventBookingDTO> result = Lists.newArrayList();
 
+        // Look up the events of all of the bookings together:
+        ContentBatchLoader eventLoader = new ContentBatchLoader(this.contentManager,
+                this.contentManager.getCurrentContentSHA());
+        for (EventBooking e : toConvert) {
+            eventLoader.want(e.getEventId());
+        }
+
         for (EventBooking e : toConvert) {
-            DetailedEventBookingDTO augmentedBooking = convertToDTO(e);
+            DetailedEventBookingDTO augmentedBooking = convertToDTO(e, eventLoader);
 
             if (augmentedBooking != null) {
                 result.add(augmentedBooking);
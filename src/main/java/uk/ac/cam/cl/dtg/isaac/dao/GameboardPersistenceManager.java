@@ -20,8 +20,6 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.util.Sets;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -46,6 +44,7 @@ import uk.ac.cam.cl.dtg.segue.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
 import uk.ac.cam.cl.dtg.segue.dto.users.RegisteredUserDTO;
 
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.sql.Array;
 import java.sql.Connection;
@@ -57,13 +56,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.FAST_TRACK_QUESTION_TYPE;
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.QUESTION_TYPE;
@@ -76,11 +73,9 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.TYPE_FIELDNAME;
 public class GameboardPersistenceManager {
 
 	private static final Logger log = LoggerFactory.getLogger(GameboardPersistenceManager.class);
-	private static final Long GAMEBOARD_TTL_MINUTES = 30L;
-	private static final int GAMEBOARD_ITEM_MAP_BATCH_SIZE = 1000;
 
 	private final PostgresSqlDb database;
-    private final Cache<String, GameboardDO> gameboardNonPersistentStorage;
+    private final ITemporaryGameboardStore temporaryGameboardStore;
     
 	private final MapperFacade mapper; // used for content object mapping.
 	private final ObjectMapper objectMapper; // used for json serialisation
@@ -104,18 +99,23 @@ public class GameboardPersistenceManager {
      * 
      * @param uriManager
      *            - so we can generate appropriate content URIs.
+     * @param contentIndex
+     *            - the content index to look up gameboard questions in.
+     * @param temporaryGameboardStore
+     *            - where to keep gameboards which have been generated but not yet saved.
      */
 	@Inject
     public GameboardPersistenceManager(final PostgresSqlDb database, final IContentManager contentManager,
-                                       final MapperFacade mapper, final ObjectMapper objectMapper, final URIManager uriManager, @Named(CONTENT_INDEX) final String contentIndex) {
+                                       final MapperFacade mapper, final ObjectMapper objectMapper, final URIManager uriManager,
+                                       @Named(CONTENT_INDEX) final String contentIndex,
+                                       final ITemporaryGameboardStore temporaryGameboardStore) {
 		this.database = database;
 		this.mapper = mapper;
 		this.contentManager = contentManager;
         this.contentIndex = contentIndex;
         this.objectMapper = objectMapper;
         this.uriManager = uriManager;		
-        this.gameboardNonPersistentStorage = CacheBuilder.newBuilder()
-                .expireAfterAccess(GAMEBOARD_TTL_MINUTES, TimeUnit.MINUTES).<String, GameboardDO> build();
+        this.temporaryGameboardStore = temporaryGameboardStore;
 	}
 
 	/**
@@ -165,9 +165,11 @@ public class GameboardPersistenceManager {
      * @param gameboard
      *            to temporarily store.
      * @return gameboard id
+     * @throws SegueDatabaseException
+     *             - if there is a problem storing the gameboard.
      */
-    public String temporarilyStoreGameboard(final GameboardDTO gameboard) {
-        this.gameboardNonPersistentStorage.put(gameboard.getId(), this.convertToGameboardDO(gameboard));
+    public String temporarilyStoreGameboard(final GameboardDTO gameboard) throws SegueDatabaseException {
+        this.temporaryGameboardStore.storeGameboard(this.convertToGameboardDO(gameboard));
 
         return gameboard.getId();
     }
@@ -205,7 +207,7 @@ public class GameboardPersistenceManager {
 		this.createOrUpdateUserLinkToGameboard(gameboardToSave.getOwnerUserId(), gameboardToSave.getId());
 
 		// make sure that it is not still in temporary storage
-		this.gameboardNonPersistentStorage.invalidate(gameboard.getId());
+		this.temporaryGameboardStore.removeGameboard(gameboard.getId());
 
 		return gameboardToSave.getId();
 	}
@@ -245,10 +247,17 @@ public class GameboardPersistenceManager {
      * @throws SegueDatabaseException if there is a database error.
      */
     public boolean isPermanentlyStored(final String gameboardIdToTest) throws SegueDatabaseException {
-        boolean isAtemporaryBoard = this.gameboardNonPersistentStorage.getIfPresent(gameboardIdToTest) != null;
-        boolean isAPersistentBoard = this.getGameboardById(gameboardIdToTest, false) != null;
-        
-        return isAPersistentBoard && !isAtemporaryBoard;
+        // Only the gameboards table can answer this reliably, as temporary storage may be cached on other API nodes:
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement("SELECT 1 FROM gameboards WHERE id = ?;");
+            pst.setString(1, gameboardIdToTest);
+
+            try (ResultSet results = pst.executeQuery()) {
+                return results.next();
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
     }
 	
     /**
@@ -603,10 +612,20 @@ public class GameboardPersistenceManager {
             final boolean populateGameboardItems) {
 		Validate.notNull(gameboardDOs);
 
+		Map<String, GameboardItem> gameboardReadyQuestions = null;
+		if (populateGameboardItems) {
+			// Look up the questions for all of the gameboards together, rather than a board at a time:
+			Set<String> questionIds = new LinkedHashSet<>();
+			for (GameboardDO gameboardDO : gameboardDOs) {
+				questionIds.addAll(gameboardDO.getQuestions());
+			}
+			gameboardReadyQuestions = getGameboardItemMap(new ArrayList<>(questionIds));
+		}
+
 		List<GameboardDTO> gameboardDTOs = Lists.newArrayList();
 
 		for (GameboardDO gameboardDO : gameboardDOs) {
-			gameboardDTOs.add(this.convertToGameboardDTO(gameboardDO, populateGameboardItems));
+			gameboardDTOs.add(this.convertToGameboardDTO(gameboardDO, gameboardReadyQuestions));
 		}
 
 		return gameboardDTOs;
@@ -638,9 +657,25 @@ public class GameboardPersistenceManager {
 	 * @return gameboard DTO
 	 */
     private GameboardDTO convertToGameboardDTO(final GameboardDO gameboardDO, final boolean populateGameboardItems) {
+		return this.convertToGameboardDTO(gameboardDO,
+				populateGameboardItems ? getGameboardItemMap(gameboardDO.getQuestions()) : null);
+	}
+
+	/**
+	 * Convert form a gameboard DO to a Gameboard DTO, using gameboard items which have already been looked up.
+	 *
+	 * @param gameboardDO
+	 *            - to convert
+	 * @param gameboardReadyQuestions
+	 *            - a map of question id to gameboard item including at least the gameboard's questions, or null if
+	 *            just the question ids will do.
+	 * @return gameboard DTO
+	 */
+	private GameboardDTO convertToGameboardDTO(final GameboardDO gameboardDO,
+			@Nullable final Map<String, GameboardItem> gameboardReadyQuestions) {
 		GameboardDTO gameboardDTO = mapper.map(gameboardDO, GameboardDTO.class);
 
-		if (!populateGameboardItems) {
+		if (null == gameboardReadyQuestions) {
 			List<GameboardItem> listOfSparseGameItems = Lists.newArrayList();
 
 			for (String questionPageId : gameboardDO.getQuestions()) {
@@ -652,9 +687,6 @@ public class GameboardPersistenceManager {
 			return gameboardDTO;
 		}
 
-		// Map each Content object into an GameboardItem object
-		Map<String, GameboardItem> gameboardReadyQuestions = getGameboardItemMap(gameboardDO.getQuestions());
-
 		// empty and repopulate the gameboard dto.
 		gameboardDTO.setQuestions(new ArrayList<GameboardItem>());
 		for (String questionid : gameboardDO.getQuestions()) {
@@ -662,7 +694,8 @@ public class GameboardPersistenceManager {
 			// In this case we will simply pretend it isn't there.
 			GameboardItem item = gameboardReadyQuestions.get(questionid);
 			if (item != null) {
-				gameboardDTO.getQuestions().add(item);	
+				// copy the item, as items may be shared between boards but are later augmented per board.
+				gameboardDTO.getQuestions().add(new GameboardItem(item));
 			} else {
                 log.warn(String.format("The gameboard '%s' references an unavailable question '%s' - removing it from the DTO!",
                         gameboardDTO.getId(), questionid));
@@ -700,31 +733,19 @@ public class GameboardPersistenceManager {
 	 */
 	private Map<String, GameboardItem> getGameboardItemMap(final List<String> questionIds) {
 		Map<String, GameboardItem> gameboardReadyQuestions = Maps.newHashMap();
-		// Batch the queries to the db to avoid the elasticsearch query clause limit of 1024
-		List<List<String>> questionIdBatches = Lists.partition(questionIds, GAMEBOARD_ITEM_MAP_BATCH_SIZE);
-		for (List<String> questionIdBatch : questionIdBatches) {
-			// build query the db to get full question information
-            List<IContentManager.BooleanSearchClause> fieldsToMap = Lists.newArrayList();
-            fieldsToMap.add(new IContentManager.BooleanSearchClause(
-                    Constants.ID_FIELDNAME + '.' + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
-                    Constants.BooleanOperator.OR, questionIdBatch));
-
-			fieldsToMap.add(new IContentManager.BooleanSearchClause(
-			        TYPE_FIELDNAME, Constants.BooleanOperator.OR, Arrays.asList(QUESTION_TYPE, FAST_TRACK_QUESTION_TYPE)));
-
-			// Search for questions that match the ids.
-			ResultsWrapper<ContentDTO> results;
-			try {
-				results = this.contentManager.findByFieldNames(this.contentIndex,
-						fieldsToMap, 0, questionIds.size());
-			} catch (ContentManagerException e) {
-				results = new ResultsWrapper<ContentDTO>();
-				log.error("Unable to locate questions for gameboard. Using empty results", e);
-			}
+		// Look up all of the questions together; this also caches each one for individual lookups.
+		Map<String, ContentDTO> questionsById;
+		try {
+			questionsById = this.contentManager.getContentByIds(this.contentManager.getCurrentContentSHA(),
+					questionIds);
+		} catch (ContentManagerException e) {
+			questionsById = Maps.newHashMap();
+			log.error("Unable to locate questions for gameboard. Using empty results", e);
+		}
 
-			// Map each Content object into an GameboardItem object
-			List<ContentDTO> questionsForGameboard = results.getResults();
-			for (ContentDTO c : questionsForGameboard) {
+		// Map each question Content object into an GameboardItem object
+		for (ContentDTO c : questionsById.values()) {
+			if (QUESTION_TYPE.equals(c.getType()) || FAST_TRACK_QUESTION_TYPE.equals(c.getType())) {
 				GameboardItem questionInfo = this.convertToGameboardItem(c);
 				gameboardReadyQuestions.put(c.getId(), questionInfo);
 			}
@@ -750,8 +771,9 @@ public class GameboardPersistenceManager {
         }
         
         // first try temporary storage
-        if (this.gameboardNonPersistentStorage.getIfPresent(gameboardId) != null) {
-            return this.convertToGameboardDTO(this.gameboardNonPersistentStorage.getIfPresent(gameboardId));
+        GameboardDO temporaryGameboard = this.temporaryGameboardStore.getGameboard(gameboardId);
+        if (temporaryGameboard != null) {
+            return this.convertToGameboardDTO(temporaryGameboard);
         }
 
         try (Connection conn = database.getDatabaseConnection()) {
@@ -784,13 +806,15 @@ public class GameboardPersistenceManager {
     }
 
     /**
-     * Utility method to allow us to retrieve a gameboard either from temporary storage or permanent.
+     * Utility method to allow us to retrieve gameboards either from temporary storage or permanent.
+     *
+     * Each store is queried once for all of the gameboards, and the gameboards' questions are looked up together.
      *
      * @param gameboardIds
-     *            - gameboard to find
+     *            - gameboards to find
      * @param fullyPopulate
      *            - true or false
-     * @return gameboard dto or null if we cannot find the gameboard requested
+     * @return the gameboards found, in the order requested, or null if we cannot find any of the gameboards requested
      * @throws SegueDatabaseException
      *             - if there is a problem with the database
      */
@@ -801,40 +825,44 @@ public class GameboardPersistenceManager {
         }
 
         // First, try temporary storage
-        List<GameboardDTO> cachedGameboards = new ArrayList<>();
+        Map<String, GameboardDO> gameboardsFound = Maps.newHashMap(
+                this.temporaryGameboardStore.getGameboards(gameboardIds));
         List<String> gameboardIdsForQuery = new ArrayList<>();
         for (String gameboardId : gameboardIds) {
-            GameboardDO cachedGameboard = this.gameboardNonPersistentStorage.getIfPresent(gameboardId);
-            if (null != cachedGameboard) {
-                cachedGameboards.add(this.convertToGameboardDTO(cachedGameboard));
-            } else {
+            if (!gameboardsFound.containsKey(gameboardId)) {
                 gameboardIdsForQuery.add(gameboardId);
             }
         }
 
         // Then, go for the database
-        try (Connection conn = database.getDatabaseConnection()) {
-            PreparedStatement pst;
-            pst = conn.prepareStatement("SELECT * FROM gameboards WHERE id = ANY (?);");
-            Array gameboardIdsPreparedArray = conn.createArrayOf("varchar", gameboardIdsForQuery.toArray());
-            pst.setArray(1, gameboardIdsPreparedArray);
-
-            ResultSet results = pst.executeQuery();
-            List<GameboardDO> listOfResults = new ArrayList<>();
-            while (results.next()) {
-                listOfResults.add(this.convertFromSQLToGameboardDO(results));
-            }
-
-            if (listOfResults.size() == 0) {
-                return null;
+        if (!gameboardIdsForQuery.isEmpty()) {
+            try (Connection conn = database.getDatabaseConnection()) {
+                PreparedStatement pst;
+                pst = conn.prepareStatement("SELECT * FROM gameboards WHERE id = ANY (?);");
+                Array gameboardIdsPreparedArray = conn.createArrayOf("varchar", gameboardIdsForQuery.toArray());
+                pst.setArray(1, gameboardIdsPreparedArray);
+
+                ResultSet results = pst.executeQuery();
+                while (results.next()) {
+                    GameboardDO gameboard = this.convertFromSQLToGameboardDO(results);
+                    gameboardsFound.put(gameboard.getId(), gameboard);
+                }
+            } catch (SQLException | IOException e) {
+                throw new SegueDatabaseException("Unable to find assignments by ids", e);
             }
+        }
 
-            List<GameboardDTO> databaseGameboards = listOfResults.stream().map(r -> this.convertToGameboardDTO(r, fullyPopulate)).collect(Collectors.toList());
+        if (gameboardsFound.isEmpty()) {
+            return null;
+        }
 
-            return Stream.of(cachedGameboards, databaseGameboards).flatMap(Collection::stream).collect(Collectors.toList());
-        } catch (SQLException | IOException e) {
-            throw new SegueDatabaseException("Unable to find assignments by ids", e);
+        List<GameboardDO> orderedGameboards = new ArrayList<>();
+        for (String gameboardId : new LinkedHashSet<>(gameboardIds)) {
+            if (gameboardsFound.containsKey(gameboardId)) {
+                orderedGameboards.add(gameboardsFound.get(gameboardId));
+            }
         }
+        return this.convertToGameboardDTOs(orderedGameboards, fullyPopulate);
     }
 
     /**
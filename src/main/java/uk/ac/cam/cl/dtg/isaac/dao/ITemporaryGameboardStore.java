@@ -0,0 +1,65 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.dao;
+
+import uk.ac.cam.cl.dtg.isaac.dos.GameboardDO;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Storage for gameboards which have been generated but not yet saved, e.g. those made by the random board generator.
+ *
+ * Boards are forgotten once they have not been accessed for GAMEBOARD_TTL_MINUTES.
+ */
+public interface ITemporaryGameboardStore {
+    long GAMEBOARD_TTL_MINUTES = 30L;
+
+    /**
+     * Store a gameboard, replacing any existing board with the same id.
+     *
+     * @param gameboard - the gameboard to store.
+     * @throws SegueDatabaseException - if the board cannot be stored.
+     */
+    void storeGameboard(GameboardDO gameboard) throws SegueDatabaseException;
+
+    /**
+     * Get a gameboard by id.
+     *
+     * @param gameboardId - the id of the board.
+     * @return the gameboard, or null if it is not in temporary storage.
+     * @throws SegueDatabaseException - if the store cannot be read.
+     */
+    GameboardDO getGameboard(String gameboardId) throws SegueDatabaseException;
+
+    /**
+     * Get all of the gameboards with the ids provided which are in temporary storage.
+     *
+     * @param gameboardIds - the ids of the boards.
+     * @return a map of gameboard id to gameboard, containing only the boards that were found.
+     * @throws SegueDatabaseException - if the store cannot be read.
+     */
+    Map<String, GameboardDO> getGameboards(Collection<String> gameboardIds) throws SegueDatabaseException;
+
+    /**
+     * Remove a gameboard, e.g. because it has been saved permanently.
+     *
+     * @param gameboardId - the id of the board.
+     * @throws SegueDatabaseException - if the board cannot be removed.
+     */
+    void removeGameboard(String gameboardId) throws SegueDatabaseException;
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.dao;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import uk.ac.cam.cl.dtg.isaac.dos.GameboardDO;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Temporary gameboard store which keeps boards in memory.
+ *
+ * Boards are only available from the API node which generated them, so this is only suitable for a single node.
+ */
+public class InMemoryTemporaryGameboardStore implements ITemporaryGameboardStore {
+    private final Cache<String, GameboardDO> gameboardNonPersistentStorage;
+
+    /**
+     * Create an empty in-memory temporary gameboard store.
+     */
+    public InMemoryTemporaryGameboardStore() {
+        this.gameboardNonPersistentStorage = CacheBuilder.newBuilder()
+                .expireAfterAccess(GAMEBOARD_TTL_MINUTES, TimeUnit.MINUTES).<String, GameboardDO> build();
+    }
+
+    @Override
+    public void storeGameboard(final GameboardDO gameboard) {
+        this.gameboardNonPersistentStorage.put(gameboard.getId(), gameboard);
+    }
+
+    @Override
+    public GameboardDO getGameboard(final String gameboardId) {
+        return this.gameboardNonPersistentStorage.getIfPresent(gameboardId);
+    }
+
+    @Override
+    public Map<String, GameboardDO> getGameboards(final Collection<String> gameboardIds) {
+        return this.gameboardNonPersistentStorage.getAllPresent(gameboardIds);
+    }
+
+    @Override
+    public void removeGameboard(final String gameboardId) {
+        this.gameboardNonPersistentStorage.invalidate(gameboardId);
+    }
+}
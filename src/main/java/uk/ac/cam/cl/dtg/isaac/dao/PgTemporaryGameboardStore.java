@@ -0,0 +1,139 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.dao;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import uk.ac.cam.cl.dtg.isaac.dos.GameboardDO;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.io.IOException;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Temporary gameboard store which shares boards between API nodes using an unlogged Postgres table.
+ *
+ * The table is unlogged as losing temporary boards on a database crash is acceptable, and it makes writes cheaper.
+ * Reading a board refreshes its last accessed time, and a scheduled job deletes boards which have expired. Boards
+ * are also kept briefly in a small local cache, as a board is usually requested from the node which generated it
+ * soon after it is generated.
+ */
+public class PgTemporaryGameboardStore implements ITemporaryGameboardStore {
+    private static final long LOCAL_CACHE_TTL_SECONDS = 60;
+    private static final long LOCAL_CACHE_MAXIMUM_SIZE = 1000;
+
+    private final PostgresSqlDb database;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, GameboardDO> localCache;
+
+    /**
+     * Create a temporary gameboard store backed by the database.
+     *
+     * @param database
+     *            - the database holding the temporary_gameboards table.
+     * @param objectMapper
+     *            - to convert gameboards to and from json.
+     */
+    public PgTemporaryGameboardStore(final PostgresSqlDb database, final ObjectMapper objectMapper) {
+        this.database = database;
+        this.objectMapper = objectMapper;
+        this.localCache = CacheBuilder.newBuilder()
+                .maximumSize(LOCAL_CACHE_MAXIMUM_SIZE)
+                .expireAfterWrite(LOCAL_CACHE_TTL_SECONDS, TimeUnit.SECONDS).<String, GameboardDO> build();
+    }
+
+    @Override
+    public void storeGameboard(final GameboardDO gameboard) throws SegueDatabaseException {
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement(
+                    "INSERT INTO temporary_gameboards(id, gameboard, last_accessed) VALUES (?, ?::text::jsonb, now())"
+                    + " ON CONFLICT (id) DO UPDATE SET gameboard = excluded.gameboard, last_accessed = now();");
+            pst.setString(1, gameboard.getId());
+            pst.setString(2, objectMapper.writeValueAsString(gameboard));
+            pst.executeUpdate();
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        } catch (JsonProcessingException e) {
+            throw new SegueDatabaseException("Unable to process json while storing temporary gameboard.", e);
+        }
+        this.localCache.put(gameboard.getId(), gameboard);
+    }
+
+    @Override
+    public GameboardDO getGameboard(final String gameboardId) throws SegueDatabaseException {
+        return this.getGameboards(Sets.newHashSet(gameboardId)).get(gameboardId);
+    }
+
+    @Override
+    public Map<String, GameboardDO> getGameboards(final Collection<String> gameboardIds)
+            throws SegueDatabaseException {
+        Map<String, GameboardDO> gameboards = Maps.newHashMap(this.localCache.getAllPresent(gameboardIds));
+        Set<String> gameboardIdsForQuery = Sets.newHashSet(gameboardIds);
+        gameboardIdsForQuery.removeAll(gameboards.keySet());
+        if (gameboardIdsForQuery.isEmpty()) {
+            return gameboards;
+        }
+
+        // Fetch the remaining boards in one query, refreshing their last accessed time as we go:
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement(
+                    "UPDATE temporary_gameboards SET last_accessed = now()"
+                    + " WHERE id = ANY(?) AND last_accessed > now() - make_interval(mins => ?)"
+                    + " RETURNING id, gameboard;");
+            Array gameboardIdsPreparedArray = conn.createArrayOf("varchar", gameboardIdsForQuery.toArray());
+            pst.setArray(1, gameboardIdsPreparedArray);
+            pst.setInt(2, (int) GAMEBOARD_TTL_MINUTES);
+
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    GameboardDO gameboard = objectMapper.readValue(results.getString("gameboard"), GameboardDO.class);
+                    gameboards.put(results.getString("id"), gameboard);
+                    this.localCache.put(results.getString("id"), gameboard);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        } catch (IOException e) {
+            throw new SegueDatabaseException("Unable to read temporary gameboard json.", e);
+        }
+        return gameboards;
+    }
+
+    @Override
+    public void removeGameboard(final String gameboardId) throws SegueDatabaseException {
+        this.localCache.invalidate(gameboardId);
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement("DELETE FROM temporary_gameboards WHERE id = ?;");
+            pst.setString(1, gameboardId);
+            pst.executeUpdate();
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+}
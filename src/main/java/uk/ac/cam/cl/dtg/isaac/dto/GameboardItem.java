@@ -73,9 +73,13 @@ public class GameboardItem {
         this.setQuestionPartsCorrect(original.getQuestionPartsCorrect());
         this.setQuestionPartsIncorrect(original.getQuestionPartsIncorrect());
         this.setQuestionPartsNotAttempted(original.getQuestionPartsNotAttempted());
+        this.setQuestionPartsTotal(original.getQuestionPartsTotal());
         this.setPassMark(original.getPassMark());
         this.setState(original.getState());
+        this.setQuestionPartStates(original.getQuestionPartStates());
         this.setTags(original.getTags());
+        this.setBoardId(original.getBoardId());
+        this.setSupersededBy(original.getSupersededBy());
     }
 
     /**
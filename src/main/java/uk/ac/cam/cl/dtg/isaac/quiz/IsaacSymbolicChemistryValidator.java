@@ -25,6 +25,7 @@ import uk.ac.cam.cl.dtg.segue.dos.content.ChemicalFormula;
 import uk.ac.cam.cl.dtg.segue.dos.content.Choice;
 import uk.ac.cam.cl.dtg.segue.dos.content.Content;
 import uk.ac.cam.cl.dtg.segue.dos.content.Question;
+import uk.ac.cam.cl.dtg.segue.quiz.ExternalValidatorClient;
 import uk.ac.cam.cl.dtg.segue.quiz.IValidator;
 import uk.ac.cam.cl.dtg.segue.quiz.ValidatorUnavailableException;
 
@@ -52,14 +53,14 @@ public class IsaacSymbolicChemistryValidator implements IValidator {
         EXACT
     }
 
-    private final String hostname;
-    private final String port;
-    private final String externalValidatorUrl;
+    private final ExternalValidatorClient externalValidatorClient;
 
     public IsaacSymbolicChemistryValidator(final String hostname, final String port) {
-        this.hostname = hostname;
-        this.port = port;
-        this.externalValidatorUrl = "http://" + this.hostname + ":" + this.port + "/check";
+        this(new ExternalValidatorClient("chemistry", "http://" + hostname + ":" + port + "/check"));
+    }
+
+    public IsaacSymbolicChemistryValidator(final ExternalValidatorClient externalValidatorClient) {
+        this.externalValidatorClient = externalValidatorClient;
     }
 
     @Override
@@ -193,7 +194,7 @@ public class IsaacSymbolicChemistryValidator implements IValidator {
                     req.put("test", submittedFormula.getMhchemExpression());
                     req.put("description", chemistryQuestion.getId());
 
-                    response = getResponseFromExternalValidator(externalValidatorUrl, req);
+                    response = externalValidatorClient.check(req);
 
                     if (response.containsKey("error")) {
 
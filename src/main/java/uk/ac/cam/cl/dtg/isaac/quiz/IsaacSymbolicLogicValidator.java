@@ -26,6 +26,7 @@ import uk.ac.cam.cl.dtg.segue.dos.content.Choice;
 import uk.ac.cam.cl.dtg.segue.dos.content.Content;
 import uk.ac.cam.cl.dtg.segue.dos.content.LogicFormula;
 import uk.ac.cam.cl.dtg.segue.dos.content.Question;
+import uk.ac.cam.cl.dtg.segue.quiz.ExternalValidatorClient;
 import uk.ac.cam.cl.dtg.segue.quiz.IValidator;
 import uk.ac.cam.cl.dtg.segue.quiz.ValidatorUnavailableException;
 
@@ -49,14 +50,14 @@ public class IsaacSymbolicLogicValidator implements IValidator {
         EXACT
     }
 
-    private final String hostname;
-    private final String port;
-    private final String externalValidatorUrl;
+    private final ExternalValidatorClient externalValidatorClient;
 
     public IsaacSymbolicLogicValidator(final String hostname, final String port) {
-        this.hostname = hostname;
-        this.port = port;
-        this.externalValidatorUrl = "http://" + this.hostname + ":" + this.port + "/check/logic";
+        this(new ExternalValidatorClient("logic", "http://" + hostname + ":" + port + "/check/logic"));
+    }
+
+    public IsaacSymbolicLogicValidator(final ExternalValidatorClient externalValidatorClient) {
+        this.externalValidatorClient = externalValidatorClient;
     }
 
     @Override
@@ -182,7 +183,7 @@ public class IsaacSymbolicLogicValidator implements IValidator {
                         req.put("symbols", String.join(",", symbolicLogicQuestion.getAvailableSymbols()));
                     }
 
-                    HashMap<String, Object> response = getResponseFromExternalValidator(externalValidatorUrl, req);
+                    HashMap<String, Object> response = externalValidatorClient.check(req);
 
                     if (response.containsKey("error")) {
                         if (response.containsKey("code")) {
@@ -26,6 +26,7 @@ import uk.ac.cam.cl.dtg.segue.dos.content.Choice;
 import uk.ac.cam.cl.dtg.segue.dos.content.Content;
 import uk.ac.cam.cl.dtg.segue.dos.content.Formula;
 import uk.ac.cam.cl.dtg.segue.dos.content.Question;
+import uk.ac.cam.cl.dtg.segue.quiz.ExternalValidatorClient;
 import uk.ac.cam.cl.dtg.segue.quiz.IValidator;
 import uk.ac.cam.cl.dtg.segue.quiz.ValidatorUnavailableException;
 
@@ -50,14 +51,14 @@ public class IsaacSymbolicValidator implements IValidator {
         EXACT
     }
 
-    private final String hostname;
-    private final String port;
-    private final String externalValidatorUrl;
+    private final ExternalValidatorClient externalValidatorClient;
 
     public IsaacSymbolicValidator(final String hostname, final String port) {
-        this.hostname = hostname;
-        this.port = port;
-        this.externalValidatorUrl = "http://" + this.hostname + ":" + this.port + "/check";
+        this(new ExternalValidatorClient("symbolic", "http://" + hostname + ":" + port + "/check"));
+    }
+
+    public IsaacSymbolicValidator(final ExternalValidatorClient externalValidatorClient) {
+        this.externalValidatorClient = externalValidatorClient;
     }
 
     @Override
@@ -183,7 +184,7 @@ public class IsaacSymbolicValidator implements IValidator {
                         req.put("symbols", String.join(",", symbolicQuestion.getAvailableSymbols()));
                     }
 
-                    HashMap<String, Object> response = getResponseFromExternalValidator(externalValidatorUrl, req);
+                    HashMap<String, Object> response = externalValidatorClient.check(req);
 
                     if (response.containsKey("error")) {
                         if (response.containsKey("code")) {
@@ -171,6 +171,12 @@ public final class Constants {
      */
     public static final String SESSION_TOKEN = "token";
 
+    /**
+     * Constant representing the property name for how long, in seconds, a user may be authenticated from cache
+     * without checking their session token against the database.
+     */
+    public static final String AUTHENTICATED_USER_CACHE_EXPIRY_SECONDS = "AUTHENTICATED_USER_CACHE_EXPIRY_SECONDS";
+
     /**
      * Constant representing the key for the HMAC Salt - used in HMAC calculations.
      */
@@ -317,8 +323,41 @@ public final class Constants {
 
     // Logging component
     public static final String LOGGING_ENABLED = "LOGGING_ENABLED";
+    public static final String LOG_EVENT_QUEUE_CAPACITY = "LOG_EVENT_QUEUE_CAPACITY";
+    public static final String LOG_EVENT_BATCH_SIZE = "LOG_EVENT_BATCH_SIZE";
+    public static final String LOG_EVENT_FLUSH_INTERVAL_MILLISECONDS = "LOG_EVENT_FLUSH_INTERVAL_MILLISECONDS";
+    public static final String LOG_EVENT_QUEUE_OVERFLOW_POLICY = "LOG_EVENT_QUEUE_OVERFLOW_POLICY";
     public static final Integer MAX_LOG_REQUEST_BODY_SIZE_IN_BYTES = 1000000;
 
+    // Email outbox
+    public static final String EMAIL_OUTBOX_STORE = "EMAIL_OUTBOX_STORE";
+    public static final String EMAIL_OUTBOX_WORKER_THREADS = "EMAIL_OUTBOX_WORKER_THREADS";
+    public static final String EMAIL_OUTBOX_MAX_SENDS_PER_SECOND = "EMAIL_OUTBOX_MAX_SENDS_PER_SECOND";
+
+    /**
+     * Where emails waiting to be sent are kept.
+     */
+    public enum EmailOutboxStore {
+        /** Emails are queued per API node and lost on restart. */
+        IN_MEMORY,
+        /** Emails are queued in the database, and sent by whichever API node claims them first. */
+        POSTGRES
+    }
+
+    // Misuse monitoring
+    public static final String MISUSE_MONITOR_STORE = "MISUSE_MONITOR_STORE";
+    public static final String MISUSE_MONITOR_FLUSH_INTERVAL_MILLISECONDS = "MISUSE_MONITOR_FLUSH_INTERVAL_MILLISECONDS";
+
+    /**
+     * Where the misuse monitor keeps its counts.
+     */
+    public enum MisuseMonitorStore {
+        /** Counts are kept per API node and forgotten on restart. */
+        IN_MEMORY,
+        /** Counts are shared between API nodes through the database. */
+        POSTGRES
+    }
+
     public interface LogType {
         /**
          * Get the string value of the log Enum.
@@ -378,9 +417,11 @@ public final class Constants {
 
     // Metrics Component
     public static final String API_METRICS_EXPORT_PORT = "API_METRICS_EXPORT_PORT";
+    public static final String ETL_METRICS_EXPORT_PORT = "ETL_METRICS_EXPORT_PORT";
 
     // IP Geocoding stuff
     public static final String IP_INFO_DB_API_KEY = "IP_INFO_DB_API_KEY";
+    public static final String IP_LOCATION_DATABASE_PATH = "IP_LOCATION_DATABASE_PATH";
 
 
     /*
@@ -487,6 +528,8 @@ public final class Constants {
 
     // cache settings
     public static final String MAX_CONTENT_CACHE_TIME = "MAX_CONTENT_CACHE_TIME";
+    public static final String CONTENT_CACHE_WARM_UP_SIZE = "CONTENT_CACHE_WARM_UP_SIZE";
+    public static final String CONTENT_CACHE_WARM_UP_THREADS = "CONTENT_CACHE_WARM_UP_THREADS";
     
     public static final int NUMBER_SECONDS_IN_MINUTE = 60;
     public static final int NUMBER_SECONDS_IN_FIVE_MINUTES = NUMBER_SECONDS_IN_MINUTE * 5;
@@ -527,6 +570,9 @@ public final class Constants {
     public static final String CHEMISTRY_CHECKER_HOST = "CHEMISTRY_CHECKER_HOST";
     public static final String CHEMISTRY_CHECKER_PORT = "CHEMISTRY_CHECKER_PORT";
 
+    public static final String EXTERNAL_VALIDATOR_MAX_CONCURRENT_REQUESTS = "EXTERNAL_VALIDATOR_MAX_CONCURRENT_REQUESTS";
+    public static final String EXTERNAL_VALIDATOR_TIMEOUT_MILLISECONDS = "EXTERNAL_VALIDATOR_TIMEOUT_MILLISECONDS";
+
     public static final String QUESTION_MISUSE_THRESHOLD_OVERRIDE = "QUESTION_MISUSE_THRESHOLD_OVERRIDE";
 
     // User Preferences:
@@ -181,10 +181,8 @@ public class EmailFacade extends AbstractSegueFacade {
         
 		try {
             Properties previewProperties = new Properties();
-            // Add all properties in the user DTO (preserving types) so they are available to email templates.
-            Map userPropertiesMap = new org.apache.commons.beanutils.BeanMap(currentUser);
-
-            previewProperties.putAll(emailManager.flattenTokenMap(userPropertiesMap, Maps.newHashMap(), ""));
+            // Add all properties in the user DTO so they are available to email templates.
+            previewProperties.putAll(emailManager.getUserTokens(currentUser));
 
             // Sanitizes inputs from users
             EmailManager.sanitizeEmailParameters(previewProperties);
@@ -22,11 +22,11 @@ import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import ma.glasnost.orika.MapperFacade;
 import org.apache.commons.lang3.Validate;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.api.Constants;
 import uk.ac.cam.cl.dtg.isaac.api.managers.GameManager;
+import uk.ac.cam.cl.dtg.isaac.api.managers.GameProgressMatrix;
 import uk.ac.cam.cl.dtg.isaac.dto.AssignmentDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.GameboardDTO;
 import uk.ac.cam.cl.dtg.isaac.dto.GameboardItem;
@@ -58,6 +58,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Comparator;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * GroupManager. Responsible for managing group related logic.
@@ -632,15 +633,20 @@ public class GroupManager {
             userProgressMap.put(user, new ArrayList<>());
         }
 
-        for (AssignmentDTO assignment : assignments) {
-            // Not sure why I have to do this but AssignmentDTO::getGameboard returns null
-            GameboardDTO gameboard = gameManager.getGameboard(assignment.getGameboardId());
+        // Load every gameboard and the members' attempts at all of them at once, rather than once per assignment:
+        List<String> gameboardIds = assignments.stream().map(AssignmentDTO::getGameboardId).collect(Collectors.toList());
+        GameProgressMatrix progressMatrix = gameManager.gatherGameProgressMatrix(groupMembers, gameboardIds);
 
-            List<ImmutablePair<RegisteredUserDTO, List<GameboardItem>>> userProgressData = gameManager.gatherGameProgressData(groupMembers, gameboard);
+        for (AssignmentDTO assignment : assignments) {
+            GameboardDTO gameboard = progressMatrix.getGameboard(assignment.getGameboardId());
+            if (null == gameboard) {
+                log.error(String.format("Unable to find gameboard (%s) for assignment (%s) when calculating progress.",
+                        assignment.getGameboardId(), assignment.getId()));
+                continue;
+            }
 
-            for (ImmutablePair<RegisteredUserDTO, List<GameboardItem>> userProgress : userProgressData) {
-                RegisteredUserDTO user = userProgress.getKey();
-                List<GameboardItem> progress = userProgress.getValue();
+            for (RegisteredUserDTO user : groupMembers) {
+                List<GameboardItem> progress = progressMatrix.getGameboardItemProgress(user, gameboard);
 
                 int questionPartsCorrect = 0,
                     questionPartsIncorrect = 0,
@@ -37,6 +37,7 @@ import uk.ac.cam.cl.dtg.segue.api.ErrorResponseWrapper;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
 import uk.ac.cam.cl.dtg.segue.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionAttemptSummary;
 import uk.ac.cam.cl.dtg.segue.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.segue.dos.content.Choice;
 import uk.ac.cam.cl.dtg.segue.dos.content.ChoiceQuestion;
@@ -67,6 +68,7 @@ import javax.ws.rs.BadRequestException;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -394,6 +396,76 @@ public class QuestionManager {
         }
     }
     
+    /**
+     * getQuestionAttemptSummariesByUser. This method will return a summary of the attempts a given user has made at
+     * each question part, without loading the attempts themselves.
+     *
+     * @param user
+     *            - with the session information included.
+     * @return map of summaries (QuestionPageId -> QuestionID -> QuestionAttemptSummary) or an empty map.
+     * @throws SegueDatabaseException
+     *             - if there is a database error.
+     */
+    public Map<String, Map<String, QuestionAttemptSummary>> getQuestionAttemptSummariesByUser(
+            final AbstractSegueUserDTO user) throws SegueDatabaseException {
+        Validate.notNull(user);
+
+        if (user instanceof RegisteredUserDTO) {
+            RegisteredUserDTO registeredUser = (RegisteredUserDTO) user;
+
+            return this.questionAttemptPersistenceManager.getQuestionAttemptSummaries(registeredUser.getId());
+        } else {
+            // anonymous users have few enough attempts that they can be summarised as they are read.
+            return summariseQuestionAttempts(this.getQuestionAttemptsByUser(user));
+        }
+    }
+
+    /**
+     * Summarise a map of question attempts, keeping the same page and question part structure.
+     *
+     * @param questionAttempts
+     *            - map of QuestionPageId -> QuestionID -> list of attempts, as returned by getQuestionAttemptsByUser.
+     * @return map of QuestionPageId -> QuestionID -> QuestionAttemptSummary.
+     */
+    public static Map<String, Map<String, QuestionAttemptSummary>> summariseQuestionAttempts(
+            final Map<String, ? extends Map<String, ? extends List<? extends LightweightQuestionValidationResponse>>>
+                    questionAttempts) {
+        Map<String, Map<String, QuestionAttemptSummary>> summaries = Maps.newLinkedHashMap();
+        if (null == questionAttempts) {
+            return summaries;
+        }
+
+        for (Map.Entry<String, ? extends Map<String, ? extends List<? extends LightweightQuestionValidationResponse>>>
+                questionPage : questionAttempts.entrySet()) {
+            Map<String, QuestionAttemptSummary> summariesForPage = Maps.newLinkedHashMap();
+            for (Map.Entry<String, ? extends List<? extends LightweightQuestionValidationResponse>> questionPart
+                    : questionPage.getValue().entrySet()) {
+                summariesForPage.put(questionPart.getKey(),
+                        QuestionAttemptSummary.fromAttempts(questionPart.getKey(), questionPart.getValue()));
+            }
+            summaries.put(questionPage.getKey(), summariesForPage);
+        }
+        return summaries;
+    }
+
+    /**
+     * @param users who we are interested in.
+     * @param questionPartIds the full ids of the question parts we want to look up.
+     * @return a map of user id to question part id to summary, for only the parts each user has attempted.
+     * @throws SegueDatabaseException if there is a database error.
+     */
+    public Map<Long, Map<String, QuestionAttemptSummary>> getMatchingQuestionAttemptSummaries(
+            final List<RegisteredUserDTO> users, final Collection<String> questionPartIds)
+            throws SegueDatabaseException {
+        List<Long> userIds = Lists.newArrayList();
+        for (RegisteredUserDTO user : users) {
+            userIds.add(user.getId());
+        }
+
+        return this.questionAttemptPersistenceManager.getQuestionAttemptSummariesByUsersAndQuestionParts(userIds,
+                questionPartIds);
+    }
+
     /**
      * @param users who we are interested in.
      * @param questionPageIds we want to look up.
@@ -19,7 +19,6 @@ import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
 import com.google.api.client.util.Sets;
 import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
@@ -30,6 +29,7 @@ import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.api.managers.GameManager;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.LocationManager;
+import uk.ac.cam.cl.dtg.segue.dao.PgStatisticsSnapshots;
 import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
@@ -38,6 +38,7 @@ import uk.ac.cam.cl.dtg.segue.dao.schools.SchoolListReader;
 import uk.ac.cam.cl.dtg.segue.dao.schools.UnableToIndexSchoolsException;
 import uk.ac.cam.cl.dtg.segue.dos.IUserStreaksManager;
 import uk.ac.cam.cl.dtg.segue.dos.QuestionValidationResponse;
+import uk.ac.cam.cl.dtg.segue.dos.StatisticsSnapshot;
 import uk.ac.cam.cl.dtg.segue.dos.users.Role;
 import uk.ac.cam.cl.dtg.segue.dos.users.School;
 import uk.ac.cam.cl.dtg.segue.dto.ResultsWrapper;
@@ -46,6 +47,8 @@ import uk.ac.cam.cl.dtg.segue.dto.content.ContentSummaryDTO;
 import uk.ac.cam.cl.dtg.segue.dto.content.QuestionDTO;
 import uk.ac.cam.cl.dtg.segue.dto.users.RegisteredUserDTO;
 import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
+import uk.ac.cam.cl.dtg.util.PropertiesLoader;
+import uk.ac.cam.cl.dtg.util.WeighedCacheBuilder;
 import uk.ac.cam.cl.dtg.util.locations.Location;
 
 import java.io.IOException;
@@ -61,6 +64,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -87,6 +91,7 @@ public class StatisticsManager implements IStatisticsManager {
     private GroupManager groupManager;
     private QuestionManager questionManager;
     private IUserStreaksManager userStreaksManager;
+    private final PgStatisticsSnapshots statisticsSnapshots;
     
     private Cache<String, Object> longStatsCache;
     private LocationManager locationHistoryManager;
@@ -96,7 +101,7 @@ public class StatisticsManager implements IStatisticsManager {
     private static final String SCHOOL_STATS = "SCHOOL_STATS";
     private static final String LOCATION_STATS = "LOCATION_STATS";
     private static final int LONG_STATS_EVICTION_INTERVAL_MINUTES = 720; // 12 hours
-    private static final long LONG_STATS_MAX_ITEMS = 20;
+    private static final long LONG_STATS_MAX_MEGABYTES = 64;
     private static final int PROGRESS_MAX_RECENT_QUESTIONS = 5;
 
     
@@ -117,13 +122,20 @@ public class StatisticsManager implements IStatisticsManager {
      *            - so that we can see how many groups we have site wide.
      * @param questionManager
      *            - so that we can see how many questions were answered.
+     * @param userStreaksManager
+     *            - to query user streak information.
+     * @param statisticsSnapshots
+     *            - to read periodically computed statistics from.
+     * @param globalProperties
+     *            - to configure the statistics cache from.
      */
     @Inject
     public StatisticsManager(final UserAccountManager userManager, final ILogManager logManager,
                              final SchoolListReader schoolManager, final IContentManager contentManager,
                              @Named(CONTENT_INDEX) final String contentIndex,
                              final LocationManager locationHistoryManager, final GroupManager groupManager,
-                             final QuestionManager questionManager, final IUserStreaksManager userStreaksManager) {
+                             final QuestionManager questionManager, final IUserStreaksManager userStreaksManager,
+                             final PgStatisticsSnapshots statisticsSnapshots, final PropertiesLoader globalProperties) {
         this.userManager = userManager;
         this.logManager = logManager;
         this.schoolManager = schoolManager;
@@ -135,21 +147,43 @@ public class StatisticsManager implements IStatisticsManager {
         this.groupManager = groupManager;
         this.questionManager = questionManager;
         this.userStreaksManager = userStreaksManager;
+        this.statisticsSnapshots = statisticsSnapshots;
 
-        this.longStatsCache = CacheBuilder.newBuilder()
+        this.longStatsCache = WeighedCacheBuilder.named("long_stats").maximumMegabytes(LONG_STATS_MAX_MEGABYTES)
                 .expireAfterWrite(LONG_STATS_EVICTION_INTERVAL_MINUTES, TimeUnit.MINUTES)
-                .maximumSize(LONG_STATS_MAX_ITEMS).build();
+                .configuredFrom(globalProperties).build();
     }
 
     /**
      * Output general stats. This returns a Map of String to Object and is intended to be sent directly to a
      * serializable facade endpoint.
+     *
+     * The stats are read from the snapshot kept up to date by a scheduled job, with "lastUpdated" saying when it was
+     * computed. They are only computed on demand if the job has not run yet.
      * 
      * @return ImmutableMap<String, String> (stat name, stat value)
      * @throws SegueDatabaseException - if there is a database error.
      */
-    public synchronized Map<String, Object> getGeneralStatistics()
+    public Map<String, Object> getGeneralStatistics()
             throws SegueDatabaseException {
+        StatisticsSnapshot snapshot = statisticsSnapshots.getSnapshot(PgStatisticsSnapshots.GENERAL_STATISTICS);
+        if (null == snapshot) {
+            log.info("No general statistics snapshot found; computing general statistics on demand.");
+            return computeGeneralStatistics();
+        }
+
+        Map<String, Object> result = new HashMap<>(snapshot.getStatistics());
+        result.put("lastUpdated", snapshot.getRefreshed());
+        return result;
+    }
+
+    /**
+     * Compute general stats from scratch, which runs many aggregate queries.
+     *
+     * @return the stats, as for getGeneralStatistics.
+     * @throws SegueDatabaseException - if there is a database error.
+     */
+    private synchronized Map<String, Object> computeGeneralStatistics() throws SegueDatabaseException {
         Map<String, Object> result = Maps.newHashMap();
 
         result.put("userGenders", userManager.getGenderCount());
@@ -172,6 +206,7 @@ public class StatisticsManager implements IStatisticsManager {
         rangedAnsweredQuestionStats.put("thirtyDays", questionManager.getAnsweredQuestionRolesOverPrevious(THIRTY_DAYS));
         rangedAnsweredQuestionStats.put("ninetyDays", questionManager.getAnsweredQuestionRolesOverPrevious(NINETY_DAYS));
         result.put("answeringUsersOverPrevious", rangedAnsweredQuestionStats);
+        result.put("lastUpdated", new Date());
 
         return result;
     }
@@ -670,8 +705,9 @@ public class StatisticsManager implements IStatisticsManager {
     public Collection<Location> getLocationInformation(final Date fromDate, final Date toDate) throws SegueDatabaseException {
         SimpleDateFormat cacheFormat = new SimpleDateFormat("yyyyMMdd");
         String cacheDateTag =  cacheFormat.format(fromDate) + cacheFormat.format(toDate);
-        if (this.longStatsCache.getIfPresent(LOCATION_STATS + cacheDateTag) != null) {
-            return (Set<Location>) this.longStatsCache.getIfPresent(LOCATION_STATS + cacheDateTag);
+        Set<Location> cachedOutput = (Set<Location>) this.longStatsCache.getIfPresent(LOCATION_STATS + cacheDateTag);
+        if (cachedOutput != null) {
+            return cachedOutput;
         }
 
         Set<Location> result = Sets.newHashSet();
@@ -916,6 +916,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         // save the user
         RegisteredUser userToReturn = this.database.createOrUpdateUser(userToSave);
+        this.userAuthenticationManager.invalidateCachedUser(userToReturn.getId());
         if (null != newPassword && !newPassword.isEmpty()) {
             authenticator.setOrChangeUsersPassword(userToReturn, newPassword);
         }
@@ -963,6 +964,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         userToSave.setRole(requestedRole);
         this.database.createOrUpdateUser(userToSave);
+        this.userAuthenticationManager.invalidateCachedUser(userToSave.getId());
     }
 
     /**
@@ -986,6 +988,7 @@ public class UserAccountManager implements IUserAccountManager {
         userToSave.setEmailVerificationStatus(requestedEmailVerificationStatus);
         userToSave.setLastUpdated(new Date());
         this.database.createOrUpdateUser(userToSave);
+        this.userAuthenticationManager.invalidateCachedUser(userToSave.getId());
     }
 
     /**
@@ -1008,6 +1011,7 @@ public class UserAccountManager implements IUserAccountManager {
 
         // delete the user.
         this.database.deleteUserAccount(userDOById);
+        this.userAuthenticationManager.invalidateCachedUser(userDOById.getId());
     }
 
     /**
@@ -1034,6 +1038,8 @@ public class UserAccountManager implements IUserAccountManager {
 
         // merge the users.
         this.database.mergeUserAccounts(targetUser, sourceUser);
+        this.userAuthenticationManager.invalidateCachedUser(targetUser.getId());
+        this.userAuthenticationManager.invalidateCachedUser(sourceUser.getId());
     }
 
     /**
@@ -1091,6 +1097,7 @@ public class UserAccountManager implements IUserAccountManager {
 
             // Save user object
             this.database.createOrUpdateUser(user);
+            this.userAuthenticationManager.invalidateCachedUser(user.getId());
 
             String emailVerificationToken = user.getEmailVerificationToken();
 
@@ -1175,6 +1182,7 @@ public class UserAccountManager implements IUserAccountManager {
 
             // Save user
             RegisteredUser createOrUpdateUser = this.database.createOrUpdateUser(user);
+            this.userAuthenticationManager.invalidateCachedUser(createOrUpdateUser.getId());
             log.info(String.format("Email verification for user (%s) has completed successfully.",
                     createOrUpdateUser.getId()));
             return this.convertUserDOToUserDTO(createOrUpdateUser);
@@ -1684,12 +1692,15 @@ public class UserAccountManager implements IUserAccountManager {
     private void updateLastSeen(final RegisteredUser user) throws SegueDatabaseException {
         if (user.getLastSeen() == null) {
             this.database.updateUserLastSeen(user);
+            this.userAuthenticationManager.invalidateCachedUser(user.getId());
         } else {
             // work out if we should update the user record again...
             long timeDiff = Math.abs(new Date().getTime() - user.getLastSeen().getTime());
             long minutesElapsed = TimeUnit.MILLISECONDS.toMinutes(timeDiff);
             if (minutesElapsed > LAST_SEEN_UPDATE_FREQUENCY_MINUTES) {
                 this.database.updateUserLastSeen(user);
+                // so that the cached user does not keep an out of date last seen and trigger this update again:
+                this.userAuthenticationManager.invalidateCachedUser(user.getId());
             }
         }
     }
@@ -1714,6 +1725,7 @@ public class UserAccountManager implements IUserAccountManager {
             throw new NoUserLoggedInException();
         }
         this.database.incrementSessionToken(user);
+        this.userAuthenticationManager.invalidateCachedUser(user.getId());
         logUserOut(request, response);
     }
 
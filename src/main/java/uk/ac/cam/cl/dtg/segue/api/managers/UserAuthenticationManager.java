@@ -18,6 +18,8 @@ package uk.ac.cam.cl.dtg.segue.api.managers;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
@@ -79,6 +81,8 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 
@@ -89,6 +93,8 @@ import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 public class UserAuthenticationManager {
     private static final Logger log = LoggerFactory.getLogger(UserAuthenticationManager.class);
     private static final String HMAC_SHA_ALGORITHM = "HmacSHA256";
+    private static final int DEFAULT_AUTHENTICATED_USER_CACHE_EXPIRY_SECONDS = 30;
+    private static final int AUTHENTICATED_USER_CACHE_MAXIMUM_SIZE = 10000;
 
     private final PropertiesLoader properties;
     private final IUserDataManager database;
@@ -99,6 +105,10 @@ public class UserAuthenticationManager {
     
     private final Map<AuthenticationProvider, IAuthenticator> registeredAuthProviders;
 
+    // Users recently loaded to authenticate a request, so that most requests need not query the users table:
+    private final Cache<Long, RegisteredUser> authenticatedUserCache;
+    private final AtomicLong authenticatedUserCacheInvalidations = new AtomicLong();
+
     /**
      * Fully injectable constructor.
      *  @param database
@@ -129,6 +139,13 @@ public class UserAuthenticationManager {
         boolean isProduction = properties.getProperty(Constants.SEGUE_APP_ENVIRONMENT).equals(EnvironmentType.PROD.name());
         this.checkOriginHeader = isProduction;
         this.setSecureCookies = isProduction;
+
+        String authenticatedUserCacheExpiry = properties.getProperty(AUTHENTICATED_USER_CACHE_EXPIRY_SECONDS);
+        this.authenticatedUserCache = CacheBuilder.newBuilder()
+                .maximumSize(AUTHENTICATED_USER_CACHE_MAXIMUM_SIZE)
+                .expireAfterWrite(null != authenticatedUserCacheExpiry ? Integer.parseInt(authenticatedUserCacheExpiry)
+                        : DEFAULT_AUTHENTICATED_USER_CACHE_EXPIRY_SECONDS, TimeUnit.SECONDS)
+                .build();
     }
 
     /**
@@ -448,7 +465,8 @@ public class UserAuthenticationManager {
         try {
             // Get the user the cookie claims to belong to from the session information:
             long currentUserId = Long.parseLong(currentSessionInformation.get(SESSION_USER_ID));
-            RegisteredUser userToReturn =  database.getById(currentUserId);
+            RegisteredUser userToReturn = this.getUserForSessionToken(currentUserId,
+                    currentSessionInformation.get(SESSION_TOKEN));
 
             // Check that the user's session is indeed valid:
             if (null == userToReturn || !this.isValidUsersSession(currentSessionInformation, userToReturn)) {
@@ -465,6 +483,81 @@ public class UserAuthenticationManager {
             return null;
         }
     }
+
+    /**
+     * Remove a user from the cache used to authenticate requests, so that the next request they make sees any change
+     * to their account.
+     *
+     * This must be called whenever a user's session token, role or account details change.
+     *
+     * @param userId - the id of the user who has changed.
+     */
+    public void invalidateCachedUser(final Long userId) {
+        // Count the invalidation first, so that a concurrent load of the old user cannot be cached after it:
+        authenticatedUserCacheInvalidations.incrementAndGet();
+        authenticatedUserCache.invalidate(userId);
+    }
+
+    /**
+     * Remove all users from the cache used to authenticate requests.
+     *
+     * This is for when changes to users may have been missed, e.g. those made by another API server.
+     */
+    public void invalidateAllCachedUsers() {
+        authenticatedUserCacheInvalidations.incrementAndGet();
+        authenticatedUserCache.invalidateAll();
+    }
+
+    /**
+     * Get the user a session claims to belong to, from the cache if we have seen that session recently.
+     *
+     * Only users whose current session token matches the one provided are cached, so cookies from old sessions cannot
+     * displace valid ones. The caller must still validate the rest of the session.
+     *
+     * @param userId - the id of the user the session claims to belong to.
+     * @param sessionToken - the session token from the session.
+     * @return the user, which callers may modify, or null if there is no such user.
+     * @throws SegueDatabaseException - if the user needs loading and the database cannot be reached.
+     */
+    private RegisteredUser getUserForSessionToken(final long userId, final String sessionToken)
+            throws SegueDatabaseException {
+        RegisteredUser cachedUser = authenticatedUserCache.getIfPresent(userId);
+        if (null != cachedUser && hasSessionToken(cachedUser, sessionToken)) {
+            return copyOf(cachedUser);
+        }
+
+        long invalidationsBeforeLoad = authenticatedUserCacheInvalidations.get();
+        RegisteredUser user = database.getById(userId);
+        if (null != user && hasSessionToken(user, sessionToken)) {
+            authenticatedUserCache.put(userId, copyOf(user));
+            if (authenticatedUserCacheInvalidations.get() != invalidationsBeforeLoad) {
+                // The user may have changed since we loaded them, so do not trust what we cached:
+                authenticatedUserCache.invalidate(userId);
+            }
+        }
+        return user;
+    }
+
+    /**
+     * Check whether a user's current session token is the one provided.
+     *
+     * @param user - the user to check.
+     * @param sessionToken - the session token from a session.
+     * @return true if the session token is the user's current one.
+     */
+    private static boolean hasSessionToken(final RegisteredUser user, final String sessionToken) {
+        return null != user.getSessionToken() && user.getSessionToken().toString().equals(sessionToken);
+    }
+
+    /**
+     * Copy a user, so that callers modifying the user they are given cannot change the cached user.
+     *
+     * @param user - the user to copy.
+     * @return a copy of the user.
+     */
+    private RegisteredUser copyOf(final RegisteredUser user) {
+        return serializationMapper.convertValue(user, RegisteredUser.class);
+    }
     
     /**
      * Create a signed session based on the user DO provided and the http request and response.
@@ -20,36 +20,35 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.Validate;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
 
-import java.util.Calendar;
-import java.util.Date;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
-
-import static com.google.common.collect.Maps.immutableEntry;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * InMemoryMisuseMonitor.
+ *
+ * Each agent and event has its own counter, so notifications for different agents never contend with each other.
+ * A counter is a single AtomicLong packing the start of its accounting window (in seconds) into the high 32 bits
+ * and the count within that window into the low 32 bits, so it can be incremented or reset with one compare-and-set
+ * and without allocating.
  */
 public class InMemoryMisuseMonitor implements IMisuseMonitor {
-    // Cache of the form agentIdentifier --> Event --> Date, number
-    private final Cache<String, Map<String, Map.Entry<Date, Integer>>> nonPersistentDatabase;
+    // Cache of the form agentIdentifier --> Event --> packed window start and count
+    private final Cache<String, ConcurrentMap<String, AtomicLong>> nonPersistentDatabase;
 
     private final Map<String, IMisuseHandler> handlerMap;
 
-    private static final Logger log = LoggerFactory.getLogger(InMemoryMisuseMonitor.class);
-
     /**
      * Creates a misuse monitor that just uses non-persistent storage.
      */
     @Inject
     public InMemoryMisuseMonitor() {
         nonPersistentDatabase = CacheBuilder.newBuilder().expireAfterAccess(2, TimeUnit.DAYS)
-                .<String, Map<String, Map.Entry<Date, Integer>>> build();
+                .<String, ConcurrentMap<String, AtomicLong>> build();
         handlerMap = Maps.newConcurrentMap();
     }
 
@@ -59,7 +58,7 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
     }
 
     @Override
-    public synchronized void notifyEvent(final String agentIdentifier, final String eventLabel)
+    public void notifyEvent(final String agentIdentifier, final String eventLabel)
             throws SegueResourceMisuseException {
         Validate.notBlank(agentIdentifier);
         Validate.notBlank(eventLabel);
@@ -67,115 +66,135 @@ public class InMemoryMisuseMonitor implements IMisuseMonitor {
     }
 
     @Override
-    public synchronized void notifyEvent(final String agentIdentifier, final String eventLabel,
+    public void notifyEvent(final String agentIdentifier, final String eventLabel,
             final Integer adjustmentValue) throws SegueResourceMisuseException {
         Validate.notBlank(agentIdentifier);
         Validate.notBlank(eventLabel);
         Validate.notNull(adjustmentValue);
         Validate.isTrue(adjustmentValue >= 0, "Expected positive integer value.");
-        
+
         IMisuseHandler handler = handlerMap.get(eventLabel);
         Validate.notNull(handler, "No handler has been registered for " + eventLabel);
 
-        Map<String, Entry<Date, Integer>> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
-
+        long now = currentTimeInSeconds();
+        ConcurrentMap<String, AtomicLong> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
         if (null == existingHistory) {
-            existingHistory = Maps.newConcurrentMap();
-
-            existingHistory.put(eventLabel, immutableEntry(new Date(), adjustmentValue));
-            nonPersistentDatabase.put(agentIdentifier, existingHistory);
-        } else {
-            Entry<Date, Integer> entry = existingHistory.get(eventLabel);
-            if (null == entry) {
-                existingHistory.put(eventLabel, immutableEntry(new Date(), adjustmentValue));
-                log.debug("New Event " + existingHistory.get(eventLabel));
-            } else {
+            existingHistory = nonPersistentDatabase.asMap()
+                    .computeIfAbsent(agentIdentifier, k -> new ConcurrentHashMap<>());
+        }
 
-                // deal with expired events
-                if (!isCountStillFresh(entry.getKey(), handler.getAccountingIntervalInSeconds())) {
-                    existingHistory.put(eventLabel, immutableEntry(new Date(), adjustmentValue));
-                    log.debug("Event expired starting count over");
-                } else {
-                    // last events not expired yet so add them.
-                    existingHistory.put(eventLabel, immutableEntry(entry.getKey(), entry.getValue() + adjustmentValue));
-                    log.debug("Event NOT expired so adding one " + existingHistory.get(eventLabel));
-                }
-
-                entry = existingHistory.get(eventLabel);
-                int previousValue = entry.getValue() - adjustmentValue;
-                
-                // deal with threshold violations
-                if (handler.getSoftThreshold() != null
-                        && (previousValue < handler.getSoftThreshold() && entry.getValue() >= handler
-                                .getSoftThreshold())) {
-                    handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!",
-                            agentIdentifier));
-                }
-
-                if (handler.getHardThreshold() != null
-                        && (previousValue < handler.getHardThreshold() && entry.getValue() >= handler
-                                .getHardThreshold())) {
-                    String errMessage = String.format("(%s) has exceeded the hard limit!", agentIdentifier);
-
-                    handler.executeHardThresholdAction(errMessage);
-                }
-                
-                if (handler.getHardThreshold() != null && entry.getValue() > handler.getHardThreshold()) {
-                    throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
-                }
+        AtomicLong counter = existingHistory.get(eventLabel);
+        if (null == counter) {
+            counter = existingHistory.putIfAbsent(eventLabel, new AtomicLong(pack(now, adjustmentValue)));
+            if (null == counter) {
+                // The first event seen for this agent only starts the count.
+                return;
             }
         }
+
+        long accountingInterval = handler.getAccountingIntervalInSeconds();
+        long previousState;
+        long newState;
+        int previousValue;
+        do {
+            previousState = counter.get();
+            if (isCountStillFresh(previousState, now, accountingInterval)) {
+                previousValue = countOf(previousState);
+                newState = pack(windowStartOf(previousState), saturatedAdd(previousValue, adjustmentValue));
+            } else {
+                // deal with expired events by starting the count over.
+                previousValue = 0;
+                newState = pack(now, adjustmentValue);
+            }
+        } while (!counter.compareAndSet(previousState, newState));
+        int newValue = countOf(newState);
+
+        // deal with threshold violations
+        if (handler.getSoftThreshold() != null
+                && (previousValue < handler.getSoftThreshold() && newValue >= handler.getSoftThreshold())) {
+            handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!", agentIdentifier));
+        }
+
+        if (handler.getHardThreshold() != null
+                && (previousValue < handler.getHardThreshold() && newValue >= handler.getHardThreshold())) {
+            String errMessage = String.format("(%s) has exceeded the hard limit!", agentIdentifier);
+
+            handler.executeHardThresholdAction(errMessage);
+        }
+
+        if (handler.getHardThreshold() != null && newValue > handler.getHardThreshold()) {
+            throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
+        }
     }
-    
+
     @Override
     public boolean hasMisused(final String agentIdentifier, final String eventToCheck) {
         return willHaveMisused(agentIdentifier, eventToCheck, 0);
     }
 
     @Override
-    public boolean willHaveMisused(String agentIdentifier, String eventToCheck, Integer adjustmentValue) {
-        Map<String, Entry<Date, Integer>> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
+    public boolean willHaveMisused(final String agentIdentifier, final String eventToCheck,
+                                   final Integer adjustmentValue) {
+        Map<String, AtomicLong> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
 
         if (null == existingHistory || existingHistory.get(eventToCheck) == null) {
             return false;
         }
 
-        Entry<Date, Integer> entry = existingHistory.get(eventToCheck);
+        long state = existingHistory.get(eventToCheck).get();
         IMisuseHandler handler = handlerMap.get(eventToCheck);
 
-        return isCountStillFresh(entry.getKey(), handler.getAccountingIntervalInSeconds())
-                && entry.getValue() + adjustmentValue >= handler.getHardThreshold();
+        return isCountStillFresh(state, currentTimeInSeconds(), handler.getAccountingIntervalInSeconds())
+                && (long) countOf(state) + adjustmentValue >= handler.getHardThreshold();
     }
 
     @Override
     public void resetMisuseCount(final String agentIdentifier, final String eventLabel) {
-        Map<String, Entry<Date, Integer>> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
-        
-        if (null == existingHistory || existingHistory.get(eventLabel) == null) {
+        Map<String, AtomicLong> existingHistory = nonPersistentDatabase.getIfPresent(agentIdentifier);
+
+        if (null == existingHistory) {
             return;
         }
-        
+
         existingHistory.remove(eventLabel);
     }
-    
+
     /**
-     * Helper to work out whether we can reset the counter or not.
-     * 
-     * @param mapEntryDate
-     *            - the date that the map entry for the misuse database was created.
+     * Helper to work out whether we can continue counting in the current window or not.
+     *
+     * @param state
+     *            - the packed window start and count of the counter.
+     * @param now
+     *            - the current time in seconds.
      * @param secondsUntilExpiry
-     *            - the number of seconds until this entry expires.
-     * @return true if we can continue counting false if we should reset the counter as the entry has expired.
+     *            - the number of seconds after the start of the window that it expires.
+     * @return true if we can continue counting false if we should reset the counter as the window has expired.
      */
-    private boolean isCountStillFresh(final Date mapEntryDate, final Integer secondsUntilExpiry) {
-        Calendar entryExpiry = Calendar.getInstance();
-        entryExpiry.setTime(mapEntryDate);
-        entryExpiry.add(Calendar.SECOND, secondsUntilExpiry);
+    private static boolean isCountStillFresh(final long state, final long now, final long secondsUntilExpiry) {
+        return now <= windowStartOf(state) + secondsUntilExpiry;
+    }
 
-        if (new Date().after(entryExpiry.getTime())) {
-            return false;
-        }
+    /**
+     * @return the current time in seconds, which fits in 32 unsigned bits until 2106.
+     */
+    private static long currentTimeInSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    private static long pack(final long windowStart, final int count) {
+        return (windowStart << 32) | (count & 0xFFFFFFFFL);
+    }
+
+    private static long windowStartOf(final long state) {
+        return state >>> 32;
+    }
+
+    private static int countOf(final long state) {
+        return (int) state;
+    }
 
-        return true;
+    private static int saturatedAdd(final int value, final int adjustment) {
+        long sum = (long) value + adjustment;
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
     }
 }
@@ -29,22 +29,30 @@ import javax.ws.rs.container.ContainerResponseContext;
 import javax.ws.rs.container.ContainerResponseFilter;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.ext.Provider;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
 import java.io.IOException;
 
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.REQUEST_COMPONENT_LATENCY_HISTOGRAM;
 import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.REQUEST_LATENCY_HISTOGRAM;
 
 /**
  * Allows us to log the performance of all requests.
  *
+ * As well as the total time taken, the time each request spends calling the database, search and other components
+ * is recorded (see {@link RequestTimings}), returned in a Server-Timing header and included in slow request logs.
+ * The time taken to serialise the response is only known once it has been written, so it is absent from the header.
  */
 @Priority(0) // Setting the priority to 0 makes sure this filter is applied first on request and last on response
 @Provider
-public class PerformanceMonitor implements ContainerRequestFilter, ContainerResponseFilter {
+public class PerformanceMonitor implements ContainerRequestFilter, ContainerResponseFilter, WriterInterceptor {
     private static final Logger log = LoggerFactory.getLogger(PerformanceMonitor.class);
 
     public static final long WARNING_THRESHOLD = 3000;
     public static final long ERROR_THRESHOLD = 10000;
     private static final long NUMBER_OF_MILLISECONDS_IN_A_SECOND = 1000;
+    private static final double NUMBER_OF_NANOSECONDS_IN_A_SECOND = 1e9;
+    private static final String SERVER_TIMING_HEADER = "Server-Timing";
 
     @Context private HttpRequest request;
     private final MonitorService monitorService;
@@ -62,6 +70,7 @@ public class PerformanceMonitor implements ContainerRequestFilter, ContainerResp
         StopWatch timer = new StopWatch();
         timer.start();
         request.setAttribute("timer", timer);
+        RequestTimings.start();
     }
 
     @Override
@@ -76,23 +85,79 @@ public class PerformanceMonitor implements ContainerRequestFilter, ContainerResp
         
         timer.stop();
         long timeInMs = timer.getTime();
-
-        if (timeInMs < WARNING_THRESHOLD) {
-            log.debug(String.format("Request: %s %s took %dms",
-                    requestContext.getMethod(), request.getUri().getPath(), timeInMs));
-        } else if (timeInMs < ERROR_THRESHOLD) {
-            log.warn(String.format("Performance Warning: Request: %s %s took %dms and exceeded threshold of %d",
-                    requestContext.getMethod(), request.getUri().getPath(), timeInMs, WARNING_THRESHOLD));
-        } else {
-            log.error(String.format("Performance Alert: Request: %s %s took %dms and exceeded threshold of %d",
-                    requestContext.getMethod(), request.getUri().getPath(), timeInMs, ERROR_THRESHOLD));
-        }
+        String path = monitorService.getPathWithoutPathParamValues(request.getUri());
 
         // Record for metrics
         REQUEST_LATENCY_HISTOGRAM
-                .labels(requestContext.getMethod(), monitorService.getPathWithoutPathParamValues(request.getUri()))
+                .labels(requestContext.getMethod(), path)
                 .observe((double)timeInMs / NUMBER_OF_MILLISECONDS_IN_A_SECOND);
+
+        RequestTimings timings = RequestTimings.current();
+        if (null == timings) {
+            this.logRequest(requestContext.getMethod(), timeInMs, "no breakdown available");
+            return;
+        }
+        timings.setEndpoint(requestContext.getMethod(), path, timeInMs);
+        responseContext.getHeaders().add(SERVER_TIMING_HEADER, timings.toServerTimingHeader(timeInMs));
+
+        // If there is a response body, wait until it has been serialised to finish:
+        if (!responseContext.hasEntity()) {
+            this.finish(timings);
+        }
     }
 
+    @Override
+    public void aroundWriteTo(final WriterInterceptorContext context) throws IOException {
+        RequestTimings timings = RequestTimings.current();
+        if (null == timings || null == timings.getMethod()) {
+            context.proceed();
+            return;
+        }
+        try (RequestTimings.Timer serialisationTimer = RequestTimings.time(RequestTimings.Component.SERIALISATION)) {
+            context.proceed();
+        } finally {
+            this.finish(timings);
+        }
+    }
 
+    /**
+     * Record the time spent in each component by a request which has been completely handled, and log it if slow.
+     *
+     * @param timings
+     *            - of the request.
+     */
+    private void finish(final RequestTimings timings) {
+        RequestTimings.clear();
+        for (RequestTimings.Component component : RequestTimings.Component.values()) {
+            if (timings.getCalls(component) > 0) {
+                REQUEST_COMPONENT_LATENCY_HISTOGRAM
+                        .labels(timings.getMethod(), timings.getPath(), component.getLabel())
+                        .observe(timings.getNanoseconds(component) / NUMBER_OF_NANOSECONDS_IN_A_SECOND);
+            }
+        }
+        this.logRequest(timings.getMethod(), timings.getTotalMilliseconds(), timings.toBreakdownString());
+    }
+
+    /**
+     * Log the time taken by a request, at a level depending on how slow it was.
+     *
+     * @param method
+     *            - the HTTP method of the request.
+     * @param timeInMs
+     *            - the time taken to produce the response.
+     * @param breakdown
+     *            - a summary of where the time was spent.
+     */
+    private void logRequest(final String method, final long timeInMs, final String breakdown) {
+        if (timeInMs < WARNING_THRESHOLD) {
+            log.debug(String.format("Request: %s %s took %dms (%s)",
+                    method, request.getUri().getPath(), timeInMs, breakdown));
+        } else if (timeInMs < ERROR_THRESHOLD) {
+            log.warn(String.format("Performance Warning: Request: %s %s took %dms and exceeded threshold of %d (%s)",
+                    method, request.getUri().getPath(), timeInMs, WARNING_THRESHOLD, breakdown));
+        } else {
+            log.error(String.format("Performance Alert: Request: %s %s took %dms and exceeded threshold of %d (%s)",
+                    method, request.getUri().getPath(), timeInMs, ERROR_THRESHOLD, breakdown));
+        }
+    }
 }
@@ -0,0 +1,390 @@
+/**
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Misuse monitor which keeps its counts in Postgres, so that they are shared by every API node and survive restarts.
+ *
+ * Events are counted locally and the totals flushed to the database periodically with an upsert, so only the first
+ * event seen for an agent on each node needs a synchronous database round trip. Between flushes a node does not see
+ * events counted by other nodes, so the limits are enforced to within one flush interval's worth of events. Agents
+ * known to be over the hard threshold are remembered locally until their accounting window ends.
+ *
+ * If the database cannot be reached the monitor carries on counting locally, rather than blocking every user.
+ */
+public class PgMisuseMonitor implements IMisuseMonitor {
+    private static final Logger log = LoggerFactory.getLogger(PgMisuseMonitor.class);
+
+    public static final int DEFAULT_FLUSH_INTERVAL_MILLISECONDS = 1000;
+
+    private static final int LOCAL_COUNTER_EXPIRY_MINUTES = 60;
+    private static final int MAX_BLOCKED_AGENTS = 10000;
+
+    private final PostgresSqlDb database;
+    private final long flushIntervalMilliseconds;
+    private final Map<String, IMisuseHandler> handlerMap;
+
+    // Cache of the form agentIdentifier --> Event --> local view of the shared counter
+    private final Cache<String, ConcurrentMap<String, LocalCounter>> localCounters;
+    // Cache of the form agentIdentifier|Event --> end of the accounting window, in seconds
+    private final Cache<String, Long> blockedAgents;
+
+    private final ScheduledExecutorService flushExecutor;
+
+    /**
+     * Creates a misuse monitor which keeps its counts in the database.
+     *
+     * @param database
+     *            - the database to store the counts in.
+     * @param flushIntervalMilliseconds
+     *            - how often to write locally counted events to the database.
+     */
+    public PgMisuseMonitor(final PostgresSqlDb database, final long flushIntervalMilliseconds) {
+        Validate.notNull(database);
+        Validate.isTrue(flushIntervalMilliseconds > 0, "flushIntervalMilliseconds must be positive");
+
+        this.database = database;
+        this.flushIntervalMilliseconds = flushIntervalMilliseconds;
+        this.handlerMap = Maps.newConcurrentMap();
+        this.localCounters = CacheBuilder.newBuilder()
+                .expireAfterAccess(LOCAL_COUNTER_EXPIRY_MINUTES, TimeUnit.MINUTES)
+                .<String, ConcurrentMap<String, LocalCounter>> build();
+        this.blockedAgents = CacheBuilder.newBuilder().maximumSize(MAX_BLOCKED_AGENTS)
+                .expireAfterWrite(1, TimeUnit.DAYS).build();
+
+        this.flushExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("misuse-monitor-flush").setDaemon(true).build());
+        this.flushExecutor.scheduleWithFixedDelay(this::flush, flushIntervalMilliseconds, flushIntervalMilliseconds,
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void registerHandler(final String eventToHandle, final IMisuseHandler handler) {
+        handlerMap.put(eventToHandle, handler);
+    }
+
+    @Override
+    public void notifyEvent(final String agentIdentifier, final String eventLabel)
+            throws SegueResourceMisuseException {
+        Validate.notBlank(agentIdentifier);
+        Validate.notBlank(eventLabel);
+        this.notifyEvent(agentIdentifier, eventLabel, 1);
+    }
+
+    @Override
+    public void notifyEvent(final String agentIdentifier, final String eventLabel,
+                            final Integer adjustmentValue) throws SegueResourceMisuseException {
+        Validate.notBlank(agentIdentifier);
+        Validate.notBlank(eventLabel);
+        Validate.notNull(adjustmentValue);
+        Validate.isTrue(adjustmentValue >= 0, "Expected positive integer value.");
+
+        IMisuseHandler handler = handlerMap.get(eventLabel);
+        Validate.notNull(handler, "No handler has been registered for " + eventLabel);
+
+        long now = currentTimeInSeconds();
+        LocalCounter counter = getLocalCounter(agentIdentifier, eventLabel);
+        boolean firstEvent;
+        int previousValue;
+        int newValue;
+        long windowEnd;
+        synchronized (counter) {
+            this.ensureFresh(agentIdentifier, eventLabel, counter);
+
+            firstEvent = counter.windowStart == 0;
+            if (firstEvent || now > counter.windowStart + handler.getAccountingIntervalInSeconds()) {
+                // deal with expired events by starting the count over.
+                counter.startWindow(now);
+            }
+            previousValue = counter.total();
+            counter.pendingDelta = saturatedAdd(counter.pendingDelta, adjustmentValue);
+            counter.dirty = true;
+            newValue = counter.total();
+            windowEnd = counter.windowStart + handler.getAccountingIntervalInSeconds();
+        }
+
+        if (firstEvent) {
+            // The first event seen for this agent only starts the count.
+            return;
+        }
+
+        // deal with threshold violations
+        if (handler.getSoftThreshold() != null
+                && (previousValue < handler.getSoftThreshold() && newValue >= handler.getSoftThreshold())) {
+            handler.executeSoftThresholdAction(String.format("(%s) has exceeded the soft limit!", agentIdentifier));
+        }
+
+        if (handler.getHardThreshold() != null
+                && (previousValue < handler.getHardThreshold() && newValue >= handler.getHardThreshold())) {
+            String errMessage = String.format("(%s) has exceeded the hard limit!", agentIdentifier);
+
+            handler.executeHardThresholdAction(errMessage);
+        }
+
+        if (handler.getHardThreshold() != null && newValue > handler.getHardThreshold()) {
+            blockedAgents.put(blockedAgentKey(agentIdentifier, eventLabel), windowEnd);
+            throw new SegueResourceMisuseException("Exceeded resource usage limit on " + eventLabel);
+        }
+    }
+
+    @Override
+    public boolean hasMisused(final String agentIdentifier, final String eventToCheck) {
+        return willHaveMisused(agentIdentifier, eventToCheck, 0);
+    }
+
+    @Override
+    public boolean willHaveMisused(final String agentIdentifier, final String eventToCheck,
+                                   final Integer adjustmentValue) {
+        long now = currentTimeInSeconds();
+        Long blockedUntil = blockedAgents.getIfPresent(blockedAgentKey(agentIdentifier, eventToCheck));
+        if (blockedUntil != null && now <= blockedUntil && adjustmentValue >= 0) {
+            return true;
+        }
+
+        IMisuseHandler handler = handlerMap.get(eventToCheck);
+        LocalCounter counter = getLocalCounter(agentIdentifier, eventToCheck);
+        synchronized (counter) {
+            this.ensureFresh(agentIdentifier, eventToCheck, counter);
+
+            return counter.windowStart != 0
+                    && now <= counter.windowStart + handler.getAccountingIntervalInSeconds()
+                    && (long) counter.total() + adjustmentValue >= handler.getHardThreshold();
+        }
+    }
+
+    @Override
+    public void resetMisuseCount(final String agentIdentifier, final String eventLabel) {
+        blockedAgents.invalidate(blockedAgentKey(agentIdentifier, eventLabel));
+        Map<String, LocalCounter> existingHistory = localCounters.getIfPresent(agentIdentifier);
+        if (existingHistory != null) {
+            existingHistory.remove(eventLabel);
+        }
+
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement(
+                    "DELETE FROM misuse_statistics WHERE agent_identifier = ? AND event_type = ?");
+            pst.setString(1, agentIdentifier);
+            pst.setString(2, eventLabel);
+            pst.executeUpdate();
+        } catch (SQLException e) {
+            log.error(String.format("Unable to reset misuse count for (%s) on %s", agentIdentifier, eventLabel), e);
+        }
+    }
+
+    /**
+     * Write the locally counted events to the database and refresh the local view of each counter touched since the
+     * last flush with the shared totals.
+     *
+     * This is called periodically, but can be called directly to flush immediately.
+     */
+    public void flush() {
+        for (Map.Entry<String, ConcurrentMap<String, LocalCounter>> agent : localCounters.asMap().entrySet()) {
+            for (Map.Entry<String, LocalCounter> event : agent.getValue().entrySet()) {
+                IMisuseHandler handler = handlerMap.get(event.getKey());
+                if (handler != null) {
+                    this.flushCounter(agent.getKey(), event.getKey(), event.getValue(),
+                            handler.getAccountingIntervalInSeconds());
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the periodic flush and write any events not yet flushed.
+     */
+    public void close() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(flushIntervalMilliseconds * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        this.flush();
+    }
+
+    /**
+     * Upsert a counter's pending events, or just re-read it if there are none.
+     *
+     * @param agentIdentifier - the agent.
+     * @param eventLabel - the event.
+     * @param counter - the local counter.
+     * @param accountingInterval - the accounting interval of the event, in seconds.
+     */
+    private void flushCounter(final String agentIdentifier, final String eventLabel, final LocalCounter counter,
+                              final int accountingInterval) {
+        int delta;
+        int generation;
+        synchronized (counter) {
+            if (!counter.dirty) {
+                return;
+            }
+            counter.dirty = false;
+            delta = counter.pendingDelta;
+            generation = counter.generation;
+        }
+
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement("INSERT INTO misuse_statistics"
+                    + " (agent_identifier, event_type, window_start, event_count) VALUES (?, ?, now(), ?)"
+                    + " ON CONFLICT (agent_identifier, event_type) DO UPDATE SET"
+                    + " window_start = CASE WHEN misuse_statistics.window_start + make_interval(secs => ?) < now()"
+                    + " THEN now() ELSE misuse_statistics.window_start END,"
+                    + " event_count = CASE WHEN misuse_statistics.window_start + make_interval(secs => ?) < now()"
+                    + " THEN excluded.event_count ELSE misuse_statistics.event_count + excluded.event_count END"
+                    + " RETURNING EXTRACT(EPOCH FROM window_start)::bigint AS window_start_seconds, event_count");
+            pst.setString(1, agentIdentifier);
+            pst.setString(2, eventLabel);
+            pst.setInt(3, delta);
+            pst.setInt(4, accountingInterval);
+            pst.setInt(5, accountingInterval);
+
+            ResultSet results = pst.executeQuery();
+            results.next();
+            long windowStart = results.getLong("window_start_seconds");
+            int eventCount = results.getInt("event_count");
+
+            synchronized (counter) {
+                // If the local window was restarted while flushing, the pending count no longer includes delta.
+                if (counter.generation == generation) {
+                    counter.windowStart = windowStart;
+                    counter.knownCount = eventCount;
+                    counter.pendingDelta -= delta;
+                } else {
+                    counter.dirty = true;
+                }
+                counter.lastSynchronised = System.currentTimeMillis();
+            }
+        } catch (SQLException e) {
+            synchronized (counter) {
+                counter.dirty = true;
+            }
+            log.error(String.format("Unable to flush misuse count for (%s) on %s", agentIdentifier, eventLabel), e);
+        }
+    }
+
+    /**
+     * Load the shared count for a counter if it has not been loaded yet, or if it has no pending events and has not
+     * been synchronised with the database for more than a flush interval (so counts made on other nodes are seen).
+     *
+     * Must be called holding the counter's lock.
+     *
+     * @param agentIdentifier - the agent.
+     * @param eventLabel - the event.
+     * @param counter - the local counter.
+     */
+    private void ensureFresh(final String agentIdentifier, final String eventLabel, final LocalCounter counter) {
+        long now = System.currentTimeMillis();
+        boolean hasPendingEvents = counter.dirty || counter.pendingDelta != 0;
+        if (counter.lastSynchronised != 0
+                && (hasPendingEvents || now - counter.lastSynchronised < flushIntervalMilliseconds)) {
+            return;
+        }
+
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement("SELECT EXTRACT(EPOCH FROM window_start)::bigint"
+                    + " AS window_start_seconds, event_count FROM misuse_statistics"
+                    + " WHERE agent_identifier = ? AND event_type = ?");
+            pst.setString(1, agentIdentifier);
+            pst.setString(2, eventLabel);
+
+            ResultSet results = pst.executeQuery();
+            if (results.next()) {
+                counter.windowStart = results.getLong("window_start_seconds");
+                counter.knownCount = results.getInt("event_count");
+            } else {
+                // Either never seen, or reset since we last looked.
+                counter.windowStart = 0;
+                counter.knownCount = 0;
+            }
+        } catch (SQLException e) {
+            log.error(String.format("Unable to load misuse count for (%s) on %s", agentIdentifier, eventLabel), e);
+        }
+        counter.lastSynchronised = now;
+    }
+
+    /**
+     * Get the local counter for an agent and event, creating it if necessary.
+     *
+     * @param agentIdentifier - the agent.
+     * @param eventLabel - the event.
+     * @return the local counter.
+     */
+    private LocalCounter getLocalCounter(final String agentIdentifier, final String eventLabel) {
+        ConcurrentMap<String, LocalCounter> existingHistory = localCounters.getIfPresent(agentIdentifier);
+        if (null == existingHistory) {
+            existingHistory = localCounters.asMap().computeIfAbsent(agentIdentifier, k -> new ConcurrentHashMap<>());
+        }
+        return existingHistory.computeIfAbsent(eventLabel, k -> new LocalCounter());
+    }
+
+    private static String blockedAgentKey(final String agentIdentifier, final String eventLabel) {
+        return agentIdentifier + "|" + eventLabel;
+    }
+
+    private static long currentTimeInSeconds() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    private static int saturatedAdd(final int value, final int adjustment) {
+        long sum = (long) value + adjustment;
+        return sum > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) sum;
+    }
+
+    /**
+     * This node's view of a shared counter: the total last read from the database plus the events counted here
+     * since. All fields are guarded by the counter's own lock.
+     */
+    private static final class LocalCounter {
+        private long windowStart;
+        private int knownCount;
+        private int pendingDelta;
+        private boolean dirty;
+        private int generation;
+        private long lastSynchronised;
+
+        private void startWindow(final long now) {
+            windowStart = now;
+            knownCount = 0;
+            pendingDelta = 0;
+            generation++;
+        }
+
+        private int total() {
+            return saturatedAdd(knownCount, pendingDelta);
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long the request being handled by the current thread spends in each of the slow components it uses, so
+ * that the time taken by a slow request can be broken down.
+ *
+ * A context is started for each API request by the {@link PerformanceMonitor}; code which calls out to the database,
+ * search or other services wraps those calls in {@link #time(Component)}. Time spent outside a request, e.g. in
+ * scheduled jobs, is not recorded.
+ */
+public final class RequestTimings {
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+    private static final Timer NO_OP_TIMER = new Timer(null, null);
+    private static final double NANOSECONDS_PER_MILLISECOND = 1e6;
+
+    /**
+     * The components whose time is recorded.
+     */
+    public enum Component {
+        DATABASE_CONNECTION("db-connection"),
+        DATABASE_QUERY("db-query"),
+        SEARCH("search"),
+        VALIDATOR("validator"),
+        SERIALISATION("serialisation");
+
+        private final String label;
+
+        /**
+         * @param label
+         *            - the name of the component in metrics and headers.
+         */
+        Component(final String label) {
+            this.label = label;
+        }
+
+        /**
+         * @return the name of the component in metrics and headers.
+         */
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    // Adders rather than longs, as work for a request may be done on more than one thread:
+    private final LongAdder[] nanosByComponent = new LongAdder[Component.values().length];
+    private final LongAdder[] callsByComponent = new LongAdder[Component.values().length];
+
+    private String method;
+    private String path;
+    private long totalMilliseconds;
+
+    /**
+     * Create an empty set of timings.
+     */
+    private RequestTimings() {
+        for (int i = 0; i < nanosByComponent.length; i++) {
+            nanosByComponent[i] = new LongAdder();
+            callsByComponent[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Start recording timings for the request being handled by this thread, discarding any previous timings.
+     *
+     * @return the new timings.
+     */
+    public static RequestTimings start() {
+        RequestTimings timings = new RequestTimings();
+        CURRENT.set(timings);
+        return timings;
+    }
+
+    /**
+     * @return the timings of the request being handled by this thread, or null if there is none.
+     */
+    @Nullable
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Stop recording timings for the request being handled by this thread.
+     */
+    public static void clear() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Start timing a call to a component, for the request being handled by this thread if there is one.
+     *
+     * @param component
+     *            - the component called.
+     * @return a timer to close once the call is complete.
+     */
+    public static Timer time(final Component component) {
+        return time(CURRENT.get(), component);
+    }
+
+    /**
+     * Start timing a call to a component.
+     *
+     * @param timings
+     *            - the timings to record the call in, or null to not record it.
+     * @param component
+     *            - the component called.
+     * @return a timer to close once the call is complete.
+     */
+    public static Timer time(@Nullable final RequestTimings timings, final Component component) {
+        if (null == timings) {
+            return NO_OP_TIMER;
+        }
+        return new Timer(timings, component);
+    }
+
+    /**
+     * @param component
+     *            - the component called.
+     * @param nanoseconds
+     *            - the time the call took.
+     */
+    public void record(final Component component, final long nanoseconds) {
+        nanosByComponent[component.ordinal()].add(nanoseconds);
+        callsByComponent[component.ordinal()].increment();
+    }
+
+    /**
+     * @param component
+     *            - a component.
+     * @return the total time spent in calls to the component, in nanoseconds.
+     */
+    public long getNanoseconds(final Component component) {
+        return nanosByComponent[component.ordinal()].sum();
+    }
+
+    /**
+     * @param component
+     *            - a component.
+     * @return the number of calls made to the component.
+     */
+    public long getCalls(final Component component) {
+        return callsByComponent[component.ordinal()].sum();
+    }
+
+    /**
+     * Note which endpoint the request was for and how long it took to handle, once the response has been produced.
+     *
+     * @param requestMethod
+     *            - the HTTP method.
+     * @param requestPath
+     *            - the path of the endpoint, without path parameter values.
+     * @param milliseconds
+     *            - the time taken to produce the response.
+     */
+    void setEndpoint(final String requestMethod, final String requestPath, final long milliseconds) {
+        this.method = requestMethod;
+        this.path = requestPath;
+        this.totalMilliseconds = milliseconds;
+    }
+
+    /**
+     * @return the HTTP method of the request, once the response has been produced.
+     */
+    String getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the path of the endpoint requested, once the response has been produced.
+     */
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * @return the time taken to produce the response, once it has been produced.
+     */
+    long getTotalMilliseconds() {
+        return totalMilliseconds;
+    }
+
+    /**
+     * @param totalMilliseconds
+     *            - the total time taken by the request so far.
+     * @return a Server-Timing header value listing the time spent in each component called, and in total.
+     */
+    public String toServerTimingHeader(final long totalMilliseconds) {
+        StringBuilder header = new StringBuilder();
+        for (Component component : Component.values()) {
+            if (getCalls(component) > 0) {
+                header.append(String.format("%s;dur=%.1f, ", component.getLabel(),
+                        getNanoseconds(component) / NANOSECONDS_PER_MILLISECOND));
+            }
+        }
+        return header.append("total;dur=").append(totalMilliseconds).toString();
+    }
+
+    /**
+     * @return a summary of the time spent in each component called, for logging.
+     */
+    public String toBreakdownString() {
+        StringBuilder breakdown = new StringBuilder();
+        for (Component component : Component.values()) {
+            long calls = getCalls(component);
+            if (calls > 0) {
+                if (breakdown.length() > 0) {
+                    breakdown.append(", ");
+                }
+                breakdown.append(String.format("%s %dms (%d calls)", component.getLabel(),
+                        TimeUnit.NANOSECONDS.toMillis(getNanoseconds(component)), calls));
+            }
+        }
+        if (breakdown.length() == 0) {
+            return "no component calls";
+        }
+        return breakdown.toString();
+    }
+
+    /**
+     * Times a single call to a component.
+     */
+    public static final class Timer implements AutoCloseable {
+        private final RequestTimings timings;
+        private final Component component;
+        private final long startNanos;
+
+        /**
+         * @param timings
+         *            - to record the call in, or null to record nothing.
+         * @param component
+         *            - the component called.
+         */
+        private Timer(@Nullable final RequestTimings timings, @Nullable final Component component) {
+            this.timings = timings;
+            this.component = component;
+            this.startNanos = timings != null ? System.nanoTime() : 0;
+        }
+
+        /**
+         * Record the time since the timer was started.
+         */
+        @Override
+        public void close() {
+            if (timings != null) {
+                timings.record(component, System.nanoTime() - startNanos);
+            }
+        }
+    }
+}
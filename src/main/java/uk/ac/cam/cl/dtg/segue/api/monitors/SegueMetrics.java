@@ -32,6 +32,11 @@ public final class SegueMetrics {
             .name("isaac_api_requests")
             .labelNames("method", "path")
             .help("Request latency in seconds.").register();
+    public static final Histogram REQUEST_COMPONENT_LATENCY_HISTOGRAM = Histogram.build()
+            .name("isaac_api_request_components")
+            .labelNames("method", "path", "component")
+            .help("Time spent by each request in calls to the database, search and other components, in seconds.")
+            .register();
 
     // WebSocket Response Time Metrics
     public static final Histogram WEBSOCKET_LATENCY_HISTOGRAM = Histogram.build()
@@ -45,6 +50,18 @@ public final class SegueMetrics {
             .labelNames("validator")
             .help("Validator latency in seconds.").register();
 
+    // External Validator Metrics
+    public static final Histogram EXTERNAL_VALIDATOR_LATENCY = Histogram.build()
+            .name("isaac_external_validator_requests").help("External checker request latency in seconds.")
+            .labelNames("checker").register();
+    public static final Gauge EXTERNAL_VALIDATOR_IN_FLIGHT = Gauge.build()
+            .name("isaac_external_validator_in_flight").help("Requests currently in flight to an external checker.")
+            .labelNames("checker").register();
+    public static final Counter EXTERNAL_VALIDATOR_REJECTIONS = Counter.build()
+            .name("isaac_external_validator_rejections_total")
+            .help("Checks rejected because an external checker had too many requests in flight, since process start.")
+            .labelNames("checker").register();
+
     // Cache Metrics
     public static final CacheMetricsCollector CACHE_METRICS_COLLECTOR = new CacheMetricsCollector().register();
 
@@ -80,10 +97,48 @@ public final class SegueMetrics {
     // Email Metrics
     public static final Counter QUEUED_EMAIL = Counter.build()
             .name("segue_queued_email_total").help("All emails queued since process start").labelNames("type").register();
+    public static final Gauge EMAIL_OUTBOX_BACKLOG = Gauge.build()
+            .name("segue_email_outbox_backlog").help("Emails in the outbox, either pending or given up on.")
+            .labelNames("state").register();
+    public static final Counter EMAIL_SEND_ATTEMPT = Counter.build()
+            .name("segue_email_send_attempt_total").help("Attempts to send an email since process start.")
+            .labelNames("result").register();
 
     // Log Event Metrics
     public static final Counter LOG_EVENT = Counter.build()
             .name("isaac_log_event").help("Counter for Log Events by type").labelNames("type").register();
+    public static final Gauge LOG_EVENT_QUEUE_DEPTH = Gauge.build()
+            .name("segue_log_event_queue_depth").help("Log events waiting to be written to the database.").register();
+    public static final Counter LOG_EVENT_DROPPED = Counter.build()
+            .name("segue_log_event_dropped_total").help("Log events which could not be written since process start.")
+            .labelNames("reason").register();
+    public static final Histogram LOG_EVENT_BATCH_WRITE_LATENCY = Histogram.build()
+            .name("segue_log_event_batch_write").help("Log event batch write latency in seconds.").register();
+
+    // Location Metrics
+    public static final Gauge LOCATION_REFRESH_QUEUE_DEPTH = Gauge.build()
+            .name("segue_location_refresh_queue_depth").help("IP addresses waiting to have their location refreshed.")
+            .register();
+    public static final Counter LOCATION_REFRESH_DROPPED = Counter.build()
+            .name("segue_location_refresh_dropped_total")
+            .help("IP address location refreshes skipped because the queue was full since process start.").register();
+
+    // ETL Metrics
+    public static final Counter ETL_INDEXED_DOCUMENTS = Counter.build()
+            .name("segue_etl_indexed_documents_total").help("Documents bulk indexed since process start.")
+            .labelNames("index_type").register();
+    public static final Counter ETL_INDEXED_BYTES = Counter.build()
+            .name("segue_etl_indexed_bytes_total").help("Estimated bytes bulk indexed since process start.")
+            .labelNames("index_type").register();
+    public static final Counter ETL_INDEXING_FAILURES = Counter.build()
+            .name("segue_etl_indexing_failures_total").help("Documents which failed to bulk index since process start.")
+            .labelNames("index_type").register();
+    public static final Histogram ETL_BULK_REQUEST_LATENCY = Histogram.build()
+            .name("segue_etl_bulk_request").help("Bulk index request latency in seconds.")
+            .labelNames("index_type").register();
+    public static final Gauge ETL_INDEXING_THROUGHPUT = Gauge.build()
+            .name("segue_etl_indexing_throughput").help("Documents per second of the most recent bulk index operation.")
+            .labelNames("index_type").register();
 
     /**
      *  Private constructor as it does not make sense to instantiate this class.
@@ -23,6 +23,7 @@ import uk.ac.cam.cl.dtg.segue.dao.content.ContentManagerException;
 import uk.ac.cam.cl.dtg.segue.dao.content.IContentManager;
 import uk.ac.cam.cl.dtg.segue.dto.ResultsWrapper;
 import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentSummaryDTO;
 
 import javax.annotation.Nullable;
 import java.util.List;
@@ -74,6 +75,38 @@ public class ContentService {
         return this.contentManager.findByFieldNames(newVersion, fieldsToMatch, newStartIndex, newLimit);
     }
 
+    /**
+     * The same as findMatchingContent, but only fetches the fields needed to summarise each result.
+     *
+     * @param version       - the version of the content to search. If null it will default to the current live version.
+     * @param fieldsToMatch - List of Boolean search clauses that must be true for the returned content.
+     * @param startIndex    - the start index for the search results.
+     * @param limit         - the max number of results to return.
+     * @return a ResultsWrapper of summaries, without urls, of the matching content.
+     * @throws ContentManagerException - an exception when the content is not found
+     */
+    public final ResultsWrapper<ContentSummaryDTO> findMatchingContentSummaries(
+            final String version, final List<IContentManager.BooleanSearchClause> fieldsToMatch,
+            @Nullable final Integer startIndex, @Nullable final Integer limit
+    ) throws ContentManagerException {
+
+        String newVersion = this.contentIndex;
+        Integer newLimit = Constants.DEFAULT_RESULTS_LIMIT;
+        Integer newStartIndex = 0;
+
+        if (version != null) {
+            newVersion = version;
+        }
+        if (limit != null) {
+            newLimit = limit;
+        }
+        if (startIndex != null) {
+            newStartIndex = startIndex;
+        }
+
+        return this.contentManager.findSummariesByFieldNames(newVersion, fieldsToMatch, newStartIndex, newLimit, null);
+    }
+
     /**
      * Library method that searches the content manager for some search string and provides map of fields that must
      * match.
@@ -15,51 +15,19 @@
  */
 package uk.ac.cam.cl.dtg.segue.comm;
 
-import java.util.Comparator;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.PriorityBlockingQueue;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-
 /**
  * Abstract message queue class.
  *
+ * Messages are held in an outbox until they can be sent, which by default keeps them in memory.
+ *
  * @author Alistair Stead
  *
  * @param <T>
  *            type of message to send
  */
 public abstract class AbstractCommunicationQueue<T extends ICommunicationMessage> {
-	
-	/**
-	 * Comparator that tells the priority queue which email should be sent first.
-	 */
-	private Comparator<ICommunicationMessage> emailPriorityComparator = new Comparator<ICommunicationMessage>() {
-		@Override
-		public int compare(final ICommunicationMessage first, final ICommunicationMessage second) {
-			if (first.getPriority() == second.getPriority()) {
-				return 0;
-			} else if (first.getPriority() <= second.getPriority()) {
-				return -1;
-			} else {
-				return 1;
-			}
-		}
-    	
-    };
-
-    private PriorityBlockingQueue<T> messageSenderRunnableQueue = 
-    				new PriorityBlockingQueue<T>(100, emailPriorityComparator);
-
-    private static final Logger log = LoggerFactory.getLogger(AbstractCommunicationQueue.class);
 
-    private ICommunicator<T> communicator;
-
-    private final ExecutorService executorService;
-    
+    private final ICommunicationOutbox<T> outbox;
 
     /**
      * FIFO queue manager that sends messages.
@@ -68,56 +36,31 @@ public abstract class AbstractCommunicationQueue<T extends ICommunicationMessage
      *            A class to send messages
      */
     public AbstractCommunicationQueue(final ICommunicator<T> communicator) {
-        this.communicator = communicator;
-        this.executorService = Executors.newFixedThreadPool(2); 
+        this(new InMemoryCommunicationOutbox<>(communicator));
     }
 
     /**
-     * @param queueObject
-     *            object of type S that can be added to the queue
+     * Queue manager that sends messages through the outbox provided.
+     *
+     * @param outbox
+     *            to hold messages until they are sent
      */
-    protected void addToQueue(final T queueObject) {
-    	messageSenderRunnableQueue.add(queueObject);
-    	executorService.submit(new MessageSenderRunnable());
-        log.debug("Added to the email queue. Current size: " + messageSenderRunnableQueue.size());
+    public AbstractCommunicationQueue(final ICommunicationOutbox<T> outbox) {
+        this.outbox = outbox;
     }
 
-
     /**
-     * @return an object from the head of the queue
+     * @param queueObject
+     *            object of type S that can be added to the queue
      */
-    private T getLatestQueueItem() {
-        return messageSenderRunnableQueue.poll();
+    protected void addToQueue(final T queueObject) {
+        outbox.add(queueObject);
     }
-    
+
     /**
      * @return current queue length
      */
     public int getQueueLength() {
-    	return messageSenderRunnableQueue.size();
+    	return outbox.getQueueLength();
     }
-
-    /**
-     * Runnable class that sends the oldest message on the queue.
-     *
-     * @author Alistair Stead
-     *
-     */
-    class MessageSenderRunnable implements Runnable {
-    	    	
-        @Override
-        public void run() {
-            // Send the actual message
-            try {
-            	T queueItem = getLatestQueueItem();
-                communicator.sendMessage(queueItem);
-                log.info("Sent message. Current size: " + messageSenderRunnableQueue.size());
-            } catch (CommunicationException e) {
-                log.warn("Communication Exception:" + e.getMessage());
-            } catch (Exception e) {
-                log.warn("Generic Exception:" + e.getMessage());
-                e.printStackTrace();
-			}
-        }
-    }    
-}
\ No newline at end of file
+}
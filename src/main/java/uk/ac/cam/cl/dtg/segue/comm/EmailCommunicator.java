@@ -15,15 +15,21 @@
  */
 package uk.ac.cam.cl.dtg.segue.comm;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import org.apache.commons.lang3.Validate;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.util.Mailer;
 
+import javax.mail.Message;
 import javax.mail.MessagingException;
+import javax.mail.Transport;
 import javax.mail.internet.InternetAddress;
 import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Map;
 
 /**
  * @author nr378 and Alistair Stead
@@ -66,6 +72,53 @@ public class EmailCommunicator implements ICommunicator<EmailCommunicationMessag
      */
 	@Override
 	public void sendMessage(final EmailCommunicationMessage email) throws CommunicationException {
+        try {
+            Transport.send(this.createMail(email));
+        } catch (MessagingException | UnsupportedEncodingException e) {
+            throw new CommunicationException(e);
+        }
+    }
+
+    /**
+     * Send several emails over a single connection to the SMTP server.
+     *
+     * @param emails
+     *            - messages to be sent. Each will be plain text if no HTML is provided
+     * @return the emails which could not be sent, mapped to the reason why.
+     */
+    @Override
+    public Map<EmailCommunicationMessage, CommunicationException> sendMessages(
+            final List<EmailCommunicationMessage> emails) {
+        Map<EmailCommunicationMessage, CommunicationException> failures = Maps.newIdentityHashMap();
+        Map<Message, EmailCommunicationMessage> emailsByMail = Maps.newIdentityHashMap();
+        List<Message> mails = Lists.newArrayListWithCapacity(emails.size());
+        for (EmailCommunicationMessage email : emails) {
+            try {
+                Message mail = this.createMail(email);
+                emailsByMail.put(mail, email);
+                mails.add(mail);
+            } catch (MessagingException | UnsupportedEncodingException e) {
+                failures.put(email, new CommunicationException(e));
+            }
+        }
+
+        for (Map.Entry<Message, MessagingException> failure : mailer.sendMails(mails).entrySet()) {
+            failures.put(emailsByMail.get(failure.getKey()), new CommunicationException(failure.getValue()));
+        }
+        return failures;
+    }
+
+    /**
+     * @param email
+     *            - message to be sent. Will be plain text if no HTML is provided
+     * @return the message, ready to send.
+     * @throws MessagingException
+     *            - if the message cannot be created.
+     * @throws UnsupportedEncodingException
+     *            - if the from or reply-to names cannot be encoded.
+     */
+    private Message createMail(final EmailCommunicationMessage email)
+            throws MessagingException, UnsupportedEncodingException {
 	    String fromEmailAddress = this.defaultFromAddress;
 	    String fromName = this.mailName;
 	    String overrideEnvelopeFrom = null;
@@ -81,23 +134,19 @@ public class EmailCommunicator implements ICommunicator<EmailCommunicationMessag
 	        overrideEnvelopeFrom = email.getOverrideEnvelopeFrom();
         }
 
-        try {
-            InternetAddress fromAddress = new InternetAddress(fromEmailAddress, fromName);
-            InternetAddress replyTo = null;
-            if (null != email.getReplyToAddress()) {
-                replyTo = new InternetAddress(email.getReplyToAddress(), email.getReplyToName());
-            }
+        InternetAddress fromAddress = new InternetAddress(fromEmailAddress, fromName);
+        InternetAddress replyTo = null;
+        if (null != email.getReplyToAddress()) {
+            replyTo = new InternetAddress(email.getReplyToAddress(), email.getReplyToName());
+        }
 
-            if (email.getHTMLMessage() == null) {
-                mailer.sendPlainTextMail(new String[] { email.getRecipientAddress() }, fromAddress,
-                        overrideEnvelopeFrom, replyTo, email.getSubject(), email.getPlainTextMessage());
-            } else {
-                mailer.sendMultiPartMail(new String[] { email.getRecipientAddress() }, fromAddress,
-                        overrideEnvelopeFrom, replyTo, email.getSubject(),
-                        email.getPlainTextMessage(), email.getHTMLMessage(), email.getAttachments());
-            }
-        } catch (MessagingException | UnsupportedEncodingException e) {
-            throw new CommunicationException(e);
+        if (email.getHTMLMessage() == null) {
+            return mailer.createPlainTextMail(new String[] { email.getRecipientAddress() }, fromAddress,
+                    overrideEnvelopeFrom, replyTo, email.getSubject(), email.getPlainTextMessage());
+        } else {
+            return mailer.createMultiPartMail(new String[] { email.getRecipientAddress() }, fromAddress,
+                    overrideEnvelopeFrom, replyTo, email.getSubject(),
+                    email.getPlainTextMessage(), email.getHTMLMessage(), email.getAttachments());
         }
     }
-}
\ No newline at end of file
+}
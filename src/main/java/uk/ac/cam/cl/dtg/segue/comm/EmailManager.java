@@ -18,7 +18,6 @@ package uk.ac.cam.cl.dtg.segue.comm;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
-import com.google.api.client.util.Sets;
 import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.EnumUtils;
@@ -51,10 +50,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
-import java.util.Set;
 import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Function;
 
 import static uk.ac.cam.cl.dtg.segue.api.Constants.*;
 import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.QUEUED_EMAIL;
@@ -74,7 +71,6 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
     private final Map<String, String> globalStringTokens;
 
     private static final Logger log = LoggerFactory.getLogger(EmailManager.class);
-    private static final int MINIMUM_TAG_LENGTH = 4;
     private static final DateFormat FULL_DATE_FORMAT = new SimpleDateFormat("EEE d MMM yyyy h:mm aaa");
 
     /**
@@ -95,7 +91,29 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
     public EmailManager(final EmailCommunicator communicator, final AbstractUserPreferenceManager userPreferenceManager,
                         final PropertiesLoader globalProperties, final IContentManager contentManager,
                         final ILogManager logManager, final Map<String, String> globalStringTokens) {
-        super(communicator);
+        this(new InMemoryCommunicationOutbox<>(communicator), userPreferenceManager, globalProperties, contentManager,
+                logManager, globalStringTokens);
+    }
+
+    /**
+     * @param outbox
+     *            to hold emails until they are sent.
+     * @param userPreferenceManager
+     *            user preference manager used to check if users want email.
+     * @param globalProperties
+     *            global properties used to get host name
+     * @param contentManager
+     *            content for email templates
+     * @param logManager
+     *            so we can log e-mail events.
+     * @param globalStringTokens a map containing a token that if seen in an email template should be replaced with some
+     *                           static string.
+     */
+    public EmailManager(final ICommunicationOutbox<EmailCommunicationMessage> outbox,
+                        final AbstractUserPreferenceManager userPreferenceManager,
+                        final PropertiesLoader globalProperties, final IContentManager contentManager,
+                        final ILogManager logManager, final Map<String, String> globalStringTokens) {
+        super(outbox);
         this.userPreferenceManager = userPreferenceManager;
         this.globalProperties = globalProperties;
         this.contentManager = contentManager;
@@ -164,10 +182,8 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
 
         propertiesToReplace.putAll(this.flattenTokenMap(tokenToValueMapping, Maps.newHashMap(), ""));
 
-        // Add all properties in the user DTO (preserving types) so they are available to email templates.
-        Map userPropertiesMap = new org.apache.commons.beanutils.BeanMap(userDTO);
-
-        propertiesToReplace.putAll(this.flattenTokenMap(userPropertiesMap, Maps.newHashMap(), ""));
+        // Add all properties in the user DTO so they are available to email templates.
+        propertiesToReplace.putAll(this.getUserTokens(userDTO));
 
         // Sanitizes inputs from users
         sanitizeEmailParameters(propertiesToReplace);
@@ -232,24 +248,36 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         Validate.notNull(allSelectedUsers);
         Validate.notNull(contentObjectId);
 
-        EmailTemplateDTO emailContent = getEmailTemplateDTO(contentObjectId);
+        // Prepare the template once, rather than searching it for tags for every user:
+        PreparedEmailTemplate preparedEmailTemplate = new PreparedEmailTemplate(getEmailTemplateDTO(contentObjectId));
+
+        // Look up everyone's preference for this type of email at once:
+        Map<Long, UserPreference> emailPreferences = null;
+        if (emailType.isValidEmailPreference()) {
+            try {
+                emailPreferences = userPreferenceManager.getUsersPreference(
+                        SegueUserPreferences.EMAIL_PREFERENCE.name(), emailType.name(), allSelectedUsers);
+            } catch (SegueDatabaseException e) {
+                throw new SegueDatabaseException(String.format("Email of type %s cannot be sent - "
+                        + "error accessing preferences in database", emailType.toString()));
+            }
+        }
 
         int numberOfFilteredUsers = 0;
         for (RegisteredUserDTO user : allSelectedUsers) {
             Properties p = new Properties();
             p.putAll(this.globalStringTokens);
 
-            // Add all properties in the user DTO (preserving types) so they are available to email templates.
-            Map userPropertiesMap = new org.apache.commons.beanutils.BeanMap(user);
-            p.putAll(this.flattenTokenMap(userPropertiesMap, Maps.newHashMap(), ""));
+            // Add all properties in the user DTO so they are available to email templates.
+            p.putAll(this.getUserTokens(user));
 
             sanitizeEmailParameters(p);
 
-            EmailCommunicationMessage e = constructMultiPartEmail(user.getId(), user.getEmail(), emailContent, p,
-                    emailType, null);
+            EmailCommunicationMessage e = preparedEmailTemplate.constructMultiPartEmail(user.getId(), user.getEmail(),
+                    p, emailType, null);
 
             // add to the queue
-            boolean emailAddedToSendQueue = this.filterByPreferencesAndAddToQueue(user, e);
+            boolean emailAddedToSendQueue = this.filterByPreferencesAndAddToQueue(user, e, emailPreferences);
             if (!emailAddedToSendQueue) {
                 numberOfFilteredUsers++;
             }
@@ -287,6 +315,26 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
      */
     private boolean filterByPreferencesAndAddToQueue(final RegisteredUserDTO userDTO,
                     final EmailCommunicationMessage email) throws SegueDatabaseException {
+        return this.filterByPreferencesAndAddToQueue(userDTO, email, null);
+    }
+
+    /**
+     * As filterByPreferencesAndAddToQueue, using preferences which have already been looked up where provided.
+     *
+     * @param userDTO
+     * 		- the userDTO used for logging. Must not be null.
+     * @param email
+     * 		- the email we want to send. Must be non-null and have an associated non-null user id
+     * @param emailPreferences
+     * 		- (nullable) map of user id to their preference for this type of email, for users who have one. If null,
+     * 		the user's preference is looked up in the database.
+     * @return boolean - true if the email was added to the queue false if it was filtered for some reason
+     * @throws SegueDatabaseException
+     *             - the content was of incorrect type
+     */
+    private boolean filterByPreferencesAndAddToQueue(final RegisteredUserDTO userDTO,
+                    final EmailCommunicationMessage email, @Nullable final Map<Long, UserPreference> emailPreferences)
+            throws SegueDatabaseException {
         Validate.notNull(email);
         Validate.notNull(userDTO);
 
@@ -312,7 +360,13 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         }
 
         try {
-            UserPreference preference = userPreferenceManager.getUserPreference(SegueUserPreferences.EMAIL_PREFERENCE.name(), email.getEmailType().name(), userDTO.getId());
+            UserPreference preference;
+            if (null != emailPreferences) {
+                preference = emailPreferences.get(userDTO.getId());
+            } else {
+                preference = userPreferenceManager.getUserPreference(SegueUserPreferences.EMAIL_PREFERENCE.name(),
+                        email.getEmailType().name(), userDTO.getId());
+            }
             // If no preference is present, send the email. This is consistent with sendCustomEmail(...) above.
             if (preference == null || preference.getPreferenceValue()) {
                 logManager.logInternalEvent(userDTO, SegueServerLogType.SENT_EMAIL, eventDetails);
@@ -339,6 +393,36 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         log.info(String.format("Added system email to the queue with subject: %s", email.getSubject()));
     }
 
+    /**
+     * Get the properties of a user which are available to email templates, in the form flattenTokenMap produces.
+     *
+     * The properties are listed explicitly, rather than found by reflection, as this is called for every recipient
+     * of a mass email.
+     *
+     * @param user - the user.
+     * @return a map of token to value for the user.
+     */
+    public Map<String, String> getUserTokens(final RegisteredUserDTO user) {
+        Map<String, Object> userProperties = Maps.newHashMap();
+        userProperties.put("id", user.getId());
+        userProperties.put("legacyId", user.getLegacyId());
+        userProperties.put("givenName", user.getGivenName());
+        userProperties.put("familyName", user.getFamilyName());
+        userProperties.put("email", user.getEmail());
+        userProperties.put("role", user.getRole());
+        userProperties.put("dateOfBirth", user.getDateOfBirth());
+        userProperties.put("gender", user.getGender());
+        userProperties.put("registrationDate", user.getRegistrationDate());
+        userProperties.put("schoolId", user.getSchoolId());
+        userProperties.put("schoolOther", user.getSchoolOther());
+        userProperties.put("examBoard", user.getExamBoard());
+        userProperties.put("emailVerificationStatus", user.getEmailVerificationStatus());
+        userProperties.put("firstLogin", user.isFirstLogin());
+        userProperties.put("lastUpdated", user.getLastUpdated());
+        userProperties.put("lastSeen", user.getLastSeen());
+        return this.flattenTokenMap(userProperties, Maps.newHashMap(), "");
+    }
+
     /**
      * Method to take a random (potentially nested map) and flatten it into something where values can be easily extracted
      * for email templates.
@@ -436,74 +520,6 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         return valueToStore;
     }
 
-    private String completeTemplateWithProperties(final String content, final Properties templateProperties)
-            throws IllegalArgumentException {
-        return completeTemplateWithProperties(content, templateProperties, false);
-    }
-
-    /**
-     * Method to parse and replace template elements with the form {{TAG}}.
-     *
-     * @param templateProperties
-     *            list of properties from which we can fill in the template
-     * @return template with completed fields
-     */
-    private String completeTemplateWithProperties(final String content, final Properties templateProperties, final boolean html) {
-        String template = content;
-
-        Pattern p = Pattern.compile("\\{\\{[A-Za-z0-9.]+\\}\\}");
-        Matcher m = p.matcher(template);
-        int offset = 0;
-        Set<String> unknownTags = Sets.newHashSet();
-
-        while (m.find()) {
-            if (m.start() + offset >= 0 && m.end() + offset <= template.length()) {
-                String tag = template.substring(m.start() + offset, m.end() + offset);
-
-                if (tag.length() <= MINIMUM_TAG_LENGTH) {
-                    log.info("Skipped email template tag with no contents: " + tag);
-                    break;
-                }
-
-                String strippedTag = tag.substring(2, tag.length() - 2);
-
-                // Check all properties required in the page are in the properties list
-                if (html && templateProperties.containsKey(strippedTag + "_HTML")) {
-                    String start = template.substring(0, m.start() + offset);
-                    String end = template.substring(m.end() + offset, template.length());
-
-                    template = start;
-                    if (templateProperties.getProperty(strippedTag + "_HTML") != null) {
-                        template += templateProperties.getProperty(strippedTag + "_HTML");
-                    }
-                    template += end;
-
-                    offset += templateProperties.getProperty(strippedTag + "_HTML").length() - tag.length();
-                } else if (templateProperties.containsKey(strippedTag)) {
-                    String start = template.substring(0, m.start() + offset);
-                    String end = template.substring(m.end() + offset, template.length());
-
-                    template = start;
-                    if (templateProperties.getProperty(strippedTag) != null) {
-                        template += templateProperties.getProperty(strippedTag);
-                    }
-                    template += end;
-
-                    offset += templateProperties.getProperty(strippedTag).length() - tag.length();
-                } else {
-                    unknownTags.add(tag);
-                }
-            }
-        }
-
-        if (unknownTags.size() != 0) {
-            log.error("Email template contains tags that were not resolved! - " + unknownTags);
-            throw new IllegalArgumentException("Email template contains tag that was not provided! - " + unknownTags);
-        }
-
-        return template;
-    }
-
     /**
      * This method loads the HTML and plain text templates and returns the resulting EmailCommunicationMessage.
      *
@@ -551,51 +567,8 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
                                          EmailTemplateDTO emailContent, Properties contentProperties,
                                          final EmailType emailType, @Nullable final List<EmailAttachment> attachments)
                     throws ContentManagerException, ResourceNotFoundException {
-        Validate.notNull(userEmail);
-        Validate.notEmpty(userEmail);
-
-        // Ensure global properties are included, but in a safe manner (allow contentProperties to override globals!)
-        Properties contentPropertiesToUse = new Properties();
-        contentPropertiesToUse.putAll(this.globalStringTokens);
-        contentPropertiesToUse.putAll(contentProperties);
-
-        String plainTextContent = completeTemplateWithProperties(emailContent.getPlainTextContent(), contentPropertiesToUse);
-        String HTMLContent = completeTemplateWithProperties(emailContent.getHtmlContent(), contentPropertiesToUse, true);
-
-        // Extract from address and reply to addresses:
-        String overrideFromAddress = emailContent.getOverrideFromAddress();
-        String overrideFromName = emailContent.getOverrideFromName();
-        String overrideEnvelopeFrom = emailContent.getOverrideEnvelopeFrom();
-        String replyToAddress = emailContent.getReplyToEmailAddress();
-        String replyToName = emailContent.getReplyToName();
-        if (replyToAddress == null || replyToAddress.isEmpty()) {
-            replyToAddress = globalProperties.getProperty(Constants.REPLY_TO_ADDRESS);
-        }
-        if (replyToName == null || replyToName.isEmpty()) {
-            replyToName = globalProperties.getProperty(Constants.MAIL_NAME);
-        }
-        ContentDTO htmlTemplate = getContentDTO("email-template-html");
-        ContentDTO plainTextTemplate = getContentDTO("email-template-ascii");
-
-        Properties htmlTemplateProperties = new Properties();
-        htmlTemplateProperties.put("content", HTMLContent);
-        htmlTemplateProperties.put("email", userEmail);
-        htmlTemplateProperties.putAll(this.globalStringTokens);
-
-        String htmlMessage = completeTemplateWithProperties(htmlTemplate.getValue(), htmlTemplateProperties, true);
-
-        Properties plainTextTemplateProperties = new Properties();
-        plainTextTemplateProperties.put("content", plainTextContent);
-        plainTextTemplateProperties.put("email", userEmail);
-        plainTextTemplateProperties.putAll(this.globalStringTokens);
-
-        String plainTextMessage = completeTemplateWithProperties(plainTextTemplate.getValue(),
-                plainTextTemplateProperties);
-
-        return new EmailCommunicationMessage(userId, userEmail, emailContent.getSubject(),
-                plainTextMessage, htmlMessage, emailType,
-                overrideFromAddress, overrideFromName, overrideEnvelopeFrom, replyToAddress, replyToName, attachments);
-
+        return new PreparedEmailTemplate(emailContent).constructMultiPartEmail(userId, userEmail, contentProperties,
+                emailType, attachments);
     }
 
     /**
@@ -667,4 +640,106 @@ public class EmailManager extends AbstractCommunicationQueue<EmailCommunicationM
         }
         return emailPreferences;
     }
-}
\ No newline at end of file
+
+    /**
+     * An email template split into tokens once so that it can be completed for many recipients, along with the
+     * site-wide templates it is sent within once they have been fetched.
+     */
+    private final class PreparedEmailTemplate {
+        private final EmailTemplateDTO emailContent;
+        private final TokenisedEmailTemplate plainTextContent;
+        private final TokenisedEmailTemplate htmlContent;
+        private TokenisedEmailTemplate plainTextWrapper;
+        private TokenisedEmailTemplate htmlWrapper;
+        private final String replyToAddress;
+        private final String replyToName;
+
+        /**
+         * @param emailContent - the email template.
+         */
+        private PreparedEmailTemplate(final EmailTemplateDTO emailContent) {
+            this.emailContent = emailContent;
+            this.plainTextContent = new TokenisedEmailTemplate(emailContent.getPlainTextContent(), false);
+            this.htmlContent = new TokenisedEmailTemplate(emailContent.getHtmlContent(), true);
+
+            // Extract reply to addresses:
+            String replyToAddress = emailContent.getReplyToEmailAddress();
+            String replyToName = emailContent.getReplyToName();
+            if (replyToAddress == null || replyToAddress.isEmpty()) {
+                replyToAddress = globalProperties.getProperty(Constants.REPLY_TO_ADDRESS);
+            }
+            if (replyToName == null || replyToName.isEmpty()) {
+                replyToName = globalProperties.getProperty(Constants.MAIL_NAME);
+            }
+            this.replyToAddress = replyToAddress;
+            this.replyToName = replyToName;
+        }
+
+        /**
+         * Complete the templates for one recipient.
+         *
+         * @param userId
+         * 		- (nullable) the id of the user the email should be sent to
+         * @param userEmail
+         * 		- the email of the user
+         * @param contentProperties
+         * 		- the values of the tags in the email template, which take precedence over the global tokens.
+         * @param emailType
+         *      - the type of e-mail being created
+         * @param attachments
+         * 		- (nullable) list of attachment objects
+         * @return a multi-part EmailCommunicationMessage
+         * @throws ContentManagerException
+         * 		- if there has been an error accessing content
+         * @throws ResourceNotFoundException
+         * 		- if the site-wide templates have not been found
+         */
+        private EmailCommunicationMessage constructMultiPartEmail(@Nullable final Long userId, final String userEmail,
+                                                                  final Properties contentProperties,
+                                                                  final EmailType emailType,
+                                                                  @Nullable final List<EmailAttachment> attachments)
+                throws ContentManagerException, ResourceNotFoundException {
+            Validate.notNull(userEmail);
+            Validate.notEmpty(userEmail);
+
+            // Ensure global properties are included, but in a safe manner (allow contentProperties to override globals!)
+            Function<String, String> contentTokens = tag -> contentProperties.containsKey(tag)
+                    ? contentProperties.getProperty(tag) : globalStringTokens.get(tag);
+            String plainTextContent = this.plainTextContent.complete(contentTokens);
+            String htmlContent = this.htmlContent.complete(contentTokens);
+
+            // The site-wide templates are only needed, and so only fetched, once some content has been completed:
+            if (null == htmlWrapper || null == plainTextWrapper) {
+                this.htmlWrapper = new TokenisedEmailTemplate(getContentDTO("email-template-html").getValue(), true);
+                this.plainTextWrapper = new TokenisedEmailTemplate(getContentDTO("email-template-ascii").getValue(),
+                        false);
+            }
+
+            String htmlMessage = htmlWrapper.complete(getWrapperTokens(htmlContent, userEmail));
+            String plainTextMessage = plainTextWrapper.complete(getWrapperTokens(plainTextContent, userEmail));
+
+            return new EmailCommunicationMessage(userId, userEmail, emailContent.getSubject(),
+                    plainTextMessage, htmlMessage, emailType, emailContent.getOverrideFromAddress(),
+                    emailContent.getOverrideFromName(), emailContent.getOverrideEnvelopeFrom(), replyToAddress,
+                    replyToName, attachments);
+        }
+
+        /**
+         * @param content - the completed email template.
+         * @param userEmail - the email of the user.
+         * @return the values of the tags in a site-wide template.
+         */
+        private Function<String, String> getWrapperTokens(final String content, final String userEmail) {
+            return tag -> {
+                if (globalStringTokens.containsKey(tag)) {
+                    return globalStringTokens.get(tag);
+                } else if ("content".equals(tag)) {
+                    return content;
+                } else if ("email".equals(tag)) {
+                    return userEmail;
+                }
+                return null;
+            };
+        }
+    }
+}
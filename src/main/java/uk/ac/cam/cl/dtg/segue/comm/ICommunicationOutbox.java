@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+/**
+ * Holds messages waiting to be sent, and sends them in priority order in the background.
+ *
+ * @param <T>
+ *            type of message to send
+ */
+public interface ICommunicationOutbox<T extends ICommunicationMessage> {
+
+    /**
+     * Add a message to the outbox, to be sent as soon as messages of a higher priority allow.
+     *
+     * @param message
+     *            - the message to send.
+     */
+    void add(T message);
+
+    /**
+     * @return the number of messages waiting to be sent.
+     */
+    int getQueueLength();
+}
@@ -15,6 +15,11 @@
  */
 package uk.ac.cam.cl.dtg.segue.comm;
 
+import com.google.common.collect.Maps;
+
+import java.util.List;
+import java.util.Map;
+
 /**
  * 
  * @author nr378
@@ -32,4 +37,22 @@ public interface ICommunicator<T extends ICommunicationMessage> {
      */
     void sendMessage(final T message) throws CommunicationException;
 
+    /**
+     * Send several messages. Communicators which can send a batch more cheaply than one message at a time, for
+     * instance by reusing a connection, should override this.
+     *
+     * @param messages - to send
+     * @return the messages which could not be sent, mapped to the reason why.
+     */
+    default Map<T, CommunicationException> sendMessages(final List<T> messages) {
+        Map<T, CommunicationException> failures = Maps.newIdentityHashMap();
+        for (T message : messages) {
+            try {
+                this.sendMessage(message);
+            } catch (CommunicationException e) {
+                failures.put(message, e);
+            }
+        }
+        return failures;
+    }
 }
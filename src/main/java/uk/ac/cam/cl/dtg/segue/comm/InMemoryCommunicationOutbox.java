@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.util.Comparator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EMAIL_OUTBOX_BACKLOG;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EMAIL_SEND_ATTEMPT;
+
+/**
+ * Outbox which keeps messages in a priority queue on the heap, so they are lost if the API node is restarted.
+ *
+ * Each message added submits one task to a fixed pool of worker threads, which sends whichever message is at the
+ * head of the queue when it runs. A failed message is logged and not retried.
+ *
+ * @param <T>
+ *            type of message to send
+ */
+public class InMemoryCommunicationOutbox<T extends ICommunicationMessage> implements ICommunicationOutbox<T> {
+    private static final Logger log = LoggerFactory.getLogger(InMemoryCommunicationOutbox.class);
+
+    public static final int DEFAULT_WORKER_THREADS = 2;
+
+    private final ICommunicator<T> communicator;
+    private final PriorityBlockingQueue<T> messageQueue;
+    private final ExecutorService executorService;
+    private final RateLimiter rateLimiter;
+
+    /**
+     * Create an outbox sending messages with the default number of threads, as fast as the communicator allows.
+     *
+     * @param communicator
+     *            - to send the messages.
+     */
+    public InMemoryCommunicationOutbox(final ICommunicator<T> communicator) {
+        this(communicator, DEFAULT_WORKER_THREADS, null);
+    }
+
+    /**
+     * Create an outbox.
+     *
+     * @param communicator
+     *            - to send the messages.
+     * @param workerThreads
+     *            - how many messages may be sent at once.
+     * @param rateLimiter
+     *            - (nullable) limiting how quickly messages are sent, if they should be limited at all.
+     */
+    public InMemoryCommunicationOutbox(final ICommunicator<T> communicator, final int workerThreads,
+                                       @Nullable final RateLimiter rateLimiter) {
+        Validate.notNull(communicator);
+        Validate.isTrue(workerThreads > 0, "workerThreads must be positive");
+
+        this.communicator = communicator;
+        this.messageQueue = new PriorityBlockingQueue<>(100, Comparator.comparingInt(T::getPriority));
+        this.executorService = Executors.newFixedThreadPool(workerThreads,
+                new ThreadFactoryBuilder().setNameFormat("communication-outbox-%d").build());
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void add(final T message) {
+        messageQueue.add(message);
+        EMAIL_OUTBOX_BACKLOG.labels("pending").set(messageQueue.size());
+        executorService.submit(this::sendNextMessage);
+        log.debug("Added to the email queue. Current size: " + messageQueue.size());
+    }
+
+    @Override
+    public int getQueueLength() {
+        return messageQueue.size();
+    }
+
+    /**
+     * Send the message at the head of the queue.
+     */
+    private void sendNextMessage() {
+        if (null != rateLimiter) {
+            rateLimiter.acquire();
+        }
+        try {
+            T message = messageQueue.poll();
+            EMAIL_OUTBOX_BACKLOG.labels("pending").set(messageQueue.size());
+            communicator.sendMessage(message);
+            EMAIL_SEND_ATTEMPT.labels("sent").inc();
+            log.info("Sent message. Current size: " + messageQueue.size());
+        } catch (CommunicationException e) {
+            EMAIL_SEND_ATTEMPT.labels("failed").inc();
+            log.warn("Communication Exception:" + e.getMessage());
+        } catch (Exception e) {
+            EMAIL_SEND_ATTEMPT.labels("failed").inc();
+            log.warn("Generic Exception:" + e.getMessage(), e);
+        }
+    }
+}
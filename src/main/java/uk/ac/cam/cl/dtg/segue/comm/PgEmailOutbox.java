@@ -0,0 +1,480 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EMAIL_OUTBOX_BACKLOG;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EMAIL_SEND_ATTEMPT;
+
+/**
+ * Email outbox which keeps emails waiting to be sent in Postgres, so that they survive restarts and can be sent by
+ * any API node.
+ *
+ * Worker threads on each node claim a batch of the highest priority emails due to be sent, taking a lease on them
+ * using FOR UPDATE SKIP LOCKED so that no other node claims the same emails, and send the batch together. Sent emails
+ * are deleted. Emails which could not be sent are retried with exponential backoff, and kept marked as failed once
+ * they have run out of attempts. If a node dies part-way through a batch, its lease expires and another node sends
+ * the batch again; so an email may very occasionally be sent twice, but will not be lost.
+ *
+ * If an email cannot be written to the database, it is sent from memory as the in-memory outbox would.
+ *
+ * The worker threads must be stopped with {@link #close()} before the database is closed.
+ */
+public class PgEmailOutbox implements ICommunicationOutbox<EmailCommunicationMessage> {
+    private static final Logger log = LoggerFactory.getLogger(PgEmailOutbox.class);
+
+    private static final int MAX_BATCH_SIZE = 20;
+    private static final long POLL_INTERVAL_MILLISECONDS = 1000;
+    private static final long BACKLOG_METRICS_INTERVAL_SECONDS = 30;
+    private static final int LEASE_SECONDS = 300;
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long INITIAL_RETRY_DELAY_SECONDS = 60;
+    private static final long MAX_RETRY_DELAY_SECONDS = 3600;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final PostgresSqlDb database;
+    private final ObjectMapper objectMapper;
+    private final ICommunicator<EmailCommunicationMessage> communicator;
+    private final RateLimiter rateLimiter;
+    private final int batchSize;
+    private final String nodeName;
+    private final ICommunicationOutbox<EmailCommunicationMessage> fallbackOutbox;
+
+    private ScheduledExecutorService workers;
+    private volatile boolean closed;
+    private volatile int lastKnownQueueLength;
+
+    /**
+     * Create an outbox backed by the database, and start sending the emails in it.
+     *
+     * @param database
+     *            - the database holding the email_outbox table.
+     * @param objectMapper
+     *            - to convert emails to and from json.
+     * @param communicator
+     *            - to send the emails.
+     * @param workerThreads
+     *            - how many batches of emails this node may send at once.
+     * @param rateLimiter
+     *            - (nullable) limiting how quickly this node sends emails, if it should be limited at all.
+     */
+    public PgEmailOutbox(final PostgresSqlDb database, final ObjectMapper objectMapper,
+                         final ICommunicator<EmailCommunicationMessage> communicator, final int workerThreads,
+                         @Nullable final RateLimiter rateLimiter) {
+        this(database, objectMapper, communicator, rateLimiter);
+        Validate.isTrue(workerThreads > 0, "workerThreads must be positive");
+
+        this.workers = Executors.newScheduledThreadPool(workerThreads + 1,
+                new ThreadFactoryBuilder().setNameFormat("email-outbox-%d").setDaemon(true).build());
+        for (int i = 0; i < workerThreads; i++) {
+            workers.scheduleWithFixedDelay(this::sendPendingEmails, POLL_INTERVAL_MILLISECONDS,
+                    POLL_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+        }
+        workers.scheduleWithFixedDelay(this::updateBacklog, 0, BACKLOG_METRICS_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Create an outbox backed by the database, without starting any threads to send the emails in it.
+     *
+     * @param database
+     *            - the database holding the email_outbox table.
+     * @param objectMapper
+     *            - to convert emails to and from json.
+     * @param communicator
+     *            - to send the emails.
+     * @param rateLimiter
+     *            - (nullable) limiting how quickly this node sends emails, if it should be limited at all.
+     */
+    PgEmailOutbox(final PostgresSqlDb database, final ObjectMapper objectMapper,
+                  final ICommunicator<EmailCommunicationMessage> communicator,
+                  @Nullable final RateLimiter rateLimiter) {
+        Validate.notNull(database);
+        Validate.notNull(communicator);
+
+        this.database = database;
+        this.objectMapper = objectMapper;
+        this.communicator = communicator;
+        this.rateLimiter = rateLimiter;
+        // Don't claim more in one go than the rate limit allows us to send in a second or so:
+        this.batchSize = null != rateLimiter
+                ? Math.max(1, Math.min(MAX_BATCH_SIZE, (int) rateLimiter.getRate())) : MAX_BATCH_SIZE;
+        this.nodeName = ManagementFactory.getRuntimeMXBean().getName();
+        this.fallbackOutbox = new InMemoryCommunicationOutbox<>(communicator, 1, rateLimiter);
+    }
+
+    @Override
+    public void add(final EmailCommunicationMessage email) {
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement(
+                    "INSERT INTO email_outbox(priority, email_type, message) VALUES (?, ?, ?::text::jsonb);");
+            pst.setInt(1, email.getPriority());
+            pst.setString(2, email.getEmailType().name());
+            pst.setString(3, this.toJson(email));
+            pst.executeUpdate();
+        } catch (SQLException | JsonProcessingException | IllegalArgumentException e) {
+            log.error("Unable to add email to the outbox, sending it from memory instead.", e);
+            fallbackOutbox.add(email);
+        }
+    }
+
+    @Override
+    public int getQueueLength() {
+        try {
+            return this.countBacklog();
+        } catch (SegueDatabaseException e) {
+            log.error("Unable to count the emails in the outbox.", e);
+            return lastKnownQueueLength;
+        }
+    }
+
+    /**
+     * Stop claiming emails, give the batches being sent a short time to finish, then release the leases on any emails
+     * this node claimed but did not send, so that another node can send them straight away.
+     *
+     * If a batch is still being sent after that time, its lease is left to expire instead, as releasing it could have
+     * the batch sent twice.
+     */
+    public void close() {
+        closed = true;
+        if (null != workers) {
+            workers.shutdown();
+            try {
+                if (!workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    log.warn(String.format("Email outbox workers did not stop within %s seconds; emails being sent will"
+                            + " be sent again once their lease expires.", SHUTDOWN_TIMEOUT_SECONDS));
+                    workers.shutdownNow();
+                    return;
+                }
+            } catch (InterruptedException e) {
+                workers.shutdownNow();
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement(
+                    "UPDATE email_outbox SET claimed_by = NULL, lease_expires_at = NULL,"
+                    + " attempts = GREATEST(attempts - 1, 0) WHERE claimed_by = ?;");
+            pst.setString(1, nodeName);
+            int released = pst.executeUpdate();
+            if (released > 0) {
+                log.info(String.format("Released %s unsent emails from the outbox for other nodes to send.", released));
+            }
+        } catch (SQLException e) {
+            log.error("Unable to release unsent emails from the outbox; they will be sent once their lease expires.",
+                    e);
+        }
+    }
+
+    /**
+     * Send batches of emails until there are none left due to be sent.
+     */
+    private void sendPendingEmails() {
+        // Exceptions must not escape, as they would stop this being scheduled again:
+        try {
+            int claimed;
+            do {
+                claimed = this.sendBatch();
+            } while (claimed == batchSize && !closed);
+        } catch (Exception e) {
+            log.error("Unable to send emails from the outbox.", e);
+        }
+    }
+
+    /**
+     * Claim the highest priority emails due to be sent, send them, and record which were sent.
+     *
+     * @return the number of emails claimed.
+     * @throws SegueDatabaseException
+     *             - if the outbox cannot be read or updated.
+     */
+    int sendBatch() throws SegueDatabaseException {
+        List<OutboxEntry> entries = this.claimBatch();
+        if (entries.isEmpty()) {
+            return 0;
+        }
+
+        List<EmailCommunicationMessage> emails = Lists.newArrayList();
+        for (OutboxEntry entry : entries) {
+            if (null != entry.email) {
+                emails.add(entry.email);
+            }
+        }
+        if (null != rateLimiter && !emails.isEmpty()) {
+            rateLimiter.acquire(emails.size());
+        }
+        if (closed) {
+            // Leave the batch claimed for close() to release, rather than send it while shutting down:
+            return entries.size();
+        }
+        Map<EmailCommunicationMessage, CommunicationException> failures = communicator.sendMessages(emails);
+
+        List<Long> sentIds = Lists.newArrayList();
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement(
+                    "UPDATE email_outbox SET claimed_by = NULL, lease_expires_at = NULL, last_error = ?, failed = ?,"
+                    + " next_attempt_at = now() + make_interval(secs => ?) WHERE id = ?;");
+            for (OutboxEntry entry : entries) {
+                String error;
+                if (null == entry.email) {
+                    error = entry.readError;
+                } else if (failures.containsKey(entry.email)) {
+                    error = failures.get(entry.email).getMessage();
+                } else {
+                    sentIds.add(entry.id);
+                    continue;
+                }
+
+                boolean givenUp = null == entry.email || entry.attempts >= MAX_ATTEMPTS;
+                pst.setString(1, error);
+                pst.setBoolean(2, givenUp);
+                pst.setLong(3, getRetryDelaySeconds(entry.attempts));
+                pst.setLong(4, entry.id);
+                pst.addBatch();
+                if (givenUp) {
+                    log.error(String.format("Giving up on sending email (%s) after %s attempts: %s", entry.id,
+                            entry.attempts, error));
+                    EMAIL_SEND_ATTEMPT.labels("failed").inc();
+                } else {
+                    log.warn(String.format("Unable to send email (%s), will retry: %s", entry.id, error));
+                    EMAIL_SEND_ATTEMPT.labels("retry").inc();
+                }
+            }
+            if (sentIds.size() < entries.size()) {
+                pst.executeBatch();
+            }
+
+            if (!sentIds.isEmpty()) {
+                PreparedStatement deleteSent = conn.prepareStatement("DELETE FROM email_outbox WHERE id = ANY(?);");
+                Array sentIdsPreparedArray = conn.createArrayOf("bigint", sentIds.toArray());
+                deleteSent.setArray(1, sentIdsPreparedArray);
+                deleteSent.executeUpdate();
+                EMAIL_SEND_ATTEMPT.labels("sent").inc(sentIds.size());
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+        return entries.size();
+    }
+
+    /**
+     * Take a lease on the highest priority emails which are due to be sent and not leased by another node.
+     *
+     * @return the emails claimed, in the order they should be sent.
+     * @throws SegueDatabaseException
+     *             - if the outbox cannot be read.
+     */
+    private List<OutboxEntry> claimBatch() throws SegueDatabaseException {
+        List<OutboxEntry> entries = Lists.newArrayList();
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement(
+                    "UPDATE email_outbox SET attempts = attempts + 1, claimed_by = ?,"
+                    + " lease_expires_at = now() + make_interval(secs => ?)"
+                    + " WHERE id IN (SELECT id FROM email_outbox"
+                    + "   WHERE NOT failed AND next_attempt_at <= now()"
+                    + "   AND (lease_expires_at IS NULL OR lease_expires_at < now())"
+                    + "   ORDER BY priority, id LIMIT ? FOR UPDATE SKIP LOCKED)"
+                    + " RETURNING id, priority, email_type, message, attempts;");
+            pst.setString(1, nodeName);
+            pst.setInt(2, LEASE_SECONDS);
+            pst.setInt(3, batchSize);
+
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    OutboxEntry entry = new OutboxEntry(results.getLong("id"), results.getInt("priority"),
+                            results.getInt("attempts"));
+                    try {
+                        entry.email = this.fromJson(results.getString("message"),
+                                EmailType.valueOf(results.getString("email_type")));
+                    } catch (IOException | IllegalArgumentException e) {
+                        entry.readError = "Unable to read email from the outbox: " + e.getMessage();
+                    }
+                    entries.add(entry);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+        entries.sort(Comparator.comparingInt((OutboxEntry entry) -> entry.priority)
+                .thenComparingLong(entry -> entry.id));
+        return entries;
+    }
+
+    /**
+     * Update the backlog gauges, logging rather than throwing any errors.
+     */
+    private void updateBacklog() {
+        try {
+            this.countBacklog();
+        } catch (SegueDatabaseException | RuntimeException e) {
+            log.error("Unable to count the emails in the outbox.", e);
+        }
+    }
+
+    /**
+     * Count the emails in the outbox, updating the backlog gauges.
+     *
+     * @return the number of emails waiting to be sent.
+     * @throws SegueDatabaseException
+     *             - if the outbox cannot be read.
+     */
+    private int countBacklog() throws SegueDatabaseException {
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement(
+                    "SELECT count(*) FILTER (WHERE NOT failed) AS pending, count(*) FILTER (WHERE failed) AS failed"
+                    + " FROM email_outbox;");
+            try (ResultSet results = pst.executeQuery()) {
+                results.next();
+                int pending = results.getInt("pending");
+                EMAIL_OUTBOX_BACKLOG.labels("pending").set(pending);
+                EMAIL_OUTBOX_BACKLOG.labels("failed").set(results.getInt("failed"));
+                lastKnownQueueLength = pending;
+                return pending;
+            }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
+    /**
+     * @param attempts
+     *            - the number of attempts made to send an email so far.
+     * @return how long to wait before the next attempt.
+     */
+    static long getRetryDelaySeconds(final int attempts) {
+        int doublings = Math.min(Math.max(attempts - 1, 0), 30);
+        return Math.min(INITIAL_RETRY_DELAY_SECONDS << doublings, MAX_RETRY_DELAY_SECONDS);
+    }
+
+    /**
+     * @param email
+     *            - the email to store.
+     * @return the email as json, apart from its type which has a column of its own.
+     * @throws JsonProcessingException
+     *             - if the json cannot be written.
+     */
+    private String toJson(final EmailCommunicationMessage email) throws JsonProcessingException {
+        ObjectNode json = objectMapper.createObjectNode();
+        json.put("userId", email.getUserId());
+        json.put("recipientAddress", email.getRecipientAddress());
+        json.put("subject", email.getSubject());
+        json.put("plainTextMessage", email.getPlainTextMessage());
+        json.put("htmlMessage", email.getHTMLMessage());
+        json.put("overrideFromAddress", email.getOverrideFromAddress());
+        json.put("overrideFromName", email.getOverrideFromName());
+        json.put("overrideEnvelopeFrom", email.getOverrideEnvelopeFrom());
+        json.put("replyToAddress", email.getReplyToAddress());
+        json.put("replyToName", email.getReplyToName());
+        if (null != email.getAttachments()) {
+            ArrayNode attachments = json.putArray("attachments");
+            for (EmailAttachment attachment : email.getAttachments()) {
+                if (null == attachment) {
+                    continue;
+                }
+                Validate.isInstanceOf(String.class, attachment.getAttachment(),
+                        "Only text attachments can be stored in the outbox.");
+                attachments.addObject()
+                        .put("fileName", attachment.getFileName())
+                        .put("mimeType", attachment.getMimeType())
+                        .put("attachment", (String) attachment.getAttachment());
+            }
+        }
+        return objectMapper.writeValueAsString(json);
+    }
+
+    /**
+     * @param message
+     *            - the email as json, as written by toJson.
+     * @param emailType
+     *            - the type of the email.
+     * @return the email.
+     * @throws IOException
+     *             - if the json cannot be read.
+     */
+    private EmailCommunicationMessage fromJson(final String message, final EmailType emailType) throws IOException {
+        JsonNode json = objectMapper.readTree(message);
+        List<EmailAttachment> attachments = null;
+        if (json.hasNonNull("attachments")) {
+            attachments = Lists.newArrayList();
+            for (JsonNode attachment : json.get("attachments")) {
+                attachments.add(new EmailAttachment(getText(attachment, "fileName"), getText(attachment, "mimeType"),
+                        getText(attachment, "attachment")));
+            }
+        }
+        return new EmailCommunicationMessage(json.hasNonNull("userId") ? json.get("userId").asLong() : null,
+                getText(json, "recipientAddress"), getText(json, "subject"), getText(json, "plainTextMessage"),
+                getText(json, "htmlMessage"), emailType, getText(json, "overrideFromAddress"),
+                getText(json, "overrideFromName"), getText(json, "overrideEnvelopeFrom"),
+                getText(json, "replyToAddress"), getText(json, "replyToName"), attachments);
+    }
+
+    /**
+     * @param json
+     *            - a json object.
+     * @param fieldName
+     *            - the field to read.
+     * @return the text of the field, or null if it is missing or null.
+     */
+    private static String getText(final JsonNode json, final String fieldName) {
+        return json.hasNonNull(fieldName) ? json.get(fieldName).asText() : null;
+    }
+
+    /**
+     * An email claimed from the outbox.
+     */
+    private static final class OutboxEntry {
+        private final long id;
+        private final int priority;
+        private final int attempts;
+        private EmailCommunicationMessage email;
+        private String readError;
+
+        private OutboxEntry(final long id, final int priority, final int attempts) {
+            this.id = id;
+            this.priority = priority;
+            this.attempts = attempts;
+        }
+    }
+}
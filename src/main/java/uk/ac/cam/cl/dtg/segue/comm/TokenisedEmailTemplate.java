@@ -0,0 +1,106 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An email template split once into its literal text and the tags of the form {{TAG}} between, so that it can be
+ * completed for many recipients without searching it for tags each time.
+ *
+ * Values substituted for tags are not themselves searched for tags. An HTML template prefers the value of TAG_HTML
+ * over TAG where both are provided.
+ */
+final class TokenisedEmailTemplate {
+    private static final Logger log = LoggerFactory.getLogger(TokenisedEmailTemplate.class);
+
+    private static final Pattern TAG_PATTERN = Pattern.compile("\\{\\{[A-Za-z0-9.]+\\}\\}");
+
+    private final List<String> literals;
+    private final List<String> tags;
+    private final boolean html;
+    private final int templateLength;
+
+    /**
+     * @param template
+     *            - the template text.
+     * @param html
+     *            - whether the template is HTML, and so should use the HTML value of tags where available.
+     */
+    TokenisedEmailTemplate(final String template, final boolean html) {
+        this.literals = Lists.newArrayList();
+        this.tags = Lists.newArrayList();
+        this.html = html;
+        this.templateLength = template.length();
+
+        Matcher m = TAG_PATTERN.matcher(template);
+        int literalStart = 0;
+        while (m.find()) {
+            literals.add(template.substring(literalStart, m.start()));
+            tags.add(template.substring(m.start() + 2, m.end() - 2));
+            literalStart = m.end();
+        }
+        literals.add(template.substring(literalStart));
+    }
+
+    /**
+     * Complete the template.
+     *
+     * @param tokenValues
+     *            - looks up the value of a tag, returning null if the tag is not provided.
+     * @return the completed template.
+     * @throws IllegalArgumentException
+     *             - if the template contains a tag which was not provided.
+     */
+    String complete(final Function<String, String> tokenValues) throws IllegalArgumentException {
+        StringBuilder completedTemplate = new StringBuilder(templateLength);
+        Set<String> unknownTags = Sets.newHashSet();
+        for (int i = 0; i < tags.size(); i++) {
+            completedTemplate.append(literals.get(i));
+
+            String tag = tags.get(i);
+            String value = null;
+            if (html) {
+                value = tokenValues.apply(tag + "_HTML");
+            }
+            if (null == value) {
+                value = tokenValues.apply(tag);
+            }
+            if (null == value) {
+                unknownTags.add("{{" + tag + "}}");
+                continue;
+            }
+            completedTemplate.append(value);
+        }
+        completedTemplate.append(literals.get(tags.size()));
+
+        if (unknownTags.size() != 0) {
+            log.error("Email template contains tags that were not resolved! - " + unknownTags);
+            throw new IllegalArgumentException("Email template contains tag that was not provided! - " + unknownTags);
+        }
+
+        return completedTemplate.toString();
+    }
+}
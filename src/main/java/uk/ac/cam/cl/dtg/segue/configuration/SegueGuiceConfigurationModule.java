@@ -20,6 +20,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.api.client.util.Lists;
 import com.google.api.client.util.Maps;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.RateLimiter;
 import com.google.inject.AbstractModule;
 import com.google.inject.Inject;
 import com.google.inject.Provides;
@@ -60,14 +61,20 @@ import uk.ac.cam.cl.dtg.segue.auth.SeguePBKDF2v2;
 import uk.ac.cam.cl.dtg.segue.auth.SeguePBKDF2v3;
 import uk.ac.cam.cl.dtg.segue.auth.SegueTOTPAuthenticator;
 import uk.ac.cam.cl.dtg.segue.auth.TwitterAuthenticator;
+import uk.ac.cam.cl.dtg.segue.comm.EmailCommunicationMessage;
 import uk.ac.cam.cl.dtg.segue.comm.EmailCommunicator;
 import uk.ac.cam.cl.dtg.segue.comm.EmailManager;
+import uk.ac.cam.cl.dtg.segue.comm.ICommunicationOutbox;
 import uk.ac.cam.cl.dtg.segue.comm.ICommunicator;
+import uk.ac.cam.cl.dtg.segue.comm.InMemoryCommunicationOutbox;
+import uk.ac.cam.cl.dtg.segue.comm.PgEmailOutbox;
 import uk.ac.cam.cl.dtg.segue.dao.ILogManager;
 import uk.ac.cam.cl.dtg.segue.dao.LocationManager;
 import uk.ac.cam.cl.dtg.segue.dao.LogManagerEventPublisher;
+import uk.ac.cam.cl.dtg.segue.dao.PgLogEventWriter;
 import uk.ac.cam.cl.dtg.segue.dao.PgLogManager;
 import uk.ac.cam.cl.dtg.segue.dao.PgLogManagerEventListener;
+import uk.ac.cam.cl.dtg.segue.dao.PgStatisticsSnapshots;
 import uk.ac.cam.cl.dtg.segue.dao.associations.IAssociationDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.associations.PgAssociationDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
@@ -86,6 +93,7 @@ import uk.ac.cam.cl.dtg.segue.dao.users.PgAnonymousUsers;
 import uk.ac.cam.cl.dtg.segue.dao.users.PgExternalAccountPersistenceManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.PgPasswordDataManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.PgTOTPDataManager;
+import uk.ac.cam.cl.dtg.segue.dao.users.PgUserChangeListener;
 import uk.ac.cam.cl.dtg.segue.dao.users.PgUserGroupPersistenceManager;
 import uk.ac.cam.cl.dtg.segue.dao.users.PgUsers;
 import uk.ac.cam.cl.dtg.segue.database.GitDb;
@@ -109,6 +117,7 @@ import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 import uk.ac.cam.cl.dtg.util.email.MailJetApiClientWrapper;
 import uk.ac.cam.cl.dtg.util.locations.IPInfoDBLocationResolver;
 import uk.ac.cam.cl.dtg.util.locations.IPLocationResolver;
+import uk.ac.cam.cl.dtg.util.locations.LocalIPRangeLocationResolver;
 import uk.ac.cam.cl.dtg.util.locations.PostCodeIOLocationResolver;
 import uk.ac.cam.cl.dtg.util.locations.PostCodeLocationResolver;
 
@@ -117,6 +126,7 @@ import javax.servlet.ServletContextListener;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
@@ -141,12 +151,16 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     private static Client elasticSearchClient = null;
     private static UserAccountManager userManager = null;
     private static UserAuthenticationManager userAuthenticationManager = null;
+    private static PgUserChangeListener userChangeListener = null;
     private static IQuestionAttemptManager questionPersistenceManager = null;
     private static SegueJobService segueJobService = null;
 
     //private static ILogManager logManager;
     private static LogManagerEventPublisher logManager;
+    private static PgLogEventWriter logEventWriter = null;
+    private static LocationManager locationManager = null;
     private static EmailManager emailCommunicationQueue = null;
+    private static PgEmailOutbox emailOutbox = null;
     private static IMisuseMonitor misuseMonitor = null;
     private static IMetricsExporter metricsExporter = null;
     private static StatisticsManager statsManager = null;
@@ -448,6 +462,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - boolean to determine if we should persist log messages.
      * @param lhm
      *            - location history manager
+     * @param properties
+     *            - to configure the background log event writer.
      * @return A fully configured LogManager
      */
     @Inject
@@ -455,7 +471,7 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Singleton
     private static ILogManager getLogManager(final PostgresSqlDb database,
                                              @Named(Constants.LOGGING_ENABLED) final boolean loggingEnabled,
-                                             final LocationManager lhm) {
+                                             final LocationManager lhm, final PropertiesLoader properties) {
 
         if (null == logManager) {
             //logManager = new MongoLogManager(database, new ObjectMapper(), loggingEnabled, lhm);
@@ -464,7 +480,20 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
             objectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
             //logManager = new PgLogManager(database, objectMapper, loggingEnabled, lhm);
 
-            logManager = new PgLogManagerEventListener(new PgLogManager(database, objectMapper, loggingEnabled, lhm));
+            String queueCapacity = properties.getProperty(Constants.LOG_EVENT_QUEUE_CAPACITY);
+            String batchSize = properties.getProperty(Constants.LOG_EVENT_BATCH_SIZE);
+            String flushInterval = properties.getProperty(Constants.LOG_EVENT_FLUSH_INTERVAL_MILLISECONDS);
+            String overflowPolicy = properties.getProperty(Constants.LOG_EVENT_QUEUE_OVERFLOW_POLICY);
+            logEventWriter = new PgLogEventWriter(database, lhm,
+                    null != queueCapacity ? Integer.parseInt(queueCapacity) : PgLogEventWriter.DEFAULT_QUEUE_CAPACITY,
+                    null != batchSize ? Integer.parseInt(batchSize) : PgLogEventWriter.DEFAULT_BATCH_SIZE,
+                    null != flushInterval ? Long.parseLong(flushInterval)
+                            : PgLogEventWriter.DEFAULT_FLUSH_INTERVAL_MILLISECONDS,
+                    null != overflowPolicy ? PgLogEventWriter.OverflowPolicy.valueOf(overflowPolicy)
+                            : PgLogEventWriter.OverflowPolicy.WRITE_THROUGH);
+
+            logManager = new PgLogManagerEventListener(
+                    new PgLogManager(database, objectMapper, loggingEnabled, logEventWriter));
 
             log.info("Creating singleton of LogManager");
             if (loggingEnabled) {
@@ -543,6 +572,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      * 			- the authenticator
      * @param logManager
      * 			- the logManager to log email sent
+     * @param postgresDatabase
+     * 			- to keep the emails waiting to be sent in, if configured to.
      * @return an instance of the queue
      */
     @Inject
@@ -552,7 +583,7 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
                                                              final PropertiesLoader properties, final EmailCommunicator emailCommunicator,
                                                              final AbstractUserPreferenceManager userPreferenceManager,
                                                              final IContentManager contentManager, @Named(CONTENT_INDEX) final String contentIndex, final SegueLocalAuthenticator authenticator,
-                                                             final ILogManager logManager) {
+                                                             final ILogManager logManager, final PostgresSqlDb postgresDatabase) {
 
         Map<String, String> globalTokens = Maps.newHashMap();
         globalTokens.put("sig", properties.getProperty(EMAIL_SIGNATURE));
@@ -571,9 +602,29 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         globalTokens.put("siteBaseURL", String.format("https://%s", properties.getProperty(HOST_NAME)));
 
         if (null == emailCommunicationQueue) {
-            emailCommunicationQueue = new EmailManager(emailCommunicator, userPreferenceManager, properties,
+            String workerThreadsProperty = properties.getProperty(EMAIL_OUTBOX_WORKER_THREADS);
+            int workerThreads = null != workerThreadsProperty ? Integer.parseInt(workerThreadsProperty)
+                    : InMemoryCommunicationOutbox.DEFAULT_WORKER_THREADS;
+            // The rate limit is per API node, and applies to everything sent through the SMTP server:
+            String maxSendsPerSecondProperty = properties.getProperty(EMAIL_OUTBOX_MAX_SENDS_PER_SECOND);
+            RateLimiter rateLimiter = null;
+            if (null != maxSendsPerSecondProperty && Double.parseDouble(maxSendsPerSecondProperty) > 0) {
+                rateLimiter = RateLimiter.create(Double.parseDouble(maxSendsPerSecondProperty));
+            }
+
+            ICommunicationOutbox<EmailCommunicationMessage> outbox;
+            String emailOutboxStore = properties.getProperty(EMAIL_OUTBOX_STORE);
+            if (null != emailOutboxStore && EmailOutboxStore.valueOf(emailOutboxStore) == EmailOutboxStore.POSTGRES) {
+                emailOutbox = new PgEmailOutbox(postgresDatabase, new ObjectMapper(), emailCommunicator, workerThreads,
+                        rateLimiter);
+                outbox = emailOutbox;
+            } else {
+                outbox = new InMemoryCommunicationOutbox<>(emailCommunicator, workerThreads, rateLimiter);
+            }
+
+            emailCommunicationQueue = new EmailManager(outbox, userPreferenceManager, properties,
                     contentManager, logManager, globalTokens);
-            log.info("Creating singleton of EmailCommunicationQueue");
+            log.info("Creating singleton of EmailCommunicationQueue: " + outbox.getClass().getSimpleName());
         }
         return emailCommunicationQueue;
     }
@@ -591,6 +642,8 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - list of known providers.
      * @param emailQueue
      *            - so that we can send e-mails.
+     * @param postgresDatabase
+     *            - to hear about changes to users made by other API servers.
      * @return Content version controller with associated dependencies.
      */
     @Inject
@@ -598,10 +651,14 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     @Singleton
     private UserAuthenticationManager getUserAuthenticationManager(final IUserDataManager database, final PropertiesLoader properties,
                                               final Map<AuthenticationProvider, IAuthenticator> providersToRegister,
-                                              final EmailManager emailQueue) {
+                                              final EmailManager emailQueue, final PostgresSqlDb postgresDatabase) {
         if (null == userAuthenticationManager) {
             userAuthenticationManager = new UserAuthenticationManager(database, properties, providersToRegister, emailQueue);
             log.info("Creating singleton of UserAuthenticationManager");
+
+            // Users cached to authenticate requests must be dropped when another API server changes them:
+            userChangeListener = new PgUserChangeListener(postgresDatabase,
+                    userAuthenticationManager::invalidateCachedUser, userAuthenticationManager::invalidateAllCachedUsers);
         }
 
         return userAuthenticationManager;
@@ -710,15 +767,26 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - so that the monitors can send e-mails.
      * @param properties
      *            - so that the monitors can look up email settings etc.
+     * @param database
+     *            - to share the counts between API nodes, if configured to.
      * @return gets the singleton of the misuse manager.
      */
     @Inject
     @Provides
     @Singleton
-    private IMisuseMonitor getMisuseMonitor(final EmailManager emailManager, final PropertiesLoader properties) {
+    private IMisuseMonitor getMisuseMonitor(final EmailManager emailManager, final PropertiesLoader properties,
+                                            final PostgresSqlDb database) {
         if (null == misuseMonitor) {
-            misuseMonitor = new InMemoryMisuseMonitor();
-            log.info("Creating singleton of MisuseMonitor");
+            String misuseMonitorStore = properties.getProperty(Constants.MISUSE_MONITOR_STORE);
+            if (null != misuseMonitorStore
+                    && Constants.MisuseMonitorStore.valueOf(misuseMonitorStore) == Constants.MisuseMonitorStore.POSTGRES) {
+                String flushInterval = properties.getProperty(Constants.MISUSE_MONITOR_FLUSH_INTERVAL_MILLISECONDS);
+                misuseMonitor = new PgMisuseMonitor(database, null != flushInterval ? Long.parseLong(flushInterval)
+                        : PgMisuseMonitor.DEFAULT_FLUSH_INTERVAL_MILLISECONDS);
+            } else {
+                misuseMonitor = new InMemoryMisuseMonitor();
+            }
+            log.info("Creating singleton of MisuseMonitor: " + misuseMonitor.getClass().getSimpleName());
 
             // TODO: We should automatically register all handlers that implement this interface using reflection?
             // register handlers segue specific handlers
@@ -871,6 +939,12 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
      *            - dependency
      * @param questionManager
      *            - dependency
+     * @param userStreaksManager
+     *            - dependency
+     * @param statisticsSnapshots
+     *            - dependency
+     * @param properties
+     *            - dependency
      * @return stats manager
      */
     @Provides
@@ -880,11 +954,14 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
                                                      final ILogManager logManager, final SchoolListReader schoolManager,
                                                      final IContentManager contentManager, @Named(CONTENT_INDEX) final String contentIndex, final LocationManager locationHistoryManager,
                                                      final GroupManager groupManager, final QuestionManager questionManager,
-                                                     final IUserStreaksManager userStreaksManager) {
+                                                     final IUserStreaksManager userStreaksManager,
+                                                     final PgStatisticsSnapshots statisticsSnapshots,
+                                                     final PropertiesLoader properties) {
 
         if (null == statsManager) {
             statsManager = new StatisticsManager(userManager, logManager, schoolManager, contentManager, contentIndex,
-                    locationHistoryManager, groupManager, questionManager, userStreaksManager);
+                    locationHistoryManager, groupManager, questionManager, userStreaksManager, statisticsSnapshots,
+                    properties);
             log.info("Created Singleton of Statistics Manager");
         }
 
@@ -914,7 +991,33 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
                     "SQL scheduled job that deletes expired reservations for the event booking system",
                     "0 0 7 * * ?", "db_scripts/scheduled/expired-reservations-clean-up.sql");
 
-            segueJobService = new SegueJobService(Arrays.asList(PIISQLJob, cleanUpOldAnonymousUsers, cleanUpExpiredReservations));
+            SegueScheduledJob cleanUpOldMisuseStatistics = new SegueScheduledDatabaseScriptJob(
+                    "cleanUpOldMisuseStatistics",
+                    "SQLMaintenance",
+                    "SQL scheduled job that deletes misuse counts from long-expired accounting windows",
+                    "0 45 2 * * ?", "db_scripts/scheduled/misuse-statistics-clean-up.sql");
+
+            SegueScheduledJob cleanUpExpiredTemporaryGameboards = new SegueScheduledDatabaseScriptJob(
+                    "cleanUpExpiredTemporaryGameboards",
+                    "SQLMaintenance",
+                    "SQL scheduled job that deletes generated gameboards which have expired without being saved",
+                    "0 0/10 * * * ?", "db_scripts/scheduled/temporary-gameboards-clean-up.sql");
+
+            SegueScheduledJob cleanUpFailedEmails = new SegueScheduledDatabaseScriptJob(
+                    "cleanUpFailedEmails",
+                    "SQLMaintenance",
+                    "SQL scheduled job that deletes old emails from the outbox which could not be sent",
+                    "0 15 3 * * ?", "db_scripts/scheduled/email-outbox-clean-up.sql");
+
+            SegueScheduledJob refreshGeneralStatistics = new SegueScheduledDatabaseScriptJob(
+                    "refreshGeneralStatistics",
+                    "SQLMaintenance",
+                    "SQL scheduled job that refreshes the snapshot of general statistics shown to admins",
+                    "0 0/10 * * * ?", "db_scripts/scheduled/general-statistics-refresh.sql");
+
+            segueJobService = new SegueJobService(Arrays.asList(PIISQLJob, cleanUpOldAnonymousUsers,
+                    cleanUpExpiredReservations, cleanUpOldMisuseStatistics, cleanUpExpiredTemporaryGameboards,
+                    cleanUpFailedEmails, refreshGeneralStatistics));
             log.info("Created Segue Job Manager for scheduled jobs");
         }
 
@@ -949,16 +1052,55 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
         return externalAccountManager;
     }
 
+    /**
+     * This provides a singleton of the LocationManager, so that its background refresher can be stopped on shutdown.
+     *
+     * @param locationHistory
+     *            - dependency
+     * @param ipLocationResolver
+     *            - dependency
+     * @param postCodeLocationResolver
+     *            - dependency
+     * @return The singleton instance of LocationManager
+     */
+    @Inject
+    @Provides
+    @Singleton
+    private static LocationManager getLocationManager(final LocationHistory locationHistory,
+                                                      final IPLocationResolver ipLocationResolver,
+                                                      final PostCodeLocationResolver postCodeLocationResolver) {
+        if (null == locationManager) {
+            locationManager = new LocationManager(locationHistory, ipLocationResolver, postCodeLocationResolver);
+            log.info("Creating singleton of LocationManager");
+        }
+        return locationManager;
+    }
+
     /**
      * This provides a new instance of the location resolver.
      *
+     * If a local ip address range file is configured, addresses are resolved from it; otherwise the third party
+     * service is used.
+     *
      * @param apiKey
      *            - for using the third party service.
+     * @param properties
+     *            - to find the local ip address range file from.
      * @return The singleton instance of EmailCommunicator
      */
     @Inject
     @Provides
-    private IPLocationResolver getIPLocator(@Named(Constants.IP_INFO_DB_API_KEY) final String apiKey) {
+    private IPLocationResolver getIPLocator(@Named(Constants.IP_INFO_DB_API_KEY) final String apiKey,
+                                            final PropertiesLoader properties) {
+        String databasePath = properties.getProperty(Constants.IP_LOCATION_DATABASE_PATH);
+        if (null != databasePath && !databasePath.isEmpty()) {
+            try {
+                log.info("Resolving ip address locations from local file: " + databasePath);
+                return new LocalIPRangeLocationResolver(Paths.get(databasePath));
+            } catch (IOException e) {
+                log.error("Unable to load ip address range file (" + databasePath + "); using IPInfoDB.", e);
+            }
+        }
         return new IPInfoDBLocationResolver(apiKey);
     }
 
@@ -1023,6 +1165,34 @@ public class SegueGuiceConfigurationModule extends AbstractModule implements Ser
     public void contextDestroyed(final ServletContextEvent sce) {
         // Close all resources we hold.
         log.info("Segue Config Module notified of shutdown. Releasing resources");
+        if (null != logEventWriter) {
+            // write out any queued log events while we still have a database to write them to.
+            logEventWriter.close();
+            logEventWriter = null;
+        }
+
+        if (null != locationManager) {
+            // after the log event writer, as writing out its queue may queue more locations to refresh.
+            locationManager.close();
+            locationManager = null;
+        }
+
+        if (null != emailOutbox) {
+            // release any emails claimed but not sent, so that another node can send them without waiting.
+            emailOutbox.close();
+            emailOutbox = null;
+        }
+
+        if (misuseMonitor instanceof PgMisuseMonitor) {
+            // write out any counts not yet shared with the other API nodes.
+            ((PgMisuseMonitor) misuseMonitor).close();
+        }
+
+        if (null != userChangeListener) {
+            userChangeListener.close();
+            userChangeListener = null;
+        }
+
         elasticSearchClient.close();
         elasticSearchClient = null;
 
@@ -22,6 +22,11 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.Validate;
@@ -31,7 +36,9 @@ import org.slf4j.LoggerFactory;
 import com.google.api.client.util.Maps;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 
 import uk.ac.cam.cl.dtg.segue.dos.LocationHistoryEvent;
 import uk.ac.cam.cl.dtg.segue.dos.LocationHistory;
@@ -41,24 +48,35 @@ import uk.ac.cam.cl.dtg.util.locations.LocationServerException;
 import uk.ac.cam.cl.dtg.util.locations.PostCodeLocationResolver;
 import uk.ac.cam.cl.dtg.util.locations.PostCodeRadius;
 
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOCATION_REFRESH_DROPPED;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOCATION_REFRESH_QUEUE_DEPTH;
+
 /**
  * LocationHistoryManager. This class is intended to be used to maintain a database of geocoded ip addresses such that
  * we can look up historically where a particular ip address was. This is based on the assumption that ip address
  * allocation change over time.
+ *
+ * Locations are refreshed on a single background thread, so that neither requests nor the log event writer wait on
+ * the database or an external resolver. An ip address already waiting to be refreshed is not queued again.
  * 
  * @author sac92, ags46
  *
  */
+@Singleton
 public class LocationManager implements IPLocationResolver {
     private static final Logger log = LoggerFactory.getLogger(LocationManager.class);
     private static final int LOCATION_UPDATE_FREQUENCY_IN_DAYS = 30;
     private static final int NON_PERSISTENT_CACHE_TIME_IN_HOURS = 1;
+    private static final int REFRESH_QUEUE_CAPACITY = 10000;
+    private static final int SHUTDOWN_TIMEOUT_SECONDS = 5;
 
     private final LocationHistory dao;
     private final IPLocationResolver ipLocationResolver;
     private final PostCodeLocationResolver postCodeLocationResolver;
     private final Cache<String, Location> locationCache;
     private final Cache<String, Location> failedLocationCache;
+    private final Set<String> queuedIpAddresses;
+    private final ThreadPoolExecutor refreshExecutor;
 
     /**
      * @param dao
@@ -80,6 +98,67 @@ public class LocationManager implements IPLocationResolver {
                 .<String, Location> build();
         failedLocationCache = CacheBuilder.newBuilder().expireAfterWrite(NON_PERSISTENT_CACHE_TIME_IN_HOURS, TimeUnit.HOURS)
                 .<String, Location> build();
+
+        queuedIpAddresses = ConcurrentHashMap.newKeySet();
+        refreshExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(REFRESH_QUEUE_CAPACITY),
+                new ThreadFactoryBuilder().setNameFormat("location-refresher").setDaemon(true).build());
+    }
+
+    /**
+     * Stop accepting ip addresses to refresh, and give those already queued a short time to be refreshed.
+     *
+     * Any still queued after that are dropped; they will be queued again the next time they are seen.
+     */
+    public void close() {
+        refreshExecutor.shutdown();
+        try {
+            if (!refreshExecutor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn(String.format("Location refresher did not stop within %s seconds; dropping %s queued "
+                        + "ip addresses.", SHUTDOWN_TIMEOUT_SECONDS, refreshExecutor.shutdownNow().size()));
+            }
+        } catch (InterruptedException e) {
+            refreshExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Queue an ip address to have its location refreshed in the background, unless it is already queued or was
+     * refreshed recently.
+     *
+     * If the queue is full the refresh is skipped; the address will be queued again the next time it is seen.
+     *
+     * @param ipAddress
+     *            that should be looked up
+     */
+    public void refreshLocationInBackground(final String ipAddress) {
+        if (isLocalAddress(ipAddress) || locationCache.getIfPresent(ipAddress) != null
+                || failedLocationCache.getIfPresent(ipAddress) != null) {
+            return;
+        }
+
+        if (!queuedIpAddresses.add(ipAddress)) {
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(() -> {
+                try {
+                    refreshLocation(ipAddress);
+                } catch (SegueDatabaseException | IOException | RuntimeException e) {
+                    log.error("Unable to record location information for ip Address: " + ipAddress, e);
+                } finally {
+                    queuedIpAddresses.remove(ipAddress);
+                    LOCATION_REFRESH_QUEUE_DEPTH.set(refreshExecutor.getQueue().size());
+                }
+            });
+            LOCATION_REFRESH_QUEUE_DEPTH.set(refreshExecutor.getQueue().size());
+        } catch (RejectedExecutionException e) {
+            queuedIpAddresses.remove(ipAddress);
+            LOCATION_REFRESH_DROPPED.inc();
+            log.debug("Location refresh queue is full; skipping ip address: " + ipAddress);
+        }
     }
 
     /**
@@ -94,8 +173,7 @@ public class LocationManager implements IPLocationResolver {
      */
     public void refreshLocation(final String ipAddress) throws SegueDatabaseException, IOException {
         // special case
-        if (ipAddress == null || ipAddress.startsWith("localhost") || ipAddress.contains("0:0:0:0:0:0:0:1")
-                || ipAddress.contains("127.0.0.1")) {
+        if (isLocalAddress(ipAddress)) {
             // do not record
             log.debug("Not geocoding ip address as it looks like localhost: " + ipAddress);
             return;
@@ -148,6 +226,16 @@ public class LocationManager implements IPLocationResolver {
         }
     }
 
+    /**
+     * @param ipAddress
+     *            to check.
+     * @return true if the address is missing or looks like localhost, and so should not be geocoded.
+     */
+    private static boolean isLocalAddress(final String ipAddress) {
+        return ipAddress == null || ipAddress.startsWith("localhost") || ipAddress.contains("0:0:0:0:0:0:0:1")
+                || ipAddress.contains("127.0.0.1");
+    }
+
     @Override
     public Location resolveAllLocationInformation(final String ipAddress) throws IOException, LocationServerException {
         return ipLocationResolver.resolveAllLocationInformation(ipAddress);
@@ -0,0 +1,435 @@
+/**
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import io.prometheus.client.Histogram;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+import uk.ac.cam.cl.dtg.segue.dos.LogEvent;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_BATCH_WRITE_LATENCY;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_DROPPED;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.LOG_EVENT_QUEUE_DEPTH;
+
+/**
+ * Write-behind writer for the logged_events table.
+ *
+ * Request threads enqueue events into a bounded queue without blocking, and a single background thread writes them
+ * out in JDBC batches. Location lookups for the ip addresses in each batch also happen on the writer thread, so
+ * neither the insert nor the geocoding adds latency to the request being logged.
+ */
+public class PgLogEventWriter {
+    private static final Logger log = LoggerFactory.getLogger(PgLogEventWriter.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 50000;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final int DEFAULT_FLUSH_INTERVAL_MILLISECONDS = 1000;
+    private static final int SHUTDOWN_DRAIN_TIMEOUT_SECONDS = 30;
+    private static final int FLUSH_PENDING_TIMEOUT_SECONDS = 30;
+
+    private static final String INSERT_LOG_EVENT = "INSERT INTO logged_events"
+            + "(user_id, anonymous_user, event_type, event_details_type, event_details, ip_address, timestamp)"
+            + " VALUES (?, ?, ?, ?, ?::text::jsonb, ?::inet, ?);";
+
+    /**
+     * What to do with a new event when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /** Write the event synchronously on the calling thread, trading request latency for not losing it. */
+        WRITE_THROUGH,
+        /** Discard the event and count it as dropped. */
+        DROP
+    }
+
+    private final PostgresSqlDb database;
+    private final LocationManager locationManager;
+    private final BlockingQueue<PendingLogEvent> queue;
+    private final int batchSize;
+    private final long flushIntervalMilliseconds;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread writerThread;
+    private final AtomicBoolean overflowWarningLogged = new AtomicBoolean(false);
+    private volatile boolean closed = false;
+
+    /**
+     * Create and start a log event writer.
+     *
+     * @param database
+     *            - client for postgres.
+     * @param locationManager
+     *            - to queue the location of each logged ip address to be refreshed.
+     * @param queueCapacity
+     *            - the maximum number of events waiting to be written.
+     * @param batchSize
+     *            - the maximum number of events written in one batch.
+     * @param flushIntervalMilliseconds
+     *            - the longest the writer will wait for a batch to fill before writing it.
+     * @param overflowPolicy
+     *            - what to do with new events when the queue is full.
+     */
+    public PgLogEventWriter(final PostgresSqlDb database, final LocationManager locationManager,
+                            final int queueCapacity, final int batchSize, final long flushIntervalMilliseconds,
+                            final OverflowPolicy overflowPolicy) {
+        Validate.isTrue(queueCapacity > 0, "queueCapacity must be positive");
+        Validate.isTrue(batchSize > 0, "batchSize must be positive");
+        Validate.isTrue(flushIntervalMilliseconds >= 0, "flushIntervalMilliseconds must not be negative");
+        Validate.notNull(overflowPolicy);
+
+        this.database = database;
+        this.locationManager = locationManager;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMilliseconds = flushIntervalMilliseconds;
+        this.overflowPolicy = overflowPolicy;
+
+        this.writerThread = new Thread(this::runWriter, "log-event-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queue a log event to be written.
+     *
+     * @param logEvent
+     *            - the event to write.
+     * @param eventDetailsJson
+     *            - the event details, already serialised as json.
+     * @throws SegueDatabaseException
+     *            - if the event had to be written synchronously and that failed.
+     */
+    public void write(final LogEvent logEvent, final String eventDetailsJson) throws SegueDatabaseException {
+        PendingLogEvent pendingEvent = new PendingLogEvent(logEvent, eventDetailsJson);
+        if (!closed && queue.offer(pendingEvent)) {
+            return;
+        }
+
+        if (closed || overflowPolicy == OverflowPolicy.WRITE_THROUGH) {
+            try (Connection conn = database.getDatabaseConnection()) {
+                insertEvent(conn, pendingEvent);
+            } catch (SQLException e) {
+                throw new SegueDatabaseException("Postgres exception", e);
+            }
+            refreshLocations(Collections.singletonList(pendingEvent));
+            return;
+        }
+
+        LOG_EVENT_DROPPED.labels("overflow").inc();
+        if (overflowWarningLogged.compareAndSet(false, true)) {
+            log.warn(String.format("Log event queue is full (%s events); dropping new events until it drains.",
+                    queue.size()));
+        }
+    }
+
+    /**
+     * Block until every event queued before this call has been written.
+     *
+     * Callers which go on to read or modify logged_events, such as merging an anonymous user's events into a
+     * registered account, should call this first so that no queued event is missed.
+     */
+    public void flushPending() {
+        if (closed) {
+            return;
+        }
+        PendingLogEvent barrier = PendingLogEvent.barrier();
+        try {
+            if (!queue.offer(barrier, FLUSH_PENDING_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                    || !barrier.written.await(FLUSH_PENDING_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Timed out waiting for queued log events to be written.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop accepting new events into the queue and write out those already queued.
+     *
+     * Any events logged after this is called are written synchronously.
+     */
+    public void close() {
+        closed = true;
+        // wake the writer if it is waiting for a batch to fill; if the queue is full it is not waiting anyway.
+        queue.offer(PendingLogEvent.barrier());
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_DRAIN_TIMEOUT_SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writerThread.isAlive()) {
+            log.error(String.format("Log event writer did not drain within %s seconds; %s events will be lost.",
+                    SHUTDOWN_DRAIN_TIMEOUT_SECONDS, queue.size()));
+            LOG_EVENT_DROPPED.labels("shutdown").inc(queue.size());
+            writerThread.interrupt();
+        } else {
+            log.info("Log event writer drained and stopped.");
+        }
+    }
+
+    /**
+     * Main loop of the writer thread: collect events into batches and write them until closed and drained.
+     */
+    private void runWriter() {
+        List<PendingLogEvent> batch = new ArrayList<>(batchSize);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingLogEvent first = queue.poll(flushIntervalMilliseconds, TimeUnit.MILLISECONDS);
+                LOG_EVENT_QUEUE_DEPTH.set(queue.size());
+                if (null == first) {
+                    continue;
+                }
+                batch.add(first);
+                fillBatch(batch);
+            } catch (InterruptedException e) {
+                // Only interrupted if close() has given up waiting for us; write what we have and stop.
+                Thread.currentThread().interrupt();
+                closed = true;
+            }
+
+            if (!batch.isEmpty()) {
+                writeBatch(batch);
+                batch.clear();
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Top up a batch until it is full, the flush interval has passed, a flushPending barrier is reached, or the writer
+     * is closing and there is nothing more to take without waiting.
+     *
+     * @param batch
+     *            - the batch, already containing its first event.
+     * @throws InterruptedException
+     *            - if interrupted while waiting for more events.
+     */
+    private void fillBatch(final List<PendingLogEvent> batch) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + flushIntervalMilliseconds;
+        int checkedUpTo = 0;
+        while (true) {
+            queue.drainTo(batch, batchSize - batch.size());
+            for (; checkedUpTo < batch.size(); checkedUpTo++) {
+                if (batch.get(checkedUpTo).isBarrier()) {
+                    return;
+                }
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (batch.size() >= batchSize || closed || remaining <= 0) {
+                return;
+            }
+            PendingLogEvent next = queue.poll(remaining, TimeUnit.MILLISECONDS);
+            if (null == next) {
+                return;
+            }
+            batch.add(next);
+        }
+    }
+
+    /**
+     * Write a batch of events in a single transaction, falling back to writing them one at a time if the batch fails
+     * so that one bad event does not lose the rest.
+     *
+     * @param batch
+     *            - the events, and any flushPending barriers, to write.
+     */
+    private void writeBatch(final List<PendingLogEvent> batch) {
+        List<PendingLogEvent> events = new ArrayList<>(batch.size());
+        for (PendingLogEvent pendingEvent : batch) {
+            if (!pendingEvent.isBarrier()) {
+                events.add(pendingEvent);
+            }
+        }
+
+        if (!events.isEmpty()) {
+            Histogram.Timer latencyTimer = LOG_EVENT_BATCH_WRITE_LATENCY.startTimer();
+            try {
+                insertBatch(events);
+            } catch (SQLException e) {
+                log.error(String.format("Unable to write batch of %s log events; retrying individually.",
+                        events.size()), e);
+                insertIndividually(events);
+            } finally {
+                latencyTimer.observeDuration();
+            }
+            overflowWarningLogged.set(false);
+        }
+
+        for (PendingLogEvent pendingEvent : batch) {
+            if (pendingEvent.isBarrier()) {
+                pendingEvent.written.countDown();
+            }
+        }
+
+        refreshLocations(events);
+    }
+
+    /**
+     * Insert events using a JDBC batch in one transaction.
+     *
+     * @param events
+     *            - the events to insert.
+     * @throws SQLException
+     *            - if the batch could not be written; nothing is written in that case.
+     */
+    private void insertBatch(final List<PendingLogEvent> events) throws SQLException {
+        try (Connection conn = database.getDatabaseConnection()) {
+            try {
+                conn.setAutoCommit(false);
+                PreparedStatement pst = conn.prepareStatement(INSERT_LOG_EVENT);
+                for (PendingLogEvent pendingEvent : events) {
+                    setInsertParameters(pst, pendingEvent);
+                    pst.addBatch();
+                }
+                pst.executeBatch();
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+    }
+
+    /**
+     * Insert events one at a time, dropping and counting any which fail.
+     *
+     * @param events
+     *            - the events to insert.
+     */
+    private void insertIndividually(final List<PendingLogEvent> events) {
+        try (Connection conn = database.getDatabaseConnection()) {
+            for (PendingLogEvent pendingEvent : events) {
+                try {
+                    insertEvent(conn, pendingEvent);
+                } catch (SQLException e) {
+                    LOG_EVENT_DROPPED.labels("write_failure").inc();
+                    log.error(String.format("Unable to save log event of type %s.",
+                            pendingEvent.logEvent.getEventType()), e);
+                }
+            }
+        } catch (SQLException e) {
+            LOG_EVENT_DROPPED.labels("write_failure").inc(events.size());
+            log.error(String.format("Unable to save %s log events to the database.", events.size()), e);
+        }
+    }
+
+    /**
+     * Insert a single event.
+     *
+     * @param conn
+     *            - the connection to use.
+     * @param pendingEvent
+     *            - the event to insert.
+     * @throws SQLException
+     *            - if the event could not be written.
+     */
+    private void insertEvent(final Connection conn, final PendingLogEvent pendingEvent) throws SQLException {
+        PreparedStatement pst = conn.prepareStatement(INSERT_LOG_EVENT);
+        setInsertParameters(pst, pendingEvent);
+        if (pst.executeUpdate() == 0) {
+            throw new SQLException("Unable to save log event.");
+        }
+    }
+
+    /**
+     * Set the parameters of the insert statement for one event.
+     *
+     * @param pst
+     *            - the insert statement.
+     * @param pendingEvent
+     *            - the event.
+     * @throws SQLException
+     *            - if a parameter cannot be set.
+     */
+    private void setInsertParameters(final PreparedStatement pst, final PendingLogEvent pendingEvent)
+            throws SQLException {
+        LogEvent logEvent = pendingEvent.logEvent;
+        pst.setString(1, logEvent.getUserId());
+        pst.setBoolean(2, logEvent.isAnonymousUser());
+        pst.setString(3, logEvent.getEventType());
+        pst.setString(4, logEvent.getEventDetailsType());
+        pst.setString(5, pendingEvent.eventDetailsJson);
+        pst.setString(6, logEvent.getIpAddress());
+        pst.setTimestamp(7, new Timestamp(logEvent.getTimestamp().getTime()));
+    }
+
+    /**
+     * Queue the location history to be brought up to date for each distinct ip address in a set of events.
+     *
+     * @param events
+     *            - the events which have been written.
+     */
+    private void refreshLocations(final List<PendingLogEvent> events) {
+        Set<String> ipAddresses = new LinkedHashSet<>();
+        for (PendingLogEvent pendingEvent : events) {
+            if (pendingEvent.logEvent.getIpAddress() != null) {
+                ipAddresses.add(pendingEvent.logEvent.getIpAddress());
+            }
+        }
+
+        for (String ipAddress : ipAddresses) {
+            locationManager.refreshLocationInBackground(ipAddress);
+        }
+    }
+
+    /**
+     * A log event waiting to be written, or a barrier marking the point a flushPending call is waiting for.
+     */
+    private static final class PendingLogEvent {
+        private final LogEvent logEvent;
+        private final String eventDetailsJson;
+        private final CountDownLatch written;
+
+        private PendingLogEvent(final LogEvent logEvent, final String eventDetailsJson) {
+            this.logEvent = logEvent;
+            this.eventDetailsJson = eventDetailsJson;
+            this.written = null;
+        }
+
+        private PendingLogEvent() {
+            this.logEvent = null;
+            this.eventDetailsJson = null;
+            this.written = new CountDownLatch(1);
+        }
+
+        private static PendingLogEvent barrier() {
+            return new PendingLogEvent();
+        }
+
+        private boolean isBarrier() {
+            return written != null;
+        }
+    }
+}
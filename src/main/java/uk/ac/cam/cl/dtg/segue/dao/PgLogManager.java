@@ -35,12 +35,10 @@ import uk.ac.cam.cl.dtg.segue.dto.users.RegisteredUserDTO;
 import uk.ac.cam.cl.dtg.util.RequestIPExtractor;
 
 import javax.servlet.http.HttpServletRequest;
-import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Collection;
@@ -62,7 +60,7 @@ public class PgLogManager implements ILogManager {
     private static final Logger log = LoggerFactory.getLogger(PgLogManager.class);
 
     private final PostgresSqlDb database;
-    private final LocationManager locationManager;
+    private final PgLogEventWriter logEventWriter;
     private final boolean loggingEnabled;
     private final ObjectMapper objectMapper;
 
@@ -75,17 +73,17 @@ public class PgLogManager implements ILogManager {
      *            - so we can map event details to and from json
      * @param loggingEnabled
      *            - whether the log event should be persisted or not?
-     * @param locationManager
-     *            - Helps identify a rough location for an ip address.
+     * @param logEventWriter
+     *            - writes log events to the database in the background.
      */
     public PgLogManager(final PostgresSqlDb database, final ObjectMapper objectMapper,
             @Named(Constants.LOGGING_ENABLED) final boolean loggingEnabled,
-            final LocationManager locationManager) {
+            final PgLogEventWriter logEventWriter) {
 
         this.database = database;
         this.objectMapper = objectMapper;
         this.loggingEnabled = loggingEnabled;
-        this.locationManager = locationManager;
+        this.logEventWriter = logEventWriter;
     }
 
     @Override
@@ -148,6 +146,9 @@ public class PgLogManager implements ILogManager {
 
     @Override
     public void transferLogEventsToRegisteredUser(final String oldUserId, final String newUserId) {
+        // make sure any events for the old user which are still queued get transferred too:
+        logEventWriter.flushPending();
+
         PreparedStatement pst;
         try (Connection conn = database.getDatabaseConnection()) {
             pst = conn.prepareStatement("UPDATE logged_events SET user_id = ?, anonymous_user = TRUE"
@@ -463,6 +464,8 @@ public class PgLogManager implements ILogManager {
 
     /**
      * log an event in the database.
+     *
+     * The event is queued and written by the background log event writer, so this does not wait for the database.
      * 
      * @param userId
      *            -
@@ -476,7 +479,7 @@ public class PgLogManager implements ILogManager {
      *            -
      * @throws JsonProcessingException
      *             - if we are unable to serialize the eventDetails as a string.
-     * @throws SegueDatabaseException - if we cannot persist the event in the database.
+     * @throws SegueDatabaseException - if the event had to be written synchronously and that failed.
      */
     private void persistLogEvent(final String userId, final String anonymousUserId, final String eventType,
             final Object eventDetails, final String ipAddress) throws JsonProcessingException, SegueDatabaseException {
@@ -492,36 +495,7 @@ public class PgLogManager implements ILogManager {
             LOG_EVENT.labels(eventType).inc();
         }
 
-        PreparedStatement pst;
-        try (Connection conn = database.getDatabaseConnection()) {
-            pst = conn.prepareStatement("INSERT INTO logged_events"
-                    + "(user_id, anonymous_user, event_type, event_details_type, event_details, "
-                    + "ip_address, timestamp) " + "VALUES (?, ?, ?, ?, ?::text::jsonb, ?::inet, ?);",
-                    Statement.RETURN_GENERATED_KEYS);
-
-            pst.setString(1, logEvent.getUserId());
-            pst.setBoolean(2, logEvent.isAnonymousUser());
-            pst.setString(3, logEvent.getEventType());
-            pst.setString(4, logEvent.getEventDetailsType());
-            pst.setString(5, objectMapper.writeValueAsString(logEvent.getEventDetails()));
-            pst.setString(6, logEvent.getIpAddress());
-            pst.setTimestamp(7, new java.sql.Timestamp(new Date().getTime()));
-
-            if (pst.executeUpdate() == 0) {
-                throw new SegueDatabaseException("Unable to save user.");
-            }
-
-            try (ResultSet generatedKeys = pst.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    generatedKeys.getLong(1);
-                } else {
-                    throw new SQLException("Creating user failed, no ID obtained.");
-                }
-            }
-
-        } catch (SQLException e) {
-            throw new SegueDatabaseException("Postgres exception", e);
-        }
+        logEventWriter.write(logEvent, objectMapper.writeValueAsString(logEvent.getEventDetails()));
     }
 
     /**
@@ -563,15 +537,9 @@ public class PgLogManager implements ILogManager {
         }
 
         if (ipAddress != null) {
+            // split based on the fact that we usually get ip addresses of the form
+            // [user_ip], [balancer/gateway_ip]
             logEvent.setIpAddress(ipAddress.split(",")[0]);
-
-            try {
-                // split based on the fact that we usually get ip addresses of the form
-                // [user_ip], [balancer/gateway_ip]
-                locationManager.refreshLocation(ipAddress.split(",")[0]);
-            } catch (SegueDatabaseException | IOException e1) {
-                log.error("Unable to record location information for ip Address: " + ipAddress, e1);
-            }
         }
 
         logEvent.setTimestamp(new Date());
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Inject;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+import uk.ac.cam.cl.dtg.segue.dos.StatisticsSnapshot;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * Reads the snapshots of statistics which the scheduled general-statistics-refresh.sql job keeps up to date, so that
+ * statistics too expensive to compute on each request can be served straight away.
+ */
+public class PgStatisticsSnapshots {
+    /** The name of the snapshot of the statistics shown on the admin stats page. */
+    public static final String GENERAL_STATISTICS = "general";
+
+    private final PostgresSqlDb database;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * @param database
+     *            - client for postgres.
+     */
+    @Inject
+    public PgStatisticsSnapshots(final PostgresSqlDb database) {
+        this.database = database;
+    }
+
+    /**
+     * @param name
+     *            - the name of the snapshot.
+     * @return the latest snapshot, or null if it has not been computed yet.
+     * @throws SegueDatabaseException
+     *             - if the snapshot cannot be read.
+     */
+    @Nullable
+    public StatisticsSnapshot getSnapshot(final String name) throws SegueDatabaseException {
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement("SELECT snapshot, refreshed FROM statistics_snapshots"
+                    + " WHERE name = ? AND snapshot IS NOT NULL");
+            pst.setString(1, name);
+
+            ResultSet results = pst.executeQuery();
+            if (!results.next()) {
+                return null;
+            }
+
+            Map<String, Object> statistics = objectMapper.readValue(results.getString("snapshot"),
+                    new TypeReference<Map<String, Object>>() { });
+            return new StatisticsSnapshot(statistics, new Date(results.getTimestamp("refreshed").getTime()));
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        } catch (IOException e) {
+            throw new SegueDatabaseException("Unable to parse statistics snapshot", e);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Collects the ids of the content needed while handling a request, so that the content can be looked up in one batch
+ * rather than one search per id.
+ *
+ * Code which loops over ids calling {@link IContentManager#getContentById(String, String)} can instead declare every
+ * id it will need with {@link #want(Collection)} before the loop, and then {@link #load(String)} each one inside it.
+ * The first load looks up everything wanted so far together, and later loads of the same ids are answered from the
+ * loader. Ids are only looked up once however often they are wanted or loaded.
+ *
+ * A loader is meant to be created for one request (or one part of a request) and then discarded; it is not thread
+ * safe and does not notice content changing.
+ */
+public class ContentBatchLoader {
+    private final IContentManager contentManager;
+    private final String version;
+
+    private final Set<String> wantedIds = new LinkedHashSet<>();
+    // Content looked up so far, with null for ids which were not found:
+    private final Map<String, ContentDTO> loadedContent = new LinkedHashMap<>();
+
+    /**
+     * @param contentManager
+     *            - to look up content with.
+     * @param version
+     *            - the content version to look up content from.
+     */
+    public ContentBatchLoader(final IContentManager contentManager, final String version) {
+        this.contentManager = contentManager;
+        this.version = version;
+    }
+
+    /**
+     * Note that a piece of content will be needed, so that it can be looked up along with any others.
+     *
+     * @param id
+     *            - the id of the content.
+     * @return this loader.
+     */
+    public ContentBatchLoader want(final String id) {
+        if (id != null && !loadedContent.containsKey(id)) {
+            wantedIds.add(id);
+        }
+        return this;
+    }
+
+    /**
+     * Note that several pieces of content will be needed, so that they can be looked up together.
+     *
+     * @param ids
+     *            - the ids of the content.
+     * @return this loader.
+     */
+    public ContentBatchLoader want(final Collection<String> ids) {
+        for (String id : ids) {
+            want(id);
+        }
+        return this;
+    }
+
+    /**
+     * Get a piece of content, looking it up along with any other content wanted but not yet looked up.
+     *
+     * @param id
+     *            - the id of the content.
+     * @return the content, or null if there is no content with that id.
+     * @throws ContentManagerException
+     *             - if the content could not be looked up.
+     */
+    public ContentDTO load(final String id) throws ContentManagerException {
+        want(id);
+        dispatch();
+        return loadedContent.get(id);
+    }
+
+    /**
+     * Get several pieces of content, looking them up along with any other content wanted but not yet looked up.
+     *
+     * @param ids
+     *            - the ids of the content.
+     * @return a map from each id found to its content, in the order of the ids given.
+     * @throws ContentManagerException
+     *             - if the content could not be looked up.
+     */
+    public Map<String, ContentDTO> loadAll(final Collection<String> ids) throws ContentManagerException {
+        want(ids);
+        dispatch();
+        Map<String, ContentDTO> contentById = new LinkedHashMap<>();
+        for (String id : ids) {
+            ContentDTO content = loadedContent.get(id);
+            if (content != null) {
+                contentById.put(id, content);
+            }
+        }
+        return contentById;
+    }
+
+    /**
+     * Look up all of the content wanted but not yet looked up.
+     *
+     * @throws ContentManagerException
+     *             - if the content could not be looked up.
+     */
+    private void dispatch() throws ContentManagerException {
+        if (wantedIds.isEmpty()) {
+            return;
+        }
+        Map<String, ContentDTO> contentById = contentManager.getContentByIds(version, wantedIds);
+        for (String id : wantedIds) {
+            loadedContent.put(id, contentById.get(id));
+        }
+        wantedIds.clear();
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Warms the content cache when the live content version changes.
+ *
+ * Content is cached by version, so a new version starts with an empty cache and the first users after a publish would
+ * otherwise all wait for Elasticsearch. The warmer counts how often each piece of content is looked up and, when a new
+ * version is observed, loads the most frequently looked up content of the new version in the background. Counts are
+ * halved at each version change so that content which has stopped being popular is soon forgotten.
+ */
+class ContentCacheWarmer {
+    private static final Logger log = LoggerFactory.getLogger(ContentCacheWarmer.class);
+
+    private static final int MAX_TRACKED_LOOKUPS_PER_HOT_LOOKUP = 20;
+    private static final ThreadLocal<Boolean> IS_WARMING = ThreadLocal.withInitial(() -> false);
+
+    /**
+     * The cached lookups which can be warmed.
+     */
+    enum Lookup {
+        CONTENT_BY_ID, CONTENT_DO_BY_ID, CONTENT_SNAPSHOT_BY_ID
+    }
+
+    /**
+     * Loads a piece of content into the cache.
+     */
+    @FunctionalInterface
+    interface Loader {
+        /**
+         * @param version
+         *            - the content version to load from.
+         * @param lookup
+         *            - the lookup to load through.
+         * @param id
+         *            - the id of the content.
+         * @throws ContentManagerException
+         *             - if the content could not be loaded.
+         */
+        void load(String version, Lookup lookup, String id) throws ContentManagerException;
+    }
+
+    private final int hotLookupCount;
+    private final int maxTrackedLookups;
+    private final Loader loader;
+    private final ExecutorService executor;
+
+    private final Map<LookupKey, AtomicLong> lookupCounts = new ConcurrentHashMap<>();
+    private final AtomicReference<String> latestVersion = new AtomicReference<>();
+
+    /**
+     * @param hotLookupCount
+     *            - the number of the most frequent lookups to warm on each version change.
+     * @param threads
+     *            - the number of lookups to warm concurrently.
+     * @param loader
+     *            - to load content into the cache.
+     */
+    ContentCacheWarmer(final int hotLookupCount, final int threads, final Loader loader) {
+        this(hotLookupCount, loader, Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("content-cache-warm-up-%d").setDaemon(true).build()));
+    }
+
+    /**
+     * @param hotLookupCount
+     *            - the number of the most frequent lookups to warm on each version change.
+     * @param loader
+     *            - to load content into the cache.
+     * @param executor
+     *            - to warm the lookups on.
+     */
+    ContentCacheWarmer(final int hotLookupCount, final Loader loader, final ExecutorService executor) {
+        this.hotLookupCount = hotLookupCount;
+        this.maxTrackedLookups = hotLookupCount * MAX_TRACKED_LOOKUPS_PER_HOT_LOOKUP;
+        this.loader = loader;
+        this.executor = executor;
+    }
+
+    /**
+     * Count a lookup of a piece of content. Lookups made while warming the cache are not counted.
+     *
+     * @param lookup
+     *            - the lookup made.
+     * @param id
+     *            - the id of the content looked up.
+     */
+    void recordLookup(final Lookup lookup, final String id) {
+        if (null == id || IS_WARMING.get()) {
+            return;
+        }
+        LookupKey key = new LookupKey(lookup, id);
+        AtomicLong count = lookupCounts.get(key);
+        if (null == count) {
+            // Stop tracking new content once enough is tracked, rather than let rare lookups use up memory:
+            if (lookupCounts.size() >= maxTrackedLookups) {
+                return;
+            }
+            count = lookupCounts.computeIfAbsent(key, k -> new AtomicLong());
+        }
+        count.incrementAndGet();
+    }
+
+    /**
+     * Note the current content version, and start warming the cache for it if it is new.
+     *
+     * @param version
+     *            - the current content version.
+     */
+    void versionObserved(final String version) {
+        String previousVersion = latestVersion.getAndSet(version);
+        if (null == previousVersion || previousVersion.equals(version)) {
+            return;
+        }
+        List<LookupKey> hotLookups = getHotLookups();
+        decayLookupCounts();
+        if (hotLookups.isEmpty()) {
+            return;
+        }
+
+        log.info(String.format("Content version changed from %s to %s, warming cache with %d lookups.",
+                previousVersion, version, hotLookups.size()));
+        long startTime = System.currentTimeMillis();
+        AtomicInteger remaining = new AtomicInteger(hotLookups.size());
+        for (LookupKey key : hotLookups) {
+            executor.submit(() -> {
+                try {
+                    warm(version, key);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        log.info(String.format("Warmed content cache for version %s in %dms.", version,
+                                System.currentTimeMillis() - startTime));
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the most frequent lookups, most frequent first.
+     */
+    List<LookupKey> getHotLookups() {
+        // Take a copy of the counts first, since they may change while being sorted:
+        List<Map.Entry<LookupKey, Long>> counts = lookupCounts.entrySet().stream()
+                .map(e -> Maps.immutableEntry(e.getKey(), e.getValue().get()))
+                .collect(Collectors.toList());
+        counts.sort(Map.Entry.<LookupKey, Long>comparingByValue().reversed());
+        return counts.stream().limit(hotLookupCount).map(Map.Entry::getKey).collect(Collectors.toList());
+    }
+
+    /**
+     * Halve every lookup count, forgetting lookups which have not been made since the last halving.
+     */
+    private void decayLookupCounts() {
+        for (Map.Entry<LookupKey, AtomicLong> entry : new ArrayList<>(lookupCounts.entrySet())) {
+            if (entry.getValue().updateAndGet(count -> count / 2) == 0) {
+                lookupCounts.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Load one lookup into the cache, unless the version has changed again since warming started.
+     *
+     * @param version
+     *            - the version to warm.
+     * @param key
+     *            - the lookup to warm.
+     */
+    private void warm(final String version, final LookupKey key) {
+        if (!version.equals(latestVersion.get())) {
+            return;
+        }
+        IS_WARMING.set(true);
+        try {
+            loader.load(version, key.lookup, key.id);
+        } catch (ContentManagerException | RuntimeException e) {
+            log.debug(String.format("Unable to warm cache with %s of %s.", key.lookup, key.id), e);
+        } finally {
+            IS_WARMING.set(false);
+        }
+    }
+
+    /**
+     * A lookup of one piece of content.
+     */
+    static final class LookupKey {
+        private final Lookup lookup;
+        private final String id;
+
+        /**
+         * @param lookup
+         *            - the lookup made.
+         * @param id
+         *            - the id of the content looked up.
+         */
+        LookupKey(final Lookup lookup, final String id) {
+            this.lookup = lookup;
+            this.id = id;
+        }
+
+        /**
+         * @return the lookup made.
+         */
+        Lookup getLookup() {
+            return lookup;
+        }
+
+        /**
+         * @return the id of the content looked up.
+         */
+        String getId() {
+            return id;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof LookupKey)) {
+                return false;
+            }
+            LookupKey other = (LookupKey) o;
+            return lookup == other.lookup && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * lookup.hashCode() + id.hashCode();
+        }
+    }
+}
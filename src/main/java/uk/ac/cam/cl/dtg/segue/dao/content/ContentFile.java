@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.io.ByteStreams;
+import org.apache.commons.lang3.Validate;
+import org.eclipse.jgit.lib.ObjectLoader;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A file stored in the content repository, e.g. an image, which can be written to a response without first being
+ * copied into memory.
+ *
+ * Small files are held in memory and shared between requests; larger ones are read from the repository each time they
+ * are written.
+ */
+public class ContentFile {
+    private final String path;
+    private final String objectId;
+    private final long size;
+    private final byte[] contents;
+    private final ObjectLoader loader;
+
+    /**
+     * @param path
+     *            - the path of the file in the repository.
+     * @param objectId
+     *            - the id of the file contents in the repository.
+     * @param contents
+     *            - the file contents, which must not be modified.
+     */
+    ContentFile(final String path, final String objectId, final byte[] contents) {
+        this.path = path;
+        this.objectId = objectId;
+        this.size = contents.length;
+        this.contents = contents;
+        this.loader = null;
+    }
+
+    /**
+     * @param path
+     *            - the path of the file in the repository.
+     * @param objectId
+     *            - the id of the file contents in the repository.
+     * @param loader
+     *            - to read the file contents from the repository with.
+     */
+    ContentFile(final String path, final String objectId, final ObjectLoader loader) {
+        this.path = path;
+        this.objectId = objectId;
+        this.size = loader.getSize();
+        this.contents = null;
+        this.loader = loader;
+    }
+
+    /**
+     * @return the path of the file in the repository.
+     */
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * The id of the file contents, which only changes when the contents do, and so can be used as an entity tag.
+     *
+     * @return the git object id of the file.
+     */
+    public String getObjectId() {
+        return objectId;
+    }
+
+    /**
+     * @return the size of the file in bytes.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the file contents if they are held in memory, or null if they are read from the repository when written.
+     */
+    @Nullable
+    byte[] getCachedContents() {
+        return contents;
+    }
+
+    /**
+     * Write the whole file to a stream.
+     *
+     * @param out
+     *            - the stream to write to.
+     * @throws IOException
+     *             - if the file cannot be read or the stream written to.
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        writeTo(out, 0, size);
+    }
+
+    /**
+     * Write part of the file to a stream.
+     *
+     * @param out
+     *            - the stream to write to.
+     * @param offset
+     *            - the position of the first byte to write.
+     * @param length
+     *            - the number of bytes to write.
+     * @throws IOException
+     *             - if the file cannot be read or the stream written to.
+     */
+    public void writeTo(final OutputStream out, final long offset, final long length) throws IOException {
+        Validate.isTrue(offset >= 0 && length >= 0 && offset + length <= size, "Range is outside the file.");
+
+        if (contents != null) {
+            out.write(contents, (int) offset, (int) length);
+            return;
+        }
+        try (InputStream in = loader.openStream()) {
+            ByteStreams.skipFully(in, offset);
+            ByteStreams.copy(ByteStreams.limit(in, length), out);
+        }
+    }
+}
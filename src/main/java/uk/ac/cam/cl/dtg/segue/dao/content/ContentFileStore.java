@@ -0,0 +1,142 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import uk.ac.cam.cl.dtg.segue.database.GitDb;
+import uk.ac.cam.cl.dtg.util.PropertiesLoader;
+import uk.ac.cam.cl.dtg.util.WeighedCacheBuilder;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
+
+/**
+ * Finds files in the content repository without searching the repository for each one.
+ *
+ * The first time a file is needed from a content version, the paths of every file in that version are listed in a
+ * single walk of the repository and kept, so that later files can be found without walking it again. Only the most
+ * recent few versions are kept, as only they are served.
+ *
+ * The contents of small files are cached by their object id, so a file which is unchanged between versions is only
+ * read from the repository once.
+ */
+class ContentFileStore {
+    private static final int INDEXED_VERSIONS = 2;
+    private static final long DEFAULT_FILE_CACHE_MEGABYTES = 128;
+    static final long MAX_CACHED_FILE_BYTES = 512 * 1024;
+
+    private final GitDb database;
+    private final Cache<String, Map<String, ObjectId>> fileIndexCache;
+    private final Cache<String, byte[]> fileContentsCache;
+
+    /**
+     * @param database
+     *            - the repository holding the files.
+     * @param properties
+     *            - to configure the size of the file cache from, or null to use the default size.
+     */
+    ContentFileStore(final GitDb database, @Nullable final PropertiesLoader properties) {
+        this.database = database;
+        this.fileIndexCache = CacheBuilder.newBuilder().maximumSize(INDEXED_VERSIONS).recordStats().build();
+        CACHE_METRICS_COLLECTOR.addCache("content_file_index", fileIndexCache);
+        this.fileContentsCache = WeighedCacheBuilder.named("content_files")
+                .maximumMegabytes(DEFAULT_FILE_CACHE_MEGABYTES).expireAfterAccess(1, TimeUnit.DAYS)
+                .configuredFrom(properties).build();
+    }
+
+    /**
+     * Find a file in a content version.
+     *
+     * @param version
+     *            - the content version (commit sha) to find the file in.
+     * @param path
+     *            - the full path of the file in the repository, without a leading slash.
+     * @return the file, or null if there is no file with that path in the version.
+     * @throws IOException
+     *             - if the repository cannot be read.
+     */
+    @Nullable
+    ContentFile getFile(final String version, final String path) throws IOException {
+        if (null == version || null == path) {
+            return null;
+        }
+
+        Map<String, ObjectId> fileIndex = getFileIndex(version);
+        ObjectId objectId = null == fileIndex ? null : fileIndex.get(path);
+        if (null == objectId) {
+            return null;
+        }
+
+        String objectName = objectId.getName();
+        byte[] contents = fileContentsCache.getIfPresent(objectName);
+        if (contents != null) {
+            return new ContentFile(path, objectName, contents);
+        }
+
+        ObjectLoader loader = database.openObject(objectId);
+        if (loader.getSize() > MAX_CACHED_FILE_BYTES) {
+            return new ContentFile(path, objectName, loader);
+        }
+        contents = loader.getCachedBytes();
+        fileContentsCache.put(objectName, contents);
+        return new ContentFile(path, objectName, contents);
+    }
+
+    /**
+     * @param version
+     *            - the content version (commit sha).
+     * @return a map from the path of each file in the version to its object id, or null if the version does not exist.
+     * @throws IOException
+     *             - if the repository cannot be read.
+     */
+    @Nullable
+    private Map<String, ObjectId> getFileIndex(final String version) throws IOException {
+        try {
+            // Concurrent requests for the same version wait for a single walk rather than each walking the tree:
+            return fileIndexCache.get(version, () -> {
+                Map<String, ObjectId> index = database.getFileIndex(version);
+                if (null == index) {
+                    throw new VersionNotFoundException();
+                }
+                return index;
+            });
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof VersionNotFoundException) {
+                return null;
+            }
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unable to list the files in content version " + version, e.getCause());
+        }
+    }
+
+    /**
+     * Thrown to avoid caching the absence of a version, since it may just not have been fetched yet.
+     */
+    private static final class VersionNotFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+}
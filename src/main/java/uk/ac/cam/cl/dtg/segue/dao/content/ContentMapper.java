@@ -16,7 +16,9 @@
 package uk.ac.cam.cl.dtg.segue.dao.content;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.google.api.client.util.Lists;
 import com.google.common.collect.Maps;
@@ -67,6 +69,8 @@ public class ContentMapper {
     private MapperFacade autoMapper = null;
     
     private static ObjectMapper preconfiguredObjectMapper;
+    private static final ObjectReader CONTENT_SUMMARY_READER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false).readerFor(ContentSummaryDTO.class);
 
     /**
      * Creates a new content mapper without type information.
@@ -368,6 +372,29 @@ public class ContentMapper {
         return contentList;
     }
 
+    /**
+     * Map a list of String to a List of content summaries.
+     *
+     * This is intended for search results which only include the fields of each document needed to summarise it, so
+     * avoids the cost of mapping whole content objects.
+     *
+     * @param stringList
+     *            - the JSON for each piece of content.
+     * @return Content summary list
+     */
+    public List<ContentSummaryDTO> mapFromStringListToContentSummaryList(final List<String> stringList) {
+        List<ContentSummaryDTO> summaryList = new ArrayList<>();
+
+        for (String item : stringList) {
+            try {
+                summaryList.add(CONTENT_SUMMARY_READER.readValue(item));
+            } catch (IOException e) {
+                log.error("Error whilst mapping from string to list of content summaries", e);
+            }
+        }
+        return summaryList;
+    }
+
     /**
      * Get an instance of the automapper which has been configured to cope with recursive content objects. This
      * automapper is more efficient than the jackson one as there is no intermediate representation.
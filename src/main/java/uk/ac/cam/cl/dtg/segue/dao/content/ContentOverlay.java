@@ -0,0 +1,182 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import uk.ac.cam.cl.dtg.isaac.dto.IsaacItemQuestionDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ChoiceQuestionDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentBaseDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentSummaryDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.QuestionDTO;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copy-on-write overlays of shared content DTO snapshots, so that content can be augmented for one user without deep
+ * copying (or re-mapping) the whole tree.
+ *
+ * An overlay copies only the objects which augmentation changes: the root of the content; every question within it
+ * and every object between the root and a question; the lists of choices and items that questions shuffle; and the
+ * summaries of related content. Every other object is shared with the snapshot, and so must still not be modified.
+ */
+public final class ContentOverlay {
+    private static final Map<Class<?>, ShallowCopier> COPIERS_BY_CLASS = new ConcurrentHashMap<>();
+
+    /**
+     * Utility class.
+     */
+    private ContentOverlay() {
+    }
+
+    /**
+     * Make an overlay of a content snapshot which may be augmented for one user, i.e. have best attempts set on its
+     * questions, its choices and items shuffled, its related content marked as correct, or its own fields set.
+     *
+     * @param snapshot
+     *            - the shared content, which will not be modified.
+     * @param <T>
+     *            - the type of the content.
+     * @return an overlay of the content.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends ContentDTO> T copyForAugmentation(final T snapshot) {
+        ContentDTO overlay = copyPathsToQuestions(snapshot);
+        if (overlay == snapshot) {
+            overlay = shallowCopy(snapshot);
+        }
+        return (T) overlay;
+    }
+
+    /**
+     * Copy a piece of content if it, or anything within it, would be changed by augmentation.
+     *
+     * @param content
+     *            - the shared content.
+     * @return a copy of the content, or the content itself if it does not need to be copied.
+     */
+    private static ContentDTO copyPathsToQuestions(final ContentDTO content) {
+        List<ContentBaseDTO> children = content.getChildren();
+        List<ContentBaseDTO> copiedChildren = null;
+        if (children != null) {
+            for (int i = 0; i < children.size(); i++) {
+                ContentBaseDTO child = children.get(i);
+                if (!(child instanceof ContentDTO)) {
+                    continue;
+                }
+                ContentDTO copiedChild = copyPathsToQuestions((ContentDTO) child);
+                if (copiedChild != child) {
+                    if (null == copiedChildren) {
+                        copiedChildren = new ArrayList<>(children);
+                    }
+                    copiedChildren.set(i, copiedChild);
+                }
+            }
+        }
+
+        List<ContentSummaryDTO> relatedContent = content.getRelatedContent();
+        boolean hasRelatedContent = relatedContent != null && !relatedContent.isEmpty();
+        if (null == copiedChildren && !hasRelatedContent && !(content instanceof QuestionDTO)) {
+            return content;
+        }
+
+        ContentDTO copy = shallowCopy(content);
+        if (copiedChildren != null) {
+            copy.setChildren(copiedChildren);
+        }
+        if (hasRelatedContent) {
+            List<ContentSummaryDTO> copiedRelatedContent = new ArrayList<>(relatedContent.size());
+            for (ContentSummaryDTO summary : relatedContent) {
+                copiedRelatedContent.add(shallowCopy(summary));
+            }
+            copy.setRelatedContent(copiedRelatedContent);
+        }
+        if (copy instanceof ChoiceQuestionDTO && ((ChoiceQuestionDTO) copy).getChoices() != null) {
+            ((ChoiceQuestionDTO) copy).setChoices(new ArrayList<>(((ChoiceQuestionDTO) copy).getChoices()));
+        }
+        if (copy instanceof IsaacItemQuestionDTO && ((IsaacItemQuestionDTO) copy).getItems() != null) {
+            ((IsaacItemQuestionDTO) copy).setItems(new ArrayList<>(((IsaacItemQuestionDTO) copy).getItems()));
+        }
+        return copy;
+    }
+
+    /**
+     * Copy the fields of an object into a new object of the same class, without copying what they refer to.
+     *
+     * @param object
+     *            - to copy.
+     * @param <T>
+     *            - the type of the object.
+     * @return the copy.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T shallowCopy(final T object) {
+        return (T) COPIERS_BY_CLASS.computeIfAbsent(object.getClass(), ShallowCopier::new).copy(object);
+    }
+
+    /**
+     * Copies objects of one class, using the fields of that class found once by reflection.
+     */
+    private static final class ShallowCopier {
+        private final Constructor<?> constructor;
+        private final List<Field> fields;
+
+        /**
+         * @param objectClass
+         *            - the class of object to copy, which must have a no-argument constructor.
+         */
+        private ShallowCopier(final Class<?> objectClass) {
+            try {
+                this.constructor = objectClass.getDeclaredConstructor();
+                this.constructor.setAccessible(true);
+            } catch (NoSuchMethodException e) {
+                throw new IllegalArgumentException("Unable to copy content of class " + objectClass.getName()
+                        + " as it has no default constructor.", e);
+            }
+            this.fields = new ArrayList<>();
+            for (Class<?> c = objectClass; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers())) {
+                        field.setAccessible(true);
+                        this.fields.add(field);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @param object
+         *            - to copy.
+         * @return the copy.
+         */
+        private Object copy(final Object object) {
+            try {
+                Object copy = constructor.newInstance();
+                for (Field field : fields) {
+                    field.set(copy, field.get(object));
+                }
+                return copy;
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Unable to copy content of class " + object.getClass().getName(), e);
+            }
+        }
+    }
+}
@@ -17,16 +17,16 @@ package uk.ac.cam.cl.dtg.segue.dao.content;
 
 import com.google.common.base.Functions;
 import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.Validate;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
@@ -42,6 +42,7 @@ import uk.ac.cam.cl.dtg.segue.dto.content.ContentSummaryDTO;
 import uk.ac.cam.cl.dtg.segue.dto.content.QuestionDTO;
 import uk.ac.cam.cl.dtg.segue.search.AbstractFilterInstruction;
 import uk.ac.cam.cl.dtg.segue.search.BooleanMatchInstruction;
+import uk.ac.cam.cl.dtg.segue.search.FieldProjection;
 import uk.ac.cam.cl.dtg.segue.search.ISearchProvider;
 import uk.ac.cam.cl.dtg.segue.search.MustMatchInstruction;
 import uk.ac.cam.cl.dtg.segue.search.RangeMatchInstruction;
@@ -49,6 +50,7 @@ import uk.ac.cam.cl.dtg.segue.search.ShouldMatchInstruction;
 import uk.ac.cam.cl.dtg.segue.search.SimpleFilterInstruction;
 import uk.ac.cam.cl.dtg.segue.search.TermsFilterInstruction;
 import uk.ac.cam.cl.dtg.util.PropertiesLoader;
+import uk.ac.cam.cl.dtg.util.WeighedCacheBuilder;
 
 import javax.annotation.Nullable;
 import javax.ws.rs.NotFoundException;
@@ -60,9 +62,12 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import static uk.ac.cam.cl.dtg.isaac.api.Constants.CONCEPT_TYPE;
@@ -81,6 +86,15 @@ public class GitContentManager implements IContentManager {
     private static final Logger log = LoggerFactory.getLogger(GitContentManager.class);
 
     private static final String CONTENT_TYPE = "content";
+    private static final long DEFAULT_CONTENT_CACHE_MEGABYTES = 512;
+    private static final int DEFAULT_CACHE_WARM_UP_SIZE = 500;
+    private static final int DEFAULT_CACHE_WARM_UP_THREADS = 4;
+    // The fields of a ContentSummaryDTO which are held in the search index:
+    private static final FieldProjection SUMMARY_PROJECTION = FieldProjection.including(Constants.ID_FIELDNAME,
+            Constants.TITLE_FIELDNAME, Constants.SUMMARY_FIELDNAME, Constants.TYPE_FIELDNAME,
+            Constants.LEVEL_FIELDNAME, Constants.TAGS_FIELDNAME, "supersededBy", "difficulty");
+    // Elasticsearch limits the number of terms in a query:
+    private static final int CONTENT_BY_IDS_BATCH_SIZE = 1000;
 
     private final GitDb database;
     private final ContentMapper mapper;
@@ -89,7 +103,9 @@ public class GitContentManager implements IContentManager {
     private final boolean allowOnlyPublishedContent;
 
     private final Cache<Object, Object> cache;
-    private final Cache<String, GetResponse> contentShaCache;
+    private final Cache<String, String> contentShaCache;
+    private final ContentCacheWarmer cacheWarmer;
+    private final ContentFileStore fileStore;
 
 
     /**
@@ -118,8 +134,20 @@ public class GitContentManager implements IContentManager {
             log.info("API Configured to only allow published content to be returned.");
         }
 
-        this.cache = CacheBuilder.newBuilder().softValues().expireAfterAccess(1, TimeUnit.DAYS).build();
-        this.contentShaCache = CacheBuilder.newBuilder().softValues().expireAfterWrite(5, TimeUnit.SECONDS).build();
+        this.cache = WeighedCacheBuilder.named("content").maximumMegabytes(DEFAULT_CONTENT_CACHE_MEGABYTES)
+                .expireAfterAccess(1, TimeUnit.DAYS).configuredFrom(globalProperties).build();
+        this.contentShaCache = WeighedCacheBuilder.named("content_sha").maximumMegabytes(1)
+                .expireAfterWrite(5, TimeUnit.SECONDS).configuredFrom(globalProperties).build();
+        this.fileStore = new ContentFileStore(database, globalProperties);
+
+        int warmUpSize = getIntegerProperty(Constants.CONTENT_CACHE_WARM_UP_SIZE, DEFAULT_CACHE_WARM_UP_SIZE);
+        if (warmUpSize > 0) {
+            this.cacheWarmer = new ContentCacheWarmer(warmUpSize,
+                    getIntegerProperty(Constants.CONTENT_CACHE_WARM_UP_THREADS, DEFAULT_CACHE_WARM_UP_THREADS),
+                    this::warmCache);
+        } else {
+            this.cacheWarmer = null;
+        }
     }
 
     /**
@@ -139,8 +167,12 @@ public class GitContentManager implements IContentManager {
         this.searchProvider = searchProvider;
         this.globalProperties = null;
         this.allowOnlyPublishedContent = false;
-        this.cache = CacheBuilder.newBuilder().softValues().expireAfterAccess(1, TimeUnit.DAYS).build();
-        this.contentShaCache = CacheBuilder.newBuilder().softValues().expireAfterWrite(1, TimeUnit.MINUTES).build();
+        this.cache = WeighedCacheBuilder.named("content").maximumMegabytes(DEFAULT_CONTENT_CACHE_MEGABYTES)
+                .expireAfterAccess(1, TimeUnit.DAYS).build();
+        this.contentShaCache = WeighedCacheBuilder.named("content_sha").maximumMegabytes(1)
+                .expireAfterWrite(1, TimeUnit.MINUTES).build();
+        this.fileStore = new ContentFileStore(database, null);
+        this.cacheWarmer = null;
     }
 
     @Override
@@ -150,15 +182,24 @@ public class GitContentManager implements IContentManager {
 
     @Override
     public final ContentDTO getContentById(final String version, final String id, boolean failQuietly) throws ContentManagerException {
+        recordLookup(ContentCacheWarmer.Lookup.CONTENT_BY_ID, id);
         String k = "getContentById~" + version + "~" + id;
-        if (!cache.asMap().containsKey(k)) {
-            ContentDTO c = this.mapper.getDTOByDO(this.getContentDOById(version, id, failQuietly));
-            if (c != null) {
-                cache.put(k, c);
-            }
-        }
+        return getCached(k, () -> this.mapper.getDTOByDO(this.getContentDOById(version, id, failQuietly)));
+    }
 
-        return (ContentDTO) cache.getIfPresent(k);
+    @Override
+    public final ContentDTO getContentSnapshotById(final String version, final String id)
+            throws ContentManagerException {
+        recordLookup(ContentCacheWarmer.Lookup.CONTENT_SNAPSHOT_BY_ID, id);
+        String k = "getContentSnapshotById~" + version + "~" + id;
+        return getCached(k, () -> {
+            // Map a DTO of our own, since the one cached by getContentById may be modified by its callers:
+            Content content = this.getContentDOById(version, id, true);
+            if (null == content) {
+                return null;
+            }
+            return this.populateRelatedContent(version, this.mapper.getDTOByDO(content));
+        });
     }
 
     @Override
@@ -172,9 +213,9 @@ public class GitContentManager implements IContentManager {
             return null;
         }
 
+        recordLookup(ContentCacheWarmer.Lookup.CONTENT_DO_BY_ID, id);
         String k = "getContentDOById~" + version + "~" + id;
-        if (!cache.asMap().containsKey(k)) {
-
+        return getCached(k, () -> {
             List<Content> searchResults = mapper.mapFromStringListToContentList(this.searchProvider.termSearch(version,
                     CONTENT_TYPE, id,
                     Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX, 0, 1,
@@ -187,11 +228,8 @@ public class GitContentManager implements IContentManager {
                 return null;
             }
 
-            cache.put(k, searchResults.get(0));
-        }
-
-        return (Content) cache.getIfPresent(k);
-
+            return searchResults.get(0);
+        });
     }
 
     @Override
@@ -199,18 +237,15 @@ public class GitContentManager implements IContentManager {
             final int limit) throws ContentManagerException {
 
         String k = "getByIdPrefix~" + version + "~" + idPrefix + "~" + startIndex + "~" + limit;
-        if (!cache.asMap().containsKey(k)) {
-
+        return getCached(k, () -> {
             ResultsWrapper<String> searchHits = this.searchProvider.findByPrefix(version, CONTENT_TYPE,
                     Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
                     idPrefix, startIndex, limit, this.getUnpublishedFilter());
 
             List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
 
-            cache.put(k, new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults()));
-        }
-
-        return (ResultsWrapper<ContentDTO>) cache.getIfPresent(k);
+            return new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults());
+        });
     }
 
     @Override
@@ -219,8 +254,7 @@ public class GitContentManager implements IContentManager {
             throws ContentManagerException {
 
         String k = "getContentMatchingIds~" + version + "~" + ids.toString() + "~" + startIndex + "~" + limit;
-        if (!cache.asMap().containsKey(k)) {
-
+        return getCached(k, () -> {
             Map<String, AbstractFilterInstruction> finalFilter = Maps.newHashMap();
             finalFilter.putAll(new ImmutableMap.Builder<String, AbstractFilterInstruction>()
                                 .put(Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
@@ -236,10 +270,49 @@ public class GitContentManager implements IContentManager {
                     startIndex, limit, finalFilter);
 
             List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
-            cache.put(k, new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults()));
+            return new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults());
+        });
+    }
+
+    @Override
+    public Map<String, ContentDTO> getContentByIds(final String version, final Collection<String> ids)
+            throws ContentManagerException {
+        Map<String, ContentDTO> contentById = Maps.newHashMap();
+        List<String> uncachedIds = Lists.newArrayList();
+        for (String id : new LinkedHashSet<>(ids)) {
+            if (null == id || id.isEmpty()) {
+                continue;
+            }
+            recordLookup(ContentCacheWarmer.Lookup.CONTENT_BY_ID, id);
+            ContentDTO cachedContent = (ContentDTO) cache.getIfPresent("getContentById~" + version + "~" + id);
+            if (cachedContent != null) {
+                contentById.put(id, cachedContent);
+            } else {
+                uncachedIds.add(id);
+            }
         }
 
-        return (ResultsWrapper<ContentDTO>) cache.getIfPresent(k);
+        for (List<String> idBatch : Lists.partition(uncachedIds, CONTENT_BY_IDS_BATCH_SIZE)) {
+            Map<String, AbstractFilterInstruction> filter = Maps.newHashMap();
+            filter.put(Constants.ID_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
+                    new TermsFilterInstruction(idBatch));
+            if (getUnpublishedFilter() != null) {
+                filter.putAll(getUnpublishedFilter());
+            }
+
+            ResultsWrapper<String> searchHits = this.searchProvider.termSearch(version, CONTENT_TYPE, null, null,
+                    0, idBatch.size(), filter);
+
+            // Cache each piece of content as though it had been looked up on its own:
+            for (Content content : mapper.mapFromStringListToContentList(searchHits.getResults())) {
+                cache.asMap().putIfAbsent("getContentDOById~" + version + "~" + content.getId(), content);
+                ContentDTO contentDTO = getCached("getContentById~" + version + "~" + content.getId(),
+                        () -> this.mapper.getDTOByDO(content));
+                contentById.put(content.getId(), contentDTO);
+            }
+        }
+
+        return contentById;
     }
 
     @Override
@@ -247,19 +320,15 @@ public class GitContentManager implements IContentManager {
             final int limit) throws ContentManagerException {
 
         String k = "getAllByTypeRegEx~" + version + "~" + regex + "~" + startIndex + "~" + limit;
-
-        if (!cache.asMap().containsKey(k)) {
-
+        return getCached(k, () -> {
             ResultsWrapper<String> searchHits = this.searchProvider.findByRegEx(version, CONTENT_TYPE,
                     Constants.TYPE_FIELDNAME + "." + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
                     regex, startIndex, limit, this.getUnpublishedFilter());
 
             List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
 
-            cache.put(k, new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults()));
-        }
-
-        return (ResultsWrapper<ContentDTO>) cache.getIfPresent(k);
+            return new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults());
+        });
     }
 
     @Override
@@ -281,6 +350,44 @@ public class GitContentManager implements IContentManager {
             final String version, final String searchString, final List<String> documentTypes,
             final boolean includeHiddenContent, final Integer startIndex, final Integer limit
     ) throws  ContentManagerException {
+        ResultsWrapper<String> searchHits = searchProvider.nestedMatchSearch(
+                version, CONTENT_TYPE, startIndex, limit, searchString,
+                siteWideSearchQuery(searchString, documentTypes, includeHiddenContent), this.getUnpublishedFilter(),
+                null);
+
+        List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
+
+        return new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults());
+    }
+
+    @Override
+    public final ResultsWrapper<ContentSummaryDTO> siteWideSearchForSummaries(
+            final String version, final String searchString, final List<String> documentTypes,
+            final boolean includeHiddenContent, final Integer startIndex, final Integer limit
+    ) throws  ContentManagerException {
+        ResultsWrapper<String> searchHits = searchProvider.nestedMatchSearch(
+                version, CONTENT_TYPE, startIndex, limit, searchString,
+                siteWideSearchQuery(searchString, documentTypes, includeHiddenContent), this.getUnpublishedFilter(),
+                SUMMARY_PROJECTION);
+
+        return new ResultsWrapper<>(mapper.mapFromStringListToContentSummaryList(searchHits.getResults()),
+                searchHits.getTotalResults());
+    }
+
+    /**
+     * Build the query used by the site wide search.
+     *
+     * @param searchString
+     *            - the string to search for.
+     * @param documentTypes
+     *            - the types of content to search for, or null to search all types.
+     * @param includeHiddenContent
+     *            - whether to include content tagged to be hidden from filters.
+     * @return the query.
+     */
+    private BooleanMatchInstruction siteWideSearchQuery(final String searchString,
+                                                        @Nullable final List<String> documentTypes,
+                                                        final boolean includeHiddenContent) {
         String nestedFieldConnector = searchProvider.getNestedFieldConnector();
 
         List<String> importantFields = ImmutableList.of(
@@ -339,12 +446,7 @@ public class GitContentManager implements IContentManager {
             matchQuery.mustNot(new MustMatchInstruction(Constants.TAGS_FIELDNAME, HIDE_FROM_FILTER_TAG));
         }
 
-        ResultsWrapper<String> searchHits = searchProvider.nestedMatchSearch(
-                version, CONTENT_TYPE, startIndex, limit, searchString,matchQuery, this.getUnpublishedFilter());
-
-        List<Content> searchResults = mapper.mapFromStringListToContentList(searchHits.getResults());
-
-        return new ResultsWrapper<>(mapper.getDTOByDOList(searchResults), searchHits.getTotalResults());
+        return matchQuery;
     }
 
     @Override
@@ -371,6 +473,59 @@ public class GitContentManager implements IContentManager {
     ) throws ContentManagerException {
         ResultsWrapper<ContentDTO> finalResults;
 
+        ResultsWrapper<String> searchHits = findHitsByFieldNames(version, fieldsToMatch, startIndex, limit,
+                sortInstructions, filterInstructions, null);
+
+        // setup object mapper to use pre-configured deserializer module.
+        // Required to deal with type polymorphism
+        List<Content> result = mapper.mapFromStringListToContentList(searchHits.getResults());
+
+        List<ContentDTO> contentDTOResults = mapper.getDTOByDOList(result);
+
+        finalResults = new ResultsWrapper<>(contentDTOResults, searchHits.getTotalResults());
+
+        return finalResults;
+    }
+
+    @Override
+    public final ResultsWrapper<ContentSummaryDTO> findSummariesByFieldNames(
+            final String version, final List<BooleanSearchClause> fieldsToMatch, final Integer startIndex,
+            final Integer limit, @Nullable final Map<String, Constants.SortOrder> sortInstructions
+    ) throws ContentManagerException {
+        ResultsWrapper<String> searchHits = findHitsByFieldNames(version, fieldsToMatch, startIndex, limit,
+                sortInstructions, null, SUMMARY_PROJECTION);
+
+        return new ResultsWrapper<>(mapper.mapFromStringListToContentSummaryList(searchHits.getResults()),
+                searchHits.getTotalResults());
+    }
+
+    /**
+     * Search for content matching some fields, sorted by title unless told otherwise.
+     *
+     * @param version
+     *            - of the content to search.
+     * @param fieldsToMatch
+     *            - the fields to match.
+     * @param startIndex
+     *            - the index of the first result.
+     * @param limit
+     *            - the maximum number of results.
+     * @param sortInstructions
+     *            - how to sort the results, or null to sort by title.
+     * @param filterInstructions
+     *            - how to filter the results, or null to only filter out unpublished content if necessary.
+     * @param projection
+     *            - the fields of each result to return, or null for whole documents.
+     * @return the matching documents.
+     * @throws ContentManagerException
+     *             - if the search fails.
+     */
+    private ResultsWrapper<String> findHitsByFieldNames(
+            final String version, final List<BooleanSearchClause> fieldsToMatch, final Integer startIndex,
+            final Integer limit, @Nullable final Map<String, Constants.SortOrder> sortInstructions,
+            @Nullable final Map<String, AbstractFilterInstruction> filterInstructions,
+            @Nullable final FieldProjection projection
+    ) throws ContentManagerException {
         final Map<String, Constants.SortOrder> newSortInstructions;
         if (null == sortInstructions || sortInstructions.isEmpty()) {
             newSortInstructions = Maps.newHashMap();
@@ -389,18 +544,8 @@ public class GitContentManager implements IContentManager {
             newFilterInstructions.putAll(this.getUnpublishedFilter());
         }
 
-        ResultsWrapper<String> searchHits = searchProvider.matchSearch(version, CONTENT_TYPE, fieldsToMatch,
-                startIndex, limit, newSortInstructions, newFilterInstructions);
-
-        // setup object mapper to use pre-configured deserializer module.
-        // Required to deal with type polymorphism
-        List<Content> result = mapper.mapFromStringListToContentList(searchHits.getResults());
-
-        List<ContentDTO> contentDTOResults = mapper.getDTOByDOList(result);
-
-        finalResults = new ResultsWrapper<>(contentDTOResults, searchHits.getTotalResults());
-
-        return finalResults;
+        return searchProvider.matchSearch(version, CONTENT_TYPE, fieldsToMatch,
+                startIndex, limit, newSortInstructions, newFilterInstructions, projection);
     }
 
     @Override
@@ -438,6 +583,11 @@ public class GitContentManager implements IContentManager {
         return database.getFileByCommitSHA(version, filename);
     }
 
+    @Override
+    public final ContentFile getContentFile(final String version, final String filename) throws IOException {
+        return fileStore.getFile(version, filename);
+    }
+
     @Override
     public final List<String> listAvailableVersions() {
 
@@ -554,52 +704,66 @@ public class GitContentManager implements IContentManager {
     @Override
     public ContentDTO populateRelatedContent(final String version, final ContentDTO contentDTO)
             throws ContentManagerException {
-        if (contentDTO.getChildren() != null) {
-            for (ContentBaseDTO childBaseContentDTO : contentDTO.getChildren()) {
-                if (childBaseContentDTO instanceof ContentDTO) {
-                    this.populateRelatedContent(version, (ContentDTO) childBaseContentDTO);
-                }
-            }
-        }
-        if (contentDTO.getRelatedContent() == null || contentDTO.getRelatedContent().isEmpty()) {
+        List<ContentDTO> contentWithRelatedContent = Lists.newArrayList();
+        this.findContentWithRelatedContent(contentDTO, contentWithRelatedContent);
+        if (contentWithRelatedContent.isEmpty()) {
             return contentDTO;
         }
 
-        // build query the db to get full content information
-        List<BooleanSearchClause> fieldsToMap = Lists.newArrayList();
-
-        List<String> relatedContentIds = Lists.newArrayList();
-        for (ContentSummaryDTO summary : contentDTO.getRelatedContent()) {
-            relatedContentIds.add(summary.getId());
+        // Look up the related content of the whole tree together:
+        ContentBatchLoader relatedContentLoader = new ContentBatchLoader(this, version);
+        for (ContentDTO content : contentWithRelatedContent) {
+            for (ContentSummaryDTO summary : content.getRelatedContent()) {
+                relatedContentLoader.want(summary.getId());
+            }
         }
 
-        fieldsToMap.add(new BooleanSearchClause(
-                Constants.ID_FIELDNAME + '.' + Constants.UNPROCESSED_SEARCH_FIELD_SUFFIX,
-                Constants.BooleanOperator.OR, relatedContentIds));
+        for (ContentDTO content : contentWithRelatedContent) {
+            List<String> relatedContentIds = Lists.newArrayList();
+            for (ContentSummaryDTO summary : content.getRelatedContent()) {
+                relatedContentIds.add(summary.getId());
+            }
+            Map<String, ContentDTO> resultsMappedById = relatedContentLoader.loadAll(relatedContentIds);
+
+            List<ContentSummaryDTO> relatedContentDTOs = Lists.newArrayList();
+            // Iterate over relatedContentIds so that relatedContentDTOs maintain order defined in content not result order
+            for (String contentId : relatedContentIds) {
+                ContentDTO relatedContent = resultsMappedById.get(contentId);
+                if (relatedContent != null) {
+                    ContentSummaryDTO summary = this.mapper.getAutoMapper().map(relatedContent, ContentSummaryDTO.class);
+                    GitContentManager.generateDerivedSummaryValues(relatedContent, summary);
+                    relatedContentDTOs.add(summary);
+                } else {
+                    log.error("Related content with ID '" + contentId + "' not returned by elasticsearch query");
+                }
+            }
 
-        ResultsWrapper<ContentDTO> results = this.findByFieldNames(version, fieldsToMap, 0, relatedContentIds.size());
+            content.setRelatedContent(relatedContentDTOs);
+        }
 
-        List<ContentSummaryDTO> relatedContentDTOs = Lists.newArrayList();
+        return contentDTO;
+    }
 
-        Map<String, ContentDTO> resultsMappedById = Maps.newHashMap();
-        for (ContentDTO relatedContent : results.getResults()) {
-            resultsMappedById.put(relatedContent.getId(), relatedContent);
-        }
-        // Iterate over relatedContentIds so that relatedContentDTOs maintain order defined in content not result order
-        for (String contentId : relatedContentIds) {
-            ContentDTO relatedContent = resultsMappedById.get(contentId);
-            if (relatedContent != null) {
-                ContentSummaryDTO summary = this.mapper.getAutoMapper().map(relatedContent, ContentSummaryDTO.class);
-                GitContentManager.generateDerivedSummaryValues(relatedContent, summary);
-                relatedContentDTOs.add(summary);
-            } else {
-                log.error("Related content with ID '" + contentId + "' not returned by elasticsearch query");
+    /**
+     * Helper to find the content within a content tree which has related content.
+     *
+     * @param contentDTO
+     *            - the root of the tree.
+     * @param contentWithRelatedContent
+     *            - to add the content found to.
+     */
+    private void findContentWithRelatedContent(final ContentDTO contentDTO,
+                                               final List<ContentDTO> contentWithRelatedContent) {
+        if (contentDTO.getChildren() != null) {
+            for (ContentBaseDTO childBaseContentDTO : contentDTO.getChildren()) {
+                if (childBaseContentDTO instanceof ContentDTO) {
+                    this.findContentWithRelatedContent((ContentDTO) childBaseContentDTO, contentWithRelatedContent);
+                }
             }
         }
-
-        contentDTO.setRelatedContent(relatedContentDTOs);
-
-        return contentDTO;
+        if (contentDTO.getRelatedContent() != null && !contentDTO.getRelatedContent().isEmpty()) {
+            contentWithRelatedContent.add(contentDTO);
+        }
     }
 
     @Override
@@ -615,13 +779,117 @@ public class GitContentManager implements IContentManager {
     @Override
     public String getCurrentContentSHA() {
         String contentIndex = globalProperties.getProperty(Constants.CONTENT_INDEX);
-        GetResponse versionResponse = contentShaCache.getIfPresent(contentIndex);
-        if (null == versionResponse) {
-            versionResponse =
-                    searchProvider.getById(contentIndex, Constants.CONTENT_INDEX_TYPE.METADATA.toString(), "general");
-            contentShaCache.put(contentIndex, versionResponse);
+        String contentSHA = contentShaCache.getIfPresent(contentIndex);
+        if (null == contentSHA) {
+            contentSHA = (String) searchProvider.getById(contentIndex,
+                    Constants.CONTENT_INDEX_TYPE.METADATA.toString(), "general").getSource().get("version");
+            contentShaCache.put(contentIndex, contentSHA);
+            if (cacheWarmer != null) {
+                cacheWarmer.versionObserved(contentSHA);
+            }
+        }
+        return contentSHA;
+    }
+
+    /**
+     * Helper to count a lookup of content, so that the most frequent lookups can be warmed for new content versions.
+     *
+     * @param lookup
+     *            - the lookup made.
+     * @param id
+     *            - the id of the content looked up.
+     */
+    private void recordLookup(final ContentCacheWarmer.Lookup lookup, final String id) {
+        if (cacheWarmer != null) {
+            cacheWarmer.recordLookup(lookup, id);
+        }
+    }
+
+    /**
+     * Helper to load a piece of content into the cache by the lookup it was frequently requested by.
+     *
+     * @param version
+     *            - the content version to load from.
+     * @param lookup
+     *            - the lookup to make.
+     * @param id
+     *            - the id of the content.
+     * @throws ContentManagerException
+     *             - if the content could not be loaded.
+     */
+    private void warmCache(final String version, final ContentCacheWarmer.Lookup lookup, final String id)
+            throws ContentManagerException {
+        switch (lookup) {
+            case CONTENT_BY_ID:
+                this.getContentById(version, id, true);
+                break;
+            case CONTENT_DO_BY_ID:
+                this.getContentDOById(version, id, true);
+                break;
+            case CONTENT_SNAPSHOT_BY_ID:
+                this.getContentSnapshotById(version, id);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Helper to read an integer property, falling back to a default if it is not set or is not a number.
+     *
+     * @param property
+     *            - the property to read.
+     * @param defaultValue
+     *            - the value to use if the property is not set or not a number.
+     * @return the value.
+     */
+    private int getIntegerProperty(final String property, final int defaultValue) {
+        String value = globalProperties.getProperty(property);
+        if (null == value || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            log.error(String.format("Invalid value '%s' for property %s, using %d instead.", value, property,
+                    defaultValue));
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Helper to look up a value in the cache, loading it only if it is not already cached.
+     *
+     * Concurrent requests for the same missing key wait for a single load rather than each loading it.
+     *
+     * @param key
+     *            - the cache key.
+     * @param loader
+     *            - to load the value, which may return null if there is no value; null is not cached.
+     * @param <T>
+     *            - the type of the value.
+     * @return the cached or loaded value, or null.
+     * @throws ContentManagerException
+     *             - if the value could not be loaded.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T getCached(final String key, final Callable<T> loader) throws ContentManagerException {
+        try {
+            return (T) cache.get(key, loader);
+        } catch (CacheLoader.InvalidCacheLoadException e) {
+            // The loader returned null:
+            return null;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ContentManagerException) {
+                throw (ContentManagerException) e.getCause();
+            }
+            throw new ContentManagerException("Unable to load content for " + key, (Exception) e.getCause());
+        } catch (UncheckedExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
-        return (String) versionResponse.getSource().get("version");
     }
 
     /**
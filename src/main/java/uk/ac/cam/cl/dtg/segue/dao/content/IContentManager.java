@@ -90,6 +90,24 @@ public interface IContentManager {
     ContentDTO getContentById(String version, String id) throws ContentManagerException;
     ContentDTO getContentById(String version, String id, boolean failQuietly) throws ContentManagerException;
 
+    /**
+     * Find a content item with the specified ID, with its related content populated, as a snapshot shared between all
+     * callers asking for that version of the content.
+     *
+     * The snapshot must not be modified. Content which is to be augmented for a particular user should be copied using
+     * {@link ContentOverlay#copyForAugmentation(ContentDTO)} first.
+     *
+     * @param version
+     *            - the SHA (not alias due to caching) to attempt to retrieve.
+     * @param id
+     *            id to search for in preconfigured data source.
+     *
+     * @return the shared snapshot of the content, or null if no content object is found.
+     * @throws ContentManagerException
+     *             - if there is an error retrieving the content requested.
+     */
+    ContentDTO getContentSnapshotById(String version, String id) throws ContentManagerException;
+
     /**
      * GetByIdPrefix Returns results that match a given id prefix for a specified version number.
      * 
@@ -128,6 +146,23 @@ public interface IContentManager {
     ResultsWrapper<ContentDTO> getContentMatchingIds(String version, Collection<String> ids, int startIndex, int limit)
             throws ContentManagerException;
 
+    /**
+     * Get several content objects by id at once, in as few searches as possible.
+     *
+     * This is equivalent to calling {@link #getContentById(String, String)} for each id, and shares its cache, but
+     * looks up all of the ids which are not cached together. See {@link ContentBatchLoader} to collect the ids needed
+     * over the course of a request.
+     *
+     * @param version
+     *            - the SHA (not alias due to caching) to attempt to retrieve.
+     * @param ids
+     *            - the ids to look up; duplicates are ignored.
+     * @return a map from each id found to its content. Ids which were not found are not present.
+     * @throws ContentManagerException
+     *             - if there is an error retrieving the content requested.
+     */
+    Map<String, ContentDTO> getContentByIds(String version, Collection<String> ids) throws ContentManagerException;
+
     /**
      * Method to allow bulk search of content based on the type field.
      * 
@@ -193,6 +228,31 @@ public interface IContentManager {
             Map<String, SortOrder> sortInstructions, @Nullable final Map<String, AbstractFilterInstruction> filterInstructions
     ) throws ContentManagerException;
 
+    /**
+     * The same as findByFieldNames, but only fetches the fields needed to summarise each result.
+     *
+     * This avoids fetching and mapping whole documents (including their children) when only a list of summaries
+     * is needed. The summaries do not have their url or question part ids set.
+     *
+     * @param version
+     *            - version of the content to search.
+     * @param fieldsToMatch
+     *            - List of boolean clauses used for field matching.
+     * @param startIndex
+     *            - the index of the first item to return.
+     * @param limit
+     *            - the maximum number of results to return.
+     * @param sortInstructions
+     *            - The sort instructions for results returned by this method, or null to sort by title.
+     * @return Results Wrapper containing summaries of the results of the search.
+     * @throws ContentManagerException
+     *             - if there is an error retrieving the content requested.
+     */
+    ResultsWrapper<ContentSummaryDTO> findSummariesByFieldNames(
+            String version, List<BooleanSearchClause> fieldsToMatch, Integer startIndex, Integer limit,
+            @Nullable Map<String, SortOrder> sortInstructions
+    ) throws ContentManagerException;
+
     /**
      * The same as findByFieldNames but the results list is returned in a randomised order.
      * 
@@ -261,6 +321,32 @@ public interface IContentManager {
             final boolean includeHiddenContent, final Integer startIndex, final Integer limit
     ) throws  ContentManagerException;
 
+    /**
+     * The same as siteWideSearch, but only fetches the fields needed to summarise each result.
+     *
+     * The summaries do not have their url or question part ids set.
+     *
+     * @param version
+     *            - version of the content to search.
+     * @param searchString
+     *            - string to use as search term.
+     * @param documentTypes
+     *            - the types of content to search, or null to search all of them.
+     * @param includeHiddenContent
+     *            - whether to include content which is hidden from filters.
+     * @param startIndex
+     *            - the index of the first item to return.
+     * @param limit
+     *            - the maximum number of results to return.
+     * @return summaries of the results, ordered by relevance.
+     * @throws ContentManagerException
+     *             - if there is an error retrieving the content requested.
+     */
+    ResultsWrapper<ContentSummaryDTO> siteWideSearchForSummaries(
+            String version, String searchString, @Nullable List<String> documentTypes, boolean includeHiddenContent,
+            Integer startIndex, Integer limit
+    ) throws ContentManagerException;
+
 
     /**
      * Method allows raw output to be retrieved for given files in the git repository. This is mainly so we can retrieve
@@ -276,6 +362,22 @@ public interface IContentManager {
      */
     ByteArrayOutputStream getFileBytes(String version, String filename) throws IOException;
 
+    /**
+     * Find a file in the git repository, e.g. an image, so that it can be streamed to a client.
+     *
+     * Unlike {@link #getFileBytes(String, String)}, this does not search the repository for each file, nor copy the
+     * file into memory unless it is small enough to be cached.
+     *
+     * @param version
+     *            - The version of the content to retrieve
+     * @param filename
+     *            - The full path of the file you wish to retrieve, without a leading slash.
+     * @return the file, or null if it does not exist in that version.
+     * @throws IOException
+     *             if failed IO occurs.
+     */
+    ContentFile getContentFile(String version, String filename) throws IOException;
+
     /**
      * Provide a list of all possible versions from the underlying database
      * 
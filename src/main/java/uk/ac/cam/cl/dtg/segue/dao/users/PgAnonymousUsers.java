@@ -52,7 +52,7 @@ public class PgAnonymousUsers implements IAnonymousUserDataManager {
             pst = conn.prepareStatement("INSERT INTO temporary_user_store (id, temporary_app_data, created, last_updated)" +
                     " VALUES (?,?::text::jsonb,?,?);");
             pst.setString(1, user.getSessionId());
-            pst.setString(2, "{\"questionAttempts\":{}}");
+            pst.setString(2, "{}");
             pst.setTimestamp(3, new java.sql.Timestamp(user.getDateCreated().getTime()));
             pst.setTimestamp(4, new java.sql.Timestamp(user.getDateCreated().getTime()));
 
@@ -0,0 +1,147 @@
+/**
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.users;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.Validate;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Listens for changes to users made by any API server, so that copies of users held in memory can be discarded.
+ *
+ * A trigger on the users table sends a notification on the USER_CHANGE_CHANNEL whenever a user is updated or deleted,
+ * which Postgres delivers to every connection listening on that channel once the change is committed. This holds one
+ * pooled connection open to listen, and checks it for notifications once every poll interval.
+ */
+public class PgUserChangeListener implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PgUserChangeListener.class);
+
+    public static final String USER_CHANGE_CHANNEL = "user_changed";
+    private static final long POLL_INTERVAL_MILLISECONDS = 1000;
+
+    private final PostgresSqlDb database;
+    private final Consumer<Long> onUserChanged;
+    private final Runnable onChangesMissed;
+    private final ScheduledExecutorService pollExecutor;
+
+    // Only used from the poll thread, or once that has stopped:
+    private Connection listeningConnection;
+
+    /**
+     * Start listening for changes to users.
+     *
+     * @param database
+     *            - the database holding the users table.
+     * @param onUserChanged
+     *            - called with the id of each user who has changed.
+     * @param onChangesMissed
+     *            - called when changes may have been missed, e.g. after losing the database connection.
+     */
+    public PgUserChangeListener(final PostgresSqlDb database, final Consumer<Long> onUserChanged,
+                                final Runnable onChangesMissed) {
+        Validate.notNull(database);
+        Validate.notNull(onUserChanged);
+        Validate.notNull(onChangesMissed);
+
+        this.database = database;
+        this.onUserChanged = onUserChanged;
+        this.onChangesMissed = onChangesMissed;
+        this.pollExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("user-change-listener").setDaemon(true).build());
+        this.pollExecutor.scheduleWithFixedDelay(this::poll, 0, POLL_INTERVAL_MILLISECONDS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Pass on any notifications received since the last poll, starting to listen first if necessary.
+     */
+    void poll() {
+        try {
+            if (null == listeningConnection) {
+                listeningConnection = database.getDatabaseConnection();
+                try (Statement statement = listeningConnection.createStatement()) {
+                    statement.execute("LISTEN " + USER_CHANGE_CHANNEL);
+                }
+                // We cannot know what changed while we were not listening:
+                onChangesMissed.run();
+            }
+
+            // The driver only reads notifications from the server when it is sent a query:
+            try (Statement statement = listeningConnection.createStatement()) {
+                statement.execute("SELECT 1");
+            }
+            PGNotification[] notifications = listeningConnection.unwrap(PGConnection.class).getNotifications();
+            if (null == notifications) {
+                return;
+            }
+            for (PGNotification notification : notifications) {
+                try {
+                    onUserChanged.accept(Long.parseLong(notification.getParameter()));
+                } catch (NumberFormatException e) {
+                    log.warn("Ignoring change notification for invalid user id: " + notification.getParameter());
+                }
+            }
+        } catch (SQLException e) {
+            log.error("Unable to check for changes to users. Will start listening again.", e);
+            closeListeningConnection();
+        } catch (RuntimeException e) {
+            // An exception escaping would stop all future polls:
+            log.error("Unexpected error passing on changes to users.", e);
+        }
+    }
+
+    /**
+     * Stop listening for changes to users.
+     */
+    @Override
+    public void close() {
+        pollExecutor.shutdown();
+        try {
+            pollExecutor.awaitTermination(POLL_INTERVAL_MILLISECONDS * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeListeningConnection();
+    }
+
+    /**
+     * Stop listening and return the connection to the pool, ignoring errors as we have no further use for it.
+     */
+    private void closeListeningConnection() {
+        if (null == listeningConnection) {
+            return;
+        }
+        try (Connection conn = listeningConnection; Statement statement = conn.createStatement()) {
+            statement.execute("UNLISTEN " + USER_CHANGE_CHANNEL);
+        } catch (SQLException e) {
+            log.debug("Unable to stop listening for changes to users cleanly.", e);
+        } finally {
+            listeningConnection = null;
+        }
+    }
+}
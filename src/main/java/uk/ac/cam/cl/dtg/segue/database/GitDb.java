@@ -19,7 +19,9 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.ws.rs.NotFoundException;
 
@@ -27,6 +29,7 @@ import org.apache.commons.lang3.Validate;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.NoHeadException;
+import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.errors.RevisionSyntaxException;
 import org.eclipse.jgit.lib.*;
 import org.eclipse.jgit.revwalk.RevCommit;
@@ -35,8 +38,10 @@ import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.*;
 import org.eclipse.jgit.transport.OpenSshConfig.Host;
 import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
 import org.eclipse.jgit.treewalk.filter.PathSuffixFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -162,6 +167,52 @@ public class GitDb {
         return out;
     }
 
+    /**
+     * List every file in a version of the repository, so that files can be found without searching the repository
+     * for each one.
+     *
+     * @param sha
+     *            - the version to list the files of.
+     * @return a map from the full path of each file (without a leading slash) to its object id, or null if the
+     *         version cannot be found.
+     * @throws IOException
+     *             - if we cannot access the repo location.
+     */
+    public Map<String, ObjectId> getFileIndex(final String sha) throws IOException {
+        Validate.notBlank(sha);
+
+        Repository repository = gitHandle.getRepository();
+        ObjectId commitId = repository.resolve(sha);
+        if (null == commitId) {
+            log.error("Unable to list files - unable to locate commit with sha: " + sha);
+            return null;
+        }
+
+        Map<String, ObjectId> fileIndex = new HashMap<>();
+        try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(revWalk.parseCommit(commitId).getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                fileIndex.put(treeWalk.getPathString(), treeWalk.getObjectId(0));
+            }
+        }
+        log.info("Listed " + fileIndex.size() + " files in version " + sha);
+        return fileIndex;
+    }
+
+    /**
+     * Open an object in the repository, e.g. a file found using {@link #getFileIndex(String)}.
+     *
+     * @param objectId
+     *            - the id of the object.
+     * @return a loader for the contents of the object.
+     * @throws IOException
+     *             - if the object does not exist or we cannot access the repo location.
+     */
+    public ObjectLoader openObject(final ObjectId objectId) throws IOException {
+        return gitHandle.getRepository().open(objectId);
+    }
+
     /**
      * This method will configure a treewalk object that can be used to navigate the git repository.
      * 
@@ -199,6 +250,45 @@ public class GitDb {
         return null;
     }
 
+    /**
+     * This method will compare the trees of two commits and list the files that differ between them.
+     *
+     * Rename detection is not applied, so a moved file is reported as a deletion and an addition.
+     *
+     * @param fromSha
+     *            - the version to compare from.
+     * @param toSha
+     *            - the version to compare to.
+     * @param searchString
+     *            - the search string which can be a full path or simply a file extension.
+     * @return the list of differences, or null if either version cannot be found.
+     * @throws IOException
+     *             - if we cannot access the repo location.
+     */
+    public List<DiffEntry> getDiffBetweenCommits(final String fromSha, final String toSha, final String searchString)
+            throws IOException {
+        Validate.notBlank(fromSha);
+        Validate.notBlank(toSha);
+        Validate.notNull(searchString);
+
+        Repository repository = gitHandle.getRepository();
+        ObjectId fromCommitId = repository.resolve(fromSha);
+        ObjectId toCommitId = repository.resolve(toSha);
+        if (null == fromCommitId || null == toCommitId) {
+            log.error("Unable to compare versions " + fromSha + " and " + toSha + " - unable to locate both commits.");
+            return null;
+        }
+
+        try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            treeWalk.addTree(revWalk.parseCommit(fromCommitId).getTree());
+            treeWalk.addTree(revWalk.parseCommit(toCommitId).getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(PathSuffixFilter.create(searchString), TreeFilter.ANY_DIFF));
+
+            return DiffEntry.scan(treeWalk);
+        }
+    }
+
     /**
      * Get the git handle for the database.
      * 
@@ -22,6 +22,8 @@ import java.sql.SQLException;
 
 import org.apache.commons.dbcp2.BasicDataSource;
 
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
+
 import com.google.inject.Inject;
 
 /**
@@ -68,12 +70,25 @@ public class PostgresSqlDb implements Closeable {
 
     /**
      * Get a handle to the database.
+     *
+     * During an API request, the time taken to get the connection and to execute statements on it is recorded in the
+     * request's timings.
      * 
      * @return database connection.
      * @throws SQLException
      */
     public Connection getDatabaseConnection() throws SQLException {
-        return dataSource.getConnection();
+        RequestTimings timings = RequestTimings.current();
+        if (null == timings) {
+            return dataSource.getConnection();
+        }
+
+        Connection connection;
+        try (RequestTimings.Timer connectionTimer = RequestTimings.time(timings,
+                RequestTimings.Component.DATABASE_CONNECTION)) {
+            connection = dataSource.getConnection();
+        }
+        return TimedConnection.wrap(connection, timings);
     }
 
     @Override
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.database;
+
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Wraps database connections so that the time spent executing statements on them is recorded in the timings of the
+ * request that opened them.
+ */
+final class TimedConnection {
+
+    /**
+     * Utility class.
+     */
+    private TimedConnection() {
+    }
+
+    /**
+     * @param connection
+     *            - the connection to wrap.
+     * @param timings
+     *            - the timings to record statement execution in.
+     * @return a connection which behaves the same, but whose statements record the time they take to execute.
+     */
+    static Connection wrap(final Connection connection, final RequestTimings timings) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(connection, method, args);
+                    if (result instanceof Statement) {
+                        return wrapStatement((Statement) result, timings);
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * @param statement
+     *            - the statement to wrap.
+     * @param timings
+     *            - the timings to record execution in.
+     * @return a statement which behaves the same, but records the time its executions take.
+     */
+    private static Statement wrapStatement(final Statement statement, final RequestTimings timings) {
+        Class<?> statementInterface = Statement.class;
+        if (statement instanceof CallableStatement) {
+            statementInterface = CallableStatement.class;
+        } else if (statement instanceof PreparedStatement) {
+            statementInterface = PreparedStatement.class;
+        }
+
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (!method.getName().startsWith("execute")) {
+                return invoke(statement, method, args);
+            }
+            try (RequestTimings.Timer queryTimer = RequestTimings.time(timings,
+                    RequestTimings.Component.DATABASE_QUERY)) {
+                return invoke(statement, method, args);
+            }
+        };
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(),
+                new Class<?>[] {statementInterface}, handler);
+    }
+
+    /**
+     * Invoke a method on the wrapped object, throwing whatever it throws rather than a reflection exception.
+     *
+     * @param target
+     *            - the wrapped object.
+     * @param method
+     *            - the method to invoke.
+     * @param args
+     *            - the method arguments.
+     * @return the method result.
+     * @throws Throwable
+     *             - whatever the method throws.
+     */
+    private static Object invoke(final Object target, final Method method, final Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -25,6 +25,7 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 import uk.ac.cam.cl.dtg.segue.dto.users.RegisteredUserDTO;
 
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -92,45 +93,29 @@ public class PgUserPreferenceManager extends AbstractUserPreferenceManager {
         Validate.notBlank(preferenceName);
 
         Map<Long, UserPreference> usersPreferenceMap = Maps.newHashMap();
+        if (users.isEmpty()) {
+            return usersPreferenceMap;
+        }
 
-        int pageSize = 10000;
-        int fromIndex = 0;
-        int toIndex = min(pageSize, users.size());
-
-        while (fromIndex < toIndex) {
-
-            List<RegisteredUserDTO> pagedUsers = users.subList(fromIndex, toIndex);
-            try (Connection conn = database.getDatabaseConnection()) {
-                PreparedStatement pst;
-                StringBuilder sb = new StringBuilder();
-                sb.append("SELECT * FROM user_preferences WHERE user_id IN (");
-
-                for (int i = 0; i < pagedUsers.size(); i++) {
-                    sb.append("?").append(i < pagedUsers.size() - 1 ? ", " : "");
-                }
-                sb.append(") AND preference_type=? AND preference_name=? ORDER BY user_id ASC;");
-
-                pst = conn.prepareStatement(sb.toString());
-                for (int i = 1; i <= pagedUsers.size(); i++) {
-                    pst.setLong(i, pagedUsers.get(i - 1).getId());
-                }
-                pst.setString(pagedUsers.size() + 1, preferenceType);
-                pst.setString(pagedUsers.size() + 2, preferenceName);
-
-                ResultSet results = pst.executeQuery();
+        // Pass the user ids as a single array parameter, so any number of users can be looked up in one query:
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement("SELECT * FROM user_preferences WHERE user_id = ANY(?)"
+                    + " AND preference_type=? AND preference_name=? ORDER BY user_id ASC;");
+            Array userIdsPreparedArray = conn.createArrayOf("bigint",
+                    users.stream().map(RegisteredUserDTO::getId).toArray());
+            pst.setArray(1, userIdsPreparedArray);
+            pst.setString(2, preferenceType);
+            pst.setString(3, preferenceName);
 
+            try (ResultSet results = pst.executeQuery()) {
                 while (results.next()) {
                     Long userId = results.getLong("user_id");
                     UserPreference pref = userPreferenceFromResultSet(results);
                     usersPreferenceMap.put(userId, pref);
                 }
-
-                fromIndex = toIndex;
-                toIndex = min(toIndex + pageSize, users.size());
-
-            } catch (SQLException e) {
-                throw new SegueDatabaseException("Postgres exception", e);
             }
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
         }
         return usersPreferenceMap;
     }
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dos;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Summary of all of a user's attempts at a single question part.
+ *
+ * isCorrect() is true if any attempt was correct, and getDateAttempted() is the date of the most recent attempt.
+ */
+public class QuestionAttemptSummary extends LightweightQuestionValidationResponse {
+    private Integer attemptCount;
+    private Date firstAttempted;
+
+    /**
+     * Default Constructor for mappers.
+     */
+    public QuestionAttemptSummary() {
+
+    }
+
+    /**
+     * Full constructor.
+     *
+     * @param questionId
+     *            - the full id of the question part.
+     * @param correct
+     *            - whether any attempt was correct.
+     * @param attemptCount
+     *            - the number of attempts made.
+     * @param firstAttempted
+     *            - the date of the earliest attempt.
+     * @param lastAttempted
+     *            - the date of the most recent attempt.
+     */
+    public QuestionAttemptSummary(final String questionId, final Boolean correct, final Integer attemptCount,
+                                  final Date firstAttempted, final Date lastAttempted) {
+        super(questionId, correct, lastAttempted);
+        this.attemptCount = attemptCount;
+        this.firstAttempted = firstAttempted;
+    }
+
+    /**
+     * Summarise a list of attempts at a single question part.
+     *
+     * @param questionId
+     *            - the full id of the question part.
+     * @param attempts
+     *            - the attempts, in chronological order.
+     * @return the summary of those attempts.
+     */
+    public static QuestionAttemptSummary fromAttempts(final String questionId,
+                                                      final List<? extends LightweightQuestionValidationResponse> attempts) {
+        boolean correct = false;
+        Date firstAttempted = null;
+        Date lastAttempted = null;
+        for (LightweightQuestionValidationResponse attempt : attempts) {
+            correct = correct || Boolean.TRUE.equals(attempt.isCorrect());
+            Date dateAttempted = attempt.getDateAttempted();
+            if (dateAttempted != null) {
+                if (firstAttempted == null || dateAttempted.before(firstAttempted)) {
+                    firstAttempted = dateAttempted;
+                }
+                if (lastAttempted == null || dateAttempted.after(lastAttempted)) {
+                    lastAttempted = dateAttempted;
+                }
+            }
+        }
+        return new QuestionAttemptSummary(questionId, correct, attempts.size(), firstAttempted, lastAttempted);
+    }
+
+    /**
+     * Gets the attemptCount.
+     *
+     * @return the attemptCount
+     */
+    public Integer getAttemptCount() {
+        return attemptCount;
+    }
+
+    /**
+     * Sets the attemptCount.
+     *
+     * @param attemptCount
+     *            the attemptCount to set
+     */
+    public void setAttemptCount(final Integer attemptCount) {
+        this.attemptCount = attemptCount;
+    }
+
+    /**
+     * Gets the firstAttempted.
+     *
+     * @return the firstAttempted
+     */
+    public Date getFirstAttempted() {
+        return firstAttempted;
+    }
+
+    /**
+     * Sets the firstAttempted.
+     *
+     * @param firstAttempted
+     *            the firstAttempted to set
+     */
+    public void setFirstAttempted(final Date firstAttempted) {
+        this.firstAttempted = firstAttempted;
+    }
+
+    @Override
+    public String toString() {
+        return "QuestionAttemptSummary [questionId=" + getQuestionId() + ", correct=" + isCorrect()
+                + ", attemptCount=" + attemptCount + ", firstAttempted=" + firstAttempted
+                + ", lastAttempted=" + getDateAttempted() + "]";
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dos;
+
+import java.util.Date;
+import java.util.Map;
+
+/**
+ * A set of statistics computed periodically in the database, along with when they were computed.
+ */
+public class StatisticsSnapshot {
+    private final Map<String, Object> statistics;
+    private final Date refreshed;
+
+    /**
+     * @param statistics
+     *            - the statistics, by name.
+     * @param refreshed
+     *            - when the statistics were computed.
+     */
+    public StatisticsSnapshot(final Map<String, Object> statistics, final Date refreshed) {
+        this.statistics = statistics;
+        this.refreshed = refreshed;
+    }
+
+    /**
+     * @return the statistics, by name.
+     */
+    public Map<String, Object> getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @return when the statistics were computed.
+     */
+    public Date getRefreshed() {
+        return refreshed;
+    }
+}
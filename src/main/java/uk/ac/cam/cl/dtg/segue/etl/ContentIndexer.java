@@ -4,13 +4,14 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.google.inject.Inject;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.Validate;
+import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.Repository;
@@ -34,18 +35,27 @@ import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
 import javax.annotation.Nullable;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static com.google.common.collect.Maps.immutableEntry;
@@ -63,8 +73,17 @@ public class ContentIndexer {
     private GitDb database;
     private ContentMapper mapper;
 
+    // The parsed content of each file from the last successful build, which can be reused by the next build if the
+    // file is unchanged.
+    private volatile IndexedContentFiles lastIndexedContentFiles;
+
     private static final int MEDIA_FILE_SIZE_LIMIT = 300 * 1024; // Bytes
 
+    private static final int FILES_IN_FLIGHT_PER_PARSE_THREAD = 8;
+    // Above this fraction of changed content files, a full rebuild is cheaper than keeping track of the changes.
+    private static final double MAX_INCREMENTAL_CHANGE_FRACTION = 0.5;
+    private static final Map.Entry<String, Future<ParsedContentFile>> END_OF_TREE_WALK = immutableEntry(null, null);
+
     @Inject
     public ContentIndexer(GitDb database, ElasticSearchIndexer es, ContentMapper mapper) {
         this.database = database;
@@ -107,11 +126,20 @@ public class ContentIndexer {
             Map<String, String> publishedUnits = new HashMap<>();
             Map<Content, List<String>> indexProblemCache = new HashMap<>();
 
-            buildGitContentIndex(version, true, contentCache, tagsList, allUnits, publishedUnits, indexProblemCache);
+            expungeExistingIndices(version);
+
+            try {
+                buildGitContentIndex(version, true, contentCache, tagsList, allUnits, publishedUnits,
+                        indexProblemCache);
+            } catch (ContentManagerException e) {
+                // Don't leave a partial index behind, or it will look like this version has been indexed.
+                expungeExistingIndices(version);
+                throw e;
+            }
 
             checkForContentErrors(version, contentCache, indexProblemCache);
 
-            buildElasticSearchIndex(version, contentCache, tagsList, allUnits, publishedUnits, indexProblemCache);
+            buildElasticSearchIndex(version, tagsList, allUnits, publishedUnits, indexProblemCache);
 
             // Verify the version requested is now available
             if (!es.hasIndex(version, CONTENT_INDEX_TYPE.CONTENT.toString())) {
@@ -141,18 +169,27 @@ public class ContentIndexer {
      *
      * Currently it only looks for json files in the repository.
      *
+     * The work is done as a pipeline: the tree walk runs on its own thread, blobs are read and parsed on bounded
+     * worker pools, results are registered in tree walk order (so duplicate id resolution is deterministic) and
+     * accepted content is streamed to the search provider through a bulk index session as it is produced. Each stage
+     * is bounded, so a slow search provider will hold back parsing rather than let results pile up on the heap.
+     *
+     * If the previous build's parsed files are available, only the files which have changed since that version are
+     * read and parsed; the rest are reused. Registration still happens for every file in tree walk order, so the
+     * result is the same as a full rebuild.
+     *
      * @param sha
      *            - the version to index.
      * @return the map representing all indexed content.
      * @throws ContentManagerException
      */
-    private synchronized void buildGitContentIndex(final String sha,
-                                                   final boolean includeUnpublished,
-                                                   final Map<String, Content> contentCache,
-                                                   final Set<String> tagsList,
-                                                   final Map<String, String> allUnits,
-                                                   final Map<String, String> publishedUnits,
-                                                   final Map<Content, List<String>> indexProblemCache)
+    private void buildGitContentIndex(final String sha,
+                                      final boolean includeUnpublished,
+                                      final Map<String, Content> contentCache,
+                                      final Set<String> tagsList,
+                                      final Map<String, String> allUnits,
+                                      final Map<String, String> publishedUnits,
+                                      final Map<Content, List<String>> indexProblemCache)
             throws ContentManagerException {
 
         if (null == sha) {
@@ -161,6 +198,21 @@ public class ContentIndexer {
 
         Repository repository = database.getGitRepository();
 
+        int parseThreads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int readThreads = Math.max(1, parseThreads / 2);
+        ExecutorService walkPool = newPipelinePool("walk", 1);
+        ExecutorService readPool = newPipelinePool("read", readThreads);
+        ExecutorService parsePool = newPipelinePool("parse", parseThreads);
+
+        // Files which have been handed to the read/parse stages but not yet registered, in tree walk order.
+        BlockingQueue<Map.Entry<String, Future<ParsedContentFile>>> inFlight
+                = new ArrayBlockingQueue<>(parseThreads * FILES_IN_FLIGHT_PER_PARSE_THREAD);
+
+        // setup object mapper to use preconfigured deserializer
+        // module. Required to deal with type polymorphism
+        ObjectMapper objectMapper = mapper.getSharedContentObjectMapper();
+        ObjectMapper indexObjectMapper = mapper.generateNewPreconfiguredContentMapper();
+
         try {
             ObjectId commitId = repository.resolve(sha);
 
@@ -169,144 +221,446 @@ public class ContentIndexer {
                         + sha);
             }
 
+            Set<String> changedFiles = this.findChangedContentFiles(sha, includeUnpublished);
+            IndexedContentFiles reusableFiles = null == changedFiles
+                    ? IndexedContentFiles.NONE : lastIndexedContentFiles;
+            Map<String, Content> indexedContent = new HashMap<>();
+            Set<String> skippedPaths = new HashSet<>();
+            int indexedFileCount = 0;
+
             TreeWalk treeWalk = database.getTreeWalk(sha, ".json");
             log.info("Populating git content cache based on sha " + sha + " ...");
 
             // Traverse the git repository looking for the .json files
-            while (treeWalk.next()) {
-                ByteArrayOutputStream out = new ByteArrayOutputStream();
-                ObjectLoader loader = repository.open(treeWalk.getObjectId(0));
-                loader.copyTo(out);
-
-                // setup object mapper to use preconfigured deserializer
-                // module. Required to deal with type polymorphism
-                ObjectMapper objectMapper = mapper.getSharedContentObjectMapper();
-
-                Content content;
+            Future<?> walker = walkPool.submit(() -> {
                 try {
-                    content = (Content) objectMapper.readValue(out.toString(), ContentBase.class);
+                    while (treeWalk.next()) {
+                        ObjectId objectId = treeWalk.getObjectId(0);
+                        String path = treeWalk.getPathString();
+                        boolean unchanged = null != changedFiles && !changedFiles.contains(path);
+                        Content previousContent = unchanged ? reusableFiles.contents.get(path) : null;
+                        Future<ParsedContentFile> parsedFile;
+                        if (previousContent != null) {
+                            // Only the content is kept between builds, so it is serialised again for the new index.
+                            parsedFile = CompletableFuture.supplyAsync(() -> flattenContentFile(path, previousContent,
+                                    indexObjectMapper), parsePool);
+                        } else if (unchanged && reusableFiles.skippedPaths.contains(path)) {
+                            parsedFile = CompletableFuture.completedFuture(ParsedContentFile.skipped(path));
+                        } else {
+                            parsedFile = CompletableFuture
+                                    .supplyAsync(() -> readBlob(repository, objectId), readPool)
+                                    .thenApplyAsync(bytes -> parseContentFile(path, bytes, includeUnpublished,
+                                            objectMapper, indexObjectMapper), parsePool);
+                        }
+                        // Blocks when the read and parse stages are saturated.
+                        inFlight.put(immutableEntry(path, parsedFile));
+                    }
+                } finally {
+                    inFlight.put(END_OF_TREE_WALK);
+                }
+                return null;
+            });
+
+            try (ElasticSearchIndexer.BulkIndexSession contentIndex
+                         = es.startBulkIndex(sha, CONTENT_INDEX_TYPE.CONTENT.toString())) {
+                while (true) {
+                    Map.Entry<String, Future<ParsedContentFile>> next = inFlight.take();
+                    if (next == END_OF_TREE_WALK) {
+                        break;
+                    }
 
-                    // check if we only want to index published content
-                    if (!includeUnpublished && !content.getPublished()) {
-                        log.debug("Skipping unpublished content: " + content.getId());
+                    String path = next.getKey();
+                    ParsedContentFile parsedFile;
+                    try {
+                        parsedFile = next.getValue().get();
+                    } catch (ExecutionException e) {
+                        log.error("IOException while trying to parse " + path, e.getCause());
+                        Content dummyContent = new Content();
+                        dummyContent.setCanonicalSourceFile(path);
+                        this.registerContentProblem(dummyContent,
+                                "Index failure - Unable to read the json file found - " + path
+                                        + ". The following error occurred: " + e.getCause().getMessage(),
+                                indexProblemCache);
                         continue;
                     }
 
-                    content = this.augmentChildContent(content, treeWalk.getPathString(), null, content.getPublished());
+                    indexedFileCount++;
+                    if (parsedFile.content != null) {
+                        indexedContent.put(path, parsedFile.content);
+                    } else if (null == parsedFile.problem) {
+                        skippedPaths.add(path);
+                    }
+                    // Blocks when the search provider is saturated.
+                    for (Map.Entry<String, String> contentToIndex : this.registerParsedContentFile(parsedFile,
+                            contentCache, tagsList, allUnits, publishedUnits, indexProblemCache)) {
+                        contentIndex.add(contentToIndex.getKey(), contentToIndex.getValue());
+                    }
+                }
+                // Surface any failure of the tree walk itself.
+                walker.get();
+            }
 
-                    if (null != content) {
-                        // Walk the content for site-wide searchable fields
-                        StringBuilder searchableContentBuilder = new StringBuilder();
-                        this.collateSearchableContent(content, searchableContentBuilder);
-                        content.setSearchableContent(searchableContentBuilder.toString());
+            lastIndexedContentFiles = new IndexedContentFiles(sha, includeUnpublished, indexedFileCount,
+                    indexedContent, skippedPaths);
 
-                        // add children (and parent) from flattened Set to
-                        // cache if they have ids
-                        for (Content flattenedContent : this.flattenContentObjects(content)) {
-                            if (flattenedContent.getId() == null) {
-                                continue;
-                            }
+            repository.close();
+            log.debug("Tags available " + tagsList);
+            log.debug("All units: " + allUnits);
+            log.info("Git content cache population for " + sha + " completed!");
 
-                            // Prevents ETL indexing of quizzes that contain anything that is not an IsaacQuizSection
-                            // in the top-level children array.
-                            // NOTE: I'm not sure this is the right place for this but I couldn't find a better one.
-                            // This also seems to be the only time we can prevent a file from being indexed entirely.
-                            if (flattenedContent instanceof IsaacQuiz) {
-                                List<ContentBase> children = flattenedContent.getChildren();
-                                if (children.stream().anyMatch(c -> !(c instanceof IsaacQuizSection))) {
-                                    log.debug("IsaacQuiz (" + flattenedContent.getId()
-                                           + ") contains top-level non-quiz sections. Skipping.");
-                                    this.registerContentProblem(flattenedContent, "Index failure - Invalid "
-                                           + "content type among quiz sections. Quizzes can only contain quiz sections "
-                                           + "in the top-level children array.", indexProblemCache);
-                                    continue;
-                                }
-                            }
+        } catch (IOException e) {
+            log.error("IOException while trying to access git repository. ", e);
+            throw new ContentManagerException("Unable to index content, due to an IOException.");
+        } catch (ExecutionException e) {
+            log.error("Error while trying to walk git repository. ", e.getCause());
+            throw new ContentManagerException("Unable to index content, due to an error walking the repository.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ContentManagerException("Interrupted while indexing content.");
+        } finally {
+            walkPool.shutdownNow();
+            readPool.shutdownNow();
+            parsePool.shutdownNow();
+        }
+    }
 
-                            if (flattenedContent.getId().length() > 512) {
-                                log.debug("Content ID too long: " + flattenedContent.getId());
-                                this.registerContentProblem(flattenedContent, "Content ID too long: " + flattenedContent.getId(), indexProblemCache);
-                                continue;
-                            }
+    /**
+     * Work out which content files need to be parsed again to index a version, using the last successful build.
+     *
+     * @param sha
+     *            - the version to index.
+     * @param includeUnpublished
+     *            - whether unpublished content will be indexed.
+     * @return the paths of the content files which have been added or modified since the last build, or null if
+     *         all files must be parsed.
+     */
+    private Set<String> findChangedContentFiles(final String sha, final boolean includeUnpublished) {
+        IndexedContentFiles previous = lastIndexedContentFiles;
+        if (null == previous || previous.includeUnpublished != includeUnpublished) {
+            log.info("No previous build available to reuse. Indexing all content files for " + sha);
+            return null;
+        }
+
+        try {
+            List<DiffEntry> diff = database.getDiffBetweenCommits(previous.sha, sha, ".json");
+            if (null == diff) {
+                log.info("Unable to compare " + sha + " with previous build " + previous.sha
+                        + ". Indexing all content files.");
+                return null;
+            }
+            if (diff.size() > previous.fileCount * MAX_INCREMENTAL_CHANGE_FRACTION) {
+                log.info(String.format("%s content files changed between %s and %s. Indexing all content files.",
+                        diff.size(), previous.sha, sha));
+                return null;
+            }
 
-                            if (flattenedContent.getId().contains(".")) {
-                                // Otherwise, duplicate IDs with different content,
-                                // therefore log an error
-                                log.debug("Resource with invalid ID (" + content.getId()
-                                        + ") detected in cache. Skipping " + treeWalk.getPathString());
+            Set<String> changedFiles = new HashSet<>();
+            for (DiffEntry entry : diff) {
+                if (entry.getChangeType() != DiffEntry.ChangeType.DELETE) {
+                    changedFiles.add(entry.getNewPath());
+                }
+            }
+            log.info(String.format("Incrementally indexing %s from previous build %s: %s content files changed.",
+                    sha, previous.sha, diff.size()));
+            return changedFiles;
+        } catch (IOException e) {
+            log.error("IOException while comparing " + sha + " with previous build " + previous.sha
+                    + ". Indexing all content files.", e);
+            return null;
+        }
+    }
 
-                                this.registerContentProblem(flattenedContent, "Index failure - Invalid ID "
-                                        + flattenedContent.getId() + " found in file " + treeWalk.getPathString()
-                                        + ". Must not contain restricted characters.", indexProblemCache);
-                                continue;
-                            }
+    /**
+     * Read the raw bytes of a blob from the repository.
+     *
+     * This is the read stage of the indexing pipeline, and may be run concurrently.
+     *
+     * @param repository
+     *            - the repository to read from.
+     * @param objectId
+     *            - the id of the blob.
+     * @return the contents of the blob.
+     */
+    private static byte[] readBlob(final Repository repository, final ObjectId objectId) {
+        try {
+            ObjectLoader loader = repository.open(objectId);
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) loader.getSize());
+            loader.copyTo(out);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 
-                            // check if we have seen this key before if
-                            // we have then we don't want to add it
-                            // again
-                            if (!contentCache.containsKey(flattenedContent.getId())) {
-                                // It must be new so we can add it
-                                log.debug("Loading into cache: " + flattenedContent.getId() + "("
-                                        + flattenedContent.getType() + ")" + " from " + treeWalk.getPathString());
-                                contentCache.put(flattenedContent.getId(), flattenedContent);
-                                registerTags(flattenedContent.getTags(), tagsList);
+    /**
+     * Deserialise, augment, flatten and serialise a single content file.
+     *
+     * This is the parse stage of the indexing pipeline, and may be run concurrently. It must not touch any state
+     * shared between files; anything that needs to be checked across files is done in registerParsedContentFile.
+     *
+     * @param path
+     *            - the path of the file in the repository.
+     * @param bytes
+     *            - the raw contents of the file.
+     * @param includeUnpublished
+     *            - whether unpublished content should be indexed.
+     * @param objectMapper
+     *            - mapper to deserialise the file with.
+     * @param indexObjectMapper
+     *            - mapper to serialise the flattened content for the search provider with.
+     * @return the parsed file.
+     */
+    private ParsedContentFile parseContentFile(final String path, final byte[] bytes,
+                                               final boolean includeUnpublished, final ObjectMapper objectMapper,
+                                               final ObjectMapper indexObjectMapper) {
+        Content content;
+        try {
+            content = (Content) objectMapper.readValue(bytes, ContentBase.class);
+        } catch (JsonMappingException e) {
+            log.debug(String.format("Unable to parse the json file found %s as a content object. "
+                    + "Skipping file due to error: \n %s", path, e.getMessage()));
+            return ParsedContentFile.failed(path, "Index failure - Unable to parse json file found - "
+                    + path + ". The following error occurred: " + e.getMessage());
+        } catch (IOException e) {
+            log.error("IOException while trying to parse " + path, e);
+            return ParsedContentFile.failed(path, "Index failure - Unable to read the json file found - "
+                    + path + ". The following error occurred: " + e.getMessage());
+        }
 
-                                // If this is a numeric question, extract any
-                                // units from its answers.
+        // check if we only want to index published content
+        if (!includeUnpublished && !content.getPublished()) {
+            log.debug("Skipping unpublished content: " + content.getId());
+            return ParsedContentFile.skipped(path);
+        }
 
-                                if (flattenedContent instanceof IsaacNumericQuestion) {
-                                    registerUnits((IsaacNumericQuestion) flattenedContent, allUnits, publishedUnits);
-                                }
+        content = this.augmentChildContent(content, path, null, content.getPublished());
+        if (null == content) {
+            return ParsedContentFile.skipped(path);
+        }
 
-                                continue; // our work here is done
-                            }
+        // Walk the content for site-wide searchable fields
+        StringBuilder searchableContentBuilder = new StringBuilder();
+        this.collateSearchableContent(content, searchableContentBuilder);
+        content.setSearchableContent(searchableContentBuilder.toString());
 
-                            // shaCache contains key already, compare the
-                            // content
-                            if (contentCache.get(flattenedContent.getId()).equals(flattenedContent)) {
-                                // content is the same therefore it is just
-                                // reuse of a content object so that is
-                                // fine.
-                                log.debug("Resource (" + content.getId() + ") already seen in cache. Skipping "
-                                        + treeWalk.getPathString());
-                                continue;
-                            }
+        return this.flattenContentFile(path, content, indexObjectMapper);
+    }
 
-                            // Otherwise, duplicate IDs with different content,
-                            // therefore log an error
-                            log.debug("Resource with duplicate ID (" + content.getId()
-                                    + ") detected in cache. Skipping " + treeWalk.getPathString());
-                            this.registerContentProblem(flattenedContent,
-                                    "Index failure - Duplicate ID found in file " + treeWalk.getPathString() + " and "
-                                            + contentCache.get(flattenedContent.getId()).getCanonicalSourceFile()
-                                            + " only one will be available", indexProblemCache);
-                        }
-                    }
-                } catch (JsonMappingException e) {
-                    log.debug(String.format("Unable to parse the json file found %s as a content object. "
-                            + "Skipping file due to error: \n %s", treeWalk.getPathString(), e.getMessage()));
-                    Content dummyContent = new Content();
-                    dummyContent.setCanonicalSourceFile(treeWalk.getPathString());
-                    this.registerContentProblem(dummyContent, "Index failure - Unable to parse json file found - "
-                            + treeWalk.getPathString() + ". The following error occurred: " + e.getMessage(), indexProblemCache);
-                } catch (IOException e) {
-                    log.error("IOException while trying to parse " + treeWalk.getPathString(), e);
-                    Content dummyContent = new Content();
-                    dummyContent.setCanonicalSourceFile(treeWalk.getPathString());
-                    this.registerContentProblem(dummyContent,
-                            "Index failure - Unable to read the json file found - " + treeWalk.getPathString()
-                                    + ". The following error occurred: " + e.getMessage(), indexProblemCache);
+    /**
+     * Flatten the parsed content of a file and serialise each piece for the search provider.
+     *
+     * This is part of the parse stage of the indexing pipeline, and may be run concurrently. It does not modify the
+     * content, so may be run again on content kept from a previous build.
+     *
+     * @param path
+     *            - the path of the file in the repository.
+     * @param content
+     *            - the deserialised and augmented content of the file.
+     * @param indexObjectMapper
+     *            - mapper to serialise the flattened content for the search provider with.
+     * @return the parsed file.
+     */
+    private ParsedContentFile flattenContentFile(final String path, final Content content,
+                                                 final ObjectMapper indexObjectMapper) {
+        List<Map.Entry<Content, String>> flattenedContent = new ArrayList<>();
+        Map<Content, String> serialisationErrors = new HashMap<>();
+        for (Content c : this.flattenContentObjects(content)) {
+            if (c.getId() == null) {
+                continue;
+            }
+            try {
+                flattenedContent.add(immutableEntry(c, indexObjectMapper.writeValueAsString(c)));
+            } catch (JsonProcessingException e) {
+                log.error("Unable to serialize content object: " + c.getId()
+                        + " for indexing with the search provider.", e);
+                flattenedContent.add(immutableEntry(c, null));
+                serialisationErrors.put(c, e.toString());
+            }
+        }
+
+        return new ParsedContentFile(path, content, flattenedContent, serialisationErrors, null);
+    }
+
+    /**
+     * Register the content from a parsed file in the cache, checking it against everything seen so far.
+     *
+     * This is not thread-safe and must be called for each file in tree walk order.
+     *
+     * @return id and serialised form of the content which should be sent to the search provider.
+     */
+    private List<Map.Entry<String, String>> registerParsedContentFile(final ParsedContentFile parsedFile,
+                                                                      final Map<String, Content> contentCache,
+                                                                      final Set<String> tagsList,
+                                                                      final Map<String, String> allUnits,
+                                                                      final Map<String, String> publishedUnits,
+                                                                      final Map<Content, List<String>> indexProblemCache) {
+        String path = parsedFile.path;
+        Content content = parsedFile.content;
+        List<Map.Entry<String, String>> contentToIndex = new ArrayList<>();
+
+        if (parsedFile.problem != null) {
+            Content dummyContent = new Content();
+            dummyContent.setCanonicalSourceFile(path);
+            this.registerContentProblem(dummyContent, parsedFile.problem, indexProblemCache);
+            return contentToIndex;
+        }
+
+        if (null == content) {
+            return contentToIndex;
+        }
+
+        // add children (and parent) from flattened Set to
+        // cache if they have ids
+        for (Map.Entry<Content, String> flattened : parsedFile.flattenedContent) {
+            Content flattenedContent = flattened.getKey();
+
+            // Prevents ETL indexing of quizzes that contain anything that is not an IsaacQuizSection
+            // in the top-level children array.
+            // NOTE: I'm not sure this is the right place for this but I couldn't find a better one.
+            // This also seems to be the only time we can prevent a file from being indexed entirely.
+            if (flattenedContent instanceof IsaacQuiz) {
+                List<ContentBase> children = flattenedContent.getChildren();
+                if (children.stream().anyMatch(c -> !(c instanceof IsaacQuizSection))) {
+                    log.debug("IsaacQuiz (" + flattenedContent.getId()
+                           + ") contains top-level non-quiz sections. Skipping.");
+                    this.registerContentProblem(flattenedContent, "Index failure - Invalid "
+                           + "content type among quiz sections. Quizzes can only contain quiz sections "
+                           + "in the top-level children array.", indexProblemCache);
+                    continue;
                 }
             }
 
-            repository.close();
-            log.debug("Tags available " + tagsList);
-            log.debug("All units: " + allUnits);
-            log.info("Git content cache population for " + sha + " completed!");
+            if (flattenedContent.getId().length() > 512) {
+                log.debug("Content ID too long: " + flattenedContent.getId());
+                this.registerContentProblem(flattenedContent, "Content ID too long: " + flattenedContent.getId(), indexProblemCache);
+                continue;
+            }
 
-        } catch (IOException e) {
-            log.error("IOException while trying to access git repository. ", e);
-            throw new ContentManagerException("Unable to index content, due to an IOException.");
+            if (flattenedContent.getId().contains(".")) {
+                // Otherwise, duplicate IDs with different content,
+                // therefore log an error
+                log.debug("Resource with invalid ID (" + content.getId()
+                        + ") detected in cache. Skipping " + path);
+
+                this.registerContentProblem(flattenedContent, "Index failure - Invalid ID "
+                        + flattenedContent.getId() + " found in file " + path
+                        + ". Must not contain restricted characters.", indexProblemCache);
+                continue;
+            }
+
+            // check if we have seen this key before if
+            // we have then we don't want to add it
+            // again
+            if (!contentCache.containsKey(flattenedContent.getId())) {
+                // It must be new so we can add it
+                log.debug("Loading into cache: " + flattenedContent.getId() + "("
+                        + flattenedContent.getType() + ")" + " from " + path);
+                contentCache.put(flattenedContent.getId(), flattenedContent);
+                registerTags(flattenedContent.getTags(), tagsList);
+
+                // If this is a numeric question, extract any
+                // units from its answers.
+
+                if (flattenedContent instanceof IsaacNumericQuestion) {
+                    registerUnits((IsaacNumericQuestion) flattenedContent, allUnits, publishedUnits);
+                }
+
+                if (flattened.getValue() != null) {
+                    contentToIndex.add(immutableEntry(flattenedContent.getId(), flattened.getValue()));
+                } else {
+                    this.registerContentProblem(flattenedContent, "Search Index Error: " + flattenedContent.getId()
+                            + flattenedContent.getCanonicalSourceFile() + " Exception: "
+                            + parsedFile.serialisationErrors.get(flattenedContent), indexProblemCache);
+                }
+
+                continue; // our work here is done
+            }
+
+            // shaCache contains key already, compare the
+            // content
+            if (contentCache.get(flattenedContent.getId()).equals(flattenedContent)) {
+                // content is the same therefore it is just
+                // reuse of a content object so that is
+                // fine.
+                log.debug("Resource (" + content.getId() + ") already seen in cache. Skipping " + path);
+                continue;
+            }
+
+            // Otherwise, duplicate IDs with different content,
+            // therefore log an error
+            log.debug("Resource with duplicate ID (" + content.getId()
+                    + ") detected in cache. Skipping " + path);
+            this.registerContentProblem(flattenedContent,
+                    "Index failure - Duplicate ID found in file " + path + " and "
+                            + contentCache.get(flattenedContent.getId()).getCanonicalSourceFile()
+                            + " only one will be available", indexProblemCache);
+        }
+
+        return contentToIndex;
+    }
+
+    private static ExecutorService newPipelinePool(final String stage, final int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+                .setNameFormat("content-indexer-" + stage + "-%d").setDaemon(true).build());
+    }
+
+    /**
+     * The parsed content of a version which has been indexed.
+     *
+     * Only the content of each file is kept, not its serialised documents, so that the memory held between builds is
+     * a single copy of the content.
+     */
+    private static final class IndexedContentFiles {
+        private static final IndexedContentFiles NONE = new IndexedContentFiles(null, false, 0,
+                Collections.emptyMap(), Collections.emptySet());
+
+        private final String sha;
+        private final boolean includeUnpublished;
+        private final int fileCount;
+        // The augmented content of each file, by path; files which failed to parse are not kept, so are read again.
+        private final Map<String, Content> contents;
+        // The paths of files which were skipped, e.g. because they are unpublished.
+        private final Set<String> skippedPaths;
+
+        private IndexedContentFiles(final String sha, final boolean includeUnpublished, final int fileCount,
+                                    final Map<String, Content> contents, final Set<String> skippedPaths) {
+            this.sha = sha;
+            this.includeUnpublished = includeUnpublished;
+            this.fileCount = fileCount;
+            this.contents = contents;
+            this.skippedPaths = skippedPaths;
+        }
+    }
+
+    /**
+     * The output of the parse stage for a single content file.
+     *
+     * The content is kept between builds, so nothing may modify it after it has been parsed. The flattened and
+     * serialised documents are dropped once the file has been registered.
+     */
+    private static final class ParsedContentFile {
+        private final String path;
+        private final Content content;
+        private final List<Map.Entry<Content, String>> flattenedContent;
+        private final Map<Content, String> serialisationErrors;
+        private final String problem;
+
+        private ParsedContentFile(final String path, final Content content,
+                                  final List<Map.Entry<Content, String>> flattenedContent,
+                                  final Map<Content, String> serialisationErrors, final String problem) {
+            this.path = path;
+            this.content = content;
+            this.flattenedContent = flattenedContent;
+            this.serialisationErrors = serialisationErrors;
+            this.problem = problem;
+        }
+
+        private static ParsedContentFile skipped(final String path) {
+            return new ParsedContentFile(path, null, Collections.emptyList(), Collections.emptyMap(), null);
+        }
+
+        private static ParsedContentFile failed(final String path, final String problem) {
+            return new ParsedContentFile(path, null, Collections.emptyList(), Collections.emptyMap(), problem);
         }
     }
 
@@ -509,11 +863,6 @@ public class ContentIndexer {
     private synchronized void registerContentProblem(final Content c, final String message, Map<Content, List<String>> indexProblemCache) {
         Validate.notNull(c);
 
-        // try and make sure each dummy content object has a title
-        if (c.getTitle() == null) {
-            c.setTitle(Paths.get(c.getCanonicalSourceFile()).getFileName().toString());
-        }
-
         if (!indexProblemCache.containsKey(c)) {
             indexProblemCache.put(c, new ArrayList<String>());
         }
@@ -522,6 +871,25 @@ public class ContentIndexer {
         indexProblemCache.get(c).add(message);//.replace("_", "\\_"));
     }
 
+    /**
+     * Helper method to find a title to show against content problems.
+     *
+     * Content is shared between builds, so rather than setting a title on the content itself we work it out here.
+     *
+     * @param c
+     *            - the content object that has problems.
+     * @return the title of the content if it has one, or else the name of its source file.
+     */
+    private static String getContentProblemTitle(final Content c) {
+        if (c.getTitle() != null) {
+            return c.getTitle();
+        }
+        if (c.getCanonicalSourceFile() != null) {
+            return Paths.get(c.getCanonicalSourceFile()).getFileName().toString();
+        }
+        return "";
+    }
+
     /**
      * Helper function to build up a set of used tags for each version.
      *
@@ -582,43 +950,23 @@ public class ContentIndexer {
     }
 
     /**
-     * This method will send off the information in the git cache to the search provider for indexing.
+     * This method will send off the metadata, units and content errors for a version to the search provider.
+     *
+     * The content itself is streamed to the search provider as it is parsed, by buildGitContentIndex.
      *
      * @param sha
      *            - the version in the git cache to send to the search provider.
-     * @param gitCache
-     *            a map that represents indexed content for a given sha.
      */
     private synchronized void buildElasticSearchIndex(final String sha,
-                                                      final Map<String, Content> gitCache,
                                                       final Set<String> tagsList,
                                                       final Map<String, String> allUnits,
                                                       final Map<String, String> publishedUnits,
                                                       final Map<Content, List<String>> indexProblemCache) {
-        if (es.hasIndex(sha, CONTENT_INDEX_TYPE.CONTENT.toString())) {
-            log.info("Deleting existing indexes for version " + sha);
-            for (CONTENT_INDEX_TYPE contentIndexType : CONTENT_INDEX_TYPE.values()) {
-                es.expungeIndexFromSearchCache(sha, contentIndexType.toString());
-            }
-        }
-
         log.info("Building search indexes for: " + sha);
 
         // setup object mapper to use pre-configured deserializer module.
         // Required to deal with type polymorphism
-        List<Map.Entry<String, String>> contentToIndex = Lists.newArrayList();
         ObjectMapper objectMapper = mapper.generateNewPreconfiguredContentMapper();
-        for (Content content : gitCache.values()) {
-            try {
-                contentToIndex.add(immutableEntry(content.getId(), objectMapper.writeValueAsString(content)));
-            } catch (JsonProcessingException e) {
-                log.error("Unable to serialize content object: " + content.getId()
-                        + " for indexing with the search provider.", e);
-                this.registerContentProblem(content, "Search Index Error: " + content.getId()
-                        + content.getCanonicalSourceFile() + " Exception: " + e.toString(), indexProblemCache);
-            }
-        }
-
 
         try {
             es.indexObject(sha, CONTENT_INDEX_TYPE.METADATA.toString(),
@@ -626,40 +974,50 @@ public class ContentIndexer {
             es.indexObject(sha, CONTENT_INDEX_TYPE.METADATA.toString(),
                     objectMapper.writeValueAsString(ImmutableMap.of("tags", tagsList)), "tags");
 
-            // TODO: Should probably bulk index these
+            List<Map.Entry<String, String>> unitsToIndex = new ArrayList<>();
             for (String k : allUnits.keySet()) {
-                es.indexObject(sha, CONTENT_INDEX_TYPE.UNIT.toString(),
-                        objectMapper.writeValueAsString(ImmutableMap.of("cleanKey", k, "unit", allUnits.get(k))));
+                unitsToIndex.add(immutableEntry(null,
+                        objectMapper.writeValueAsString(ImmutableMap.of("cleanKey", k, "unit", allUnits.get(k)))));
             }
+            es.bulkIndex(sha, CONTENT_INDEX_TYPE.UNIT.toString(), unitsToIndex);
+
+            List<Map.Entry<String, String>> publishedUnitsToIndex = new ArrayList<>();
             for (String k : publishedUnits.keySet()) {
-                es.indexObject(sha, CONTENT_INDEX_TYPE.PUBLISHED_UNIT.toString(),
-                        objectMapper.writeValueAsString(ImmutableMap.of("cleanKey", k, "unit", publishedUnits.get(k))));
+                publishedUnitsToIndex.add(immutableEntry(null, objectMapper.writeValueAsString(
+                        ImmutableMap.of("cleanKey", k, "unit", publishedUnits.get(k)))));
             }
+            es.bulkIndex(sha, CONTENT_INDEX_TYPE.PUBLISHED_UNIT.toString(), publishedUnitsToIndex);
 
+            List<Map.Entry<String, String>> contentErrorsToIndex = new ArrayList<>();
             for (Content c: indexProblemCache.keySet()) {
-                es.indexObject(sha, CONTENT_INDEX_TYPE.CONTENT_ERROR.toString(),
-                        objectMapper.writeValueAsString(ImmutableMap.of(
-                                "canonicalSourceFile", c.getCanonicalSourceFile(),
-                                "id", c.getId() == null ? "" : c.getId(),
-                                "title", c.getTitle() == null ? "" : c.getTitle(),
-                                // "tags", c.getTags(), // TODO: Add tags
-                                "published", c.getPublished() == null ? "" : c.getPublished(),
-                                "errors", indexProblemCache.get(c).toArray())));
+                contentErrorsToIndex.add(immutableEntry(null, objectMapper.writeValueAsString(ImmutableMap.of(
+                        "canonicalSourceFile", c.getCanonicalSourceFile(),
+                        "id", c.getId() == null ? "" : c.getId(),
+                        "title", getContentProblemTitle(c),
+                        // "tags", c.getTags(), // TODO: Add tags
+                        "published", c.getPublished() == null ? "" : c.getPublished(),
+                        "errors", indexProblemCache.get(c).toArray()))));
             }
+            es.bulkIndex(sha, CONTENT_INDEX_TYPE.CONTENT_ERROR.toString(), contentErrorsToIndex);
         } catch (JsonProcessingException e) {
             log.error("Unable to serialise sha, tags, units or content errors.");
         } catch (SegueSearchException e) {
             log.error("Unable to index sha, tags, units or content errors.");
         }
+    }
 
-
-        try {
-            es.bulkIndex(sha, CONTENT_INDEX_TYPE.CONTENT.toString(), contentToIndex);
-            log.info("Search index request sent for: " + sha);
-        } catch (SegueSearchException e) {
-            log.error("Error whilst trying to perform bulk index operation.", e);
-        } catch (ActionRequestValidationException e) {
-            log.error("Error validating content during index",e);
+    /**
+     * Remove any partially built indices for a version, so that it can be rebuilt from scratch.
+     *
+     * @param sha
+     *            - the version to remove the indices of.
+     */
+    private void expungeExistingIndices(final String sha) {
+        if (es.hasIndex(sha, CONTENT_INDEX_TYPE.CONTENT.toString())) {
+            log.info("Deleting existing indexes for version " + sha);
+            for (CONTENT_INDEX_TYPE contentIndexType : CONTENT_INDEX_TYPE.values()) {
+                es.expungeIndexFromSearchCache(sha, contentIndexType.toString());
+            }
         }
     }
 
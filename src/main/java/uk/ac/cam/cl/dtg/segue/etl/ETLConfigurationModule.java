@@ -13,11 +13,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.isaac.configuration.SegueConfigurationModule;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.segue.api.monitors.IMetricsExporter;
+import uk.ac.cam.cl.dtg.segue.api.monitors.PrometheusMetricsExporter;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
 import uk.ac.cam.cl.dtg.segue.database.GitDb;
 import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 import uk.ac.cam.cl.dtg.util.PropertiesManager;
 
+import javax.annotation.Nullable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.UnknownHostException;
@@ -34,6 +37,7 @@ class ETLConfigurationModule extends AbstractModule {
     private static Client elasticSearchClient = null;
     private static SchoolIndexer schoolIndexer = null;
     private static ETLManager etlManager = null;
+    private static IMetricsExporter metricsExporter = null;
 
     ETLConfigurationModule() {
         if (globalProperties == null) {
@@ -170,6 +174,30 @@ class ETLConfigurationModule extends AbstractModule {
         return elasticSearchClient;
     }
 
+    /**
+     * This provides a singleton of the metrics exporter, if a port has been configured for it.
+     *
+     * @return the metrics exporter, or null if metrics are not to be exported.
+     */
+    @Provides
+    @Singleton
+    @Nullable
+    private static IMetricsExporter getMetricsExporter() {
+        String port = globalProperties.getProperty(Constants.ETL_METRICS_EXPORT_PORT);
+        if (null == metricsExporter && null != port) {
+            try {
+                log.info("Creating MetricsExporter on port (" + port + ")");
+                metricsExporter = new PrometheusMetricsExporter(Integer.parseInt(port));
+                log.info("Exporting default JVM metrics.");
+                metricsExporter.exposeJvmMetrics();
+            } catch (IOException | NumberFormatException e) {
+                log.error("Could not create MetricsExporter on port (" + port + ")");
+                return null;
+            }
+        }
+        return metricsExporter;
+    }
+
     @Inject
     @Provides
     @Singleton
@@ -9,15 +9,21 @@ import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequestBuilder
 import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequestBuilder;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.bulk.BackoffPolicy;
 import org.elasticsearch.action.bulk.BulkItemResponse;
-import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkProcessor;
+import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.support.WriteRequest;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.metadata.AliasMetadata;
 import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.elasticsearch.common.xcontent.XContentType;
@@ -26,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
 import uk.ac.cam.cl.dtg.segue.search.ElasticSearchProvider;
 import uk.ac.cam.cl.dtg.segue.search.SegueSearchException;
+import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -33,6 +40,15 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.ETL_BULK_REQUEST_LATENCY;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.ETL_INDEXED_BYTES;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.ETL_INDEXED_DOCUMENTS;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.ETL_INDEXING_FAILURES;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.ETL_INDEXING_THROUGHPUT;
 
 /**
  * Created by Ian on 17/10/2016.
@@ -42,14 +58,24 @@ class ElasticSearchIndexer extends ElasticSearchProvider {
     private final Map<String, List<String>> rawFieldsListByType = new HashMap<>();
     private final Map<String, List<String>> nestedFieldsByType = new HashMap<>();
 
+    private static final String INDEX_REFRESH_INTERVAL_SETTING = "index.refresh_interval";
+    private static final String INDEX_REPLICAS_SETTING = "index.number_of_replicas";
+    private static final int BULK_REQUEST_MAX_DOCUMENTS = 1000;
+    private static final ByteSizeValue BULK_REQUEST_MAX_SIZE = new ByteSizeValue(5, ByteSizeUnit.MB);
+    private static final int BULK_CONCURRENT_REQUESTS = 2;
+    private static final BackoffPolicy BULK_REJECTION_BACKOFF
+            = BackoffPolicy.exponentialBackoff(TimeValue.timeValueMillis(100), 8);
+    private static final long BULK_CLOSE_TIMEOUT_SECONDS = 600;
+
     /**
      * Constructor for creating an instance of the ElasticSearchProvider Object.
      *
      * @param searchClient - the client that the provider should be using.
+     * @param globalProperties - to configure the settings cache from.
      */
     @Inject
-    public ElasticSearchIndexer(Client searchClient) {
-        super(searchClient);
+    public ElasticSearchIndexer(Client searchClient, PropertiesLoader globalProperties) {
+        super(searchClient, globalProperties);
         rawFieldsListByType.put("content", Lists.newArrayList("id", "title"));
         rawFieldsListByType.put("school", Lists.newArrayList("urn"));
         nestedFieldsByType.put("content", Lists.newArrayList("audience"));
@@ -64,39 +90,193 @@ class ElasticSearchIndexer extends ElasticSearchProvider {
 
     void bulkIndex(final String indexBase, final String indexType, final List<Map.Entry<String, String>> dataToIndex)
             throws SegueSearchException {
+        try (BulkIndexSession bulkIndexSession = this.startBulkIndex(indexBase, indexType)) {
+            for (Map.Entry<String, String> itemToIndex : dataToIndex) {
+                bulkIndexSession.add(itemToIndex.getKey(), itemToIndex.getValue());
+            }
+        }
+    }
 
+    /**
+     * Start streaming documents into a typed index.
+     *
+     * Documents are sent in bulk requests capped by document count and size, several of which may be in flight at
+     * once. Items rejected by an overloaded cluster are retried with exponential backoff. Refresh and replicas are
+     * turned off for the index until the session is closed, when they are restored and the index is refreshed.
+     *
+     * @param indexBase
+     *            - the base of the index to write to.
+     * @param indexType
+     *            - the type of the index to write to.
+     * @return a session to add documents to, which must be closed.
+     * @throws SegueSearchException
+     *             - if the index cannot be created or prepared for bulk indexing.
+     */
+    BulkIndexSession startBulkIndex(final String indexBase, final String indexType) throws SegueSearchException {
         String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
 
-        // check index already exists if not execute any initialisation steps.
+        try {
+            // check index already exists if not execute any initialisation steps.
+            this.createIndexIfAbsent(indexBase, indexType);
+
+            GetSettingsResponse currentSettings = client.admin().indices().prepareGetSettings(typedIndex).get();
+            Settings settingsToRestore = Settings.builder()
+                    .put(INDEX_REFRESH_INTERVAL_SETTING, currentSettings.getSetting(typedIndex, INDEX_REFRESH_INTERVAL_SETTING))
+                    .put(INDEX_REPLICAS_SETTING, currentSettings.getSetting(typedIndex, INDEX_REPLICAS_SETTING))
+                    .build();
+            client.admin().indices().prepareUpdateSettings(typedIndex).setSettings(Settings.builder()
+                    .put(INDEX_REFRESH_INTERVAL_SETTING, "-1")
+                    .put(INDEX_REPLICAS_SETTING, 0)).get();
+
+            return new BulkIndexSession(typedIndex, indexType, settingsToRestore);
+        } catch (ElasticsearchException e) {
+            throw new SegueSearchException("Unable to prepare index " + typedIndex + " for bulk indexing.", e);
+        }
+    }
+
+
+    /**
+     * Create a typed index, with its mapping corrections if it has any, if it does not already exist.
+     *
+     * Bulk indexing of the same index may be started concurrently, so the check and creation must happen atomically.
+     *
+     * @param indexBase
+     *            - the base of the index to create.
+     * @param indexType
+     *            - the type of the index to create.
+     */
+    private synchronized void createIndexIfAbsent(final String indexBase, final String indexType) {
         if (!this.hasIndex(indexBase, indexType)) {
+            String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
             if (this.rawFieldsListByType.containsKey(indexType) || this.nestedFieldsByType.containsKey(indexType)) {
                 this.sendMappingCorrections(typedIndex, indexType);
+            } else {
+                client.admin().indices().prepareCreate(typedIndex).get();
             }
         }
+    }
 
-        // build bulk request
-        BulkRequestBuilder bulkRequest = client.prepareBulk();
-        for (Map.Entry<String, String> itemToIndex : dataToIndex) {
-            bulkRequest.add(client.prepareIndex(typedIndex, indexType, itemToIndex.getKey())
-                    .setSource(itemToIndex.getValue(), XContentType.JSON));
-        }
+    /**
+     * A bulk indexing operation on a single typed index, created by startBulkIndex.
+     */
+    class BulkIndexSession implements AutoCloseable {
+        private final String typedIndex;
+        private final String indexType;
+        private final Settings settingsToRestore;
+        private final BulkProcessor bulkProcessor;
+        private final long startTime = System.nanoTime();
+        private final AtomicLong documentsIndexed = new AtomicLong();
+        private final AtomicLong bytesIndexed = new AtomicLong();
+        private final AtomicLong documentsFailed = new AtomicLong();
+        private final AtomicReference<Throwable> bulkRequestFailure = new AtomicReference<>();
+
+        private BulkIndexSession(final String typedIndex, final String indexType, final Settings settingsToRestore) {
+            this.typedIndex = typedIndex;
+            this.indexType = indexType;
+            this.settingsToRestore = settingsToRestore;
+            this.bulkProcessor = BulkProcessor.builder(client::bulk, new BulkProcessor.Listener() {
+                @Override
+                public void beforeBulk(final long executionId, final BulkRequest request) {
+                }
 
-        try {
-            // execute bulk request
-            BulkResponse bulkResponse = bulkRequest.setTimeout("180s").setRefreshPolicy(WriteRequest.RefreshPolicy.IMMEDIATE).execute().actionGet();
-            if (bulkResponse.hasFailures()) {
-                // process failures by iterating through each bulk response item
-                for (BulkItemResponse itemResponse : bulkResponse.getItems()) {
-                    if (itemResponse.isFailed()) {
-                        log.error("Unable to index the following item: " + itemResponse.getFailureMessage());
+                @Override
+                public void afterBulk(final long executionId, final BulkRequest request,
+                                      final BulkResponse response) {
+                    ETL_BULK_REQUEST_LATENCY.labels(indexType).observe(response.getTook().getMillis() / 1000.0);
+                    long failed = 0;
+                    if (response.hasFailures()) {
+                        // process failures by iterating through each bulk response item
+                        for (BulkItemResponse itemResponse : response.getItems()) {
+                            if (itemResponse.isFailed()) {
+                                failed++;
+                                log.error("Unable to index the following item: " + itemResponse.getFailureMessage());
+                            }
+                        }
                     }
+                    recordBulkRequest(request, failed);
+                }
+
+                @Override
+                public void afterBulk(final long executionId, final BulkRequest request, final Throwable failure) {
+                    log.error("Bulk request of " + request.numberOfActions() + " items to " + typedIndex
+                            + " failed.", failure);
+                    bulkRequestFailure.compareAndSet(null, failure);
+                    recordBulkRequest(request, request.numberOfActions());
+                }
+            })
+                    .setBulkActions(BULK_REQUEST_MAX_DOCUMENTS)
+                    .setBulkSize(BULK_REQUEST_MAX_SIZE)
+                    .setConcurrentRequests(BULK_CONCURRENT_REQUESTS)
+                    .setBackoffPolicy(BULK_REJECTION_BACKOFF)
+                    .build();
+        }
+
+        /**
+         * Queue a document to be indexed. This may block if the maximum number of bulk requests are in flight.
+         *
+         * @param id
+         *            - the unique id of the document.
+         * @param source
+         *            - the document serialised as JSON.
+         */
+        void add(final String id, final String source) {
+            bulkProcessor.add(client.prepareIndex(typedIndex, indexType, id).setSource(source, XContentType.JSON)
+                    .request());
+        }
+
+        private void recordBulkRequest(final BulkRequest request, final long failed) {
+            documentsIndexed.addAndGet(request.numberOfActions() - failed);
+            documentsFailed.addAndGet(failed);
+            bytesIndexed.addAndGet(request.estimatedSizeInBytes());
+            ETL_INDEXED_DOCUMENTS.labels(indexType).inc(request.numberOfActions() - failed);
+            ETL_INDEXING_FAILURES.labels(indexType).inc(failed);
+            ETL_INDEXED_BYTES.labels(indexType).inc(request.estimatedSizeInBytes());
+        }
+
+        /**
+         * Send any queued documents, wait for all bulk requests to finish and restore the index settings.
+         *
+         * @throws SegueSearchException
+         *             - if the bulk requests could not be completed.
+         */
+        @Override
+        public void close() throws SegueSearchException {
+            try {
+                if (!bulkProcessor.awaitClose(BULK_CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new SegueSearchException("Timed out waiting for bulk index operation on " + typedIndex);
                 }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SegueSearchException("Interrupted during bulk index operation on " + typedIndex, e);
+            } finally {
+                this.restoreIndexSettings();
+            }
+
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            ETL_INDEXING_THROUGHPUT.labels(indexType).set(documentsIndexed.get() / Math.max(seconds, 0.001));
+            log.info(String.format("Bulk indexed %d documents (%d kB) into %s in %.1f s (%.0f documents/s); %d failed.",
+                    documentsIndexed.get(), bytesIndexed.get() / 1024, typedIndex, seconds,
+                    documentsIndexed.get() / Math.max(seconds, 0.001), documentsFailed.get()));
+
+            if (bulkRequestFailure.get() != null) {
+                throw new SegueSearchException("Error during bulk index operation on " + typedIndex,
+                        bulkRequestFailure.get() instanceof Exception ? (Exception) bulkRequestFailure.get() : null);
             }
-        } catch (ElasticsearchException e) {
-            throw new SegueSearchException("Error during bulk index operation.", e);
         }
-    }
 
+        private void restoreIndexSettings() {
+            try {
+                Settings.Builder settings = Settings.builder().put(settingsToRestore);
+                if (null == settingsToRestore.get(INDEX_REFRESH_INTERVAL_SETTING)) {
+                    settings.putNull(INDEX_REFRESH_INTERVAL_SETTING);
+                }
+                client.admin().indices().prepareUpdateSettings(typedIndex).setSettings(settings).get();
+                client.admin().indices().prepareRefresh(typedIndex).get();
+            } catch (ElasticsearchException e) {
+                log.error("Unable to restore refresh and replica settings on " + typedIndex, e);
+            }
+        }
+    }
 
     void indexObject(final String indexBase, final String indexType, final String content, final String uniqueId)
             throws SegueSearchException {
@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import uk.ac.cam.cl.dtg.segue.api.monitors.IMetricsExporter;
 
 /**
  * SegueContextListener
@@ -35,6 +36,9 @@ public class SegueETLContextNotifier implements ServletContextListener {
 
         Injector injector = Guice.createInjector(etlConfigurationModule);
 
+        // Expose indexing metrics, if configured to.
+        injector.getInstance(IMetricsExporter.class);
+
         // Make sure the ETLManager has been created, forcing latest content to be indexed.
         injector.getInstance(ETLManager.class);
     }
@@ -0,0 +1,254 @@
+/**
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.quiz;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import io.prometheus.client.Histogram;
+import org.apache.commons.lang3.Validate;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EXTERNAL_VALIDATOR_IN_FLIGHT;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EXTERNAL_VALIDATOR_LATENCY;
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.EXTERNAL_VALIDATOR_REJECTIONS;
+
+/**
+ * Client for the external (python) checkers used to mark symbolic, chemistry and logic questions.
+ *
+ * All clients share one pool of keep-alive connections. Each client bounds the number of checks it will have in
+ * flight at once, so a slow checker cannot tie up every request thread, and memoises responses keyed on the full
+ * serialised request body (question id, choice and submitted answer) so identical answers skip the network round-trip.
+ */
+public class ExternalValidatorClient {
+    private static final Logger log = LoggerFactory.getLogger(ExternalValidatorClient.class);
+
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 20;
+    public static final int DEFAULT_TIMEOUT_MILLISECONDS = 10000;
+
+    private static final int MAX_POOLED_CONNECTIONS = 100;
+    private static final int MAX_POOLED_CONNECTIONS_PER_CHECKER = 50;
+    private static final int IDLE_CONNECTION_EVICTION_SECONDS = 30;
+    private static final int MAX_WAIT_FOR_CAPACITY_MILLISECONDS = 2000;
+    private static final int MAX_CACHED_RESPONSES = 20000;
+    private static final int CACHED_RESPONSE_EXPIRY_HOURS = 12;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // Sorting the fields means that equal request bodies are always serialised, and so memoised, identically:
+    private static final ObjectWriter REQUEST_WRITER = MAPPER.writer()
+            .with(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    private static final TypeReference<HashMap<String, Object>> RESPONSE_TYPE =
+            new TypeReference<HashMap<String, Object>>() { };
+
+    private static final CloseableHttpClient HTTP_CLIENT;
+    private static final ExecutorService ASYNC_EXECUTOR = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("external-validator-%d").setDaemon(true).build());
+
+    static {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(MAX_POOLED_CONNECTIONS);
+        connectionManager.setDefaultMaxPerRoute(MAX_POOLED_CONNECTIONS_PER_CHECKER);
+        HTTP_CLIENT = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .evictIdleConnections(IDLE_CONNECTION_EVICTION_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    private final String checkerName;
+    private final String externalValidatorUrl;
+    private final int waitForCapacityMilliseconds;
+    private final RequestConfig requestConfig;
+    private final Semaphore inFlightChecks;
+    private final Cache<String, HashMap<String, Object>> responseCache;
+
+    /**
+     * Create a client for an external checker using the default concurrency limit and timeout.
+     *
+     * @param checkerName - a short name for the checker, used to label metrics.
+     * @param externalValidatorUrl - the URL of the checker to POST to.
+     */
+    public ExternalValidatorClient(final String checkerName, final String externalValidatorUrl) {
+        this(checkerName, externalValidatorUrl, DEFAULT_MAX_CONCURRENT_REQUESTS, DEFAULT_TIMEOUT_MILLISECONDS);
+    }
+
+    /**
+     * Create a client for an external checker.
+     *
+     * @param checkerName - a short name for the checker, used to label metrics.
+     * @param externalValidatorUrl - the URL of the checker to POST to.
+     * @param maxConcurrentRequests - the maximum number of checks this client will have in flight at once.
+     * @param timeoutMilliseconds - the connect and read timeout for a single check.
+     */
+    public ExternalValidatorClient(final String checkerName, final String externalValidatorUrl,
+                                   final int maxConcurrentRequests, final int timeoutMilliseconds) {
+        Validate.notBlank(checkerName);
+        Validate.notBlank(externalValidatorUrl);
+        Validate.isTrue(maxConcurrentRequests > 0, "maxConcurrentRequests must be positive");
+        Validate.isTrue(timeoutMilliseconds > 0, "timeoutMilliseconds must be positive");
+
+        this.checkerName = checkerName;
+        this.externalValidatorUrl = externalValidatorUrl;
+        this.waitForCapacityMilliseconds = Math.min(timeoutMilliseconds, MAX_WAIT_FOR_CAPACITY_MILLISECONDS);
+        this.requestConfig = RequestConfig.custom()
+                .setConnectTimeout(timeoutMilliseconds)
+                .setSocketTimeout(timeoutMilliseconds)
+                .setConnectionRequestTimeout(timeoutMilliseconds)
+                .build();
+        this.inFlightChecks = new Semaphore(maxConcurrentRequests);
+        this.responseCache = CacheBuilder.newBuilder()
+                .maximumSize(MAX_CACHED_RESPONSES)
+                .expireAfterAccess(CACHED_RESPONSE_EXPIRY_HOURS, TimeUnit.HOURS)
+                .recordStats()
+                .build();
+        CACHE_METRICS_COLLECTOR.addCache("external_validator_" + checkerName, responseCache);
+    }
+
+    /**
+     * POST a JSON request to the external checker and return the response JSON.
+     *
+     * Identical concurrent requests are collapsed into a single call to the checker. The returned map may be shared
+     * with other callers and must not be modified.
+     *
+     * @param requestBody - the JSON request body as a Map.
+     * @return the response JSON, as a HashMap.
+     * @throws IOException - on failure to communicate with the checker, or if it is too busy to accept the check.
+     */
+    public HashMap<String, Object> check(final Map<String, String> requestBody) throws IOException {
+        return this.check(REQUEST_WRITER.writeValueAsString(requestBody));
+    }
+
+    /**
+     * POST a serialised JSON request to the external checker and return the response JSON.
+     *
+     * @param serialisedRequestBody - the JSON request body, which is also the key responses are memoised under.
+     * @return the response JSON, as a HashMap.
+     * @throws IOException - on failure to communicate with the checker, or if it is too busy to accept the check.
+     */
+    private HashMap<String, Object> check(final String serialisedRequestBody) throws IOException {
+        HashMap<String, Object> response;
+        try (RequestTimings.Timer validatorTimer = RequestTimings.time(RequestTimings.Component.VALIDATOR)) {
+            response = responseCache.get(serialisedRequestBody, () -> this.post(serialisedRequestBody));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Unexpected failure checking answer with " + checkerName + " checker.", e.getCause());
+        }
+
+        // A "code" in the response means the checker itself failed, rather than the answer being invalid; so
+        // this is not a stable answer and should not be reused:
+        if (response.containsKey("error") && response.containsKey("code")) {
+            responseCache.invalidate(serialisedRequestBody);
+        }
+        return response;
+    }
+
+    /**
+     * Asynchronous version of {@link #check(Map)}.
+     *
+     * @param requestBody - the JSON request body as a Map.
+     * @return a future for the response JSON, completed exceptionally with an UncheckedIOException on failure.
+     */
+    public CompletableFuture<HashMap<String, Object>> checkAsync(final Map<String, String> requestBody) {
+        String serialisedRequestBody;
+        try {
+            serialisedRequestBody = REQUEST_WRITER.writeValueAsString(requestBody);
+        } catch (IOException e) {
+            CompletableFuture<HashMap<String, Object>> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new UncheckedIOException(e));
+            return failed;
+        }
+
+        HashMap<String, Object> cachedResponse = responseCache.getIfPresent(serialisedRequestBody);
+        if (cachedResponse != null) {
+            return CompletableFuture.completedFuture(cachedResponse);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return this.check(serialisedRequestBody);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ASYNC_EXECUTOR);
+    }
+
+    /**
+     * Make the request to the checker, holding one of this client's in-flight permits for the duration.
+     *
+     * @param serialisedRequestBody - the JSON request body.
+     * @return the response JSON, as a HashMap.
+     * @throws IOException - on failure to communicate with the checker, or if no permit became available in time.
+     */
+    private HashMap<String, Object> post(final String serialisedRequestBody) throws IOException {
+        try {
+            if (!inFlightChecks.tryAcquire(waitForCapacityMilliseconds, TimeUnit.MILLISECONDS)) {
+                EXTERNAL_VALIDATOR_REJECTIONS.labels(checkerName).inc();
+                log.warn(String.format("Rejected check: %s checker already has too many requests in flight.",
+                        checkerName));
+                throw new IOException("Too many requests in flight to the " + checkerName + " checker.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting to check answer with " + checkerName + " checker.", e);
+        }
+
+        EXTERNAL_VALIDATOR_IN_FLIGHT.labels(checkerName).inc();
+        Histogram.Timer latencyTimer = EXTERNAL_VALIDATOR_LATENCY.labels(checkerName).startTimer();
+        try {
+            HttpPost httpPost = new HttpPost(externalValidatorUrl);
+            httpPost.setConfig(requestConfig);
+            httpPost.setEntity(new StringEntity(serialisedRequestBody, ContentType.APPLICATION_JSON));
+
+            // Consuming the entity fully before the response is closed returns the connection to the pool:
+            try (CloseableHttpResponse httpResponse = HTTP_CLIENT.execute(httpPost)) {
+                String responseString = EntityUtils.toString(httpResponse.getEntity());
+                return MAPPER.readValue(responseString, RESPONSE_TYPE);
+            }
+        } finally {
+            latencyTimer.observeDuration();
+            EXTERNAL_VALIDATOR_IN_FLIGHT.labels(checkerName).dec();
+            inFlightChecks.release();
+        }
+    }
+}
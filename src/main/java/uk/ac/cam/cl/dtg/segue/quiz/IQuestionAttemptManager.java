@@ -1,5 +1,6 @@
 package uk.ac.cam.cl.dtg.segue.quiz;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -7,6 +8,7 @@ import java.util.Map;
 import uk.ac.cam.cl.dtg.segue.api.Constants.TimeInterval;
 import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionAttemptSummary;
 import uk.ac.cam.cl.dtg.segue.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.segue.dos.users.Role;
 
@@ -46,6 +48,37 @@ public interface IQuestionAttemptManager {
     Map<String, Map<String, List<QuestionValidationResponse>>> getQuestionAttempts(final Long userId)
             throws SegueDatabaseException;
 
+    /**
+     * Get a summary of a users question attempts, one per question part, without loading the attempts themselves.
+     *
+     * The summaries are maintained as attempts are registered, so this is much cheaper than getQuestionAttempts for
+     * anything which only needs to know which question parts a user has attempted or answered correctly.
+     *
+     * @param userId
+     *            - the id of the user to search for.
+     * @return map of question page id to question part id to summary, or an empty map if the user has not yet
+     *          registered any attempts.
+     * @throws SegueDatabaseException
+     *             - If there is a database error.
+     */
+    Map<String, Map<String, QuestionAttemptSummary>> getQuestionAttemptSummaries(final Long userId)
+            throws SegueDatabaseException;
+
+    /**
+     * Get the summaries of the attempts a group of users have made at particular question parts, in a single request.
+     *
+     * @param userIds
+     *            - list of user ids to look up summaries for.
+     * @param questionPartIds
+     *            - the full ids of the question parts of interest.
+     * @return a Map of userId --> Map of question part id --> summary, containing only the parts each user has
+     *          attempted.
+     * @throws SegueDatabaseException
+     *             - if a database error occurrs
+     */
+    Map<Long, Map<String, QuestionAttemptSummary>> getQuestionAttemptSummariesByUsersAndQuestionParts(
+            List<Long> userIds, Collection<String> questionPartIds) throws SegueDatabaseException;
+
     /**
      * A method that makes a single database request for a group of users and questions to get all of their attempt
      * information back.
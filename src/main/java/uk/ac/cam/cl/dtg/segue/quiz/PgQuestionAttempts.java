@@ -27,6 +27,7 @@ import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
 import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
 import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
 import uk.ac.cam.cl.dtg.segue.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionAttemptSummary;
 import uk.ac.cam.cl.dtg.segue.dos.QuestionValidationResponse;
 import uk.ac.cam.cl.dtg.segue.dos.users.Role;
 
@@ -35,10 +36,9 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.sql.Statement;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -69,6 +69,11 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         this.objectMapper = objectMapper.getSharedContentObjectMapper();
     }
     
+    /**
+     * Each attempt is appended as a row of its own, so recording one never reads or rewrites the user's earlier
+     * attempts and attempts made concurrently, e.g. from two tabs, cannot overwrite each other. The attempts are
+     * deleted along with the anonymous user.
+     */
     @Override
     public void registerAnonymousQuestionAttempt(final String userId, final String questionPageId,
             final String fullQuestionId, final QuestionValidationResponse questionAttempt)
@@ -76,27 +81,18 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
 
         PreparedStatement pst;
         try (Connection conn = database.getDatabaseConnection()) {
-            Map<String, Map<String, List<QuestionValidationResponse>>> userAttempts = this.getAnonymousQuestionAttempts(userId);
-
-            if (null == userAttempts) {
-                userAttempts = new HashMap<>();
+            pst = conn.prepareStatement("INSERT INTO anonymous_question_attempts(anonymous_user_id, page_id,"
+                    + " question_id, question_attempt, \"timestamp\") VALUES (?, ?, ?, ?::text::jsonb, ?);");
+            pst.setString(1, userId);
+            pst.setString(2, questionPageId);
+            pst.setString(3, fullQuestionId);
+            pst.setString(4, objectMapper.writeValueAsString(questionAttempt));
+            if (questionAttempt.getDateAttempted() != null) {
+                pst.setTimestamp(5, new java.sql.Timestamp(questionAttempt.getDateAttempted().getTime()));
+            } else {
+                pst.setTimestamp(5, new java.sql.Timestamp(new Date().getTime()));
             }
 
-            userAttempts.computeIfAbsent(questionPageId, k -> new HashMap<>());
-
-            userAttempts.get(questionPageId).computeIfAbsent(fullQuestionId, k -> new ArrayList<>());
-
-            userAttempts.get(questionPageId).get(fullQuestionId).add(questionAttempt);
-
-            // TODO: This might be able to be simplified by using json_insert
-            pst = conn.prepareStatement("UPDATE temporary_user_store " +
-                    "SET temporary_app_data = jsonb_set(temporary_app_data, " +
-                    "?::text[], ?::text::jsonb) WHERE id = ?;");
-            pst.setString(1, "{questionAttempts}");
-            pst.setString(2, objectMapper.writeValueAsString(userAttempts));
-            pst.setString(3, userId);
-
-            log.debug(pst.toString());
             if (pst.executeUpdate() == 0) {
                 throw new SegueDatabaseException("Unable to save question attempt.");
             }
@@ -112,45 +108,26 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
      * getAnonymousQuestionAttempts.
      * @param anonymousId
      *            to lookup
-     * @return the question pageId --> full questionId --> list of responses. (or null if no data)
+     * @return the question pageId --> full questionId --> list of responses, in the order they were made.
      */
     @Override
     public Map<String, Map<String, List<QuestionValidationResponse>>> getAnonymousQuestionAttempts(
             final String anonymousId) throws SegueDatabaseException {
         PreparedStatement pst;
         try (Connection conn = database.getDatabaseConnection()) {
-            pst = conn.prepareStatement("SELECT temporary_app_data->'questionAttempts' AS question_attempts from temporary_user_store where id = ?;"
-                    , Statement.RETURN_GENERATED_KEYS);
-
+            pst = conn.prepareStatement("SELECT page_id, question_id, question_attempt FROM anonymous_question_attempts"
+                    + " WHERE anonymous_user_id = ? ORDER BY id ASC;");
             pst.setString(1, anonymousId);
 
-            ResultSet resultSet = pst.executeQuery();
-            // are there any results
-            if (!resultSet.isBeforeFirst()) {
-                return Maps.newHashMap();
-            }
-
-            resultSet.next();
-
-            // We need to try and generate QuestionValidationResponses in the correct object structure - Apologies for the hideousness
-            Map<String, Map<String, List<Object>>> questionAttemptsFromDB
-                    = objectMapper.readValue(resultSet.getString("question_attempts"), Map.class);
-            Map<String, Map<String, List<QuestionValidationResponse>>> result = Maps.newHashMap();
-
-            for (Map.Entry<String, Map<String, List<Object>>> questionAttemptsForPage : questionAttemptsFromDB.entrySet()){
-
-                Map<String, List<QuestionValidationResponse>> questionAttemptsForQuestion = Maps.newHashMap();
-                for (Map.Entry<String, List<Object>> submap : questionAttemptsForPage.getValue().entrySet()){
-                    List<QuestionValidationResponse> listOfuestionValidationResponses = Lists.newArrayList();
-                    questionAttemptsForQuestion.put(submap.getKey(), listOfuestionValidationResponses);
-
-                    for (Object o : submap.getValue()) {
-                        listOfuestionValidationResponses
-                                .add(objectMapper.convertValue(o, QuestionValidationResponse.class));
-                    }
-                }
+            ResultSet results = pst.executeQuery();
 
-                result.put(questionAttemptsForPage.getKey(), questionAttemptsForQuestion);
+            Map<String, Map<String, List<QuestionValidationResponse>>> result = Maps.newLinkedHashMap();
+            while (results.next()) {
+                QuestionValidationResponse questionAttempt = objectMapper.readValue(
+                        results.getString("question_attempt"), QuestionValidationResponse.class);
+                result.computeIfAbsent(results.getString("page_id"), k -> Maps.newLinkedHashMap())
+                        .computeIfAbsent(results.getString("question_id"), k -> Lists.newArrayList())
+                        .add(questionAttempt);
             }
 
             return result;
@@ -165,27 +142,63 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
     public void registerQuestionAttempt(final Long userId, final String questionPageId, final String fullQuestionId,
             final QuestionValidationResponse questionAttempt) throws SegueDatabaseException {
 
-        PreparedStatement pst;
+        java.sql.Timestamp attemptTimestamp = new java.sql.Timestamp(questionAttempt.getDateAttempted().getTime());
         try (Connection conn = database.getDatabaseConnection()) {
-            pst = conn.prepareStatement("INSERT INTO question_attempts(user_id, "
-                    + "question_id, question_attempt, correct, \"timestamp\")"
-                    + " VALUES (?, ?, ?::text::jsonb, ?, ?);", Statement.RETURN_GENERATED_KEYS);
+            try {
+                conn.setAutoCommit(false);
 
-            pst.setLong(1, userId);
-            pst.setString(2, fullQuestionId);
-            pst.setString(3, objectMapper.writeValueAsString(questionAttempt));
+                PreparedStatement pst = conn.prepareStatement("INSERT INTO question_attempts(user_id, "
+                        + "question_id, question_attempt, correct, \"timestamp\", page_id)"
+                        + " VALUES (?, ?, ?::text::jsonb, ?, ?, ?);");
 
-            if (questionAttempt.isCorrect() != null) {
-                pst.setBoolean(4, questionAttempt.isCorrect());
-            } else {
-                pst.setNull(4, java.sql.Types.NULL);
-            }
-            pst.setTimestamp(5, new java.sql.Timestamp(questionAttempt.getDateAttempted().getTime()));
+                pst.setLong(1, userId);
+                pst.setString(2, fullQuestionId);
+                pst.setString(3, objectMapper.writeValueAsString(questionAttempt));
 
-            if (pst.executeUpdate() == 0) {
-                throw new SegueDatabaseException("Unable to save question attempt.");
-            }
+                if (questionAttempt.isCorrect() != null) {
+                    pst.setBoolean(4, questionAttempt.isCorrect());
+                } else {
+                    pst.setNull(4, java.sql.Types.NULL);
+                }
+                pst.setTimestamp(5, attemptTimestamp);
+                pst.setString(6, extractPageIdFromQuestionId(fullQuestionId));
 
+                if (pst.executeUpdate() == 0) {
+                    throw new SegueDatabaseException("Unable to save question attempt.");
+                }
+
+                // Keep the summary for this question part in step with the attempt in the same transaction. A trigger
+                // on the summaries updates the user's streak counts when the first correct attempt time changes:
+                PreparedStatement summaryPst = conn.prepareStatement("INSERT INTO question_attempt_summaries(user_id,"
+                        + " question_id, correct, attempt_count, first_attempted, last_attempted,"
+                        + " first_correct_attempted)"
+                        + " VALUES (?, ?, ?, 1, ?, ?, ?)"
+                        + " ON CONFLICT (user_id, question_id) DO UPDATE SET"
+                        + " correct = question_attempt_summaries.correct OR excluded.correct,"
+                        + " attempt_count = question_attempt_summaries.attempt_count + 1,"
+                        + " first_attempted = LEAST(question_attempt_summaries.first_attempted, excluded.first_attempted),"
+                        + " last_attempted = GREATEST(question_attempt_summaries.last_attempted, excluded.last_attempted),"
+                        + " first_correct_attempted = LEAST(question_attempt_summaries.first_correct_attempted,"
+                        + " excluded.first_correct_attempted);");
+                summaryPst.setLong(1, userId);
+                summaryPst.setString(2, fullQuestionId);
+                summaryPst.setBoolean(3, Boolean.TRUE.equals(questionAttempt.isCorrect()));
+                summaryPst.setTimestamp(4, attemptTimestamp);
+                summaryPst.setTimestamp(5, attemptTimestamp);
+                if (Boolean.TRUE.equals(questionAttempt.isCorrect())) {
+                    summaryPst.setTimestamp(6, attemptTimestamp);
+                } else {
+                    summaryPst.setNull(6, java.sql.Types.TIMESTAMP);
+                }
+                summaryPst.executeUpdate();
+
+                conn.commit();
+            } catch (SQLException | SegueDatabaseException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (SQLException e) {
             throw new SegueDatabaseException("Postgres exception", e);
         } catch (JsonProcessingException e) {
@@ -238,6 +251,68 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
         }
     }
     
+    @Override
+    public Map<String, Map<String, QuestionAttemptSummary>> getQuestionAttemptSummaries(final Long userId)
+            throws SegueDatabaseException {
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement("SELECT question_id, correct, attempt_count, first_attempted,"
+                    + " last_attempted FROM question_attempt_summaries WHERE user_id = ? ORDER BY last_attempted ASC");
+            pst.setLong(1, userId);
+
+            ResultSet results = pst.executeQuery();
+
+            // Keep the same most-recently-attempted-last ordering that getQuestionAttempts gives:
+            Map<String, Map<String, QuestionAttemptSummary>> mapOfSummariesByPage = Maps.newLinkedHashMap();
+            while (results.next()) {
+                String questionId = results.getString("question_id");
+                QuestionAttemptSummary summary = new QuestionAttemptSummary(questionId, results.getBoolean("correct"),
+                        results.getInt("attempt_count"), results.getTimestamp("first_attempted"),
+                        results.getTimestamp("last_attempted"));
+
+                mapOfSummariesByPage.computeIfAbsent(extractPageIdFromQuestionId(questionId),
+                        k -> Maps.newLinkedHashMap()).put(questionId, summary);
+            }
+
+            return mapOfSummariesByPage;
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
+    @Override
+    public Map<Long, Map<String, QuestionAttemptSummary>> getQuestionAttemptSummariesByUsersAndQuestionParts(
+            final List<Long> userIds, final Collection<String> questionPartIds) throws SegueDatabaseException {
+        Map<Long, Map<String, QuestionAttemptSummary>> mapToReturn = Maps.newHashMap();
+        for (Long userId : userIds) {
+            mapToReturn.put(userId, Maps.newHashMap());
+        }
+        if (userIds.isEmpty() || questionPartIds.isEmpty()) {
+            return mapToReturn;
+        }
+
+        try (Connection conn = database.getDatabaseConnection()) {
+            PreparedStatement pst = conn.prepareStatement("SELECT user_id, question_id, correct, attempt_count,"
+                    + " first_attempted, last_attempted FROM question_attempt_summaries"
+                    + " WHERE user_id = ANY(?) AND question_id = ANY(?)");
+            pst.setArray(1, conn.createArrayOf("bigint", userIds.toArray()));
+            pst.setArray(2, conn.createArrayOf("text", questionPartIds.toArray()));
+
+            try (ResultSet results = pst.executeQuery()) {
+                while (results.next()) {
+                    String questionId = results.getString("question_id");
+                    QuestionAttemptSummary summary = new QuestionAttemptSummary(questionId,
+                            results.getBoolean("correct"), results.getInt("attempt_count"),
+                            results.getTimestamp("first_attempted"), results.getTimestamp("last_attempted"));
+                    mapToReturn.get(results.getLong("user_id")).put(questionId, summary);
+                }
+            }
+
+            return mapToReturn;
+        } catch (SQLException e) {
+            throw new SegueDatabaseException("Postgres exception", e);
+        }
+    }
+
     @Override
     public Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>>
             getQuestionAttemptsByUsersAndQuestionPrefix(final List<Long> userIds, final List<String> questionPageIds)
@@ -248,52 +323,18 @@ public class PgQuestionAttempts implements IQuestionAttemptManager {
             return Maps.newHashMap();
         }
         
-        PreparedStatement pst;
         try (Connection conn = database.getDatabaseConnection()) {
-            StringBuilder query = new StringBuilder();
-            query.append("SELECT id, user_id, question_id, correct, timestamp FROM question_attempts WHERE");
-            
-            // add all of the user ids we are interested in.
-            if (!userIds.isEmpty()) {
-                StringBuilder inParams = new StringBuilder();
-                inParams.append("?");
-                for (int i = 1; i < userIds.size(); i++) {
-                    inParams.append(",?");
-                }
-    
-                query.append(String.format(" user_id IN (%s)", inParams.toString()));
-            }
+            PreparedStatement pst = conn.prepareStatement("SELECT id, user_id, question_id, correct, timestamp"
+                    + " FROM question_attempts WHERE user_id = ANY(?) AND page_id = ANY(?) ORDER BY \"timestamp\" ASC");
+            pst.setArray(1, conn.createArrayOf("bigint", userIds.toArray()));
+            pst.setArray(2, conn.createArrayOf("text", questionPageIds.toArray()));
 
-            // add all of the question page ids we are interested in
-            StringBuilder questionIdsSB = new StringBuilder();
-            if (!questionPageIds.isEmpty()) {
-                questionIdsSB.append("^(");
-                questionIdsSB.append(questionPageIds.get(0));
-                for (int i = 1; i < questionPageIds.size(); i++) {
-                    questionIdsSB.append("|").append(questionPageIds.get(i));
-                }
-                
-                questionIdsSB.append(")");
-                
-                query.append(" AND question_id ~ ?");
-            }   
-            
-            query.append(" ORDER BY \"timestamp\" ASC");
-            
-            pst = conn.prepareStatement(query.toString());
-            
             Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> mapToReturn
                 = Maps.newHashMap();
-           
-            int index = 1;
-            for (int i = 0; i < userIds.size(); i++) {
-                pst.setLong(index++, userIds.get(i));
-                mapToReturn.put(userIds.get(i),
-                        new HashMap<>());
+            for (Long userId : userIds) {
+                mapToReturn.put(userId, new HashMap<>());
             }
 
-            pst.setString(index++, questionIdsSB.toString());
-            
             ResultSet results = pst.executeQuery();
             while (results.next()) {
                 LightweightQuestionValidationResponse partialQuestionAttempt = new QuestionValidationResponse();
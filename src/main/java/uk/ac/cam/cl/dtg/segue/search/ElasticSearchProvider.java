@@ -19,7 +19,6 @@ import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
 import com.google.api.client.util.Lists;
 import com.google.common.base.CaseFormat;
 import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import org.apache.commons.lang3.Validate;
@@ -52,8 +51,11 @@ import org.elasticsearch.transport.client.PreBuiltTransportClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
 import uk.ac.cam.cl.dtg.segue.dao.content.IContentManager;
 import uk.ac.cam.cl.dtg.segue.dto.ResultsWrapper;
+import uk.ac.cam.cl.dtg.util.PropertiesLoader;
+import uk.ac.cam.cl.dtg.util.WeighedCacheBuilder;
 
 import javax.annotation.Nullable;
 import javax.validation.constraints.NotNull;
@@ -99,11 +101,14 @@ public class ElasticSearchProvider implements ISearchProvider {
      *
      * @param searchClient
      *            - the client that the provider should be using.
+     * @param globalProperties
+     *            - to configure the settings cache from.
      */
     @Inject
-    public ElasticSearchProvider(final Client searchClient) {
+    public ElasticSearchProvider(final Client searchClient, final PropertiesLoader globalProperties) {
         this.client = searchClient;
-        this.settingsCache = CacheBuilder.newBuilder().softValues().expireAfterWrite(10, TimeUnit.MINUTES).build();
+        this.settingsCache = WeighedCacheBuilder.named("search_settings").maximumMegabytes(1)
+                .expireAfterWrite(10, TimeUnit.MINUTES).configuredFrom(globalProperties).build();
     }
 
     @Override
@@ -115,7 +120,8 @@ public class ElasticSearchProvider implements ISearchProvider {
     public ResultsWrapper<String> matchSearch(final String indexBase, final String indexType,
                                               final List<IContentManager.BooleanSearchClause> fieldsToMatch, final int startIndex,
                                               final int limit, final Map<String, Constants.SortOrder> sortInstructions,
-                                              @Nullable final Map<String, AbstractFilterInstruction> filterInstructions) throws SegueSearchException {
+                                              @Nullable final Map<String, AbstractFilterInstruction> filterInstructions,
+                                              @Nullable final FieldProjection projection) throws SegueSearchException {
         // build up the query from the fieldsToMatch map
         QueryBuilder query = generateBoolMatchQuery(fieldsToMatch);
 
@@ -123,7 +129,7 @@ public class ElasticSearchProvider implements ISearchProvider {
             query = QueryBuilders.boolQuery().must(query).filter(generateFilterQuery(filterInstructions));
         }
 
-        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, sortInstructions);
+        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, sortInstructions, projection);
     }
 
     @Override
@@ -156,7 +162,8 @@ public class ElasticSearchProvider implements ISearchProvider {
     public ResultsWrapper<String> nestedMatchSearch(
             final String indexBase, final String indexType, final Integer startIndex, final Integer limit,
             final String searchString, @NotNull final BooleanMatchInstruction matchInstruction,
-            @Nullable final Map<String, AbstractFilterInstruction> filterInstructions
+            @Nullable final Map<String, AbstractFilterInstruction> filterInstructions,
+            @Nullable final FieldProjection projection
     ) throws SegueSearchException {
         if (null == indexBase || null == indexType || null == searchString) {
             log.warn("A required field is missing. Unable to execute search.");
@@ -168,7 +175,7 @@ public class ElasticSearchProvider implements ISearchProvider {
             query.filter(generateFilterQuery(filterInstructions));
         }
         query.minimumShouldMatch(1);
-        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit);
+        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, null, projection);
     }
 
     @Override
@@ -480,7 +487,7 @@ public class ElasticSearchProvider implements ISearchProvider {
     private ResultsWrapper<String> executeBasicQuery(final String indexBase, final String indexType,
                                                      final QueryBuilder query, final int startIndex, final int limit)
             throws SegueSearchException {
-        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, null);
+        return this.executeBasicQuery(indexBase, indexType, query, startIndex, limit, null, null);
     }
 
     /**
@@ -499,11 +506,16 @@ public class ElasticSearchProvider implements ISearchProvider {
      *            - start index for results
      * @param limit
      *            - the maximum number of results to return -1 will attempt to return all results.
+     * @param sortInstructions
+     *            - the map of how to sort each field of interest, or null for the default order.
+     * @param projection
+     *            - the fields of each result to return, or null to return whole documents.
      * @return list of the search results
      */
     private ResultsWrapper<String> executeBasicQuery(final String indexBase, final String indexType,
                                                      final QueryBuilder query, final int startIndex, final int limit,
-                                                     @Nullable final Map<String, Constants.SortOrder> sortInstructions) throws SegueSearchException {
+                                                     @Nullable final Map<String, Constants.SortOrder> sortInstructions,
+                                                     @Nullable final FieldProjection projection) throws SegueSearchException {
         int newLimit = limit;
         String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
         boolean isUnlimitedSearch = limit == -1;
@@ -518,6 +530,9 @@ public class ElasticSearchProvider implements ISearchProvider {
         if (sortInstructions != null) {
             this.addSortInstructions(configuredSearchRequestBuilder, sortInstructions);
         }
+        if (projection != null) {
+            configuredSearchRequestBuilder.setFetchSource(projection.getIncludes(), projection.getExcludes());
+        }
 
         log.debug("Building Query: " + configuredSearchRequestBuilder);
         ResultsWrapper<String> results = executeQuery(configuredSearchRequestBuilder);
@@ -533,6 +548,9 @@ public class ElasticSearchProvider implements ISearchProvider {
 
             configuredSearchRequestBuilder = client.prepareSearch(typedIndex).setTypes(indexType).setQuery(query)
                     .setSize(results.getTotalResults().intValue()).setFrom(startIndex);
+            if (projection != null) {
+                configuredSearchRequestBuilder.setFetchSource(projection.getIncludes(), projection.getExcludes());
+            }
 
             results = executeQuery(configuredSearchRequestBuilder);
 
@@ -552,7 +570,10 @@ public class ElasticSearchProvider implements ISearchProvider {
     private ResultsWrapper<String> executeQuery(final SearchRequestBuilder configuredSearchRequestBuilder)
             throws SegueSearchException{
         try {
-            SearchResponse response = configuredSearchRequestBuilder.execute().actionGet();
+            SearchResponse response;
+            try (RequestTimings.Timer searchTimer = RequestTimings.time(RequestTimings.Component.SEARCH)) {
+                response = configuredSearchRequestBuilder.execute().actionGet();
+            }
 
             List<SearchHit> hitAsList = Arrays.asList(response.getHits().getHits());
             List<String> resultList = new ArrayList<>();
@@ -653,7 +674,9 @@ public class ElasticSearchProvider implements ISearchProvider {
     public GetResponse getById(final String indexBase, final String indexType, final String id) {
         String typedIndex = ElasticSearchProvider.produceTypedIndexName(indexBase, indexType);
         GetRequestBuilder grb = client.prepareGet(typedIndex, indexType, id).setFetchSource(true);
-        return grb.execute().actionGet();
+        try (RequestTimings.Timer searchTimer = RequestTimings.time(RequestTimings.Component.SEARCH)) {
+            return grb.execute().actionGet();
+        }
     }
 
     public SearchResponse getAllByType(final String indexBase, final String indexType) {
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.search;
+
+/**
+ * FieldProjection.
+ * A class to help encapsulate which fields of each matching document a search should return.
+ *
+ * Searches which only need a few fields of each document, e.g. to list titles, can use this to avoid fetching and
+ * parsing whole documents.
+ */
+public class FieldProjection {
+    private final String[] includes;
+    private final String[] excludes;
+
+    /**
+     * @param includes
+     *            - the fields to return, or null to return all fields.
+     * @param excludes
+     *            - the fields not to return, or null to exclude none.
+     */
+    public FieldProjection(final String[] includes, final String[] excludes) {
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * @param fields
+     *            - the only fields to return.
+     * @return a projection returning only those fields.
+     */
+    public static FieldProjection including(final String... fields) {
+        return new FieldProjection(fields, null);
+    }
+
+    /**
+     * @return the fields to return, or null to return all fields.
+     */
+    public String[] getIncludes() {
+        return includes;
+    }
+
+    /**
+     * @return the fields not to return, or null to exclude none.
+     */
+    public String[] getExcludes() {
+        return excludes;
+    }
+}
@@ -67,13 +67,16 @@ public interface ISearchProvider {
      *            - the map of how to sort each field of interest.
      * @param filterInstructions
      *            - the map of how to sort each field of interest.
+     * @param projection
+     *            - the fields of each result to return, or null to return whole documents.
      * @return Results
      */
     ResultsWrapper<String> matchSearch(
             final String indexBase, final String indexType,
             final List<IContentManager.BooleanSearchClause> fieldsToMatch, final int startIndex, final int limit,
             final Map<String, Constants.SortOrder> sortInstructions,
-            @Nullable final Map<String, AbstractFilterInstruction> filterInstructions
+            @Nullable final Map<String, AbstractFilterInstruction> filterInstructions,
+            @Nullable final FieldProjection projection
     ) throws SegueSearchException;
 
     /**
@@ -106,10 +109,32 @@ public interface ISearchProvider {
             final String... fields
     ) throws SegueSearchException;
 
+    /**
+     * Executes a search built from nested match instructions.
+     *
+     * @param indexBase
+     *            - the base string for the name of the index
+     * @param indexType
+     *            - the name of the type of document being searched for
+     * @param startIndex
+     *            - e.g. 0 for the first set of results
+     * @param limit
+     *            - the maximum number of results to return -1 will attempt to return all results.
+     * @param searchString
+     *            - the string being searched for
+     * @param matchInstruction
+     *            - the instructions describing which documents match
+     * @param filterInstructions
+     *            - post search filter instructions e.g. remove content of a certain type.
+     * @param projection
+     *            - the fields of each result to return, or null to return whole documents.
+     * @return results
+     */
     public ResultsWrapper<String> nestedMatchSearch(
             final String indexBase, final String indexType, final Integer startIndex, final Integer limit,
             final String searchString, @NotNull final BooleanMatchInstruction matchInstruction,
-            @Nullable final Map<String, AbstractFilterInstruction> filterInstructions
+            @Nullable final Map<String, AbstractFilterInstruction> filterInstructions,
+            @Nullable final FieldProjection projection
     ) throws SegueSearchException;
 
     /**
@@ -15,6 +15,7 @@
  */
 package uk.ac.cam.cl.dtg.util;
 
+import com.google.common.collect.Maps;
 import org.apache.commons.lang3.Validate;
 import uk.ac.cam.cl.dtg.segue.comm.EmailAttachment;
 
@@ -32,6 +33,7 @@ import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 /**
@@ -84,11 +86,39 @@ public class Mailer {
                                   @Nullable final String overrideEnvelopeFrom, @Nullable final InternetAddress replyTo,
                                   final String subject, final String contents)
 			throws MessagingException {
+        Transport.send(this.createPlainTextMail(recipient, fromAddress, overrideEnvelopeFrom, replyTo, subject,
+                contents));
+    }
+
+    /**
+     * Create a plain text message ready to be sent, see sendPlainTextMail.
+     *
+     * @param recipient
+     *            - string array of recipients that the message should be sent to
+     * @param fromAddress
+     *            - the e-mail address that should be used as the sending address
+     * @param overrideEnvelopeFrom
+     *            - (nullable) the e-mail address that should be used as the envelope from address, useful for routing
+     * @param replyTo
+     *            - (nullable) the e-mail address that should be used as the reply-to address
+     * @param subject
+     *            - The message subject
+     * @param contents
+     *            - The message body
+     * @return the message.
+     * @throws MessagingException
+     *             - if the message cannot be created.
+     */
+    public Message createPlainTextMail(final String[] recipient, final InternetAddress fromAddress,
+                                       @Nullable final String overrideEnvelopeFrom,
+                                       @Nullable final InternetAddress replyTo, final String subject,
+                                       final String contents)
+            throws MessagingException {
         Message msg = this.setupMessage(recipient, fromAddress, overrideEnvelopeFrom, replyTo, subject);
-        
+
         msg.setText(contents);
 
-        Transport.send(msg);
+        return msg;
     }
 
     /**
@@ -121,7 +151,39 @@ public class Mailer {
                                   final String subject, final String plainText, final String html,
                                   final List<EmailAttachment> attachments)
 			throws MessagingException, AddressException {
+        Transport.send(this.createMultiPartMail(recipient, fromAddress, overrideEnvelopeFrom, replyTo, subject,
+                plainText, html, attachments));
+    }
 
+    /**
+     * Create a multipart message ready to be sent, see sendMultiPartMail.
+     *
+     * @param recipient
+     *            - string array of recipients that the message should be sent to
+     * @param fromAddress
+     *            - the e-mail address that should be used as the sending address
+     * @param overrideEnvelopeFrom
+     *            - (nullable) the e-mail address that should be used as the envelope from address, useful for routing
+     * @param replyTo
+     *            - (nullable) the e-mail address that should be used as the reply-to address
+     * @param subject
+     *            - The message subject
+     * @param plainText
+     *            - The message body
+     * @param html
+     *            - The message body in html
+     * @param attachments
+     *            - (nullable) list of attachment objects
+     * @return the message.
+     * @throws MessagingException
+     *             - if the message cannot be created.
+     */
+    public Message createMultiPartMail(final String[] recipient, final InternetAddress fromAddress,
+                                       @Nullable final String overrideEnvelopeFrom,
+                                       @Nullable final InternetAddress replyTo, final String subject,
+                                       final String plainText, final String html,
+                                       @Nullable final List<EmailAttachment> attachments)
+            throws MessagingException {
     	Message msg = this.setupMessage(recipient, fromAddress, overrideEnvelopeFrom, replyTo, subject);
         
         // Create the text part
@@ -150,8 +212,57 @@ public class Mailer {
 		}
 
         msg.setContent(multiPart);
-        
-        Transport.send(msg);
+
+        return msg;
+    }
+
+    /**
+     * Send several messages over a single connection to the SMTP server, rather than connecting once per message.
+     *
+     * The messages must all have been created by this mailer. If the connection is lost part-way through, it is
+     * reopened for the remaining messages.
+     *
+     * @param messages
+     *            - the messages to send.
+     * @return the messages which could not be sent, mapped to the reason why.
+     */
+    public Map<Message, MessagingException> sendMails(final List<Message> messages) {
+        Map<Message, MessagingException> failures = Maps.newIdentityHashMap();
+        if (messages.isEmpty()) {
+            return failures;
+        }
+
+        Transport transport = null;
+        int nextMessage = 0;
+        try {
+            transport = messages.get(0).getSession().getTransport("smtp");
+            for (; nextMessage < messages.size(); nextMessage++) {
+                Message msg = messages.get(nextMessage);
+                if (!transport.isConnected()) {
+                    transport.connect();
+                }
+                try {
+                    msg.saveChanges();
+                    transport.sendMessage(msg, msg.getAllRecipients());
+                } catch (MessagingException e) {
+                    failures.put(msg, e);
+                }
+            }
+        } catch (MessagingException e) {
+            // We could not connect, so none of the remaining messages can be sent:
+            for (Message msg : messages.subList(nextMessage, messages.size())) {
+                failures.put(msg, e);
+            }
+        } finally {
+            if (null != transport) {
+                try {
+                    transport.close();
+                } catch (MessagingException e) {
+                    // The messages have already been accepted by the server by this point.
+                }
+            }
+        }
+        return failures;
     }
 
 	/**
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static uk.ac.cam.cl.dtg.segue.api.monitors.SegueMetrics.CACHE_METRICS_COLLECTOR;
+
+/**
+ * Builds in-memory caches which are bounded by the estimated size of their entries rather than left to the garbage
+ * collector, and which export their hit, miss, eviction and load time statistics as Prometheus metrics.
+ *
+ * The size of an entry is estimated from the length of its key and value when serialised as JSON. The maximum size
+ * and expiry time of each cache can be overridden in the properties file, using the keys given by
+ * {@link #maximumMegabytesProperty(String)} and {@link #expirySecondsProperty(String)}.
+ */
+public final class WeighedCacheBuilder {
+    private static final Logger log = LoggerFactory.getLogger(WeighedCacheBuilder.class);
+
+    private static final ObjectMapper SIZE_ESTIMATION_MAPPER = new ObjectMapper();
+    private static final long BYTES_PER_MEGABYTE = 1024 * 1024;
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    private static final int ARRAY_OVERHEAD_BYTES = 16;
+    static final int UNKNOWN_SIZE_BYTES = 1024;
+
+    private final String name;
+    private long maximumMegabytes = 64;
+    private long expirySeconds = TimeUnit.HOURS.toSeconds(1);
+    private boolean expireAfterAccess = false;
+    private PropertiesLoader properties;
+
+    /**
+     * @param name
+     *            - the name of the cache.
+     */
+    private WeighedCacheBuilder(final String name) {
+        this.name = name;
+    }
+
+    /**
+     * Start building a cache.
+     *
+     * @param name
+     *            - the name of the cache, used to label its metrics and in its property keys, e.g. "content".
+     * @return a builder for the cache.
+     */
+    public static WeighedCacheBuilder named(final String name) {
+        return new WeighedCacheBuilder(name);
+    }
+
+    /**
+     * @param defaultMaximumMegabytes
+     *            - the estimated size of all entries above which the least recently used are evicted, unless
+     *            configured otherwise.
+     * @return this builder.
+     */
+    public WeighedCacheBuilder maximumMegabytes(final long defaultMaximumMegabytes) {
+        this.maximumMegabytes = defaultMaximumMegabytes;
+        return this;
+    }
+
+    /**
+     * Expire entries once they have not been read or written for a time.
+     *
+     * @param defaultDuration
+     *            - the time, unless configured otherwise.
+     * @param unit
+     *            - the unit of the duration.
+     * @return this builder.
+     */
+    public WeighedCacheBuilder expireAfterAccess(final long defaultDuration, final TimeUnit unit) {
+        this.expirySeconds = unit.toSeconds(defaultDuration);
+        this.expireAfterAccess = true;
+        return this;
+    }
+
+    /**
+     * Expire entries once they have not been written for a time.
+     *
+     * @param defaultDuration
+     *            - the time, unless configured otherwise.
+     * @param unit
+     *            - the unit of the duration.
+     * @return this builder.
+     */
+    public WeighedCacheBuilder expireAfterWrite(final long defaultDuration, final TimeUnit unit) {
+        this.expirySeconds = unit.toSeconds(defaultDuration);
+        this.expireAfterAccess = false;
+        return this;
+    }
+
+    /**
+     * @param properties
+     *            - to read any configured size or expiry time of the cache from, or null to use the defaults.
+     * @return this builder.
+     */
+    public WeighedCacheBuilder configuredFrom(@Nullable final PropertiesLoader properties) {
+        this.properties = properties;
+        return this;
+    }
+
+    /**
+     * Build the cache and register it for metrics collection, replacing any cache previously registered by this name.
+     *
+     * @param <K>
+     *            - the type of keys.
+     * @param <V>
+     *            - the type of values.
+     * @return the cache.
+     */
+    public <K, V> Cache<K, V> build() {
+        long configuredMegabytes = getConfiguredValue(maximumMegabytesProperty(name), maximumMegabytes);
+        long configuredExpirySeconds = getConfiguredValue(expirySecondsProperty(name), expirySeconds);
+
+        CacheBuilder<K, V> builder = CacheBuilder.newBuilder()
+                .maximumWeight(configuredMegabytes * BYTES_PER_MEGABYTE)
+                .recordStats()
+                .<K, V>weigher(WeighedCacheBuilder::estimateSize);
+        if (expireAfterAccess) {
+            builder.expireAfterAccess(configuredExpirySeconds, TimeUnit.SECONDS);
+        } else {
+            builder.expireAfterWrite(configuredExpirySeconds, TimeUnit.SECONDS);
+        }
+        Cache<K, V> cache = builder.build();
+
+        CACHE_METRICS_COLLECTOR.addCache(name, cache);
+        log.info(String.format("Created cache '%s' holding up to %dMB for %d seconds.", name, configuredMegabytes,
+                configuredExpirySeconds));
+        return cache;
+    }
+
+    /**
+     * @param cacheName
+     *            - the name of a cache.
+     * @return the property which sets the maximum estimated size of the cache in megabytes.
+     */
+    public static String maximumMegabytesProperty(final String cacheName) {
+        return "CACHE_" + cacheName.toUpperCase(Locale.ROOT) + "_MAX_MEGABYTES";
+    }
+
+    /**
+     * @param cacheName
+     *            - the name of a cache.
+     * @return the property which sets the time in seconds after which entries in the cache expire.
+     */
+    public static String expirySecondsProperty(final String cacheName) {
+        return "CACHE_" + cacheName.toUpperCase(Locale.ROOT) + "_EXPIRY_SECONDS";
+    }
+
+    /**
+     * Estimate the memory used by a cache entry.
+     *
+     * @param key
+     *            - of the entry.
+     * @param value
+     *            - of the entry.
+     * @return the estimated size in bytes.
+     */
+    static int estimateSize(final Object key, final Object value) {
+        long size = estimateSize(key) + estimateSize(value);
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param object
+     *            - a key or value.
+     * @return the estimated size of the object in bytes.
+     */
+    private static long estimateSize(final Object object) {
+        if (object instanceof String) {
+            // Java strings hold (at most) two bytes per character:
+            return STRING_OVERHEAD_BYTES + 2L * ((String) object).length();
+        }
+        if (object instanceof byte[]) {
+            return ARRAY_OVERHEAD_BYTES + ((byte[]) object).length;
+        }
+        try {
+            CountingOutputStream counter = new CountingOutputStream(ByteStreams.nullOutputStream());
+            SIZE_ESTIMATION_MAPPER.writeValue(counter, object);
+            return counter.getCount();
+        } catch (IOException | RuntimeException e) {
+            log.debug("Unable to estimate size of cached " + object.getClass().getSimpleName(), e);
+            return UNKNOWN_SIZE_BYTES;
+        }
+    }
+
+    /**
+     * @param property
+     *            - the property to read.
+     * @param defaultValue
+     *            - the value to use if the property is not set or is not a number.
+     * @return the configured value.
+     */
+    private long getConfiguredValue(final String property, final long defaultValue) {
+        if (null == properties) {
+            return defaultValue;
+        }
+        String value = properties.getProperty(property);
+        if (null == value || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.error(String.format("Invalid value '%s' for property %s, using %d instead.", value, property,
+                    defaultValue));
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.util.locations;
+
+import com.google.common.net.InetAddresses;
+import com.opencsv.CSVReader;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Geocoder which looks ip addresses up in a local file of ip address ranges, so that no address leaves the server.
+ *
+ * The file is memory mapped rather than read into the heap, and each look up is a binary search of its ranges. Only
+ * IPv4 addresses are supported. The file is big-endian and laid out as:
+ *
+ * <pre>
+ *   int     magic number, 0x49504C31 ("IPL1")
+ *   int     number of ranges
+ *   ranges, sorted by first address and not overlapping, each of:
+ *     int     first address in the range, as an unsigned integer
+ *     int     last address in the range, as an unsigned integer
+ *     double  latitude, or NaN if unknown
+ *     double  longitude, or NaN if unknown
+ *     int     offset of the country in the strings, or -1 if unknown
+ *     int     offset of the town in the strings, or -1 if unknown
+ *     int     offset of the postcode in the strings, or -1 if unknown
+ *   strings, each an unsigned short length followed by that many bytes of UTF-8
+ * </pre>
+ *
+ * A file can be built from a CSV of ranges with {@link #writeDatabase(Reader, OutputStream)}.
+ */
+public class LocalIPRangeLocationResolver implements IPLocationResolver {
+    static final int MAGIC_NUMBER = 0x49504C31;
+    private static final int HEADER_BYTES = 8;
+    private static final int RANGE_BYTES = 36;
+    private static final int NO_STRING = -1;
+
+    private final ByteBuffer database;
+    private final int rangeCount;
+    private final int stringsOffset;
+
+    /**
+     * @param databaseFile
+     *            - the ip address range file to map.
+     * @throws IOException
+     *             - if the file cannot be read or is not an ip address range file.
+     */
+    public LocalIPRangeLocationResolver(final Path databaseFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(databaseFile, StandardOpenOption.READ)) {
+            // The mapping remains valid after the channel is closed:
+            this.database = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (database.capacity() < HEADER_BYTES || database.getInt(0) != MAGIC_NUMBER) {
+            throw new IOException("Not an ip address range file: " + databaseFile);
+        }
+        this.rangeCount = database.getInt(4);
+        if (rangeCount < 0 || HEADER_BYTES + (long) rangeCount * RANGE_BYTES > database.capacity()) {
+            throw new IOException("Truncated ip address range file: " + databaseFile);
+        }
+        this.stringsOffset = HEADER_BYTES + rangeCount * RANGE_BYTES;
+    }
+
+    @Override
+    public Location resolveAllLocationInformation(final String ipAddress) throws LocationServerException {
+        int range = findRange(ipAddress);
+        int rangeOffset = HEADER_BYTES + range * RANGE_BYTES;
+        double latitude = database.getDouble(rangeOffset + 8);
+        double longitude = database.getDouble(rangeOffset + 16);
+
+        Address address = new Address(null, null, readString(database.getInt(rangeOffset + 28)), null,
+                readString(database.getInt(rangeOffset + 32)), readString(database.getInt(rangeOffset + 24)));
+        if (Double.isNaN(latitude) || Double.isNaN(longitude)) {
+            return new Location(address, null, null);
+        }
+        return new Location(address, latitude, longitude);
+    }
+
+    @Override
+    public Location resolveCountryOnly(final String ipAddress) throws LocationServerException {
+        int rangeOffset = HEADER_BYTES + findRange(ipAddress) * RANGE_BYTES;
+        return new Location(new Address(null, null, null, null, null,
+                readString(database.getInt(rangeOffset + 24))), null, null);
+    }
+
+    /**
+     * @param ipAddress
+     *            - the IPv4 address to find.
+     * @return the index of the range containing the address.
+     * @throws LocationServerException
+     *             - if the address is not a valid IPv4 address or is in no range.
+     */
+    private int findRange(final String ipAddress) throws LocationServerException {
+        int address = parseIPv4Address(ipAddress);
+
+        // Find the last range starting at or before the address:
+        int low = 0;
+        int high = rangeCount - 1;
+        int candidate = -1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (Integer.compareUnsigned(firstAddress(middle), address) <= 0) {
+                candidate = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+
+        if (candidate < 0 || Integer.compareUnsigned(address, lastAddress(candidate)) > 0) {
+            throw new LocationServerException("No location is known for ip address: " + ipAddress);
+        }
+        return candidate;
+    }
+
+    /**
+     * @param range
+     *            - the index of the range.
+     * @return the first address in the range.
+     */
+    private int firstAddress(final int range) {
+        return database.getInt(HEADER_BYTES + range * RANGE_BYTES);
+    }
+
+    /**
+     * @param range
+     *            - the index of the range.
+     * @return the last address in the range.
+     */
+    private int lastAddress(final int range) {
+        return database.getInt(HEADER_BYTES + range * RANGE_BYTES + 4);
+    }
+
+    /**
+     * @param offset
+     *            - the offset of the string in the strings, or -1.
+     * @return the string, or null if the offset is -1.
+     */
+    private String readString(final int offset) {
+        if (NO_STRING == offset) {
+            return null;
+        }
+        // Read from a duplicate, as positioning the shared buffer is not thread safe:
+        ByteBuffer buffer = database.duplicate();
+        buffer.position(stringsOffset + offset);
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param ipAddress
+     *            - the address, in dotted decimal or as an IPv4-mapped IPv6 address.
+     * @return the address as an unsigned integer.
+     * @throws LocationServerException
+     *             - if the address is not a valid IPv4 address.
+     */
+    private static int parseIPv4Address(final String ipAddress) throws LocationServerException {
+        // InetAddresses never falls back to a DNS look up, unlike InetAddress.getByName:
+        if (null == ipAddress || !InetAddresses.isInetAddress(ipAddress.trim())) {
+            throw new LocationServerException("Not a valid ip address: " + ipAddress);
+        }
+        InetAddress address = InetAddresses.forString(ipAddress.trim());
+        if (!(address instanceof Inet4Address)) {
+            throw new LocationServerException("Only IPv4 addresses can be resolved locally: " + ipAddress);
+        }
+        return ByteBuffer.wrap(address.getAddress()).getInt();
+    }
+
+    /**
+     * Build an ip address range file from a CSV file.
+     *
+     * Each row should have the columns: first address, last address, country, town, postcode, latitude and longitude,
+     * where the addresses are in dotted decimal and any column but the addresses may be empty. A header row is skipped.
+     *
+     * @param csv
+     *            - the CSV file to read the ranges from.
+     * @param out
+     *            - to write the ip address range file to.
+     * @throws IOException
+     *             - if the CSV file cannot be read or has overlapping ranges, or the output cannot be written.
+     */
+    public static void writeDatabase(final Reader csv, final OutputStream out) throws IOException {
+        List<CsvRange> ranges = new ArrayList<>();
+        try (CSVReader reader = new CSVReader(csv)) {
+            String[] row;
+            while ((row = reader.readNext()) != null) {
+                if (row.length < 7 || !InetAddresses.isInetAddress(row[0].trim())) {
+                    continue;
+                }
+                ranges.add(new CsvRange(row));
+            }
+        } catch (LocationServerException | NumberFormatException e) {
+            throw new IOException("Unable to read ip address ranges: " + e.getMessage(), e);
+        }
+        ranges.sort(Comparator.comparingLong(range -> range.firstAddress));
+
+        Map<String, Integer> stringOffsets = new HashMap<>();
+        ByteArrayOutputStream stringBytes = new ByteArrayOutputStream();
+        DataOutputStream strings = new DataOutputStream(stringBytes);
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC_NUMBER);
+        data.writeInt(ranges.size());
+
+        long previousLastAddress = -1;
+        for (CsvRange range : ranges) {
+            if (range.firstAddress > range.lastAddress || range.firstAddress <= previousLastAddress) {
+                throw new IOException("Ip address ranges must not be empty or overlap: " + range.row[0]);
+            }
+            previousLastAddress = range.lastAddress;
+
+            data.writeInt((int) range.firstAddress);
+            data.writeInt((int) range.lastAddress);
+            data.writeDouble(range.latitude);
+            data.writeDouble(range.longitude);
+            data.writeInt(addString(range.row[2], stringOffsets, strings));
+            data.writeInt(addString(range.row[3], stringOffsets, strings));
+            data.writeInt(addString(range.row[4], stringOffsets, strings));
+        }
+        data.write(stringBytes.toByteArray());
+        data.flush();
+    }
+
+    /**
+     * Build an ip address range file from a CSV file.
+     *
+     * @param csv
+     *            - the CSV file to read the ranges from.
+     * @param databaseFile
+     *            - the ip address range file to write.
+     * @throws IOException
+     *             - if the CSV file cannot be read or has overlapping ranges, or the output cannot be written.
+     * @see #writeDatabase(Reader, OutputStream)
+     */
+    public static void writeDatabase(final Reader csv, final Path databaseFile) throws IOException {
+        try (OutputStream out = Files.newOutputStream(databaseFile)) {
+            writeDatabase(csv, out);
+        }
+    }
+
+    /**
+     * @param value
+     *            - the string to add, which may be blank.
+     * @param stringOffsets
+     *            - the offsets of the strings already added.
+     * @param strings
+     *            - the strings written so far.
+     * @return the offset of the string, or -1 if it is blank.
+     * @throws IOException
+     *             - if the string is too long.
+     */
+    private static int addString(final String value, final Map<String, Integer> stringOffsets,
+                                 final DataOutputStream strings) throws IOException {
+        if (StringUtils.isBlank(value)) {
+            return NO_STRING;
+        }
+        String trimmed = value.trim();
+        Integer offset = stringOffsets.get(trimmed);
+        if (null == offset) {
+            byte[] bytes = trimmed.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IOException("String too long for an ip address range file: " + trimmed);
+            }
+            offset = strings.size();
+            strings.writeShort(bytes.length);
+            strings.write(bytes);
+            stringOffsets.put(trimmed, offset);
+        }
+        return offset;
+    }
+
+    /**
+     * A range read from a CSV file, waiting to be sorted and written.
+     */
+    private static final class CsvRange {
+        private final String[] row;
+        private final long firstAddress;
+        private final long lastAddress;
+        private final double latitude;
+        private final double longitude;
+
+        /**
+         * @param row
+         *            - the CSV row describing the range.
+         * @throws LocationServerException
+         *             - if either address is not a valid IPv4 address.
+         */
+        private CsvRange(final String[] row) throws LocationServerException {
+            this.row = row;
+            this.firstAddress = Integer.toUnsignedLong(parseIPv4Address(row[0]));
+            this.lastAddress = Integer.toUnsignedLong(parseIPv4Address(row[1]));
+            this.latitude = StringUtils.isBlank(row[5]) ? Double.NaN : Double.parseDouble(row[5].trim());
+            this.longitude = StringUtils.isBlank(row[6]) ? Double.NaN : Double.parseDouble(row[6].trim());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+-- Table: public.anonymous_question_attempts
+
+-- DROP TABLE public.anonymous_question_attempts;
+
+-- Anonymous users' question attempts, one row per attempt, rather than one JSON document per user in
+-- temporary_user_store.temporary_app_data. The attempts are deleted along with their anonymous user.
+
+CREATE TABLE public.anonymous_question_attempts
+(
+    id bigserial NOT NULL,
+    anonymous_user_id character varying NOT NULL,
+    page_id text NOT NULL,
+    question_id text NOT NULL,
+    question_attempt jsonb NOT NULL,
+    "timestamp" timestamp with time zone NOT NULL DEFAULT now(),
+    CONSTRAINT anonymous_question_attempts_pkey PRIMARY KEY (id),
+    CONSTRAINT anonymous_question_attempts_user_fkey FOREIGN KEY (anonymous_user_id)
+        REFERENCES public.temporary_user_store (id) MATCH SIMPLE
+        ON DELETE CASCADE
+);
+
+ALTER TABLE public.anonymous_question_attempts
+    OWNER to rutherford;
+
+CREATE INDEX anonymous_question_attempts_by_user
+    ON public.anonymous_question_attempts USING btree (anonymous_user_id, id);
+
+-- Move any attempts still held in the old JSON documents into the table. Run this whole script before deploying the
+-- API version which uses the table, then re-run this part once that version is live to move any attempts recorded by
+-- the previous version in the meantime.
+
+BEGIN;
+
+INSERT INTO public.anonymous_question_attempts(anonymous_user_id, page_id, question_id, question_attempt, "timestamp")
+SELECT users.id, pages.key, questions.key, attempts.value, users.last_updated
+FROM public.temporary_user_store users,
+     jsonb_each(users.temporary_app_data->'questionAttempts') pages,
+     jsonb_each(pages.value) questions,
+     jsonb_array_elements(questions.value) WITH ORDINALITY attempts(value, position)
+WHERE jsonb_typeof(users.temporary_app_data->'questionAttempts') = 'object'
+ORDER BY users.id, pages.key, questions.key, attempts.position;
+
+UPDATE public.temporary_user_store
+SET temporary_app_data = temporary_app_data - 'questionAttempts'
+WHERE temporary_app_data ? 'questionAttempts';
+
+COMMIT;
@@ -0,0 +1,24 @@
+-- Table: public.email_outbox
+
+-- DROP TABLE public.email_outbox;
+
+CREATE TABLE public.email_outbox
+(
+    id bigserial NOT NULL,
+    priority integer NOT NULL,
+    email_type text NOT NULL,
+    message jsonb NOT NULL,
+    created timestamp without time zone NOT NULL DEFAULT now(),
+    attempts integer NOT NULL DEFAULT 0,
+    next_attempt_at timestamp without time zone NOT NULL DEFAULT now(),
+    lease_expires_at timestamp without time zone,
+    claimed_by text,
+    last_error text,
+    failed boolean NOT NULL DEFAULT false,
+    CONSTRAINT email_outbox_pkey PRIMARY KEY (id)
+);
+
+ALTER TABLE public.email_outbox
+    OWNER to rutherford;
+
+CREATE INDEX email_outbox_pending ON public.email_outbox USING btree (priority, id) WHERE (NOT failed);
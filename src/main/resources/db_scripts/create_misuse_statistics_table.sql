@@ -0,0 +1,17 @@
+-- Table: public.misuse_statistics
+
+-- DROP TABLE public.misuse_statistics;
+
+CREATE TABLE public.misuse_statistics
+(
+    agent_identifier text COLLATE pg_catalog."default" NOT NULL,
+    event_type text COLLATE pg_catalog."default" NOT NULL,
+    window_start timestamp with time zone NOT NULL DEFAULT now(),
+    event_count integer NOT NULL DEFAULT 0,
+    CONSTRAINT misuse_statistics_pkey PRIMARY KEY (agent_identifier, event_type)
+);
+
+ALTER TABLE public.misuse_statistics
+    OWNER to rutherford;
+
+CREATE INDEX misuse_statistics_window_start ON public.misuse_statistics USING btree (window_start);
@@ -0,0 +1,39 @@
+-- Table: public.question_attempt_summaries
+
+-- DROP TABLE public.question_attempt_summaries;
+
+CREATE TABLE public.question_attempt_summaries
+(
+    user_id integer NOT NULL,
+    question_id text COLLATE pg_catalog."default" NOT NULL,
+    correct boolean NOT NULL,
+    attempt_count integer NOT NULL,
+    first_attempted timestamp without time zone,
+    last_attempted timestamp without time zone,
+    CONSTRAINT question_attempt_summaries_pkey PRIMARY KEY (user_id, question_id),
+    CONSTRAINT user_id_question_attempt_summaries_fkey FOREIGN KEY (user_id)
+        REFERENCES public.users (id) MATCH SIMPLE
+        ON DELETE CASCADE
+);
+
+ALTER TABLE public.question_attempt_summaries
+    OWNER to rutherford;
+
+-- Backfill from the existing attempts. New attempts keep the summaries up to date as they are recorded; the lock
+-- stops any being recorded part-way through the backfill.
+
+BEGIN;
+
+LOCK TABLE public.question_attempts IN SHARE MODE;
+
+INSERT INTO public.question_attempt_summaries(user_id, question_id, correct, attempt_count, first_attempted, last_attempted)
+SELECT user_id, question_id, COALESCE(bool_or(correct), false), count(*), min("timestamp"), max("timestamp")
+FROM public.question_attempts
+GROUP BY user_id, question_id
+ON CONFLICT (user_id, question_id) DO UPDATE
+SET correct = excluded.correct,
+    attempt_count = excluded.attempt_count,
+    first_attempted = excluded.first_attempted,
+    last_attempted = excluded.last_attempted;
+
+COMMIT;
@@ -0,0 +1,50 @@
+-- Table: public.statistics_snapshots
+
+-- DROP TABLE public.statistics_snapshots;
+
+-- Snapshots of statistics which are too expensive to compute on demand, refreshed periodically by the
+-- scheduled/general-statistics-refresh.sql job. high_water_mark is the id of the last logged event counted into
+-- logged_event_counts.
+
+CREATE TABLE public.statistics_snapshots
+(
+    name text NOT NULL,
+    snapshot jsonb,
+    high_water_mark bigint NOT NULL DEFAULT 0,
+    refreshed timestamp with time zone,
+    CONSTRAINT statistics_snapshots_pkey PRIMARY KEY (name)
+);
+
+ALTER TABLE public.statistics_snapshots
+    OWNER to rutherford;
+
+-- Table: public.logged_event_counts
+
+-- DROP TABLE public.logged_event_counts;
+
+CREATE TABLE public.logged_event_counts
+(
+    event_type text NOT NULL,
+    count bigint NOT NULL,
+    CONSTRAINT logged_event_counts_pkey PRIMARY KEY (event_type)
+);
+
+ALTER TABLE public.logged_event_counts
+    OWNER to rutherford;
+
+-- Count the existing log events once here, so that the scheduled refresh only ever counts new ones. The snapshot
+-- itself is computed by the first run of the scheduled refresh; until then the API computes statistics on demand.
+
+BEGIN;
+
+INSERT INTO public.statistics_snapshots(name, high_water_mark)
+SELECT 'general', COALESCE(max(id), 0) FROM public.logged_events;
+
+INSERT INTO public.logged_event_counts(event_type, count)
+SELECT event_type, count(1)
+FROM public.logged_events
+WHERE event_type IS NOT NULL
+  AND id <= (SELECT high_water_mark FROM public.statistics_snapshots WHERE name = 'general')
+GROUP BY event_type;
+
+COMMIT;
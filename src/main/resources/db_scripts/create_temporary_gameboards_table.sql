@@ -0,0 +1,16 @@
+-- Table: public.temporary_gameboards
+
+-- DROP TABLE public.temporary_gameboards;
+
+CREATE UNLOGGED TABLE public.temporary_gameboards
+(
+    id character varying COLLATE pg_catalog."default" NOT NULL,
+    gameboard jsonb NOT NULL,
+    last_accessed timestamp with time zone NOT NULL DEFAULT now(),
+    CONSTRAINT temporary_gameboards_pkey PRIMARY KEY (id)
+);
+
+ALTER TABLE public.temporary_gameboards
+    OWNER to rutherford;
+
+CREATE INDEX temporary_gameboards_last_accessed ON public.temporary_gameboards USING btree (last_accessed);
@@ -0,0 +1,51 @@
+-- Table: public.user_streak_daily_counts
+
+-- DROP TABLE public.user_streak_daily_counts;
+
+CREATE TABLE public.user_streak_daily_counts
+(
+    user_id integer NOT NULL,
+    date date NOT NULL,
+    count integer NOT NULL,
+    CONSTRAINT user_streak_daily_counts_pkey PRIMARY KEY (user_id, date),
+    CONSTRAINT user_streak_daily_counts_user_id_fkey FOREIGN KEY (user_id)
+        REFERENCES public.users (id) MATCH SIMPLE
+        ON DELETE CASCADE
+);
+
+ALTER TABLE public.user_streak_daily_counts
+    OWNER to rutherford;
+
+ALTER TABLE public.question_attempt_summaries
+    ADD COLUMN IF NOT EXISTS first_correct_attempted timestamp without time zone;
+
+-- Backfill from the existing attempts. Once postgres-rutherford-functions.sql has been re-run, a trigger on the
+-- summaries keeps the counts up to date as attempts are recorded; the lock stops any being recorded part-way through
+-- the backfill. This section recomputes everything from the full attempt history, so it can be re-run on its own to
+-- repair the counts should they ever be suspected of being wrong.
+
+BEGIN;
+
+LOCK TABLE public.question_attempts IN SHARE MODE;
+
+UPDATE public.question_attempt_summaries
+SET first_correct_attempted = first_correct_attempts.first_correct_attempted
+FROM (
+    SELECT user_id, question_id, min("timestamp") AS first_correct_attempted
+    FROM public.question_attempts
+    WHERE correct
+    GROUP BY user_id, question_id
+) AS first_correct_attempts
+WHERE question_attempt_summaries.user_id = first_correct_attempts.user_id
+  AND question_attempt_summaries.question_id = first_correct_attempts.question_id
+  AND question_attempt_summaries.first_correct_attempted IS DISTINCT FROM first_correct_attempts.first_correct_attempted;
+
+DELETE FROM public.user_streak_daily_counts;
+
+INSERT INTO public.user_streak_daily_counts(user_id, date, count)
+SELECT user_id, first_correct_attempted::DATE, count(*)
+FROM public.question_attempt_summaries
+WHERE first_correct_attempted IS NOT NULL
+GROUP BY user_id, first_correct_attempted::DATE;
+
+COMMIT;
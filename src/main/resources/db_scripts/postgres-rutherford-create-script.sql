@@ -33,6 +33,43 @@ SET default_tablespace = '';
 
 SET default_table_access_method = heap;
 
+--
+-- Name: anonymous_question_attempts; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.anonymous_question_attempts (
+    id bigint NOT NULL,
+    anonymous_user_id character varying NOT NULL,
+    page_id text NOT NULL,
+    question_id text NOT NULL,
+    question_attempt jsonb NOT NULL,
+    "timestamp" timestamp with time zone DEFAULT now() NOT NULL
+);
+
+
+ALTER TABLE public.anonymous_question_attempts OWNER TO rutherford;
+
+--
+-- Name: anonymous_question_attempts_id_seq; Type: SEQUENCE; Schema: public; Owner: rutherford
+--
+
+CREATE SEQUENCE public.anonymous_question_attempts_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+ALTER TABLE public.anonymous_question_attempts_id_seq OWNER TO rutherford;
+
+--
+-- Name: anonymous_question_attempts_id_seq; Type: SEQUENCE OWNED BY; Schema: public; Owner: rutherford
+--
+
+ALTER SEQUENCE public.anonymous_question_attempts_id_seq OWNED BY public.anonymous_question_attempts.id;
+
+
 --
 -- Name: assignments; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -71,6 +108,48 @@ ALTER TABLE public.assignments_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.assignments_id_seq OWNED BY public.assignments.id;
 
 
+--
+-- Name: email_outbox; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.email_outbox (
+    id bigint NOT NULL,
+    priority integer NOT NULL,
+    email_type text NOT NULL,
+    message jsonb NOT NULL,
+    created timestamp without time zone DEFAULT now() NOT NULL,
+    attempts integer DEFAULT 0 NOT NULL,
+    next_attempt_at timestamp without time zone DEFAULT now() NOT NULL,
+    lease_expires_at timestamp without time zone,
+    claimed_by text,
+    last_error text,
+    failed boolean DEFAULT false NOT NULL
+);
+
+
+ALTER TABLE public.email_outbox OWNER TO rutherford;
+
+--
+-- Name: email_outbox_id_seq; Type: SEQUENCE; Schema: public; Owner: rutherford
+--
+
+CREATE SEQUENCE public.email_outbox_id_seq
+    START WITH 1
+    INCREMENT BY 1
+    NO MINVALUE
+    NO MAXVALUE
+    CACHE 1;
+
+
+ALTER TABLE public.email_outbox_id_seq OWNER TO rutherford;
+
+--
+-- Name: email_outbox_id_seq; Type: SEQUENCE OWNED BY; Schema: public; Owner: rutherford
+--
+
+ALTER SEQUENCE public.email_outbox_id_seq OWNED BY public.email_outbox.id;
+
+
 --
 -- Name: event_bookings; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -274,6 +353,18 @@ COMMENT ON COLUMN public.linked_accounts.user_id IS 'This is the postgres foreig
 COMMENT ON COLUMN public.linked_accounts.provider_user_id IS 'user id from the remote service';
 
 
+--
+-- Name: logged_event_counts; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.logged_event_counts (
+    event_type text NOT NULL,
+    count bigint NOT NULL
+);
+
+
+ALTER TABLE public.logged_event_counts OWNER TO rutherford;
+
 --
 -- Name: logged_events; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -313,6 +404,20 @@ ALTER TABLE public.logged_events_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.logged_events_id_seq OWNED BY public.logged_events.id;
 
 
+--
+-- Name: misuse_statistics; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.misuse_statistics (
+    agent_identifier text NOT NULL,
+    event_type text NOT NULL,
+    window_start timestamp with time zone DEFAULT now() NOT NULL,
+    event_count integer DEFAULT 0 NOT NULL
+);
+
+
+ALTER TABLE public.misuse_statistics OWNER TO rutherford;
+
 --
 -- Name: question_attempts; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -323,7 +428,8 @@ CREATE TABLE public.question_attempts (
     question_id text NOT NULL,
     question_attempt jsonb,
     correct boolean,
-    "timestamp" timestamp without time zone
+    "timestamp" timestamp without time zone,
+    page_id text
 );
 
 
@@ -350,6 +456,24 @@ ALTER TABLE public.question_attempts_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.question_attempts_id_seq OWNED BY public.question_attempts.id;
 
 
+--
+-- Name: question_attempt_summaries; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.question_attempt_summaries (
+    user_id integer NOT NULL,
+    question_id text NOT NULL,
+    correct boolean NOT NULL,
+    attempt_count integer NOT NULL,
+    first_attempted timestamp without time zone,
+    last_attempted timestamp without time zone,
+    first_correct_attempted timestamp without time zone
+);
+
+
+ALTER TABLE public.question_attempt_summaries OWNER TO rutherford;
+
+
 --
 -- Name: quiz_assignments; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -463,6 +587,33 @@ ALTER TABLE public.quiz_question_attempts_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.quiz_question_attempts_id_seq OWNED BY public.quiz_question_attempts.id;
 
 
+--
+-- Name: statistics_snapshots; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.statistics_snapshots (
+    name text NOT NULL,
+    snapshot jsonb,
+    high_water_mark bigint DEFAULT 0 NOT NULL,
+    refreshed timestamp with time zone
+);
+
+
+ALTER TABLE public.statistics_snapshots OWNER TO rutherford;
+
+--
+-- Name: temporary_gameboards; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE UNLOGGED TABLE public.temporary_gameboards (
+    id character varying NOT NULL,
+    gameboard jsonb NOT NULL,
+    last_accessed timestamp with time zone DEFAULT now() NOT NULL
+);
+
+
+ALTER TABLE public.temporary_gameboards OWNER TO rutherford;
+
 --
 -- Name: temporary_user_store; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -635,6 +786,19 @@ CREATE TABLE public.user_preferences (
 
 ALTER TABLE public.user_preferences OWNER TO rutherford;
 
+--
+-- Name: user_streak_daily_counts; Type: TABLE; Schema: public; Owner: rutherford
+--
+
+CREATE TABLE public.user_streak_daily_counts (
+    user_id integer NOT NULL,
+    date date NOT NULL,
+    count integer NOT NULL
+);
+
+
+ALTER TABLE public.user_streak_daily_counts OWNER TO rutherford;
+
 --
 -- Name: user_streak_freezes; Type: TABLE; Schema: public; Owner: rutherford
 --
@@ -728,6 +892,13 @@ ALTER TABLE public.users_id_seq OWNER TO rutherford;
 ALTER SEQUENCE public.users_id_seq OWNED BY public.users.id;
 
 
+--
+-- Name: anonymous_question_attempts id; Type: DEFAULT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.anonymous_question_attempts ALTER COLUMN id SET DEFAULT nextval('public.anonymous_question_attempts_id_seq'::regclass);
+
+
 --
 -- Name: assignments id; Type: DEFAULT; Schema: public; Owner: rutherford
 --
@@ -735,6 +906,13 @@ ALTER SEQUENCE public.users_id_seq OWNED BY public.users.id;
 ALTER TABLE ONLY public.assignments ALTER COLUMN id SET DEFAULT nextval('public.assignments_id_seq'::regclass);
 
 
+--
+-- Name: email_outbox id; Type: DEFAULT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.email_outbox ALTER COLUMN id SET DEFAULT nextval('public.email_outbox_id_seq'::regclass);
+
+
 --
 -- Name: event_bookings id; Type: DEFAULT; Schema: public; Owner: rutherford
 --
@@ -814,6 +992,14 @@ ALTER TABLE ONLY public.group_additional_managers
     ADD CONSTRAINT ck_user_group_manager PRIMARY KEY (user_id, group_id);
 
 
+--
+-- Name: anonymous_question_attempts anonymous_question_attempts_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.anonymous_question_attempts
+    ADD CONSTRAINT anonymous_question_attempts_pkey PRIMARY KEY (id);
+
+
 --
 -- Name: assignments composite pkey assignments; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -830,6 +1016,14 @@ ALTER TABLE ONLY public.linked_accounts
     ADD CONSTRAINT "compound key" PRIMARY KEY (user_id, provider);
 
 
+--
+-- Name: email_outbox email_outbox_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.email_outbox
+    ADD CONSTRAINT email_outbox_pkey PRIMARY KEY (id);
+
+
 --
 -- Name: event_bookings eventbooking id pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -870,6 +1064,14 @@ ALTER TABLE ONLY public.groups
     ADD CONSTRAINT group_pkey PRIMARY KEY (id);
 
 
+--
+-- Name: logged_event_counts logged_event_counts_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.logged_event_counts
+    ADD CONSTRAINT logged_event_counts_pkey PRIMARY KEY (event_type);
+
+
 --
 -- Name: logged_events id pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -910,6 +1112,14 @@ ALTER TABLE ONLY public.linked_accounts
     ADD CONSTRAINT "provider and user id" UNIQUE (provider, provider_user_id);
 
 
+--
+-- Name: misuse_statistics misuse_statistics_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.misuse_statistics
+    ADD CONSTRAINT misuse_statistics_pkey PRIMARY KEY (agent_identifier, event_type);
+
+
 --
 -- Name: question_attempts question_attempts_id; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -918,6 +1128,14 @@ ALTER TABLE ONLY public.question_attempts
     ADD CONSTRAINT question_attempts_id PRIMARY KEY (id);
 
 
+--
+-- Name: question_attempt_summaries question_attempt_summaries_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.question_attempt_summaries
+    ADD CONSTRAINT question_attempt_summaries_pkey PRIMARY KEY (user_id, question_id);
+
+
 --
 -- Name: quiz_assignments quiz_assignments_id; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -942,6 +1160,22 @@ ALTER TABLE ONLY public.quiz_question_attempts
     ADD CONSTRAINT quiz_question_attempts_id PRIMARY KEY (id);
 
 
+--
+-- Name: statistics_snapshots statistics_snapshots_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.statistics_snapshots
+    ADD CONSTRAINT statistics_snapshots_pkey PRIMARY KEY (name);
+
+
+--
+-- Name: temporary_gameboards temporary_gameboards_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.temporary_gameboards
+    ADD CONSTRAINT temporary_gameboards_pkey PRIMARY KEY (id);
+
+
 --
 -- Name: temporary_user_store temporary_user_store_pk; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1030,6 +1264,14 @@ ALTER TABLE ONLY public.user_preferences
     ADD CONSTRAINT user_id_preference_type_name_pk PRIMARY KEY (user_id, preference_type, preference_name);
 
 
+--
+-- Name: user_streak_daily_counts user_streak_daily_counts_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.user_streak_daily_counts
+    ADD CONSTRAINT user_streak_daily_counts_pkey PRIMARY KEY (user_id, date);
+
+
 --
 -- Name: user_streak_freezes user_streak_freeze_pkey; Type: CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1046,6 +1288,13 @@ ALTER TABLE ONLY public.user_streak_targets
     ADD CONSTRAINT user_streak_targets_pkey PRIMARY KEY (user_id, start_date);
 
 
+--
+-- Name: anonymous_question_attempts_by_user; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX anonymous_question_attempts_by_user ON public.anonymous_question_attempts USING btree (anonymous_user_id, id);
+
+
 --
 -- Name: assignments_group_id; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1053,6 +1302,13 @@ ALTER TABLE ONLY public.user_streak_targets
 CREATE INDEX assignments_group_id ON public.assignments USING btree (group_id DESC);
 
 
+--
+-- Name: email_outbox_pending; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX email_outbox_pending ON public.email_outbox USING btree (priority, id) WHERE (NOT failed);
+
+
 --
 -- Name: event_booking_user_event_id_index; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1130,6 +1386,13 @@ CREATE INDEX logged_events_type_timestamp ON public.logged_events USING btree (e
 CREATE UNIQUE INDEX only_one_attempt_per_assignment_per_user ON public.quiz_attempts USING btree (quiz_assignment_id, user_id) WHERE (quiz_assignment_id IS NOT NULL);
 
 
+--
+-- Name: misuse_statistics_window_start; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX misuse_statistics_window_start ON public.misuse_statistics USING btree (window_start);
+
+
 --
 -- Name: question-attempts-by-user; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1151,6 +1414,13 @@ CREATE INDEX question_attempts_by_question ON public.question_attempts USING btr
 CREATE INDEX question_attempts_by_timestamp ON public.question_attempts USING btree ("timestamp");
 
 
+--
+-- Name: question_attempts_by_user_page; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX question_attempts_by_user_page ON public.question_attempts USING btree (user_id, page_id);
+
+
 --
 -- Name: question_attempts_by_user_question; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1172,6 +1442,13 @@ CREATE INDEX quiz_attempts_index_by_quiz_id_and_user_id ON public.quiz_attempts
 CREATE INDEX quiz_question_attempts_by_quiz_attempt_id ON public.quiz_question_attempts USING btree (quiz_attempt_id);
 
 
+--
+-- Name: temporary_gameboards_last_accessed; Type: INDEX; Schema: public; Owner: rutherford
+--
+
+CREATE INDEX temporary_gameboards_last_accessed ON public.temporary_gameboards USING btree (last_accessed);
+
+
 --
 -- Name: unique email case insensitive; Type: INDEX; Schema: public; Owner: rutherford
 --
@@ -1221,6 +1498,14 @@ CREATE INDEX user_streak_targets_by_user_id ON public.user_streak_targets USING
 CREATE INDEX users_id_role ON public.users USING btree (id, role);
 
 
+--
+-- Name: anonymous_question_attempts anonymous_question_attempts_user_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.anonymous_question_attempts
+    ADD CONSTRAINT anonymous_question_attempts_user_fkey FOREIGN KEY (anonymous_user_id) REFERENCES public.temporary_user_store(id) ON DELETE CASCADE;
+
+
 --
 -- Name: assignments assignment_group_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1413,6 +1698,14 @@ ALTER TABLE ONLY public.question_attempts
     ADD CONSTRAINT user_id_question_attempts_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
 
 
+--
+-- Name: question_attempt_summaries user_id_question_attempt_summaries_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.question_attempt_summaries
+    ADD CONSTRAINT user_id_question_attempt_summaries_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
+
+
 --
 -- Name: quiz_attempts user_id_quiz_attempts_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -1437,6 +1730,14 @@ ALTER TABLE ONLY public.user_associations
     ADD CONSTRAINT user_receiving_permissions_key FOREIGN KEY (user_id_receiving_permission) REFERENCES public.users(id) ON DELETE CASCADE;
 
 
+--
+-- Name: user_streak_daily_counts user_streak_daily_counts_user_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
+--
+
+ALTER TABLE ONLY public.user_streak_daily_counts
+    ADD CONSTRAINT user_streak_daily_counts_user_id_fkey FOREIGN KEY (user_id) REFERENCES public.users(id) ON DELETE CASCADE;
+
+
 --
 -- Name: user_streak_freezes user_streak_freezes_user_id_fkey; Type: FK CONSTRAINT; Schema: public; Owner: rutherford
 --
@@ -62,6 +62,18 @@ BEGIN
   SET user_id = targetUserIdToKeep
   WHERE user_id = targetUserIdToDelete;
 
+  -- The summaries cannot simply be moved, since both users may have attempted the same question part:
+  DELETE FROM question_attempt_summaries
+  WHERE user_id IN (targetUserIdToKeep, targetUserIdToDelete);
+
+  INSERT INTO question_attempt_summaries(user_id, question_id, correct, attempt_count, first_attempted, last_attempted,
+                                         first_correct_attempted)
+  SELECT user_id, question_id, COALESCE(bool_or(correct), false), count(*), min("timestamp"), max("timestamp"),
+         min("timestamp") FILTER (WHERE correct)
+  FROM question_attempts
+  WHERE user_id = targetUserIdToKeep
+  GROUP BY user_id, question_id;
+
   UPDATE user_alerts
   SET user_id = targetUserIdToKeep
   WHERE user_id = targetUserIdToDelete;
@@ -139,7 +151,7 @@ ALTER FUNCTION mergeuser(targetuseridtokeep bigint, targetuseridtodelete bigint)
 -- Calculate User Streaks
 --
 -- Authors: James Sharkey
--- Last Modified: 2018-04-20
+-- Last Modified: 2021-06-01
 --
 
 CREATE OR REPLACE FUNCTION user_streaks(useridofinterest BIGINT, defaultquestionsperday INTEGER DEFAULT 3)
@@ -151,23 +163,13 @@ BEGIN
   -----
   WITH
 
-    -- Filter only users first correct attempts at questions:
-      first_correct_attempts AS (
-        SELECT
-          question_id,
-          MIN(timestamp) AS timestamp
-        FROM question_attempts
-        WHERE correct AND user_id=useridofinterest
-        GROUP BY question_id
-    ),
-
-    -- Count how many of these first correct attempts per day:
+    -- How many questions the user first answered correctly each day, kept up to date as attempts are recorded:
       daily_counts AS (
         SELECT
-          timestamp::DATE AS date,
-          COUNT(DISTINCT question_id) AS count
-        FROM first_correct_attempts
-        GROUP BY date
+          date,
+          count
+        FROM user_streak_daily_counts
+        WHERE user_id=useridofinterest
     ),
 
     -- Create the list of targets and dates, allowing NULL end dates to mean "to present":
@@ -238,7 +240,7 @@ ALTER FUNCTION user_streaks(useridofinterest BIGINT, defaultquestionsperday INTE
 -- Calculate Current Progress towards User Streak
 --
 -- Authors: James Sharkey
--- Last Modified: 2018-04-20
+-- Last Modified: 2021-06-01
 --
 
 CREATE OR REPLACE FUNCTION user_streaks_current_progress(useridofinterest BIGINT, defaultquestionsperday INTEGER DEFAULT 3)
@@ -250,24 +252,13 @@ BEGIN
   -----
   WITH
 
-    -- Filter only users first correct attempts at questions:
-      first_correct_attempts AS (
-        SELECT
-          question_id,
-          MIN(timestamp) AS timestamp
-        FROM question_attempts
-        WHERE correct AND user_id=useridofinterest
-        GROUP BY question_id
-    ),
-
-    -- Count how many of these first correct attempts are today:
+    -- How many questions the user first answered correctly today:
       daily_count AS (
         SELECT
-          timestamp::DATE AS date,
-          COUNT(DISTINCT question_id) AS count
-        FROM first_correct_attempts
-        WHERE timestamp >= CURRENT_DATE
-        GROUP BY date
+          date,
+          count
+        FROM user_streak_daily_counts
+        WHERE user_id=useridofinterest AND date=CURRENT_DATE
     ),
 
     -- Create the list of targets and dates, allowing NULL end dates to mean "to present":
@@ -310,7 +301,7 @@ ALTER FUNCTION user_streaks_current_progress(useridofinterest BIGINT, defaultque
 -- Calculate User Weekly Streaks
 --
 -- Authors: James Sharkey
--- Last Modified: 2019-12-06
+-- Last Modified: 2021-06-01
 --
 
 CREATE OR REPLACE FUNCTION user_streaks_weekly(useridofinterest BIGINT, defaultquestionsperweek integer DEFAULT 10)
@@ -324,23 +315,14 @@ BEGIN
         -----
         WITH
 
-            -- Filter only users first correct attempts at questions:
-            first_correct_attempts AS (
-                SELECT
-                    question_id,
-                    MIN(timestamp) AS timestamp
-                FROM question_attempts
-                WHERE correct AND user_id=useridofinterest
-                GROUP BY question_id
-            ),
-
-            -- Count how many of these first correct attempts per week:
+            -- Sum how many questions the user first answered correctly each day into weeks:
             weekly_counts AS (
                 SELECT
-                    date_trunc('WEEK', timestamp)::DATE AS date,
-                    COUNT(DISTINCT question_id) AS count
-                FROM first_correct_attempts
-                GROUP BY date
+                    date_trunc('WEEK', user_streak_daily_counts.date)::DATE AS date,
+                    SUM(count) AS count
+                FROM user_streak_daily_counts
+                WHERE user_id=useridofinterest
+                GROUP BY 1
             ),
 
             -- Create the list of targets and dates, allowing NULL end dates to mean "to present":
@@ -410,7 +392,7 @@ ALTER FUNCTION user_streaks_weekly(BIGINT, INTEGER) OWNER TO rutherford;
 -- Calculate Current Progress towards User Weekly Streak
 --
 -- Authors: James Sharkey
--- Last Modified: 2019-12-06
+-- Last Modified: 2021-06-01
 --
 
 CREATE OR REPLACE FUNCTION user_streaks_weekly_current_progress(useridofinterest BIGINT, defaultquestionsperweek integer DEFAULT 10)
@@ -424,24 +406,13 @@ BEGIN
         -----
         WITH
 
-            -- Filter only users first correct attempts at questions:
-            first_correct_attempts AS (
-                SELECT
-                    question_id,
-                    MIN(timestamp) AS timestamp
-                FROM question_attempts
-                WHERE correct AND user_id=useridofinterest
-                GROUP BY question_id
-            ),
-
-            -- Count how many of these first correct attempts are this week:
+            -- Sum how many questions the user first answered correctly on each day of this week:
             weekly_count AS (
                 SELECT
-                    date_trunc('WEEK', timestamp)::DATE AS date,
-                    COUNT(DISTINCT question_id) AS count
-                FROM first_correct_attempts
-                WHERE timestamp >= date_trunc('WEEK', CURRENT_DATE)
-                GROUP BY date
+                    date_trunc('WEEK', CURRENT_DATE)::DATE AS date,
+                    SUM(count) AS count
+                FROM user_streak_daily_counts
+                WHERE user_id=useridofinterest AND user_streak_daily_counts.date >= date_trunc('WEEK', CURRENT_DATE)
             ),
 
             -- Create the list of targets and dates, allowing NULL end dates to mean "to present":
@@ -476,3 +447,78 @@ END
 $$;
 
 ALTER FUNCTION user_streaks_weekly_current_progress(BIGINT, INTEGER) OWNER TO rutherford;
+
+
+--
+-- Notify API Servers of User Changes
+--
+-- The API servers listen on the user_changed channel so that they can discard users they have cached.
+--
+-- Last Modified: 2021-06-01
+--
+
+CREATE OR REPLACE FUNCTION notify_user_changed() RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+  PERFORM pg_notify('user_changed', OLD.id::text);
+  RETURN NULL;
+END
+$$;
+
+ALTER FUNCTION notify_user_changed() OWNER TO rutherford;
+
+DROP TRIGGER IF EXISTS notify_user_changed ON users;
+
+CREATE TRIGGER notify_user_changed
+  AFTER UPDATE OR DELETE ON users
+  FOR EACH ROW EXECUTE PROCEDURE notify_user_changed();
+
+
+--
+-- Maintain User Streak Daily Counts
+--
+-- Keeps user_streak_daily_counts in step with the first correct attempt time recorded in each question part summary,
+-- so that streaks can be calculated without reading the user's whole attempt history.
+--
+-- Last Modified: 2021-06-01
+--
+
+CREATE OR REPLACE FUNCTION update_user_streak_daily_counts() RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+  IF TG_OP = 'UPDATE' THEN
+    IF OLD.user_id = NEW.user_id AND OLD.first_correct_attempted IS NOT DISTINCT FROM NEW.first_correct_attempted THEN
+      RETURN NULL;
+    END IF;
+  END IF;
+
+  IF TG_OP IN ('UPDATE', 'DELETE') THEN
+    IF OLD.first_correct_attempted IS NOT NULL THEN
+      UPDATE user_streak_daily_counts
+      SET count = count - 1
+      WHERE user_id = OLD.user_id AND date = OLD.first_correct_attempted::DATE;
+    END IF;
+  END IF;
+
+  IF TG_OP IN ('INSERT', 'UPDATE') THEN
+    IF NEW.first_correct_attempted IS NOT NULL THEN
+      INSERT INTO user_streak_daily_counts(user_id, date, count)
+      VALUES (NEW.user_id, NEW.first_correct_attempted::DATE, 1)
+      ON CONFLICT (user_id, date) DO UPDATE
+      SET count = user_streak_daily_counts.count + 1;
+    END IF;
+  END IF;
+
+  RETURN NULL;
+END
+$$;
+
+ALTER FUNCTION update_user_streak_daily_counts() OWNER TO rutherford;
+
+DROP TRIGGER IF EXISTS update_user_streak_daily_counts ON question_attempt_summaries;
+
+CREATE TRIGGER update_user_streak_daily_counts
+  AFTER INSERT OR DELETE OR UPDATE OF user_id, first_correct_attempted ON question_attempt_summaries
+  FOR EACH ROW EXECUTE PROCEDURE update_user_streak_daily_counts();
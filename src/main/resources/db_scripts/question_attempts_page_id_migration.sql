@@ -0,0 +1,34 @@
+-- Add a question page id column to question_attempts, so that attempts at particular question pages can be found
+-- using an index rather than matching every question id against a regular expression.
+--
+-- The page id is the part of the question id before the first ID_SEPARATOR, as QuestionManager.extractPageIdFromQuestionId
+-- derives it.
+--
+-- Run this whole script before deploying the API version which reads the column. The API writes the column for new
+-- attempts from that version on; the backfill only touches rows without a page id, so re-run it once that version is
+-- live to pick up any attempts recorded by the previous version in the meantime.
+
+ALTER TABLE public.question_attempts ADD COLUMN IF NOT EXISTS page_id text;
+
+-- Backfill in batches of ids, committing as we go, to avoid holding locks on the whole table or building up one
+-- enormous transaction:
+
+DO $$
+DECLARE
+    batch_size CONSTANT integer := 100000;
+    batch_start integer;
+    max_id integer;
+BEGIN
+    SELECT min(id), max(id) INTO batch_start, max_id FROM public.question_attempts;
+    WHILE batch_start <= max_id LOOP
+        UPDATE public.question_attempts
+        SET page_id = split_part(question_id, '|', 1)
+        WHERE id >= batch_start AND id < batch_start + batch_size AND page_id IS NULL;
+        COMMIT;
+        batch_start := batch_start + batch_size;
+    END LOOP;
+END
+$$;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS question_attempts_by_user_page
+    ON public.question_attempts USING btree (user_id, page_id);
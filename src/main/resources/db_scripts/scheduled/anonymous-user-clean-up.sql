@@ -1,4 +1,9 @@
-/* clean up temporary user store */
+/* clean up temporary user store, deleting the question attempts of the expired users in the same pass */
 
-DELETE FROM temporary_user_store
-WHERE last_updated < NOW() - INTERVAL '1 hour';
+WITH expired_users AS (
+    DELETE FROM temporary_user_store
+    WHERE last_updated < NOW() - INTERVAL '1 hour'
+    RETURNING id
+)
+DELETE FROM anonymous_question_attempts
+WHERE anonymous_user_id IN (SELECT id FROM expired_users);
@@ -0,0 +1,4 @@
+/* Clean up emails which could not be sent, once they have been kept long enough to investigate */
+
+DELETE FROM email_outbox
+WHERE failed AND created < NOW() - INTERVAL '30 days';
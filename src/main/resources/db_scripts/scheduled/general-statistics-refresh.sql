@@ -0,0 +1,94 @@
+/* Refresh the snapshot of general statistics shown to admins, so that viewing them reads one row rather than
+   running each aggregate query on demand.
+
+   Log event counts are kept up to date incrementally: only events added since the previous refresh, i.e. above its
+   high-water mark, are counted. Events from the last ten minutes are left for the next refresh, as events with lower
+   ids may still be being written.
+
+   This is a single statement so that the counts, high-water mark and snapshot are always updated together. If a
+   previous refresh is somehow still running, the advisory lock makes this one do nothing rather than count the same
+   events twice. */
+
+WITH previous_refresh AS (
+    SELECT COALESCE((SELECT high_water_mark FROM statistics_snapshots WHERE name = 'general'), 0) AS high_water_mark
+),
+counted_range AS (
+    SELECT high_water_mark AS from_id,
+           GREATEST(high_water_mark, COALESCE((SELECT id FROM logged_events
+                                               WHERE "timestamp" < NOW() - INTERVAL '10 minutes'
+                                               ORDER BY id DESC LIMIT 1), 0)) AS to_id
+    FROM previous_refresh
+    WHERE pg_try_advisory_xact_lock(hashtext('general-statistics-refresh'))
+),
+new_event_counts AS (
+    SELECT event_type, count(1) AS count
+    FROM logged_events, counted_range
+    WHERE logged_events.id > counted_range.from_id AND logged_events.id <= counted_range.to_id
+      AND event_type IS NOT NULL
+    GROUP BY event_type
+),
+updated_event_counts AS (
+    INSERT INTO logged_event_counts(event_type, count)
+    SELECT event_type, count FROM new_event_counts
+    ON CONFLICT (event_type) DO UPDATE SET count = logged_event_counts.count + excluded.count
+    RETURNING event_type, count
+),
+event_counts AS (
+    SELECT event_type, count FROM updated_event_counts
+    UNION ALL
+    SELECT event_type, count FROM logged_event_counts
+    WHERE event_type NOT IN (SELECT event_type FROM updated_event_counts)
+),
+active_users AS (
+    SELECT role,
+           count(1) FILTER (WHERE last_seen >= NOW() - INTERVAL '7 days') AS seven_days,
+           count(1) FILTER (WHERE last_seen >= NOW() - INTERVAL '30 days') AS thirty_days,
+           count(1) FILTER (WHERE last_seen >= NOW() - INTERVAL '90 days') AS ninety_days,
+           count(1) AS six_months
+    FROM users
+    WHERE NOT deleted AND last_seen >= NOW() - INTERVAL '6 months'
+    GROUP BY role
+),
+answering_users AS (
+    SELECT role,
+           count(1) FILTER (WHERE last_attempted > NOW() - INTERVAL '7 days') AS seven_days,
+           count(1) FILTER (WHERE last_attempted > NOW() - INTERVAL '30 days') AS thirty_days,
+           count(1) AS ninety_days
+    FROM (SELECT user_id, max(last_attempted) AS last_attempted
+          FROM question_attempt_summaries
+          WHERE last_attempted > NOW() - INTERVAL '90 days'
+          GROUP BY user_id) AS recent_attempts
+    JOIN users ON recent_attempts.user_id = users.id AND NOT deleted
+    GROUP BY role
+)
+INSERT INTO statistics_snapshots(name, high_water_mark, refreshed, snapshot)
+SELECT 'general', counted_range.to_id, NOW(), jsonb_build_object(
+        'userGenders', (SELECT COALESCE(jsonb_object_agg(gender, count), '{}')
+                        FROM (SELECT COALESCE(gender, 'UNKNOWN') AS gender, count(1)
+                              FROM users WHERE NOT deleted GROUP BY 1) AS genders),
+        'userRoles', (SELECT COALESCE(jsonb_object_agg(role, count), '{}')
+                      FROM (SELECT role, count(1) FROM users WHERE NOT deleted GROUP BY role) AS roles),
+        'userSchoolInfo', (SELECT COALESCE(jsonb_object_agg(status, count), '{}')
+                           FROM (SELECT CASE WHEN school_id IS NOT NULL AND school_other IS NOT NULL THEN 'BOTH_PROVIDED'
+                                             WHEN school_id IS NOT NULL THEN 'PROVIDED'
+                                             WHEN school_other IS NOT NULL THEN 'OTHER_PROVIDED'
+                                             ELSE 'NOT_PROVIDED' END AS status, count(1)
+                                 FROM users WHERE NOT deleted GROUP BY 1) AS school_info),
+        'groupCount', (SELECT count(1) FROM groups WHERE group_status <> 'DELETED'),
+        'viewQuestionEvents', COALESCE((SELECT count FROM event_counts WHERE event_type = 'VIEW_QUESTION'), 0),
+        'answeredQuestionEvents', COALESCE((SELECT count FROM event_counts WHERE event_type = 'ANSWER_QUESTION'), 0),
+        'activeUsersOverPrevious', (SELECT jsonb_build_object(
+            'sevenDays', COALESCE(jsonb_object_agg(role, seven_days) FILTER (WHERE seven_days > 0), '{}'),
+            'thirtyDays', COALESCE(jsonb_object_agg(role, thirty_days) FILTER (WHERE thirty_days > 0), '{}'),
+            'ninetyDays', COALESCE(jsonb_object_agg(role, ninety_days) FILTER (WHERE ninety_days > 0), '{}'),
+            'sixMonths', COALESCE(jsonb_object_agg(role, six_months), '{}')) FROM active_users),
+        'answeringUsersOverPrevious', (SELECT jsonb_build_object(
+            'sevenDays', COALESCE(jsonb_object_agg(role, seven_days) FILTER (WHERE seven_days > 0), '{}'),
+            'thirtyDays', COALESCE(jsonb_object_agg(role, thirty_days) FILTER (WHERE thirty_days > 0), '{}'),
+            'ninetyDays', COALESCE(jsonb_object_agg(role, ninety_days), '{}')) FROM answering_users)
+    )
+FROM counted_range
+ON CONFLICT (name) DO UPDATE
+SET high_water_mark = excluded.high_water_mark,
+    refreshed = excluded.refreshed,
+    snapshot = excluded.snapshot;
@@ -0,0 +1,4 @@
+/* Clean up misuse counts whose accounting windows have long since ended */
+
+DELETE FROM misuse_statistics
+WHERE window_start < NOW() - INTERVAL '7 days';
@@ -0,0 +1,4 @@
+/* Clean up generated gameboards which have not been accessed recently and so have expired */
+
+DELETE FROM temporary_gameboards
+WHERE last_accessed < NOW() - INTERVAL '30 minutes';
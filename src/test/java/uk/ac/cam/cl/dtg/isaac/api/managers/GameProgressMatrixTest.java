@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.api.managers;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dto.GameboardDTO;
+import uk.ac.cam.cl.dtg.isaac.dto.GameboardItem;
+import uk.ac.cam.cl.dtg.segue.dao.ResourceNotFoundException;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionAttemptSummary;
+import uk.ac.cam.cl.dtg.segue.dto.content.QuestionDTO;
+import uk.ac.cam.cl.dtg.segue.dto.users.RegisteredUserDTO;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static uk.ac.cam.cl.dtg.isaac.api.Constants.GameboardItemState;
+import static uk.ac.cam.cl.dtg.isaac.api.Constants.QuestionPartState;
+
+/**
+ * Test class for the GameProgressMatrix class.
+ */
+public class GameProgressMatrixTest {
+    private RegisteredUserDTO student;
+    private RegisteredUserDTO otherStudent;
+    private GameboardDTO firstGameboard;
+    private GameboardDTO secondGameboard;
+    private Map<String, List<QuestionDTO>> questionPartsByPage;
+
+    /**
+     * Initial configuration of tests.
+     */
+    @Before
+    public final void setUp() {
+        student = new RegisteredUserDTO();
+        student.setId(1L);
+        otherStudent = new RegisteredUserDTO();
+        otherStudent.setId(2L);
+
+        // The two boards share a question page, which should only need one set of columns:
+        firstGameboard = buildGameboard("first", "page_a", "page_b");
+        secondGameboard = buildGameboard("second", "page_b");
+        questionPartsByPage = ImmutableMap.of(
+                "page_a", Arrays.asList(buildQuestionPart("page_a|1"), buildQuestionPart("page_a|2")),
+                "page_b", Collections.singletonList(buildQuestionPart("page_b|1")));
+    }
+
+    /**
+     * Verify that each user's progress on each board is calculated from their attempts at the shared question parts.
+     */
+    @Test
+    public void getGameboardItemProgress_attemptsAtSharedPages_progressCalculatedPerUserAndBoard() throws Exception {
+        Map<Long, Map<String, QuestionAttemptSummary>> attemptSummaries = ImmutableMap.of(
+                1L, ImmutableMap.of(
+                        "page_a|1", buildSummary("page_a|1", true),
+                        "page_a|2", buildSummary("page_a|2", false),
+                        "page_b|1", buildSummary("page_b|1", true)),
+                2L, ImmutableMap.of("unrelated|1", buildSummary("unrelated|1", true)));
+
+        GameProgressMatrix progressMatrix = new GameProgressMatrix(Arrays.asList(student, otherStudent),
+                Arrays.asList(firstGameboard, secondGameboard), questionPartsByPage,
+                ImmutableMap.of("page_a", 50f, "page_b", 75f), attemptSummaries);
+
+        List<GameboardItem> firstBoardProgress = progressMatrix.getGameboardItemProgress(student, firstGameboard);
+        assertEquals(Arrays.asList(QuestionPartState.CORRECT, QuestionPartState.INCORRECT),
+                firstBoardProgress.get(0).getQuestionPartStates());
+        assertEquals(GameboardItemState.PASSED, firstBoardProgress.get(0).getState());
+        assertEquals(GameboardItemState.PERFECT, firstBoardProgress.get(1).getState());
+        assertEquals(GameboardItemState.PERFECT,
+                progressMatrix.getGameboardItemProgress(student, secondGameboard).get(0).getState());
+
+        List<GameboardItem> otherStudentProgress = progressMatrix.getGameboardItemProgress(otherStudent,
+                firstGameboard);
+        assertEquals(GameboardItemState.NOT_ATTEMPTED, otherStudentProgress.get(0).getState());
+        assertEquals(Integer.valueOf(2), otherStudentProgress.get(0).getQuestionPartsNotAttempted());
+
+        assertEquals(Arrays.asList(1, 0), progressMatrix.getQuestionPartResults(student, "page_a"));
+        assertEquals(Arrays.asList(null, null), progressMatrix.getQuestionPartResults(otherStudent, "page_a"));
+        assertNull(progressMatrix.getGameboard("missing"));
+
+        // The items of the boards themselves should be left alone:
+        assertNull(firstGameboard.getQuestions().get(0).getState());
+    }
+
+    /**
+     * Verify that progress cannot be calculated on a page whose pass mark could not be found.
+     */
+    @Test
+    public void getGameboardItemProgress_pageNotFound_exceptionThrown() {
+        GameProgressMatrix progressMatrix = new GameProgressMatrix(Collections.singletonList(student),
+                Collections.singletonList(firstGameboard), questionPartsByPage, ImmutableMap.of("page_b", 75f),
+                Collections.emptyMap());
+
+        try {
+            progressMatrix.getGameboardItemProgress(student, firstGameboard);
+            fail("Expected the missing question page to be reported.");
+        } catch (ResourceNotFoundException e) {
+            // expected
+        }
+        assertEquals(Collections.singletonList(null), progressMatrix.getQuestionPartResults(student, "page_b"));
+    }
+
+    private static GameboardDTO buildGameboard(final String id, final String... questionPageIds) {
+        ImmutableList.Builder<GameboardItem> questions = ImmutableList.builder();
+        for (String questionPageId : questionPageIds) {
+            GameboardItem question = new GameboardItem();
+            question.setId(questionPageId);
+            questions.add(question);
+        }
+        GameboardDTO gameboard = new GameboardDTO();
+        gameboard.setId(id);
+        gameboard.setQuestions(questions.build());
+        return gameboard;
+    }
+
+    private static QuestionDTO buildQuestionPart(final String id) {
+        QuestionDTO questionPart = new QuestionDTO();
+        questionPart.setId(id);
+        return questionPart;
+    }
+
+    private static QuestionAttemptSummary buildSummary(final String questionId, final boolean correct) {
+        return new QuestionAttemptSummary(questionId, correct, 1, null, null);
+    }
+}
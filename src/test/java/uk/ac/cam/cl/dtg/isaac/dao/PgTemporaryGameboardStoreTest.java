@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.dao;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableSet;
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dos.GameboardCreationMethod;
+import uk.ac.cam.cl.dtg.isaac.dos.GameboardDO;
+import uk.ac.cam.cl.dtg.isaac.dos.IsaacWildcard;
+import uk.ac.cam.cl.dtg.isaac.dto.GameFilter;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for the PgTemporaryGameboardStore class.
+ */
+public class PgTemporaryGameboardStoreTest {
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private PreparedStatement dummyPreparedStatement;
+    private ResultSet dummyResultSet;
+
+    /**
+     * Initial configuration of tests.
+     */
+    @Before
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createNiceMock(Connection.class);
+        this.dummyPreparedStatement = createNiceMock(PreparedStatement.class);
+        this.dummyResultSet = createNiceMock(ResultSet.class);
+    }
+
+    /**
+     * Verify that a board stored on one API node can be read back on another, where it is not cached locally, and
+     * that boards cached locally are not fetched from the database again.
+     */
+    @Test
+    public void getGameboards_boardStoredByAnotherNode_localHitsServedAndMissesFetchedInOneQuery() throws Exception {
+        GameboardDO localGameboard = buildGameboard("local");
+        GameboardDO remoteGameboard = buildGameboard("remote");
+        String remoteGameboardJson = new ObjectMapper().writeValueAsString(remoteGameboard);
+
+        Array dummyArray = createNiceMock(Array.class);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).times(2);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).times(2);
+        expect(dummyConnection.createArrayOf(eq("varchar"), aryEq(new Object[] {"remote"}))).andReturn(dummyArray)
+                .once();
+        expect(dummyPreparedStatement.executeQuery()).andReturn(dummyResultSet).once();
+        expect(dummyResultSet.next()).andReturn(true).andReturn(false);
+        expect(dummyResultSet.getString("id")).andReturn("remote").anyTimes();
+        expect(dummyResultSet.getString("gameboard")).andReturn(remoteGameboardJson).once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyResultSet,
+                dummyArray};
+        replay(mockedObjects);
+
+        PgTemporaryGameboardStore store = new PgTemporaryGameboardStore(dummyPostgresSqlDb, new ObjectMapper());
+        store.storeGameboard(localGameboard);
+        Map<String, GameboardDO> gameboards = store.getGameboards(Arrays.asList("local", "remote"));
+
+        assertSame(localGameboard, gameboards.get("local"));
+        GameboardDO readGameboard = gameboards.get("remote");
+        assertEquals(remoteGameboard.getId(), readGameboard.getId());
+        assertEquals(remoteGameboard.getQuestions(), readGameboard.getQuestions());
+        assertEquals(remoteGameboard.getWildCard().getId(), readGameboard.getWildCard().getId());
+        assertEquals(remoteGameboard.getCreationDate(), readGameboard.getCreationDate());
+        assertEquals(remoteGameboard.getTags(), readGameboard.getTags());
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that storing a board writes it as json which can be read back.
+     */
+    @Test
+    public void storeGameboard_validBoard_writtenAsReadableJson() throws Exception {
+        GameboardDO gameboard = buildGameboard("board");
+        Capture<String> writtenJson = newCapture();
+
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        dummyPreparedStatement.setString(eq(2), capture(writtenJson));
+        expectLastCall().once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement};
+        replay(mockedObjects);
+
+        new PgTemporaryGameboardStore(dummyPostgresSqlDb, new ObjectMapper()).storeGameboard(gameboard);
+
+        GameboardDO readGameboard = new ObjectMapper().readValue(writtenJson.getValue(), GameboardDO.class);
+        assertEquals(gameboard.getId(), readGameboard.getId());
+        assertEquals(gameboard.getGameFilter().getSubjects(), readGameboard.getGameFilter().getSubjects());
+        verify(mockedObjects);
+    }
+
+    private static GameboardDO buildGameboard(final String id) {
+        IsaacWildcard wildcard = new IsaacWildcard();
+        wildcard.setId("wildcard_" + id);
+        GameFilter gameFilter = new GameFilter(Collections.singletonList("physics"), null, null, null, null, null,
+                null, null, null);
+        return new GameboardDO(id, "Title " + id, Arrays.asList("question_a", "question_b"), wildcard, 3,
+                new Date(), gameFilter, 1L, GameboardCreationMethod.FILTER, ImmutableSet.of("tag"));
+    }
+}
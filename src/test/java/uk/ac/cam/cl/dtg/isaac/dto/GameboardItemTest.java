@@ -0,0 +1,74 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.isaac.dto;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.api.Constants.GameboardItemState;
+import uk.ac.cam.cl.dtg.isaac.api.Constants.QuestionPartState;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for the GameboardItem class.
+ */
+public class GameboardItemTest {
+
+    /**
+     * Verify that copying a gameboard item keeps every field, including the question superseding it, so that copies
+     * made for each board show the same information as the original.
+     */
+    @Test
+    public void copyConstructor_allFieldsSet_allFieldsCopied() {
+        GameboardItem original = new GameboardItem();
+        original.setId("question");
+        original.setTitle("Title");
+        original.setDescription("Description");
+        original.setUri("/isaac-api/api/pages/questions/question");
+        original.setTags(ImmutableList.of("physics"));
+        original.setLevel(2);
+        original.setDifficulty(3);
+        original.setQuestionPartsCorrect(1);
+        original.setQuestionPartsIncorrect(1);
+        original.setQuestionPartsNotAttempted(1);
+        original.setQuestionPartsTotal(3);
+        original.setPassMark(75f);
+        original.setState(GameboardItemState.IN_PROGRESS);
+        original.setQuestionPartStates(ImmutableList.of(QuestionPartState.CORRECT, QuestionPartState.INCORRECT,
+                QuestionPartState.NOT_ATTEMPTED));
+        original.setBoardId("board");
+        original.setSupersededBy("newer_question");
+
+        GameboardItem copy = new GameboardItem(original);
+
+        assertEquals("question", copy.getId());
+        assertEquals("Title", copy.getTitle());
+        assertEquals("Description", copy.getDescription());
+        assertEquals(original.getUri(), copy.getUri());
+        assertEquals(original.getTags(), copy.getTags());
+        assertEquals(Integer.valueOf(2), copy.getLevel());
+        assertEquals(Integer.valueOf(3), copy.getDifficulty());
+        assertEquals(Integer.valueOf(1), copy.getQuestionPartsCorrect());
+        assertEquals(Integer.valueOf(1), copy.getQuestionPartsIncorrect());
+        assertEquals(Integer.valueOf(1), copy.getQuestionPartsNotAttempted());
+        assertEquals(Integer.valueOf(3), copy.getQuestionPartsTotal());
+        assertEquals(Float.valueOf(75f), copy.getPassMark());
+        assertEquals(GameboardItemState.IN_PROGRESS, copy.getState());
+        assertEquals(original.getQuestionPartStates(), copy.getQuestionPartStates());
+        assertEquals("board", copy.getBoardId());
+        assertEquals("newer_question", copy.getSupersededBy());
+    }
+}
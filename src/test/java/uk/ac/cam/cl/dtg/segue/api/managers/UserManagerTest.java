@@ -71,7 +71,9 @@ import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 import static org.easymock.EasyMock.replay;
 import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -134,6 +136,8 @@ public class UserManagerTest {
         expect(this.dummyPropertiesLoader.getProperty(Constants.SESSION_EXPIRY_SECONDS_REMEMBERED)).andReturn("360")
                 .anyTimes();
         expect(this.dummyPropertiesLoader.getProperty(Constants.SEGUE_APP_ENVIRONMENT)).andReturn("DEV").anyTimes();
+        expect(this.dummyPropertiesLoader.getProperty(Constants.AUTHENTICATED_USER_CACHE_EXPIRY_SECONDS)).andReturn(null)
+                .anyTimes();
         replay(this.dummyPropertiesLoader);
     }
 
@@ -216,6 +220,49 @@ public class UserManagerTest {
         verify(dummyQuestionDatabase, request, dummyMapper);
     }
 
+    /**
+     * Test that repeated requests in the same session are authenticated without reloading the user, until the user is
+     * invalidated.
+     *
+     * @throws Exception
+     */
+    @Test
+    public final void getUserFromSession_repeatedRequests_userLoadedOnceUntilInvalidated() throws Exception {
+        UserAuthenticationManager authManager = buildTestAuthenticationManager();
+        HttpServletRequest request = createMock(HttpServletRequest.class);
+
+        Long validUserId = 533L;
+        Calendar calendar = Calendar.getInstance();
+        calendar.add(Calendar.SECOND, 500);
+        String validDateString = sdf.format(calendar.getTime());
+
+        RegisteredUser returnUser = new RegisteredUser(validUserId, "TestFirstName", "TestLastName", "", Role.STUDENT,
+                new Date(), Gender.MALE, new Date(), null, null, null, null);
+        returnUser.setSessionToken(0);
+        returnUser.setLastSeen(new Date());
+
+        Map<String, String> sessionInformation = getSessionInformationAsAMap(authManager, validUserId.toString(),
+                validDateString, returnUser.getSessionToken());
+        expect(request.getCookies()).andReturn(getCookieArray(sessionInformation)).anyTimes();
+        expect(dummyDatabase.getById(validUserId)).andReturn(returnUser).times(2);
+        replay(request, dummyDatabase);
+
+        // Act
+        RegisteredUser firstUser = authManager.getUserFromSession(request, false);
+        RegisteredUser cachedUser = authManager.getUserFromSession(request, false);
+        authManager.invalidateCachedUser(validUserId);
+        RegisteredUser reloadedUser = authManager.getUserFromSession(request, false);
+
+        // Assert
+        assertEquals(returnUser, firstUser);
+        assertNotSame("Cached users should be copied so callers cannot modify them", firstUser, cachedUser);
+        assertEquals(returnUser.getGivenName(), cachedUser.getGivenName());
+        assertEquals(returnUser.getSessionToken(), cachedUser.getSessionToken());
+        assertEquals(returnUser.getLastSeen(), cachedUser.getLastSeen());
+        assertEquals(returnUser, reloadedUser);
+        verify(request, dummyDatabase);
+    }
+
     /**
      * Test that requesting authentication with a bad provider behaves as expected.
      * 
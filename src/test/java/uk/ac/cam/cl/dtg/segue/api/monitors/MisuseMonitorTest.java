@@ -28,7 +28,16 @@ import uk.ac.cam.cl.dtg.segue.dos.users.EmailVerificationStatus;
 import uk.ac.cam.cl.dtg.segue.dos.users.RegisteredUser;
 import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 /**
@@ -263,4 +272,74 @@ public class MisuseMonitorTest {
             System.out.println("SegueResourceMisuseException");
         }
     }
+
+    /**
+     * Verifies that concurrent notifications are all counted and each threshold action happens exactly once.
+     */
+    @Test
+    public final void notifyEvent_concurrentNotifications_thresholdActionsExecutedOnce() throws Exception {
+        String event = "ConcurrentTestEvent";
+        int softThreshold = 500;
+        int hardThreshold = 1000;
+        int threads = 8;
+        int notificationsPerThread = 250;
+
+        IMisuseMonitor misuseMonitor = new InMemoryMisuseMonitor();
+        AtomicInteger softActions = new AtomicInteger();
+        AtomicInteger hardActions = new AtomicInteger();
+        misuseMonitor.registerHandler(event, new IMisuseHandler() {
+            @Override
+            public Integer getSoftThreshold() {
+                return softThreshold;
+            }
+
+            @Override
+            public Integer getHardThreshold() {
+                return hardThreshold;
+            }
+
+            @Override
+            public Integer getAccountingIntervalInSeconds() {
+                return Constants.NUMBER_SECONDS_IN_ONE_HOUR;
+            }
+
+            @Override
+            public void executeSoftThresholdAction(final String message) {
+                softActions.incrementAndGet();
+            }
+
+            @Override
+            public void executeHardThresholdAction(final String message) {
+                hardActions.incrementAndGet();
+            }
+        });
+
+        AtomicInteger rejectedNotifications = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < notificationsPerThread; i++) {
+                    try {
+                        misuseMonitor.notifyEvent("agent", event);
+                    } catch (SegueResourceMisuseException e) {
+                        rejectedNotifications.incrementAndGet();
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(1, softActions.get());
+        assertEquals(1, hardActions.get());
+        assertEquals(threads * notificationsPerThread - hardThreshold, rejectedNotifications.get());
+        assertTrue(misuseMonitor.hasMisused("agent", event));
+
+        misuseMonitor.resetMisuseCount("agent", event);
+        assertFalse(misuseMonitor.hasMisused("agent", event));
+    }
 }
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.api.monitors;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.api.Constants;
+import uk.ac.cam.cl.dtg.segue.api.managers.SegueResourceMisuseException;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the PgMisuseMonitor class.
+ */
+public class PgMisuseMonitorTest {
+    private static final long LONG_FLUSH_INTERVAL_MILLISECONDS = 60000;
+    private static final String EVENT = "TestEvent";
+
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private PreparedStatement dummyPreparedStatement;
+    private ResultSet dummyResultSet;
+
+    /**
+     * Initial configuration of tests.
+     */
+    @Before
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createNiceMock(Connection.class);
+        this.dummyPreparedStatement = createNiceMock(PreparedStatement.class);
+        this.dummyResultSet = createNiceMock(ResultSet.class);
+    }
+
+    /**
+     * Verify that events are counted locally and written to the database together, rather than one at a time.
+     */
+    @Test
+    public void flush_severalEventsNotified_writtenInOneUpsert() throws Exception {
+        // One read of the shared count on first sight of the agent, then one upsert on flush:
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).times(2);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).times(2);
+        expect(dummyPreparedStatement.executeQuery()).andReturn(dummyResultSet).times(2);
+        expect(dummyResultSet.next()).andReturn(false).andReturn(true);
+        expect(dummyResultSet.getLong("window_start_seconds"))
+                .andReturn(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+        expect(dummyResultSet.getInt("event_count")).andReturn(3);
+        dummyPreparedStatement.setInt(3, 3);
+        expectLastCall().once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyResultSet};
+        replay(mockedObjects);
+
+        PgMisuseMonitor misuseMonitor = new PgMisuseMonitor(dummyPostgresSqlDb, LONG_FLUSH_INTERVAL_MILLISECONDS);
+        misuseMonitor.registerHandler(EVENT, new TestMisuseHandler(10, 20));
+        for (int i = 0; i < 3; i++) {
+            misuseMonitor.notifyEvent("agent", EVENT);
+        }
+        misuseMonitor.flush();
+
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that an agent over the hard threshold is rejected, and remembered, without further database reads.
+     */
+    @Test
+    public void hasMisused_agentOverHardThreshold_answeredWithoutDatabase() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        expect(dummyPreparedStatement.executeQuery()).andReturn(dummyResultSet).once();
+        expect(dummyResultSet.next()).andReturn(false).once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyResultSet};
+        replay(mockedObjects);
+
+        TestMisuseHandler handler = new TestMisuseHandler(1, 2);
+        PgMisuseMonitor misuseMonitor = new PgMisuseMonitor(dummyPostgresSqlDb, LONG_FLUSH_INTERVAL_MILLISECONDS);
+        misuseMonitor.registerHandler(EVENT, handler);
+
+        misuseMonitor.notifyEvent("agent", EVENT);
+        misuseMonitor.notifyEvent("agent", EVENT);
+        try {
+            misuseMonitor.notifyEvent("agent", EVENT);
+            fail("Expected the event over the hard threshold to be rejected.");
+        } catch (SegueResourceMisuseException e) {
+            // expected
+        }
+
+        assertTrue(misuseMonitor.hasMisused("agent", EVENT));
+        assertTrue(handler.hardThresholdActionExecuted);
+        verify(mockedObjects);
+    }
+
+    /**
+     * Misuse handler with fixed thresholds which records whether its hard threshold action ran.
+     */
+    private static class TestMisuseHandler implements IMisuseHandler {
+        private final Integer softThreshold;
+        private final Integer hardThreshold;
+        private boolean hardThresholdActionExecuted;
+
+        TestMisuseHandler(final Integer softThreshold, final Integer hardThreshold) {
+            this.softThreshold = softThreshold;
+            this.hardThreshold = hardThreshold;
+        }
+
+        @Override
+        public Integer getSoftThreshold() {
+            return softThreshold;
+        }
+
+        @Override
+        public Integer getHardThreshold() {
+            return hardThreshold;
+        }
+
+        @Override
+        public Integer getAccountingIntervalInSeconds() {
+            return Constants.NUMBER_SECONDS_IN_ONE_HOUR;
+        }
+
+        @Override
+        public void executeSoftThresholdAction(final String message) {
+        }
+
+        @Override
+        public void executeHardThresholdAction(final String message) {
+            hardThresholdActionExecuted = true;
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 
 import com.google.common.collect.ImmutableMap;
+import org.apache.commons.beanutils.BeanMap;
 import org.easymock.Capture;
 import org.easymock.EasyMock;
 import org.easymock.IAnswer;
@@ -46,7 +47,10 @@ import uk.ac.cam.cl.dtg.segue.dao.content.IContentManager;
 import uk.ac.cam.cl.dtg.segue.dos.AbstractUserPreferenceManager;
 import uk.ac.cam.cl.dtg.segue.dos.PgUserPreferenceManager;
 import uk.ac.cam.cl.dtg.segue.dos.UserPreference;
+import uk.ac.cam.cl.dtg.segue.dos.users.EmailVerificationStatus;
+import uk.ac.cam.cl.dtg.segue.dos.users.Gender;
 import uk.ac.cam.cl.dtg.segue.dos.users.RegisteredUser;
+import uk.ac.cam.cl.dtg.segue.dos.users.Role;
 import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
 import uk.ac.cam.cl.dtg.segue.dto.content.EmailTemplateDTO;
 import uk.ac.cam.cl.dtg.segue.dto.users.RegisteredUserDTO;
@@ -609,8 +613,7 @@ public class EmailManagerTest {
 
         UserPreference userPreference = new UserPreference(userDTOWithNulls.getId(), SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", false);
         try {
-            EasyMock.expect(userPreferenceManager.getUserPreference(SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", userDTOWithNulls.getId())).andReturn(userPreference);
-            EasyMock.expect(userPreferenceManager.getUserPreference(SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", userDTOWithNulls.getId())).andReturn(userPreference);
+            EasyMock.expect(userPreferenceManager.getUsersPreference(SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", allSelectedUsers)).andReturn(ImmutableMap.of(userDTOWithNulls.getId(), userPreference));
         } catch (SegueDatabaseException e1) {
             e1.printStackTrace();
             Assert.fail();
@@ -627,10 +630,10 @@ public class EmailManagerTest {
                     emailTemplate);
 
             EasyMock.expect(mockContentManager.getContentById(CONTENT_VERSION, "email-template-html"))
-                    .andReturn(htmlTemplate).times(allSelectedUsers.size());
+                    .andReturn(htmlTemplate);
 
             EasyMock.expect(mockContentManager.getContentById(CONTENT_VERSION, "email-template-ascii"))
-                    .andReturn(htmlTemplate).times(allSelectedUsers.size());
+                    .andReturn(htmlTemplate);
 
             EasyMock.expect(mockContentManager.getCurrentContentSHA()).andReturn(CONTENT_VERSION).atLeastOnce();
 
@@ -650,6 +653,78 @@ public class EmailManagerTest {
 
     }
 
+    /**
+     * Make sure that a custom email to many users looks up their preferences and the email templates only once, and
+     * is only sent to those users who have not opted out.
+     */
+    @Test
+    public void sendCustomEmail_manyUsers_preferencesAndTemplatesFetchedOnce() throws Exception {
+        RegisteredUserDTO otherUserDTO = new RegisteredUserDTO();
+        otherUserDTO.setId(2L);
+        otherUserDTO.setEmail("other@test.com");
+        otherUserDTO.setGivenName("other");
+        otherUserDTO.setFamilyName("McOther");
+
+        List<RegisteredUserDTO> allSelectedUsers = Lists.newArrayList();
+        allSelectedUsers.add(userDTO);
+        allSelectedUsers.add(otherUserDTO);
+
+        EasyMock.expect(userPreferenceManager.getUsersPreference(SegueUserPreferences.EMAIL_PREFERENCE.name(),
+                "ASSIGNMENTS", allSelectedUsers)).andReturn(ImmutableMap.of(
+                        userDTO.getId(), new UserPreference(userDTO.getId(),
+                                SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", true),
+                        otherUserDTO.getId(), new UserPreference(otherUserDTO.getId(),
+                                SegueUserPreferences.EMAIL_PREFERENCE.name(), "ASSIGNMENTS", false))).once();
+        EasyMock.replay(userPreferenceManager);
+
+        String contentObjectId = "test-email-template";
+        EasyMock.expect(mockContentManager.getContentById(CONTENT_VERSION, contentObjectId))
+                .andReturn(createDummyEmailTemplate("Hello {{givenName}} {{familyName}}. {{sig}}")).once();
+        EasyMock.expect(mockContentManager.getContentById(CONTENT_VERSION, "email-template-html"))
+                .andReturn(createDummyContentTemplate("<p>{{content}}</p>")).once();
+        EasyMock.expect(mockContentManager.getContentById(CONTENT_VERSION, "email-template-ascii"))
+                .andReturn(createDummyContentTemplate("{{content}}")).once();
+        EasyMock.expect(mockContentManager.getCurrentContentSHA()).andReturn(CONTENT_VERSION).atLeastOnce();
+        EasyMock.replay(mockContentManager);
+
+        EmailManager manager = new EmailManager(emailCommunicator, userPreferenceManager, mockPropertiesLoader,
+                mockContentManager, logManager, generateGlobalTokenMap());
+        manager.sendCustomEmail(userDTO, contentObjectId, allSelectedUsers, EmailType.ASSIGNMENTS);
+
+        // Wait for the emailQueue to spin up and send our message
+        int i = 0;
+        while (!capturedArgument.hasCaptured() && i < 5) {
+            Thread.sleep(100);
+            i++;
+        }
+        email = capturedArgument.getValue();
+        assertEquals("test@test.com", email.getRecipientAddress());
+        assertEquals("Hello tester McTest. Isaac Physics Project", email.getPlainTextMessage());
+        assertEquals("<p>Hello tester McTest. Isaac Physics Project</p>", email.getHTMLMessage());
+        EasyMock.verify(userPreferenceManager, mockContentManager);
+    }
+
+    /**
+     * Make sure that the tokens built for a user match those that would be found by reflection on the user object.
+     */
+    @Test
+    public void getUserTokens_populatedUser_matchesUserProperties() {
+        EmailManager manager = new EmailManager(emailCommunicator, userPreferenceManager, mockPropertiesLoader,
+                mockContentManager, logManager, generateGlobalTokenMap());
+        userDTO.setRole(Role.TEACHER);
+        userDTO.setDateOfBirth(new Date(0L));
+        userDTO.setGender(Gender.OTHER);
+        userDTO.setRegistrationDate(new Date());
+        userDTO.setSchoolOther("A school");
+        userDTO.setEmailVerificationStatus(EmailVerificationStatus.VERIFIED);
+
+        Map userProperties = new BeanMap(userDTO);
+        Map<String, String> expectedTokens = manager.flattenTokenMap(userProperties, Maps.newHashMap(), "");
+        expectedTokens.remove("class");
+
+        assertEquals(expectedTokens, manager.getUserTokens(userDTO));
+    }
+
     /**
      * Make sure that when the templates are published:false, that the method reacts appropriately.
      */
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.comm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Maps;
+import org.easymock.Capture;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.newCapture;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the PgEmailOutbox class.
+ */
+public class PgEmailOutboxTest {
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private PreparedStatement dummyPreparedStatement;
+    private ResultSet dummyResultSet;
+    private ICommunicator<EmailCommunicationMessage> dummyCommunicator;
+
+    /**
+     * Initial configuration of tests.
+     */
+    @Before
+    @SuppressWarnings("unchecked")
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createNiceMock(Connection.class);
+        this.dummyPreparedStatement = createNiceMock(PreparedStatement.class);
+        this.dummyResultSet = createNiceMock(ResultSet.class);
+        this.dummyCommunicator = createMock(ICommunicator.class);
+    }
+
+    /**
+     * Verify that emails added to the outbox are read back and sent together, that sent emails are deleted, and that
+     * an email which could not be sent is rescheduled rather than given up on.
+     */
+    @Test
+    @SuppressWarnings("unchecked")
+    public void sendBatch_oneEmailFails_sentEmailDeletedAndFailedEmailRetried() throws Exception {
+        EmailCommunicationMessage email = new EmailCommunicationMessage(1L, "student@example.org", "Subject",
+                "Plain text", "<p>HTML</p>", EmailType.EVENTS, null, null, null, "teacher@example.org", "Teacher",
+                Collections.singletonList(new EmailAttachment("event.ics", "text/calendar", "BEGIN:VCALENDAR")));
+        EmailCommunicationMessage otherEmail = new EmailCommunicationMessage("teacher@example.org", "Other",
+                "Other plain text", null, EmailType.SYSTEM);
+
+        // Add the emails, capturing the json written for each:
+        Capture<String> writtenJson = newCapture();
+        Capture<String> otherWrittenJson = newCapture();
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).times(4);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).anyTimes();
+        dummyPreparedStatement.setString(eq(3), capture(writtenJson));
+        expectLastCall().once();
+        dummyPreparedStatement.setString(eq(3), capture(otherWrittenJson));
+        expectLastCall().once();
+
+        // Then claim them both back, in no particular order:
+        expect(dummyPreparedStatement.executeQuery()).andReturn(dummyResultSet).once();
+        expect(dummyResultSet.next()).andReturn(true).andReturn(true).andReturn(false);
+        expect(dummyResultSet.getLong("id")).andReturn(1L).andReturn(2L);
+        expect(dummyResultSet.getInt("priority")).andReturn(EmailType.EVENTS.getPriority())
+                .andReturn(EmailType.SYSTEM.getPriority());
+        expect(dummyResultSet.getInt("attempts")).andReturn(1).andReturn(1);
+        expect(dummyResultSet.getString("email_type")).andReturn(EmailType.EVENTS.name())
+                .andReturn(EmailType.SYSTEM.name());
+        expect(dummyResultSet.getString("message")).andAnswer(writtenJson::getValue)
+                .andAnswer(otherWrittenJson::getValue);
+
+        // Both should be sent as one batch, in priority order, and the system email fail:
+        Capture<List<EmailCommunicationMessage>> sentEmails = newCapture();
+        expect(dummyCommunicator.sendMessages(capture(sentEmails))).andAnswer(() -> {
+            Map<EmailCommunicationMessage, CommunicationException> failures = Maps.newIdentityHashMap();
+            failures.put(sentEmails.getValue().get(0), new CommunicationException(new Exception("Unavailable")));
+            return failures;
+        }).once();
+
+        // The failed email should be rescheduled and the sent email deleted:
+        dummyPreparedStatement.setBoolean(2, false);
+        expectLastCall().once();
+        dummyPreparedStatement.setLong(3, 60L);
+        expectLastCall().once();
+        dummyPreparedStatement.setLong(4, 2L);
+        expectLastCall().once();
+        Array dummyArray = createNiceMock(Array.class);
+        expect(dummyConnection.createArrayOf(eq("bigint"), aryEq(new Object[] {1L}))).andReturn(dummyArray).once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyResultSet,
+                dummyCommunicator, dummyArray};
+        replay(mockedObjects);
+
+        PgEmailOutbox outbox = new PgEmailOutbox(dummyPostgresSqlDb, new ObjectMapper(), dummyCommunicator, null);
+        outbox.add(email);
+        outbox.add(otherEmail);
+        assertEquals(2, outbox.sendBatch());
+
+        EmailCommunicationMessage otherReadEmail = sentEmails.getValue().get(0);
+        assertEquals(otherEmail.getSubject(), otherReadEmail.getSubject());
+        assertNull(otherReadEmail.getUserId());
+        assertNull(otherReadEmail.getHTMLMessage());
+        assertNull(otherReadEmail.getAttachments());
+
+        EmailCommunicationMessage readEmail = sentEmails.getValue().get(1);
+        assertEquals(email.getUserId(), readEmail.getUserId());
+        assertEquals(email.getRecipientAddress(), readEmail.getRecipientAddress());
+        assertEquals(email.getHTMLMessage(), readEmail.getHTMLMessage());
+        assertEquals(email.getEmailType(), readEmail.getEmailType());
+        assertEquals(email.getReplyToName(), readEmail.getReplyToName());
+        assertNull(readEmail.getOverrideFromAddress());
+        assertEquals("event.ics", readEmail.getAttachments().get(0).getFileName());
+        assertEquals("BEGIN:VCALENDAR", readEmail.getAttachments().get(0).getAttachment());
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that closing the outbox releases the leases this node holds, without counting them as attempts.
+     */
+    @Test
+    public void close_noBatchBeingSent_leasesReleased() throws Exception {
+        Capture<String> releaseQuery = newCapture();
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(capture(releaseQuery))).andReturn(dummyPreparedStatement).once();
+        dummyPreparedStatement.setString(eq(1), anyString());
+        expectLastCall().once();
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(2).once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyCommunicator};
+        replay(mockedObjects);
+
+        new PgEmailOutbox(dummyPostgresSqlDb, new ObjectMapper(), dummyCommunicator, null).close();
+
+        assertTrue(releaseQuery.getValue().contains("claimed_by = NULL"));
+        assertTrue(releaseQuery.getValue().contains("attempts - 1"));
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that a batch claimed while the outbox is closing is not sent, so that its lease can be released.
+     */
+    @Test
+    public void sendBatch_outboxClosed_batchNotSent() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).times(2);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).times(2);
+        expect(dummyPreparedStatement.executeQuery()).andReturn(dummyResultSet).once();
+        expect(dummyResultSet.next()).andReturn(true).andReturn(false);
+        expect(dummyResultSet.getLong("id")).andReturn(1L);
+        expect(dummyResultSet.getString("email_type")).andReturn(EmailType.SYSTEM.name());
+        expect(dummyResultSet.getString("message")).andReturn("{\"subject\": \"Subject\"}");
+
+        // The communicator is a strict mock with no expectations, so sending anything fails the test.
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyResultSet,
+                dummyCommunicator};
+        replay(mockedObjects);
+
+        PgEmailOutbox outbox = new PgEmailOutbox(dummyPostgresSqlDb, new ObjectMapper(), dummyCommunicator, null);
+        outbox.close();
+        assertEquals(1, outbox.sendBatch());
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that the delay between attempts to send an email doubles each time, up to a limit.
+     */
+    @Test
+    public void getRetryDelaySeconds_repeatedFailures_delayDoublesUpToLimit() {
+        assertEquals(60, PgEmailOutbox.getRetryDelaySeconds(1));
+        assertEquals(120, PgEmailOutbox.getRetryDelaySeconds(2));
+        assertEquals(1920, PgEmailOutbox.getRetryDelaySeconds(6));
+        assertEquals(3600, PgEmailOutbox.getRetryDelaySeconds(7));
+        assertEquals(3600, PgEmailOutbox.getRetryDelaySeconds(100));
+    }
+}
@@ -15,6 +15,7 @@
  */
 package uk.ac.cam.cl.dtg.segue.dao;
 
+import org.easymock.Capture;
 import org.junit.Before;
 import org.junit.Test;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
@@ -24,12 +25,17 @@ import uk.ac.cam.cl.dtg.segue.dao.content.GitContentManager;
 import uk.ac.cam.cl.dtg.segue.database.GitDb;
 import uk.ac.cam.cl.dtg.segue.dos.content.Content;
 import uk.ac.cam.cl.dtg.segue.dos.content.ContentBase;
+import uk.ac.cam.cl.dtg.segue.dto.ResultsWrapper;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentSummaryDTO;
+import uk.ac.cam.cl.dtg.segue.search.FieldProjection;
 import uk.ac.cam.cl.dtg.segue.search.ISearchProvider;
 import uk.ac.cam.cl.dtg.util.PropertiesLoader;
 
 import java.util.*;
 
 import static org.easymock.EasyMock.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -60,6 +66,8 @@ public class GitContentManagerTest {
 		this.searchProvider = createMock(ISearchProvider.class);
 		this.contentMapper = createMock(ContentMapper.class);
 		this.properties = createMock(PropertiesLoader.class);
+		expect(this.properties.getProperty(anyString())).andReturn(null).anyTimes();
+		replay(this.properties);
 
 		this.defaultGCM = new GitContentManager(database, searchProvider,
 				contentMapper, properties);
@@ -147,6 +155,37 @@ public class GitContentManagerTest {
 		}
 	}
 
+	/**
+	 * Test that summaries are fetched with only the summary fields of each
+	 * result, and are mapped from them directly.
+	 */
+	@Test
+	public void findSummariesByFieldNames_questionPageFound_summaryFieldsMapped() throws Exception {
+		Capture<FieldProjection> projection = newCapture();
+		expect(searchProvider.matchSearch(eq(INITIAL_VERSION), eq("content"), anyObject(), eq(0), eq(10),
+				anyObject(), isNull(), capture(projection))).andReturn(new ResultsWrapper<>(
+				Collections.singletonList("{\"id\":\"a_question\",\"title\":\"A question\","
+						+ "\"type\":\"isaacQuestionPage\",\"level\":2,\"tags\":[\"physics\"],"
+						+ "\"difficulty\":3,\"published\":true}"), 1L));
+		replay(searchProvider);
+
+		GitContentManager contentManager = new GitContentManager(database, searchProvider, new ContentMapper());
+		ResultsWrapper<ContentSummaryDTO> summaries = contentManager.findSummariesByFieldNames(INITIAL_VERSION,
+				Collections.emptyList(), 0, 10, null);
+
+		assertEquals(1L, (long) summaries.getTotalResults());
+		ContentSummaryDTO summary = summaries.getResults().get(0);
+		assertEquals("a_question", summary.getId());
+		assertEquals("A question", summary.getTitle());
+		assertEquals("2", summary.getLevel());
+		assertEquals("3", summary.getDifficulty());
+		assertEquals(Collections.singletonList("physics"), summary.getTags());
+		List<String> includedFields = Arrays.asList(projection.getValue().getIncludes());
+		assertTrue(includedFields.contains("title"));
+		assertFalse(includedFields.contains("children"));
+		verify(searchProvider);
+	}
+
 	/**
 	 * Helper method for the
 	 * flattenContentObjects_flattenMultiTierObject_checkCorrectObjectReturned
@@ -0,0 +1,143 @@
+/**
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+import uk.ac.cam.cl.dtg.segue.dos.LogEvent;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Date;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+
+/**
+ * Test class for the PgLogEventWriter class.
+ */
+public class PgLogEventWriterTest {
+    private static final long LONG_FLUSH_INTERVAL_MILLISECONDS = 60000;
+
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private LocationManager dummyLocationManager;
+    private Connection dummyConnection;
+    private PreparedStatement dummyPreparedStatement;
+
+    /**
+     * Initial configuration of tests.
+     */
+    @Before
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyLocationManager = createNiceMock(LocationManager.class);
+        this.dummyConnection = createNiceMock(Connection.class);
+        this.dummyPreparedStatement = createNiceMock(PreparedStatement.class);
+    }
+
+    /**
+     * Verify that queued events are written together in one batch, and that flushPending waits for them.
+     */
+    @Test
+    public void flushPending_severalQueuedEvents_writtenInOneBatch() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        dummyPreparedStatement.addBatch();
+        expectLastCall().times(3);
+        expect(dummyPreparedStatement.executeBatch()).andReturn(new int[] {1, 1, 1}).once();
+        dummyConnection.commit();
+        expectLastCall().once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement};
+        replay(mockedObjects);
+        replay(dummyLocationManager);
+
+        PgLogEventWriter writer = new PgLogEventWriter(dummyPostgresSqlDb, dummyLocationManager, 100, 100,
+                LONG_FLUSH_INTERVAL_MILLISECONDS, PgLogEventWriter.OverflowPolicy.WRITE_THROUGH);
+        for (int i = 0; i < 3; i++) {
+            writer.write(buildLogEvent("user" + i), "{}");
+        }
+        writer.flushPending();
+
+        verify(mockedObjects);
+        writer.close();
+    }
+
+    /**
+     * Verify that if a batch fails, its events are retried individually rather than all being lost.
+     */
+    @Test
+    public void close_batchInsertFails_eventsRetriedIndividually() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).times(2);
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).times(3);
+        expect(dummyPreparedStatement.executeBatch()).andThrow(new SQLException("bad row")).once();
+        dummyConnection.rollback();
+        expectLastCall().once();
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(1).times(2);
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement};
+        replay(mockedObjects);
+        replay(dummyLocationManager);
+
+        PgLogEventWriter writer = new PgLogEventWriter(dummyPostgresSqlDb, dummyLocationManager, 100, 100,
+                LONG_FLUSH_INTERVAL_MILLISECONDS, PgLogEventWriter.OverflowPolicy.WRITE_THROUGH);
+        writer.write(buildLogEvent("user1"), "{}");
+        writer.write(buildLogEvent("user2"), "{}");
+        writer.close();
+
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that events logged after the writer has been closed are written synchronously.
+     */
+    @Test
+    public void write_afterClose_writtenSynchronously() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(1).once();
+        dummyLocationManager.refreshLocationInBackground("127.0.0.2");
+        expectLastCall().once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyLocationManager};
+        replay(mockedObjects);
+
+        PgLogEventWriter writer = new PgLogEventWriter(dummyPostgresSqlDb, dummyLocationManager, 100, 100,
+                LONG_FLUSH_INTERVAL_MILLISECONDS, PgLogEventWriter.OverflowPolicy.WRITE_THROUGH);
+        writer.close();
+        LogEvent logEvent = buildLogEvent("user1");
+        logEvent.setIpAddress("127.0.0.2");
+        writer.write(logEvent, "{}");
+
+        verify(mockedObjects);
+    }
+
+    private static LogEvent buildLogEvent(final String userId) {
+        LogEvent logEvent = new LogEvent();
+        logEvent.setUserId(userId);
+        logEvent.setAnonymousUser(false);
+        logEvent.setEventType("TEST_EVENT");
+        logEvent.setTimestamp(new Date());
+        return logEvent;
+    }
+}
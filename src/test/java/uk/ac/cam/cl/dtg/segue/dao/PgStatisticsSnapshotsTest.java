@@ -0,0 +1,98 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+import uk.ac.cam.cl.dtg.segue.dos.StatisticsSnapshot;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Map;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for the PgStatisticsSnapshots class.
+ */
+public class PgStatisticsSnapshotsTest {
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private Connection dummyConnection;
+    private PreparedStatement dummyPreparedStatement;
+    private ResultSet dummyResultSet;
+
+    /**
+     * Initial configuration of tests.
+     */
+    @Before
+    public final void setUp() throws Exception {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyConnection = createNiceMock(Connection.class);
+        this.dummyPreparedStatement = createNiceMock(PreparedStatement.class);
+        this.dummyResultSet = createNiceMock(ResultSet.class);
+
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).once();
+        expect(dummyPreparedStatement.executeQuery()).andReturn(dummyResultSet).once();
+    }
+
+    /**
+     * Verify that a snapshot is returned with its statistics and the time it was computed.
+     */
+    @Test
+    public void getSnapshot_snapshotComputed_statisticsAndRefreshTimeReturned() throws Exception {
+        expect(dummyResultSet.next()).andReturn(true).once();
+        expect(dummyResultSet.getString("snapshot"))
+                .andReturn("{\"groupCount\": 12, \"userRoles\": {\"STUDENT\": 3}}").once();
+        expect(dummyResultSet.getTimestamp("refreshed")).andReturn(new Timestamp(1000L)).once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyResultSet};
+        replay(mockedObjects);
+
+        StatisticsSnapshot snapshot = new PgStatisticsSnapshots(dummyPostgresSqlDb)
+                .getSnapshot(PgStatisticsSnapshots.GENERAL_STATISTICS);
+
+        assertEquals(12, snapshot.getStatistics().get("groupCount"));
+        assertEquals(3, ((Map<?, ?>) snapshot.getStatistics().get("userRoles")).get("STUDENT"));
+        assertEquals(new Date(1000L), snapshot.getRefreshed());
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that no snapshot is returned before the scheduled job has first computed one.
+     */
+    @Test
+    public void getSnapshot_notYetComputed_nullReturned() throws Exception {
+        expect(dummyResultSet.next()).andReturn(false).once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement, dummyResultSet};
+        replay(mockedObjects);
+
+        assertNull(new PgStatisticsSnapshots(dummyPostgresSqlDb).getSnapshot(PgStatisticsSnapshots.GENERAL_STATISTICS));
+        verify(mockedObjects);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
+
+import java.util.Collections;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for the ContentBatchLoader class.
+ */
+public class ContentBatchLoaderTest {
+
+    /**
+     * Verify that every id wanted before the first load is looked up in one batch, without duplicates, and that later
+     * loads of those ids, found or not, do not look them up again.
+     */
+    @Test
+    public void load_severalIdsWanted_lookedUpOnceTogether() throws Exception {
+        ContentDTO first = createContent("first");
+        ContentDTO second = createContent("second");
+
+        IContentManager contentManager = createMock(IContentManager.class);
+        expect(contentManager.getContentByIds("sha", ImmutableSet.of("first", "second", "missing")))
+                .andReturn(ImmutableMap.of("first", first, "second", second)).once();
+        expect(contentManager.getContentByIds("sha", Collections.singleton("later")))
+                .andReturn(Collections.emptyMap()).once();
+        replay(contentManager);
+
+        ContentBatchLoader loader = new ContentBatchLoader(contentManager, "sha");
+        loader.want(Lists.newArrayList("first", "second", "first", "missing"));
+
+        assertSame(second, loader.load("second"));
+        assertSame(first, loader.load("first"));
+        assertNull(loader.load("missing"));
+        assertEquals(ImmutableMap.of("first", first, "second", second),
+                loader.loadAll(Lists.newArrayList("first", "missing", "second")));
+        assertNull(loader.load("later"));
+        verify(contentManager);
+    }
+
+    /**
+     * @param id - of the content.
+     * @return a piece of content.
+     */
+    private static ContentDTO createContent(final String id) {
+        ContentDTO content = new ContentDTO();
+        content.setId(id);
+        return content;
+    }
+}
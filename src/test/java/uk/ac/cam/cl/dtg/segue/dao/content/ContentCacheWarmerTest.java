@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentCacheWarmer.Lookup;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the ContentCacheWarmer class.
+ */
+public class ContentCacheWarmerTest {
+    private List<String> warmedLookups;
+    private ContentCacheWarmer warmer;
+
+    /**
+     * Create a warmer which warms the two most frequent lookups as soon as asked to, recording what it warmed.
+     */
+    @Before
+    public final void setUp() {
+        warmedLookups = Lists.newArrayList();
+        warmer = new ContentCacheWarmer(2, (version, lookup, id) -> {
+            warmedLookups.add(version + "~" + lookup + "~" + id);
+            // A lookup made while warming should not count towards the next warm up:
+            warmer.recordLookup(lookup, id);
+        }, MoreExecutors.newDirectExecutorService());
+    }
+
+    /**
+     * Verify that the most frequent lookups of the previous version are loaded from a new version when it is first
+     * seen, and only then.
+     */
+    @Test
+    public void versionObserved_newVersion_mostFrequentLookupsWarmed() {
+        warmer.versionObserved("v1");
+        for (int i = 0; i < 3; i++) {
+            warmer.recordLookup(Lookup.CONTENT_BY_ID, "popular");
+            warmer.recordLookup(Lookup.CONTENT_SNAPSHOT_BY_ID, "question");
+        }
+        warmer.recordLookup(Lookup.CONTENT_BY_ID, "question");
+        warmer.recordLookup(Lookup.CONTENT_DO_BY_ID, "rare");
+
+        warmer.versionObserved("v1");
+        assertTrue(warmedLookups.isEmpty());
+
+        warmer.versionObserved("v2");
+        assertEquals(2, warmedLookups.size());
+        assertTrue(warmedLookups.contains("v2~CONTENT_BY_ID~popular"));
+        assertTrue(warmedLookups.contains("v2~CONTENT_SNAPSHOT_BY_ID~question"));
+    }
+
+    /**
+     * Verify that lookup counts decay at each version change, so that recent lookups outrank stale ones.
+     */
+    @Test
+    public void versionObserved_severalVersions_recentLookupsPreferred() {
+        warmer.versionObserved("v1");
+        for (int i = 0; i < 4; i++) {
+            warmer.recordLookup(Lookup.CONTENT_BY_ID, "old");
+        }
+        warmer.versionObserved("v2");
+
+        for (int i = 0; i < 3; i++) {
+            warmer.recordLookup(Lookup.CONTENT_BY_ID, "new");
+            warmer.recordLookup(Lookup.CONTENT_DO_BY_ID, "new");
+        }
+        warmedLookups.clear();
+        warmer.versionObserved("v3");
+
+        assertEquals(2, warmedLookups.size());
+        assertTrue(warmedLookups.contains("v3~CONTENT_BY_ID~new"));
+        assertTrue(warmedLookups.contains("v3~CONTENT_DO_BY_ID~new"));
+    }
+}
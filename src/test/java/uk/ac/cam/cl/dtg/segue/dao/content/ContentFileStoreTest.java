@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.collect.ImmutableMap;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.database.GitDb;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Test class for the ContentFileStore class.
+ */
+public class ContentFileStoreTest {
+    private static final ObjectId SMALL_FILE_ID = ObjectId.fromString("1111111111111111111111111111111111111111");
+    private static final ObjectId LARGE_FILE_ID = ObjectId.fromString("2222222222222222222222222222222222222222");
+
+    private GitDb database;
+    private byte[] smallFile;
+    private byte[] largeFile;
+
+    /**
+     * Create a repository holding one small and one large file, each at two paths.
+     */
+    @Before
+    public final void setUp() {
+        database = createMock(GitDb.class);
+        smallFile = "<svg></svg>".getBytes(StandardCharsets.UTF_8);
+        largeFile = new byte[(int) ContentFileStore.MAX_CACHED_FILE_BYTES + 10];
+        for (int i = 0; i < largeFile.length; i++) {
+            largeFile[i] = (byte) i;
+        }
+    }
+
+    /**
+     * Verify that the files in a version are only listed once, that small files are only read once even when found
+     * at another path, and that missing files are not found.
+     */
+    @Test
+    public void getFile_smallFilesRequestedRepeatedly_repositoryReadOnce() throws Exception {
+        expect(database.getFileIndex("sha")).andReturn(ImmutableMap.of("a/small.svg", SMALL_FILE_ID,
+                "b/copy.svg", SMALL_FILE_ID)).once();
+        expect(database.openObject(SMALL_FILE_ID)).andReturn(new ObjectLoader.SmallObject(Constants.OBJ_BLOB,
+                smallFile)).once();
+        replay(database);
+
+        ContentFileStore store = new ContentFileStore(database, null);
+        ContentFile first = store.getFile("sha", "a/small.svg");
+        ContentFile second = store.getFile("sha", "b/copy.svg");
+
+        assertNotNull(first);
+        assertEquals(SMALL_FILE_ID.getName(), first.getObjectId());
+        assertEquals("b/copy.svg", second.getPath());
+        assertArrayEquals(smallFile, second.getCachedContents());
+        assertNull(store.getFile("sha", "a/missing.svg"));
+        verify(database);
+    }
+
+    /**
+     * Verify that large files are not cached, and that part of one can be written.
+     */
+    @Test
+    public void getFile_largeFile_streamedFromRepository() throws Exception {
+        expect(database.getFileIndex("sha")).andReturn(ImmutableMap.of("large.png", LARGE_FILE_ID)).once();
+        expect(database.openObject(LARGE_FILE_ID)).andReturn(new ObjectLoader.SmallObject(Constants.OBJ_BLOB,
+                largeFile)).times(2);
+        replay(database);
+
+        ContentFileStore store = new ContentFileStore(database, null);
+        store.getFile("sha", "large.png");
+        ContentFile file = store.getFile("sha", "large.png");
+
+        assertNull(file.getCachedContents());
+        assertEquals(largeFile.length, file.getSize());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        file.writeTo(out, 100, 50);
+        assertArrayEquals(Arrays.copyOfRange(largeFile, 100, 150), out.toByteArray());
+        verify(database);
+    }
+
+    /**
+     * Verify that a version which does not exist is looked for again, as it may not have been fetched yet.
+     */
+    @Test
+    public void getFile_unknownVersion_notCached() throws Exception {
+        expect(database.getFileIndex("unknown")).andReturn(null).times(2);
+        replay(database);
+
+        ContentFileStore store = new ContentFileStore(database, null);
+        assertNull(store.getFile("unknown", "a/small.svg"));
+        assertNull(store.getFile("unknown", "a/small.svg"));
+        verify(database);
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.dao.content;
+
+import com.google.common.collect.Lists;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.isaac.dto.IsaacQuestionPageDTO;
+import uk.ac.cam.cl.dtg.segue.dto.QuestionValidationResponseDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ChoiceDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ChoiceQuestionDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentBaseDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentDTO;
+import uk.ac.cam.cl.dtg.segue.dto.content.ContentSummaryDTO;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test class for the ContentOverlay class.
+ */
+public class ContentOverlayTest {
+    private IsaacQuestionPageDTO snapshot;
+    private ContentDTO introduction;
+    private ContentDTO section;
+    private ChoiceQuestionDTO question;
+    private ContentSummaryDTO relatedQuestion;
+
+    /**
+     * Create a question page with some text, a question nested in a section, and some related content.
+     */
+    @Before
+    public final void setUp() {
+        introduction = new ContentDTO();
+        introduction.setId("introduction");
+        introduction.setValue("Some text");
+
+        question = new ChoiceQuestionDTO();
+        question.setId("page|question");
+        question.setChoices(Lists.newArrayList(createChoice("a"), createChoice("b"), createChoice("c")));
+
+        section = new ContentDTO();
+        section.setId("section");
+        section.setChildren(Lists.<ContentBaseDTO>newArrayList(question));
+
+        relatedQuestion = new ContentSummaryDTO();
+        relatedQuestion.setId("related");
+
+        snapshot = new IsaacQuestionPageDTO();
+        snapshot.setId("page");
+        snapshot.setTitle("A question page");
+        snapshot.setChildren(Lists.newArrayList(introduction, section));
+        snapshot.setRelatedContent(Lists.newArrayList(relatedQuestion));
+    }
+
+    /**
+     * Verify that augmenting an overlay in all the ways users' question pages are augmented leaves the snapshot alone.
+     */
+    @Test
+    public void copyForAugmentation_overlayAugmented_snapshotUnchanged() {
+        IsaacQuestionPageDTO overlay = ContentOverlay.copyForAugmentation(snapshot);
+
+        ChoiceQuestionDTO overlayQuestion = (ChoiceQuestionDTO) ((ContentDTO) overlay.getChildren().get(1))
+                .getChildren().get(0);
+        overlayQuestion.setBestAttempt(new QuestionValidationResponseDTO());
+        Collections.reverse(overlayQuestion.getChoices());
+        overlay.getRelatedContent().get(0).setCorrect(true);
+        overlay.setTitle("Changed");
+
+        assertEquals("A question page", snapshot.getTitle());
+        assertSame(section, snapshot.getChildren().get(1));
+        assertSame(question, section.getChildren().get(0));
+        assertNull(question.getBestAttempt());
+        assertEquals("a", question.getChoices().get(0).getValue());
+        assertSame(relatedQuestion, snapshot.getRelatedContent().get(0));
+        assertNull(relatedQuestion.getCorrect());
+
+        assertEquals("page|question", overlayQuestion.getId());
+        assertEquals("c", overlayQuestion.getChoices().get(0).getValue());
+        assertEquals("related", overlay.getRelatedContent().get(0).getId());
+    }
+
+    /**
+     * Verify that content which augmentation does not change is shared with the snapshot rather than copied.
+     */
+    @Test
+    public void copyForAugmentation_contentWithoutQuestions_sharedWithSnapshot() {
+        IsaacQuestionPageDTO overlay = ContentOverlay.copyForAugmentation(snapshot);
+
+        assertNotSame(snapshot, overlay);
+        assertSame(introduction, overlay.getChildren().get(0));
+        assertNotSame(section, overlay.getChildren().get(1));
+        assertSame(question.getChoices().get(0),
+                ((ChoiceQuestionDTO) ((ContentDTO) overlay.getChildren().get(1)).getChildren().get(0))
+                        .getChoices().get(0));
+    }
+
+    /**
+     * @param value - the value of the choice.
+     * @return a choice.
+     */
+    private static ChoiceDTO createChoice(final String value) {
+        ChoiceDTO choice = new ChoiceDTO();
+        choice.setValue(value);
+        return choice;
+    }
+}
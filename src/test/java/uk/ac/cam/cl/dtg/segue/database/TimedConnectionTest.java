@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.database;
+
+import org.junit.After;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.api.monitors.RequestTimings;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the TimedConnection class.
+ */
+public class TimedConnectionTest {
+
+    /**
+     * Stop recording timings on this thread.
+     */
+    @After
+    public final void tearDown() {
+        RequestTimings.clear();
+    }
+
+    /**
+     * Verify that statement executions, including failed ones, are recorded in the request's timings, and that other
+     * calls pass straight through to the real connection and statement.
+     */
+    @Test
+    public void wrap_statementsExecuted_executionsTimed() throws Exception {
+        Connection connection = createMock(Connection.class);
+        PreparedStatement statement = createMock(PreparedStatement.class);
+        ResultSet resultSet = createMock(ResultSet.class);
+        expect(connection.prepareStatement("SELECT 1")).andReturn(statement);
+        statement.setLong(1, 2L);
+        expectLastCall();
+        expect(statement.executeQuery()).andReturn(resultSet);
+        expect(statement.executeUpdate()).andThrow(new SQLException("Failed"));
+        connection.close();
+        expectLastCall();
+        replay(connection, statement, resultSet);
+
+        RequestTimings timings = RequestTimings.start();
+        Connection timedConnection = TimedConnection.wrap(connection, timings);
+        PreparedStatement timedStatement = timedConnection.prepareStatement("SELECT 1");
+        timedStatement.setLong(1, 2L);
+        assertSame(resultSet, timedStatement.executeQuery());
+        try {
+            timedStatement.executeUpdate();
+            fail("Expected the statement's exception to be thrown.");
+        } catch (SQLException e) {
+            assertEquals("Failed", e.getMessage());
+        }
+        timedConnection.close();
+
+        assertEquals(2, timings.getCalls(RequestTimings.Component.DATABASE_QUERY));
+        assertTrue(timings.toServerTimingHeader(5).startsWith("db-query;dur="));
+        assertTrue(timings.toServerTimingHeader(5).endsWith(", total;dur=5"));
+        verify(connection, statement, resultSet);
+    }
+}
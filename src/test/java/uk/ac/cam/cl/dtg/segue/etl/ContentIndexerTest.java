@@ -18,15 +18,24 @@ package uk.ac.cam.cl.dtg.segue.etl;
 import static org.easymock.EasyMock.*;
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.*;
 
 import com.google.api.client.util.Maps;
 import com.google.api.client.util.Sets;
 import com.google.common.collect.ImmutableMap;
+import org.apache.commons.io.FileUtils;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.eclipse.jgit.api.Git;
 import org.junit.Before;
 import org.junit.Test;
 import org.powermock.core.classloader.annotations.PowerMockIgnore;
 import org.powermock.reflect.Whitebox;
+import org.reflections.Reflections;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -76,14 +85,6 @@ public class ContentIndexerTest {
 	public void buildSearchIndexes_sendContentToSearchProvider_checkSearchProviderIsSentAllImportantObject()
 			throws Exception {
 		reset(database, searchProvider);
-		String uniqueObjectId = UUID.randomUUID().toString();
-		String uniqueObjectHash = UUID.randomUUID().toString();
-
-		Map<String, Content> contents = new TreeMap<>();
-		Content content = new Content();
-		content.setId(uniqueObjectId);
-		contents.put(uniqueObjectId, content);
-
 		Set<String> someTagsList = Sets.newHashSet();
 
 		Map<String, String> someUnitsMap = ImmutableMap.of("N","N", "km", "km");
@@ -101,12 +102,8 @@ public class ContentIndexerTest {
 
         // prepare pre-canned responses for the object mapper
 		ObjectMapper objectMapper = createMock(ObjectMapper.class);
-		expect(searchProvider.hasIndex(INITIAL_VERSION, Constants.CONTENT_INDEX_TYPE.CONTENT.toString())).andReturn(false)
-				.once();
 		expect(contentMapper.generateNewPreconfiguredContentMapper()).andReturn(objectMapper)
 				.once();
-		expect(objectMapper.writeValueAsString(content)).andReturn(
-				uniqueObjectHash).once();
         expect(objectMapper.writeValueAsString(
                 anyObject())).andReturn(versionMeta.toString()).once(); // expects versionMeta - possibly differing date
         expect(objectMapper.writeValueAsString(
@@ -132,15 +129,15 @@ public class ContentIndexerTest {
         searchProvider.indexObject(INITIAL_VERSION, "metadata", tagsMeta.toString(), "tags");
         expectLastCall().atLeastOnce();
 
-        // Ensure units are indexed
-        searchProvider.indexObject(eq(INITIAL_VERSION), eq("unit"), eq(someUnitsMap.toString()));
-        expectLastCall().atLeastOnce();
-        searchProvider.indexObject(eq(INITIAL_VERSION), eq("publishedUnit"), eq(publishedUnitsMap.toString()));
-        expectLastCall().atLeastOnce();
+        // Ensure units are bulk indexed
+        searchProvider.bulkIndex(eq(INITIAL_VERSION), eq("unit"), anyObject());
+        expectLastCall().once();
+        searchProvider.bulkIndex(eq(INITIAL_VERSION), eq("publishedUnit"), anyObject());
+        expectLastCall().once();
 
-        // Ensure at least one bulk index for general content is requested
-        searchProvider.bulkIndex(eq(INITIAL_VERSION), eq(Constants.CONTENT_INDEX_TYPE.CONTENT.toString()), anyObject());
-		expectLastCall().once();
+        // Ensure content errors are bulk indexed
+        searchProvider.bulkIndex(eq(INITIAL_VERSION), eq("contentError"), anyObject());
+        expectLastCall().once();
 
 		replay(searchProvider, contentMapper, objectMapper);
 
@@ -150,11 +147,131 @@ public class ContentIndexerTest {
         // Method under test
 		Whitebox.invokeMethod(contentIndexer,
 				"buildElasticSearchIndex",
-                INITIAL_VERSION, contents, someTagsList, someUnitsMap, publishedUnitsMap, someContentProblemsMap);
+                INITIAL_VERSION, someTagsList, someUnitsMap, publishedUnitsMap, someContentProblemsMap);
 
 		verify(searchProvider, contentMapper, objectMapper);
 	}
 
+    /**
+     * Test that buildGitContentIndex parses every json file in a commit, streams the content to the search provider
+     * and records problems with files it cannot use.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void buildGitContentIndex_repositoryWithProblemFiles_checkContentStreamedAndProblemsRecorded()
+            throws Exception {
+        File repoDirectory = Files.createTempDirectory("content-indexer-test").toFile();
+        try (Git git = Git.init().setDirectory(repoDirectory).call()) {
+            writeFile(repoDirectory, "concepts/a.json", "{\"id\": \"page_a\", \"type\": \"content\", "
+                    + "\"title\": \"A\", \"tags\": [\" physics \"], \"children\": "
+                    + "[{\"id\": \"child\", \"type\": \"content\", \"value\": \"Child\"}]}");
+            writeFile(repoDirectory, "concepts/b.json",
+                    "{\"id\": \"page_a\", \"type\": \"content\", \"title\": \"Not A\"}");
+            writeFile(repoDirectory, "concepts/c.json", "{\"id\": \"page_c\", \"type\": \"content\"}");
+            writeFile(repoDirectory, "concepts/broken.json", "{\"id\": \"broken\", \"type\": ");
+            git.add().addFilepattern(".").call();
+            String sha = git.commit().setMessage("Test content").setAuthor("test", "test@example.com").call().getName();
+
+            ContentMapper realContentMapper = new ContentMapper(new Reflections("uk.ac.cam.cl.dtg.segue"));
+            ElasticSearchIndexer.BulkIndexSession bulkIndexSession
+                    = createMock(ElasticSearchIndexer.BulkIndexSession.class);
+            expect(searchProvider.startBulkIndex(sha, Constants.CONTENT_INDEX_TYPE.CONTENT.toString()))
+                    .andReturn(bulkIndexSession).once();
+            Capture<String> indexedIds = Capture.newInstance(CaptureType.ALL);
+            bulkIndexSession.add(capture(indexedIds), anyString());
+            expectLastCall().atLeastOnce();
+            bulkIndexSession.close();
+            expectLastCall().once();
+            replay(searchProvider, bulkIndexSession);
+
+            ContentIndexer contentIndexer = new ContentIndexer(new GitDb(git), searchProvider, realContentMapper);
+            Map<String, Content> contentCache = new HashMap<>();
+            Set<String> tags = new HashSet<>();
+            Map<Content, List<String>> indexProblemCache = new HashMap<>();
+
+            Whitebox.invokeMethod(contentIndexer, "buildGitContentIndex", sha, true, contentCache, tags,
+                    new HashMap<String, String>(), new HashMap<String, String>(), indexProblemCache);
+
+            verify(searchProvider, bulkIndexSession);
+            assertEquals(Arrays.asList("page_a", "page_a|child", "page_c").size(), indexedIds.getValues().size());
+            assertEquals(new HashSet<>(Arrays.asList("page_a", "page_a|child", "page_c")),
+                    new HashSet<>(indexedIds.getValues()));
+            assertEquals(new HashSet<>(indexedIds.getValues()), contentCache.keySet());
+            assertEquals("concepts/a.json", contentCache.get("page_a").getCanonicalSourceFile());
+            assertEquals(Collections.singleton("physics"), tags);
+
+            Set<String> problemFiles = new HashSet<>();
+            for (Content c : indexProblemCache.keySet()) {
+                problemFiles.add(c.getCanonicalSourceFile());
+            }
+            assertEquals(new HashSet<>(Arrays.asList("concepts/b.json", "concepts/broken.json")), problemFiles);
+        } finally {
+            FileUtils.deleteDirectory(repoDirectory);
+        }
+    }
+
+    /**
+     * Test that indexing a second version only parses the files which changed since the first, and that the result
+     * is the same as a full build of the second version.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void buildGitContentIndex_secondVersionWithOneChangedFile_checkUnchangedContentReused()
+            throws Exception {
+        File repoDirectory = Files.createTempDirectory("content-indexer-test").toFile();
+        try (Git git = Git.init().setDirectory(repoDirectory).call()) {
+            writeFile(repoDirectory, "concepts/a.json",
+                    "{\"id\": \"page_a\", \"type\": \"content\", \"title\": \"A\"}");
+            writeFile(repoDirectory, "concepts/b.json",
+                    "{\"id\": \"page_a\", \"type\": \"content\", \"title\": \"Not A\"}");
+            git.add().addFilepattern(".").call();
+            String firstSha = git.commit().setMessage("First").setAuthor("test", "test@example.com").call().getName();
+
+            writeFile(repoDirectory, "concepts/b.json",
+                    "{\"id\": \"page_b\", \"type\": \"content\", \"title\": \"B\"}");
+            git.add().addFilepattern(".").call();
+            String secondSha = git.commit().setMessage("Second").setAuthor("test", "test@example.com").call().getName();
+
+            ElasticSearchIndexer.BulkIndexSession bulkIndexSession
+                    = createNiceMock(ElasticSearchIndexer.BulkIndexSession.class);
+            expect(searchProvider.startBulkIndex(anyString(), eq(Constants.CONTENT_INDEX_TYPE.CONTENT.toString())))
+                    .andReturn(bulkIndexSession).times(2);
+            replay(searchProvider, bulkIndexSession);
+
+            ContentIndexer contentIndexer = new ContentIndexer(new GitDb(git), searchProvider,
+                    new ContentMapper(new Reflections("uk.ac.cam.cl.dtg.segue")));
+
+            Map<String, Content> firstContentCache = new HashMap<>();
+            Map<Content, List<String>> firstIndexProblemCache = new HashMap<>();
+            Whitebox.invokeMethod(contentIndexer, "buildGitContentIndex", firstSha, true, firstContentCache,
+                    new HashSet<String>(), new HashMap<String, String>(), new HashMap<String, String>(),
+                    firstIndexProblemCache);
+            assertEquals(1, firstIndexProblemCache.size());
+
+            Map<String, Content> secondContentCache = new HashMap<>();
+            Map<Content, List<String>> secondIndexProblemCache = new HashMap<>();
+            Whitebox.invokeMethod(contentIndexer, "buildGitContentIndex", secondSha, true, secondContentCache,
+                    new HashSet<String>(), new HashMap<String, String>(), new HashMap<String, String>(),
+                    secondIndexProblemCache);
+
+            verify(searchProvider);
+            assertEquals(new HashSet<>(Arrays.asList("page_a", "page_b")), secondContentCache.keySet());
+            assertTrue(secondIndexProblemCache.isEmpty());
+            // The unchanged file should not have been parsed again.
+            assertSame(firstContentCache.get("page_a"), secondContentCache.get("page_a"));
+        } finally {
+            FileUtils.deleteDirectory(repoDirectory);
+        }
+    }
+
+    private void writeFile(final File directory, final String path, final String contents) throws IOException {
+        File file = new File(directory, path);
+        FileUtils.forceMkdirParent(file);
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+    }
+
     /**
      * Test the flattenContentObjects method and ensure the expected output is
      * generated.
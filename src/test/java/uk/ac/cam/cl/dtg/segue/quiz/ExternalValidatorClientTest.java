@@ -0,0 +1,164 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.quiz;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the ExternalValidatorClient, using a local stub checker.
+ */
+public class ExternalValidatorClientTest {
+    private HttpServer stubChecker;
+    private String stubCheckerUrl;
+    private AtomicInteger requestsReceived;
+    private CountDownLatch releaseResponses;
+    private volatile String responseBody;
+    private volatile String lastRequestBody;
+
+    /**
+     * Start a stub checker which counts requests and replies with responseBody once releaseResponses opens.
+     *
+     * @throws IOException - if the stub cannot be started.
+     */
+    @Before
+    public void setUp() throws IOException {
+        requestsReceived = new AtomicInteger();
+        releaseResponses = new CountDownLatch(0);
+        responseBody = "{\"equal\": \"true\", \"equality_type\": \"exact\"}";
+
+        stubChecker = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        stubChecker.setExecutor(Executors.newCachedThreadPool());
+        stubChecker.createContext("/check", exchange -> {
+            requestsReceived.incrementAndGet();
+            lastRequestBody = new String(ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8);
+            try {
+                releaseResponses.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = responseBody.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        stubChecker.start();
+        stubCheckerUrl = "http://localhost:" + stubChecker.getAddress().getPort() + "/check";
+    }
+
+    @After
+    public void tearDown() {
+        releaseResponses.countDown();
+        stubChecker.stop(0);
+    }
+
+    /**
+     * Verify that an identical answer to the same question is marked from the cache without calling the checker.
+     */
+    @Test
+    public void check_identicalRequests_checkerCalledOnce() throws IOException {
+        ExternalValidatorClient client = new ExternalValidatorClient("test_memoised", stubCheckerUrl);
+
+        Map<String, Object> first = client.check(request("x + 1"));
+        Map<String, Object> second = client.check(request("x + 1"));
+        client.check(request("1 + x"));
+
+        assertEquals("true", first.get("equal"));
+        assertEquals(first, second);
+        assertEquals(2, requestsReceived.get());
+    }
+
+    /**
+     * Verify that a response reporting a failure of the checker itself is not reused for later answers.
+     */
+    @Test
+    public void check_checkerError_responseNotMemoised() throws IOException {
+        ExternalValidatorClient client = new ExternalValidatorClient("test_error", stubCheckerUrl);
+        responseBody = "{\"error\": \"Internal error\", \"code\": 500}";
+
+        client.check(request("x + 1"));
+        client.check(request("x + 1"));
+
+        assertEquals(2, requestsReceived.get());
+    }
+
+    /**
+     * Verify that a check is rejected, rather than queued indefinitely, once the checker has too many in flight.
+     */
+    @Test
+    public void check_tooManyInFlight_checkRejected() throws Exception {
+        ExternalValidatorClient client = new ExternalValidatorClient("test_bulkhead", stubCheckerUrl, 1, 5000);
+        releaseResponses = new CountDownLatch(1);
+
+        CompletableFuture<?> blocked = client.checkAsync(request("x + 1"));
+        while (requestsReceived.get() == 0) {
+            Thread.sleep(10);
+        }
+
+        try {
+            client.check(request("x + 2"));
+            fail("Expected the second check to be rejected while the first holds the only permit.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("Too many requests in flight"));
+        } finally {
+            releaseResponses.countDown();
+        }
+        assertEquals("true", ((Map<?, ?>) blocked.get(10, TimeUnit.SECONDS)).get("equal"));
+        assertEquals(1, requestsReceived.get());
+    }
+
+    /**
+     * Verify that a request with a missing (null) field is still sent and memoised, as it was before memoisation.
+     */
+    @Test
+    public void check_nullField_checkedAndMemoised() throws Exception {
+        ExternalValidatorClient client = new ExternalValidatorClient("test_null_field", stubCheckerUrl);
+        Map<String, String> requestWithNull = new HashMap<>();
+        requestWithNull.put("target", "x + 1");
+        requestWithNull.put("test", null);
+
+        assertEquals("true", client.check(requestWithNull).get("equal"));
+        assertEquals("true", client.checkAsync(requestWithNull).get(10, TimeUnit.SECONDS).get("equal"));
+
+        assertEquals(1, requestsReceived.get());
+        assertTrue(lastRequestBody.contains("\"test\":null"));
+    }
+
+    private static Map<String, String> request(final String test) {
+        return ImmutableMap.of("target", "x + 1", "test", test, "description", "question_id");
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.segue.quiz;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.cam.cl.dtg.segue.api.managers.QuestionManager;
+import uk.ac.cam.cl.dtg.segue.dao.SegueDatabaseException;
+import uk.ac.cam.cl.dtg.segue.dao.content.ContentMapper;
+import uk.ac.cam.cl.dtg.segue.database.PostgresSqlDb;
+import uk.ac.cam.cl.dtg.segue.dos.LightweightQuestionValidationResponse;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionAttemptSummary;
+import uk.ac.cam.cl.dtg.segue.dos.QuestionValidationResponse;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.aryEq;
+import static org.easymock.EasyMock.contains;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the PgQuestionAttempts class and the question attempt summaries it maintains.
+ */
+public class PgQuestionAttemptsTest {
+    private PostgresSqlDb dummyPostgresSqlDb;
+    private ContentMapper dummyContentMapper;
+    private Connection dummyConnection;
+    private PreparedStatement dummyPreparedStatement;
+
+    /**
+     * Initial configuration of tests.
+     */
+    @Before
+    public final void setUp() {
+        this.dummyPostgresSqlDb = createMock(PostgresSqlDb.class);
+        this.dummyContentMapper = createNiceMock(ContentMapper.class);
+        this.dummyConnection = createMock(Connection.class);
+        this.dummyPreparedStatement = createNiceMock(PreparedStatement.class);
+
+        expect(dummyContentMapper.getSharedContentObjectMapper()).andReturn(new ObjectMapper()).anyTimes();
+        replay(dummyContentMapper);
+    }
+
+    /**
+     * Verify that the attempt and the update to its summary are committed together.
+     */
+    @Test
+    public void registerQuestionAttempt_validAttempt_attemptAndSummaryWrittenInOneTransaction() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        dummyConnection.setAutoCommit(false);
+        expectLastCall().once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).times(2);
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(1).times(2);
+        dummyConnection.commit();
+        expectLastCall().once();
+        dummyConnection.setAutoCommit(true);
+        expectLastCall().once();
+        dummyConnection.close();
+        expectLastCall().once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement};
+        replay(mockedObjects);
+
+        PgQuestionAttempts questionAttempts = new PgQuestionAttempts(dummyPostgresSqlDb, dummyContentMapper);
+        questionAttempts.registerQuestionAttempt(1L, "page", "page|part", buildAttempt("page|part", true));
+
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that the attempt is not recorded if its summary cannot be updated, so the two cannot drift apart.
+     */
+    @Test
+    public void registerQuestionAttempt_summaryUpdateFails_attemptRolledBack() throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        dummyConnection.setAutoCommit(false);
+        expectLastCall().once();
+        expect(dummyConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).times(2);
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(1).andThrow(new SQLException("summary failed"));
+        dummyConnection.rollback();
+        expectLastCall().once();
+        dummyConnection.setAutoCommit(true);
+        expectLastCall().once();
+        dummyConnection.close();
+        expectLastCall().once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement};
+        replay(mockedObjects);
+
+        PgQuestionAttempts questionAttempts = new PgQuestionAttempts(dummyPostgresSqlDb, dummyContentMapper);
+        try {
+            questionAttempts.registerQuestionAttempt(1L, "page", "page|part", buildAttempt("page|part", false));
+            fail("Expected the failed summary update to be reported.");
+        } catch (SegueDatabaseException e) {
+            // expected
+        }
+
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that only a correct attempt can set the first correct attempt time, which the streak counts are kept in
+     * step with.
+     */
+    @Test
+    public void registerQuestionAttempt_correctAndIncorrectAttempts_onlyCorrectSetsFirstCorrectTime() throws Exception {
+        QuestionValidationResponse correctAttempt = buildAttempt("page|part", true);
+        Timestamp correctAttemptTimestamp = new Timestamp(correctAttempt.getDateAttempted().getTime());
+
+        Connection dummyNiceConnection = createNiceMock(Connection.class);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyNiceConnection).times(2);
+        expect(dummyNiceConnection.prepareStatement(anyString())).andReturn(dummyPreparedStatement).times(4);
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(1).times(4);
+        dummyPreparedStatement.setNull(6, Types.TIMESTAMP);
+        expectLastCall().once();
+        dummyPreparedStatement.setTimestamp(6, correctAttemptTimestamp);
+        expectLastCall().once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyNiceConnection, dummyPreparedStatement};
+        replay(mockedObjects);
+
+        PgQuestionAttempts questionAttempts = new PgQuestionAttempts(dummyPostgresSqlDb, dummyContentMapper);
+        questionAttempts.registerQuestionAttempt(1L, "page", "page|part", buildAttempt("page|part", false));
+        questionAttempts.registerQuestionAttempt(1L, "page", "page|part", correctAttempt);
+
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that attempts for a group of users are found by question page id, with each set of ids passed as a
+     * single array parameter.
+     */
+    @Test
+    public void getQuestionAttemptsByUsersAndQuestionPrefix_severalUsersAndPages_pageIdsMatchedAsArray()
+            throws Exception {
+        Connection dummyNiceConnection = createNiceMock(Connection.class);
+        ResultSet dummyResultSet = createNiceMock(ResultSet.class);
+        Array dummyUserIdArray = createNiceMock(Array.class);
+        Array dummyPageIdArray = createNiceMock(Array.class);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyNiceConnection).once();
+        expect(dummyNiceConnection.prepareStatement(contains("page_id = ANY(?)"))).andReturn(dummyPreparedStatement)
+                .once();
+        expect(dummyNiceConnection.createArrayOf(eq("bigint"), aryEq(new Object[] {1L, 2L})))
+                .andReturn(dummyUserIdArray).once();
+        expect(dummyNiceConnection.createArrayOf(eq("text"), aryEq(new Object[] {"page_a", "page_b"})))
+                .andReturn(dummyPageIdArray).once();
+        dummyPreparedStatement.setArray(1, dummyUserIdArray);
+        expectLastCall().once();
+        dummyPreparedStatement.setArray(2, dummyPageIdArray);
+        expectLastCall().once();
+        expect(dummyPreparedStatement.executeQuery()).andReturn(dummyResultSet).once();
+        expect(dummyResultSet.next()).andReturn(true).andReturn(false);
+        expect(dummyResultSet.getLong("user_id")).andReturn(2L).once();
+        expect(dummyResultSet.getString("question_id")).andReturn("page_b|part").once();
+        expect(dummyResultSet.getBoolean("correct")).andReturn(true).once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyNiceConnection, dummyPreparedStatement, dummyResultSet};
+        replay(mockedObjects);
+
+        PgQuestionAttempts questionAttempts = new PgQuestionAttempts(dummyPostgresSqlDb, dummyContentMapper);
+        Map<Long, Map<String, Map<String, List<LightweightQuestionValidationResponse>>>> attempts = questionAttempts
+                .getQuestionAttemptsByUsersAndQuestionPrefix(Arrays.asList(1L, 2L), Arrays.asList("page_a", "page_b"));
+
+        assertTrue(attempts.get(1L).isEmpty());
+        assertTrue(attempts.get(2L).get("page_b").get("page_b|part").get(0).isCorrect());
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that an anonymous user's attempt is appended without reading or rewriting their earlier attempts.
+     */
+    @Test
+    public void registerAnonymousQuestionAttempt_validAttempt_appendedWithoutReadingEarlierAttempts()
+            throws Exception {
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyConnection).once();
+        expect(dummyConnection.prepareStatement(contains("INSERT INTO anonymous_question_attempts")))
+                .andReturn(dummyPreparedStatement).once();
+        expect(dummyPreparedStatement.executeUpdate()).andReturn(1).once();
+        dummyConnection.close();
+        expectLastCall().once();
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyConnection, dummyPreparedStatement};
+        replay(mockedObjects);
+
+        PgQuestionAttempts questionAttempts = new PgQuestionAttempts(dummyPostgresSqlDb, dummyContentMapper);
+        questionAttempts.registerAnonymousQuestionAttempt("anonymous", "page", "page|part",
+                buildAttempt("page|part", true));
+
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that an anonymous user's attempts are grouped by page and question part, in the order they were made.
+     */
+    @Test
+    public void getAnonymousQuestionAttempts_severalAttempts_groupedInOrder() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        Connection dummyNiceConnection = createNiceMock(Connection.class);
+        ResultSet dummyResultSet = createNiceMock(ResultSet.class);
+        expect(dummyPostgresSqlDb.getDatabaseConnection()).andReturn(dummyNiceConnection).once();
+        expect(dummyNiceConnection.prepareStatement(contains("FROM anonymous_question_attempts")))
+                .andReturn(dummyPreparedStatement).once();
+        dummyPreparedStatement.setString(1, "anonymous");
+        expectLastCall().once();
+        expect(dummyPreparedStatement.executeQuery()).andReturn(dummyResultSet).once();
+        expect(dummyResultSet.next()).andReturn(true).times(3).andReturn(false);
+        expect(dummyResultSet.getString("page_id")).andReturn("page_b").andReturn("page_a").andReturn("page_b");
+        expect(dummyResultSet.getString("question_id")).andReturn("page_b|part").andReturn("page_a|part")
+                .andReturn("page_b|part");
+        expect(dummyResultSet.getString("question_attempt"))
+                .andReturn(objectMapper.writeValueAsString(buildAttempt("page_b|part", false)))
+                .andReturn(objectMapper.writeValueAsString(buildAttempt("page_a|part", null)))
+                .andReturn(objectMapper.writeValueAsString(buildAttempt("page_b|part", true)));
+
+        Object[] mockedObjects = {dummyPostgresSqlDb, dummyNiceConnection, dummyPreparedStatement, dummyResultSet};
+        replay(mockedObjects);
+
+        PgQuestionAttempts questionAttempts = new PgQuestionAttempts(dummyPostgresSqlDb, dummyContentMapper);
+        Map<String, Map<String, List<QuestionValidationResponse>>> attempts =
+                questionAttempts.getAnonymousQuestionAttempts("anonymous");
+
+        assertEquals(Arrays.asList("page_b", "page_a"), Arrays.asList(attempts.keySet().toArray()));
+        List<QuestionValidationResponse> pageBAttempts = attempts.get("page_b").get("page_b|part");
+        assertEquals(2, pageBAttempts.size());
+        assertFalse(pageBAttempts.get(0).isCorrect());
+        assertTrue(pageBAttempts.get(1).isCorrect());
+        assertEquals(1, attempts.get("page_a").get("page_a|part").size());
+        verify(mockedObjects);
+    }
+
+    /**
+     * Verify that summarising attempts held in memory matches what the summary table records.
+     */
+    @Test
+    public void summariseQuestionAttempts_mixedAttempts_correctIfAnyAttemptCorrect() {
+        QuestionValidationResponse first = buildAttempt("page|part1", false);
+        first.setDateAttempted(new Date(1000));
+        QuestionValidationResponse second = buildAttempt("page|part1", true);
+        second.setDateAttempted(new Date(2000));
+        QuestionValidationResponse third = buildAttempt("page|part1", false);
+        third.setDateAttempted(new Date(3000));
+        List<LightweightQuestionValidationResponse> part1Attempts = Arrays.asList(first, second, third);
+        List<LightweightQuestionValidationResponse> part2Attempts =
+                Arrays.asList(buildAttempt("page|part2", null), buildAttempt("page|part2", false));
+
+        Map<String, Map<String, QuestionAttemptSummary>> summaries = QuestionManager.summariseQuestionAttempts(
+                ImmutableMap.of("page", ImmutableMap.of("page|part1", part1Attempts, "page|part2", part2Attempts)));
+
+        QuestionAttemptSummary part1 = summaries.get("page").get("page|part1");
+        assertTrue(part1.isCorrect());
+        assertEquals(Integer.valueOf(3), part1.getAttemptCount());
+        assertEquals(new Date(1000), part1.getFirstAttempted());
+        assertEquals(new Date(3000), part1.getDateAttempted());
+
+        QuestionAttemptSummary part2 = summaries.get("page").get("page|part2");
+        assertFalse(part2.isCorrect());
+        assertEquals(Integer.valueOf(2), part2.getAttemptCount());
+    }
+
+    private static QuestionValidationResponse buildAttempt(final String questionId, final Boolean correct) {
+        QuestionValidationResponse attempt = new QuestionValidationResponse();
+        attempt.setQuestionId(questionId);
+        attempt.setCorrect(correct);
+        attempt.setDateAttempted(new Date());
+        return attempt;
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.util;
+
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for the WeighedCacheBuilder class.
+ */
+public class WeighedCacheBuilderTest {
+
+    /**
+     * Verify that a cache configured to hold one megabyte evicts the oldest entries once it holds more than that,
+     * however few entries it holds.
+     */
+    @Test
+    public void build_configuredMaximumSize_evictsEntriesOverSize() {
+        PropertiesLoader properties = createMock(PropertiesLoader.class);
+        expect(properties.getProperty(WeighedCacheBuilder.maximumMegabytesProperty("test"))).andReturn("1");
+        expect(properties.getProperty(anyString())).andReturn(null).anyTimes();
+        replay(properties);
+
+        Cache<String, String> cache = WeighedCacheBuilder.named("test").maximumMegabytes(1024)
+                .expireAfterAccess(1, TimeUnit.DAYS).configuredFrom(properties).build();
+
+        // Each value is estimated to take around 200KB:
+        String value = Strings.repeat("x", 100 * 1024);
+        for (int i = 0; i < 20; i++) {
+            cache.put("key" + i, value);
+        }
+
+        assertTrue(cache.size() < 20);
+        assertNull(cache.getIfPresent("key0"));
+        assertEquals(value, cache.getIfPresent("key19"));
+        assertTrue(cache.stats().evictionCount() > 0);
+    }
+
+    /**
+     * Verify that the size of objects is estimated from their JSON, and that of strings from their length.
+     */
+    @Test
+    public void estimateSize_stringsAndObjects_estimatedFromLength() {
+        // {"key":"value"} is 15 bytes long:
+        assertEquals(40 + 2 * 3 + 15, WeighedCacheBuilder.estimateSize("key", ImmutableMap.of("key", "value")));
+        assertEquals(2 * (40 + 2 * 5), WeighedCacheBuilder.estimateSize("hello", "world"));
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2021 Raspberry Pi Foundation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at
+ * 		http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.cam.cl.dtg.util.locations;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for the LocalIPRangeLocationResolver class.
+ */
+public class LocalIPRangeLocationResolverTest {
+    private static final String RANGES_CSV = "first_ip,last_ip,country,town,postcode,latitude,longitude\n"
+            + "200.0.0.0,255.255.255.255,Brazil,,,,\n"
+            + "10.0.0.0,10.0.0.255,United Kingdom,Cambridge,CB3,52.2,0.1\n"
+            + "10.0.2.0,10.0.2.255,United Kingdom,London,,51.5,-0.1\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Verify that addresses are found in the range containing them, including ranges above 128.0.0.0, and that
+     * addresses between ranges or outside IPv4 are not found.
+     */
+    @Test
+    public void resolveAllLocationInformation_rangesWrittenFromCsv_addressesFound() throws Exception {
+        Path databaseFile = folder.newFile("ranges.dat").toPath();
+        LocalIPRangeLocationResolver.writeDatabase(new StringReader(RANGES_CSV), databaseFile);
+        LocalIPRangeLocationResolver resolver = new LocalIPRangeLocationResolver(databaseFile);
+
+        Location cambridge = resolver.resolveAllLocationInformation("10.0.0.255");
+        assertEquals(new Location(new Address(null, null, "Cambridge", null, "CB3", "United Kingdom"), 52.2, 0.1),
+                cambridge);
+        assertEquals("London", resolver.resolveAllLocationInformation("10.0.2.0").getAddress().getTown());
+
+        Location brazil = resolver.resolveAllLocationInformation("::ffff:255.1.2.3");
+        assertEquals("Brazil", brazil.getAddress().getCountry());
+        assertNull(brazil.getLatitude());
+        assertEquals("United Kingdom", resolver.resolveCountryOnly("10.0.0.1").getAddress().getCountry());
+
+        for (String unknownAddress : new String[] {"9.255.255.255", "10.0.1.0", "2001:db8::1", "example.org"}) {
+            try {
+                resolver.resolveAllLocationInformation(unknownAddress);
+                fail("Expected no location for " + unknownAddress);
+            } catch (LocationServerException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Verify that overlapping ranges are rejected when building a file.
+     */
+    @Test(expected = IOException.class)
+    public void writeDatabase_overlappingRanges_rejected() throws Exception {
+        Path databaseFile = folder.newFile("overlapping.dat").toPath();
+        LocalIPRangeLocationResolver.writeDatabase(new StringReader(RANGES_CSV
+                + "10.0.0.128,10.0.1.0,United Kingdom,,,,\n"), databaseFile);
+    }
+}